@@ -175,6 +175,11 @@ public final class DB2Init {
         dump += "\n" + DB2InitStatements.ALTER_TABLE
                 + DB2InitStatements.REQUESTS + " "
                 + DB2InitStatements.S_FOREIGN_KEY_REQUESTS + ";\n";
+        // Indexes.
+        dump += "\n" + DB2InitStatements.CREATE_INDEX
+                + DB2InitStatements.S_INDEX_REQUESTS_STATUS_ID + ";\n";
+        dump += "\n" + DB2InitStatements.CREATE_INDEX
+                + DB2InitStatements.S_INDEX_REQUESTS_FILE_STATUS + ";\n";
         // Check constraints.
         // Informational constraints.
         // Grants.
@@ -289,6 +294,14 @@ public final class DB2Init {
                     DB2InitStatements.REQUESTS);
         }
 
+        // Indexes.
+        rows = this.executeQuery(DB2InitStatements.CREATE_INDEX
+                + DB2InitStatements.S_INDEX_REQUESTS_STATUS_ID);
+        message(rows, "Index of table {} created", DB2InitStatements.REQUESTS);
+        rows = this.executeQuery(DB2InitStatements.CREATE_INDEX
+                + DB2InitStatements.S_INDEX_REQUESTS_FILE_STATUS);
+        message(rows, "Index of table {} created", DB2InitStatements.REQUESTS);
+
         LOGGER.error("Please configure the MediaTypes table and Allocations table");
 
         DB2Broker.getInstance().disconnect();
@@ -69,6 +69,12 @@ public final class DB2InitStatements {
      */
     static final String ALTER_TABLE = "ALTER TABLE ";
 
+    /**
+     * Start of the command to create an index.
+     *
+     * @since 1.5.6
+     */
+    static final String CREATE_INDEX = "CREATE INDEX ";
     /**
      * Start of the commando to create a schema.
      */
@@ -290,6 +296,26 @@ public final class DB2InitStatements {
             + REQUESTS_QUEUE_ID + ") REFERENCES " + QUEUES + " (" + QUEUES_ID
             + ") ON DELETE CASCADE";
 
+    /**
+     * Index of the requests to find the requests of a file that are not yet
+     * staged.
+     *
+     * @since 1.5.6
+     */
+    static final String S_INDEX_REQUESTS_FILE_STATUS = DB2Statements.A_SCH_DATA
+            + ".requests_file_status ON " + REQUESTS + " (" + REQUESTS_FILE
+            + ", " + REQUESTS_STATUS + ")";
+
+    /**
+     * Index of the requests to read the new requests in the order of their id,
+     * page by page.
+     *
+     * @since 1.5.6
+     */
+    static final String S_INDEX_REQUESTS_STATUS_ID = DB2Statements.A_SCH_DATA
+            + ".requests_status_id ON " + REQUESTS + " (" + REQUESTS_STATUS
+            + ", " + REQUESTS_ID + ")";
+
     /**
      * Primary key for allocations.
      */
@@ -420,8 +420,8 @@ public final class DB2QueueDAOTest {
     @Test
     public void testUpdateState01() throws TReqSException {
         final Calendar time = new GregorianCalendar();
-        final short nbDone = 0;
-        final short nbFailed = 0;
+        final int nbDone = 0;
+        final int nbFailed = 0;
         final String ownerName = "owner";
         final long byteSize = DB2QueueDAOTest.HUNDRED;
 
@@ -453,8 +453,8 @@ public final class DB2QueueDAOTest {
     @Test
     public void testUpdateState02() throws TReqSException {
         final Calendar time = new GregorianCalendar();
-        final short nbDone = 0;
-        final short nbFailed = 0;
+        final int nbDone = 0;
+        final int nbFailed = 0;
         final String ownerName = "owner";
         final long byteSize = DB2QueueDAOTest.HUNDRED;
 
@@ -476,8 +476,8 @@ public final class DB2QueueDAOTest {
     @Test
     public void testUpdateState03() throws TReqSException {
         final Calendar time = null;
-        final short nbDone = 0;
-        final short nbFailed = 0;
+        final int nbDone = 0;
+        final int nbFailed = 0;
         final String ownerName = "owner";
         final long byteSize = DB2QueueDAOTest.HUNDRED;
 
@@ -509,8 +509,8 @@ public final class DB2QueueDAOTest {
     @Test
     public void testUpdateState04() throws TReqSException {
         final Calendar time = new GregorianCalendar();
-        final short nbDone = -50;
-        final short nbFailed = 0;
+        final int nbDone = -50;
+        final int nbFailed = 0;
         final String ownerName = "owner";
         final long byteSize = DB2QueueDAOTest.HUNDRED;
 
@@ -542,8 +542,8 @@ public final class DB2QueueDAOTest {
     @Test
     public void testUpdateState05() throws TReqSException {
         final Calendar time = new GregorianCalendar();
-        final short nbDone = 0;
-        final short nbFailed = -90;
+        final int nbDone = 0;
+        final int nbFailed = -90;
         final String ownerName = "owner";
         final long byteSize = DB2QueueDAOTest.HUNDRED;
 
@@ -572,8 +572,8 @@ public final class DB2QueueDAOTest {
     @Test
     public void testUpdateState06() {
         final Calendar time = new GregorianCalendar();
-        final short nbDone = 0;
-        final short nbFailed = -90;
+        final int nbDone = 0;
+        final int nbFailed = -90;
 
         final Queue queue = null;
 
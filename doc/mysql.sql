@@ -120,6 +120,32 @@ CREATE TABLE `jqueues` (
 ) ENGINE=InnoDB AUTO_INCREMENT=1 DEFAULT CHARSET=latin1;
 /*!40101 SET character_set_client = @saved_cs_client */;
 
+--
+-- Table structure for table `jqueues_history`
+--
+
+DROP TABLE IF EXISTS `jqueues_history`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `jqueues_history` (
+  `id` int(11) NOT NULL AUTO_INCREMENT,
+  `name` char(12) NOT NULL,
+  `creation_time` datetime NOT NULL,
+  `mediatype_id` tinyint(4) NOT NULL,
+  `suspension_time` datetime DEFAULT NULL,
+  `nb_reqs_failed` int(11) NOT NULL DEFAULT '0',
+  `activation_time` datetime DEFAULT NULL,
+  `end_time` datetime DEFAULT NULL,
+  `status` smallint(6) NOT NULL DEFAULT '200',
+  `nb_reqs` int(11) NOT NULL DEFAULT '0',
+  `owner` varchar(32) DEFAULT NULL,
+  `byte_size` bigint(20) NOT NULL DEFAULT '0',
+  `nb_reqs_done` int(11) NOT NULL DEFAULT '0',
+  PRIMARY KEY (`id`),
+  KEY `mediatype_id` (`mediatype_id`)
+) ENGINE=InnoDB AUTO_INCREMENT=1 DEFAULT CHARSET=latin1;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
 --
 -- Table structure for table `jrequests`
 --
@@ -149,10 +175,46 @@ CREATE TABLE `jrequests` (
   `message` varchar(1024) DEFAULT NULL,
   PRIMARY KEY (`id`),
   KEY `queue_id` (`queue_id`),
+  KEY `requests_status_id` (`status`,`id`),
+  KEY `requests_file_status` (`file`(255),`status`),
   CONSTRAINT `jrequests_ibfk_1` FOREIGN KEY (`queue_id`) REFERENCES `jqueues` (`id`)
 ) ENGINE=InnoDB AUTO_INCREMENT=1 DEFAULT CHARSET=latin1;
 /*!40101 SET character_set_client = @saved_cs_client */;
 
+--
+-- Table structure for table `jrequests_history`
+--
+
+DROP TABLE IF EXISTS `jrequests_history`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `jrequests_history` (
+  `id` int(11) NOT NULL AUTO_INCREMENT,
+  `file` varchar(1280) NOT NULL,
+  `creation_time` datetime NOT NULL,
+  `user` varchar(32) NOT NULL,
+  `client` varchar(32) NOT NULL,
+  `version` varchar(16) NOT NULL,
+  `email` varchar(64) DEFAULT NULL,
+  `queue_id` int(11) DEFAULT NULL,
+  `tape` char(8) DEFAULT NULL,
+  `position` int(11) DEFAULT NULL,
+  `level` tinyint(4) DEFAULT NULL,
+  `size` bigint(20) DEFAULT NULL,
+  `tries` tinyint(4) DEFAULT '0',
+  `errorcode` int(11) DEFAULT NULL,
+  `submission_time` datetime DEFAULT NULL,
+  `queued_time` datetime DEFAULT NULL,
+  `end_time` datetime DEFAULT NULL,
+  `status` smallint(6) DEFAULT '100',
+  `message` varchar(1024) DEFAULT NULL,
+  PRIMARY KEY (`id`),
+  KEY `queue_id` (`queue_id`),
+  KEY `requests_status_id` (`status`,`id`),
+  KEY `requests_file_status` (`file`(255),`status`)
+) ENGINE=InnoDB AUTO_INCREMENT=1 DEFAULT CHARSET=latin1;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
 --
 -- Table structure for table `queue_status`
 --
@@ -56,10 +56,27 @@ public final class Constants {
      * Timeout for the metadata of allocations.
      */
     public static final String ALLOCATIONS_TIMEOUT = "ALLOCATIONS_TIMEOUT";
+    /**
+     * Quantity of seconds between two executions of the archiver.
+     */
+    public static final String ARCHIVER_INTERVAL = "ARCHIVER_INTERVAL";
     /**
      * Type of authentication against the HSM.
      */
     public static final String AUTHENTICATION_TYPE = "AUTHENTICATION_TYPE";
+    /**
+     * Milliseconds between two writes of the pending modifications.
+     */
+    public static final String BATCH_INTERVAL = "BATCH_INTERVAL";
+    /**
+     * Quantity of times a modification rejected by the database is written
+     * in a batch before writing it alone.
+     */
+    public static final String BATCH_RETRIES = "BATCH_RETRIES";
+    /**
+     * Quantity of modifications written in a batch.
+     */
+    public static final String BATCH_SIZE = "BATCH_SIZE";
     /**
      * Name for the internal property for the name for the configuration file.
      */
@@ -114,6 +131,18 @@ public final class Constants {
      * that will interact with the HSM.
      */
     public static final String HSM_BRIDGE = "HSM_BRIDGE";
+    /**
+     * Seconds to wait for the initialization of the HSM environment.
+     */
+    public static final String HSM_INIT_TIMEOUT = "INIT_TIMEOUT";
+    /**
+     * Seconds to wait for the metadata of a file from the HSM.
+     */
+    public static final String HSM_PROPERTIES_TIMEOUT = "PROPERTIES_TIMEOUT";
+    /**
+     * Seconds to wait for the staging of a file in the HSM.
+     */
+    public static final String HSM_STAGE_TIMEOUT = "STAGE_TIMEOUT";
     /**
      * Identity of the user to access to the HSM.
      */
@@ -135,6 +164,11 @@ public final class Constants {
      * Maximal quantity of stagers.
      */
     public static final String MAX_STAGERS = "MAX_STAGERS";
+    /**
+     * Maximal quantity of calls to the HSM that have not returned after their
+     * timeout.
+     */
+    public static final String MAX_STUCK_CALLS = "MAX_STUCK_CALLS";
     /**
      * Maximal quantity of retries for a tape before considered as problematic.
      */
@@ -143,6 +177,19 @@ public final class Constants {
      * Media finder factory.
      */
     public static final String MEDIA_FINDER_FACTORY = "MEDIA_FINDER_FACTORY";
+    /**
+     * Maximal quantity of files whose metadata is kept in the cache.
+     */
+    public static final String METADATA_CACHE_SIZE = "METADATA_CACHE_SIZE";
+    /**
+     * Seconds that a problem of a file (not existing, empty) is kept in the
+     * metadata cache.
+     */
+    public static final String METADATA_NEGATIVE_AGE = "METADATA_NEGATIVE_AGE";
+    /**
+     * Quantity of threads that retrieve the metadata of the files.
+     */
+    public static final String METADATA_THREADS = "METADATA_THREADS";
     /**
      * Quantity of milliseconds in a second.
      */
@@ -160,6 +207,15 @@ public final class Constants {
      * Parameter to ask the DAO Factory.
      */
     public static final String PESISTENCE_FACTORY = "DAO_FACTORY";
+    /**
+     * Maximal quantity of connections to the database.
+     */
+    public static final String POOL_SIZE = "POOL_SIZE";
+    /**
+     * Quantity of days that the processed requests and queues are kept before
+     * being archived.
+     */
+    public static final String RETENTION_DAYS = "RETENTION_DAYS";
     /**
      * Wait time between two stagers.
      */
@@ -169,6 +225,10 @@ public final class Constants {
      * Section in the configuration file for the Activator.
      */
     public static final String SECTION_ACTIVATOR = "ACTIVATOR";
+    /**
+     * Section in the configuration file for the Archiver.
+     */
+    public static final String SECTION_ARCHIVER = "ARCHIVER";
     /**
      * Section in the configuration file for the Dispatcher.
      */
@@ -219,6 +279,10 @@ public final class Constants {
      * HPSS.
      */
     public static final String STAGING_DEPTH = "STAGING_DEPTH";
+    /**
+     * Milliseconds between two writes of the statistics of the queues.
+     */
+    public static final String STATISTICS_INTERVAL = "STATISTICS_INTERVAL";
     /**
      * Duration of a suspension.
      */
@@ -227,6 +291,10 @@ public final class Constants {
      * Tests the existence and access to the keytab.
      */
     public static final String TEST_KEYTAB = "TEST_KEYTAB";
+    /**
+     * If the queues of the previous execution have to be rebuilt at startup.
+     */
+    public static final String WARM_RESTART = "WARM_RESTART";
     /**
      * Section Watchdog.
      */
@@ -47,6 +47,27 @@ public final class DefaultProperties {
      * Metadata Allocation timeout.
      */
     public static final short ALLOCATIONS_TIMEOUT = 3600;
+    /**
+     * Quantity of requests or queues archived in a batch.
+     */
+    public static final short ARCHIVER_BATCH_SIZE = 1000;
+    /**
+     * Seconds between two executions of the archiver.
+     */
+    public static final short ARCHIVER_INTERVAL = 3600;
+    /**
+     * Milliseconds between two writes of the pending modifications.
+     */
+    public static final short BATCH_INTERVAL = 500;
+    /**
+     * Quantity of times a modification rejected by the database is written
+     * in a batch before writing it alone.
+     */
+    public static final byte BATCH_RETRIES = 3;
+    /**
+     * Quantity of modifications written in a batch.
+     */
+    public static final short BATCH_SIZE = 100;
     /**
      * Default properties file name.
      */
@@ -76,6 +97,19 @@ public final class DefaultProperties {
      * Time to rest in temporary suspended state.
      */
     public static final short DEFAULT_SUSPEND_DURATION = 600;
+    /**
+     * Seconds to wait for the initialization of the HSM environment.
+     */
+    public static final short HSM_INIT_TIMEOUT = 300;
+    /**
+     * Seconds to wait for the metadata of a file from the HSM.
+     */
+    public static final short HSM_PROPERTIES_TIMEOUT = 300;
+    /**
+     * Seconds to wait for the staging of a file in the HSM. The staging
+     * includes the mount and the positioning of the tape.
+     */
+    public static final short HSM_STAGE_TIMEOUT = 7200;
     /**
      * Max metadata age in seconds.
      */
@@ -92,10 +126,36 @@ public final class DefaultProperties {
      * Maximal quantity of stagers.
      */
     public static final short MAX_STAGERS = 999;
+    /**
+     * Maximal quantity of calls to the HSM that have not returned after their
+     * timeout.
+     */
+    public static final byte MAX_STUCK_CALLS = 20;
     /**
      * Quantity of retries if an error is detected.
      */
     public static final byte MAX_SUSPEND_RETRIES = 3;
+    /**
+     * Quantity of files whose metadata is kept in the cache.
+     */
+    public static final int METADATA_CACHE_SIZE = 10000;
+    /**
+     * Seconds a problem of a file is kept in the metadata cache.
+     */
+    public static final short METADATA_NEGATIVE_AGE = 60;
+    /**
+     * Quantity of threads that query the HSM for file metadata.
+     */
+    public static final byte METADATA_THREADS = 5;
+    /**
+     * Maximal quantity of connections to the database.
+     */
+    public static final byte POOL_SIZE = 10;
+    /**
+     * Days that the processed requests and queues are kept before being
+     * archived. Zero deactivates the archiver.
+     */
+    public static final short RETENTION_DAYS = 30;
     /**
      * Quantity of seconds between activations for the Activator and the
      * Dispatcher.
@@ -109,6 +169,10 @@ public final class DefaultProperties {
      * Quantity of simultaneous stages by queue.
      */
     public static final byte STAGING_DEPTH = 3;
+    /**
+     * Milliseconds between two writes of the statistics of the queues.
+     */
+    public static final short STATISTICS_INTERVAL = 1000;
     /**
      * Time of the loop to check if everything is working good in seconds.
      */
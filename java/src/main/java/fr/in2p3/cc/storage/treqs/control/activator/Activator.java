@@ -58,6 +58,7 @@ import fr.in2p3.cc.storage.treqs.control.process.AbstractProcess;
 import fr.in2p3.cc.storage.treqs.control.process.ProcessStatus;
 import fr.in2p3.cc.storage.treqs.control.starter.Starter;
 import fr.in2p3.cc.storage.treqs.model.Queue;
+import fr.in2p3.cc.storage.treqs.model.QueueStatus;
 import fr.in2p3.cc.storage.treqs.model.Resource;
 import fr.in2p3.cc.storage.treqs.model.Stager;
 import fr.in2p3.cc.storage.treqs.persistence.helper.PersistenceHelperResourceAllocation;
@@ -70,9 +71,9 @@ import fr.in2p3.cc.storage.treqs.tools.Configurator;
  * It is recommended to have a configuration with the maxStager as multiple of
  * the maxStagersPerQueue.
  * <p>
- * TODO v2.0 Create a mechanism to stop the Activator when it passed and it did
- * not activate any queue. Then, wait for the Dispatcher to process something,
- * and then reactivates. This permits to process new requests faster.
+ * Between two passes, the Activator waits until it is woken up (a queue has
+ * been created, a queue has ended or has been suspended) or until a suspension
+ * ends. The time between loops is the maximal waiting time.
  *
  * @author Jonathan Schaeffer
  * @since 1.0
@@ -110,6 +111,62 @@ public final class Activator extends AbstractProcess {
         LOGGER.trace("< destroyInstance");
     }
 
+    /**
+     * Activates the queue that follows an ended queue on the same tape, if
+     * there is one. The tape is still mounted, thus the queue takes the drive
+     * of the ended queue directly, without competing with the other waiting
+     * queues. If there is not any successor, or if the Activator does not
+     * exist, the Activator is woken up, because the drive is free.
+     *
+     * @param tapename
+     *            Name of the tape whose queue has ended.
+     */
+    public static void activateSuccessor(final String tapename) {
+        LOGGER.trace("> activateSuccessor");
+
+        assert (tapename != null) && !tapename.equals("");
+
+        boolean activated = false;
+        final Activator activator = instance;
+        if (activator != null) {
+            try {
+                final Queue successor = QueuesController.getInstance().exists(
+                        tapename, QueueStatus.CREATED);
+                if ((successor != null) && successor.isSuccessor()) {
+                    activated = activator.activateFollowing(successor);
+                }
+            } catch (final TReqSException e) {
+                LOGGER.error("Error activating the successor of queue {} - {}",
+                        tapename, e.getMessage());
+            }
+        }
+        if (!activated) {
+            // The drive is free for another queue.
+            wakeUp();
+        }
+
+        LOGGER.trace("< activateSuccessor");
+    }
+
+    /**
+     * Wakes up the Activator, if it exists, in order to do a new pass without
+     * waiting the whole time between loops. This is called when a queue is
+     * created or when a drive is freed.
+     */
+    public static void wakeUp() {
+        LOGGER.trace("> wakeUp");
+
+        final Activator activator = instance;
+        if (activator != null) {
+            synchronized (activator.wakeUpLock) {
+                activator.wakeUpPending = true;
+                activator.wakeUpLock.notifyAll();
+            }
+        }
+
+        LOGGER.trace("< wakeUp");
+    }
+
     /**
      * Retrieves the singleton instance.
      *
@@ -133,6 +190,12 @@ public final class Activator extends AbstractProcess {
         return instance;
     }
 
+    /**
+     * Lock to activate the queues. A successor queue is activated from the
+     * thread of a stager, while the other queues are activated by the
+     * Activator.
+     */
+    private final Object activationLock;
     /**
      * Count active stagers.
      */
@@ -161,6 +224,14 @@ public final class Activator extends AbstractProcess {
      * Max number of stager processes per active queue.
      */
     private byte stagersPerQueue = 1;
+    /**
+     * Lock to wait between loops and to be woken up.
+     */
+    private final Object wakeUpLock;
+    /**
+     * If the Activator has been woken up since the last pass.
+     */
+    private boolean wakeUpPending;
 
     /**
      * Creates the activator, establishing all the values.
@@ -202,9 +273,13 @@ public final class Activator extends AbstractProcess {
         this.setSecondsBetweenStagers(timeStagers);
 
         this.activeStagers = 0;
+        this.activationLock = new Object();
 
         this.allocations = new ArrayList<Resource>();
 
+        this.wakeUpLock = new Object();
+        this.wakeUpPending = false;
+
         this.kickStart();
 
         LOGGER.trace("< create activator");
@@ -219,10 +294,18 @@ public final class Activator extends AbstractProcess {
     private void action() throws TReqSException {
         LOGGER.trace("> action");
 
-        // First remove all done stagers
-        this.activeStagers -= StagersController.getInstance().cleanup();
+        // The finished stagers are unreferenced as soon as they end.
+        this.activeStagers = (short) StagersController.getInstance()
+                .getActiveStagers();
         LOGGER.info("Still {} active stagers.", this.activeStagers);
 
+        // The queues whose suspension has ended can be activated again.
+        final int unsuspended = QueuesController.getInstance()
+                .unsuspendQueues();
+        if (unsuspended > 0) {
+            LOGGER.info("{} queues unsuspended", unsuspended);
+        }
+
         // If necessary, refresh the resources allocations
         if (this.keepOn()
                 && ((this.allocations.size() == 0) || (this.allocations.get(0)
@@ -261,10 +344,6 @@ public final class Activator extends AbstractProcess {
 
     /**
      * Activates a queue. This function will also trigger the stagers.
-     * <p>
-     * TODO v2.0 It should activate a queue for a tape that is already in the
-     * drive (the already activated queue has finished.) Each time a queue is
-     * activate, a flag in the queue has to show this state.
      *
      * @param queue
      *            The queue to activate.
@@ -276,39 +355,71 @@ public final class Activator extends AbstractProcess {
 
         assert queue != null;
 
-        boolean cont = true;
-
-        if (this.activeStagers > this.maxStagers - this.stagersPerQueue) {
-            LOGGER.warn("No stagers available to activate queue. "
-                    + "({} > {} - {})", new Object[] { this.activeStagers,
-                    this.maxStagers, this.stagersPerQueue });
-            cont = false;
+        synchronized (this.activationLock) {
+            if (queue.getStatus() != QueueStatus.CREATED) {
+                // A stager has already activated it as a successor.
+                LOGGER.info("Queue {} has already been activated", queue
+                        .getTape().getName());
+            } else if (this.activeStagers > this.maxStagers
+                    - this.stagersPerQueue) {
+                LOGGER.warn("No stagers available to activate queue. "
+                        + "({} > {} - {})", new Object[] { this.activeStagers,
+                        this.maxStagers, this.stagersPerQueue });
+            } else {
+                queue.activate();
+                this.startStagers(queue);
+                this.activeStagers += this.stagersPerQueue;
+            }
         }
-        if (cont) {
-            queue.activate();
 
-            LOGGER.debug("Preparing {} stagers", this.stagersPerQueue);
-            int i;
-            for (i = 1; i <= this.stagersPerQueue; i++) {
-                LOGGER.info("Starting stager {} of {}", i, this.stagersPerQueue);
+        LOGGER.trace("< activate");
+    }
 
-                final Stager stager = StagersController.getInstance().create(queue);
+    /**
+     * Activates the queue that follows an ended queue on the same tape. The
+     * stagers of the ended queue are finishing, thus the new stagers take
+     * their place.
+     *
+     * @param queue
+     *            Queue that follows the ended one.
+     * @return true if the queue has been activated, false if it was already
+     *         activated by another way or if there are not stagers available.
+     * @throws TReqSException
+     *             If there is a problem activating the queue.
+     */
+    private boolean activateFollowing(final Queue queue) throws TReqSException {
+        LOGGER.trace("> activateFollowing");
 
-                LOGGER.debug("Thread started: {}", stager.getName());
-                stager.start();
-                try {
-                    LOGGER.info("Sleeping between stagers, {} millis",
-                            this.getMillisBetweenStagers());
-                    Thread.sleep(this.getMillisBetweenStagers());
-                } catch (final InterruptedException e) {
-                    LOGGER.error("Message", e);
+        assert queue != null;
+
+        boolean ret = false;
+        synchronized (this.activationLock) {
+            if (queue.getStatus() == QueueStatus.CREATED) {
+                // The stagers of the ended queue do not count, they are
+                // replaced by the new ones.
+                final int active = StagersController.getInstance()
+                        .getActiveStagers()
+                        - StagersController.getInstance()
+                                .getActiveStagersForQueue(queue);
+                if (active > this.maxStagers - this.stagersPerQueue) {
+                    LOGGER.warn("No stagers available to activate queue {}. "
+                            + "({} > {} - {})", new Object[] {
+                            queue.getTape().getName(), active,
+                            this.maxStagers, this.stagersPerQueue });
+                } else {
+                    LOGGER.info("Activating queue {} on the mounted tape",
+                            queue.getTape().getName());
+                    queue.activate();
+                    this.startStagers(queue);
+                    this.activeStagers += this.stagersPerQueue;
+                    ret = true;
                 }
-                this.activeStagers++;
             }
-            LOGGER.debug("Launched {} stager(s)", (i - 1));
         }
 
-        LOGGER.trace("< activate");
+        LOGGER.trace("< activateFollowing");
+
+        return ret;
     }
 
     /**
@@ -344,7 +455,7 @@ public final class Activator extends AbstractProcess {
      *
      * @return Maximal quantity of stagers.
      */
-    short getMaxStagers() {
+    public short getMaxStagers() {
         LOGGER.trace(">< getMaxStagers");
 
         return this.maxStagers;
@@ -429,6 +540,9 @@ public final class Activator extends AbstractProcess {
     private void process() throws TReqSException {
         LOGGER.trace("> process");
 
+        // Each queue is scored once in this pass.
+        QueuesController.getInstance().newSelectionPass();
+
         final Iterator<Resource> resources = this.allocations.iterator();
         while (resources.hasNext()) {
             final Resource resource = resources.next();
@@ -527,6 +641,37 @@ public final class Activator extends AbstractProcess {
         LOGGER.trace("< refreshAllocations");
     }
 
+    /**
+     * Launches the stagers of an activated queue. They are deferred in the
+     * pool, instead of sleeping between them.
+     *
+     * @param queue
+     *            Activated queue.
+     * @throws TReqSException
+     *             If there is a problem executing the stagers.
+     */
+    private void startStagers(final Queue queue) throws TReqSException {
+        LOGGER.trace("> startStagers");
+
+        assert queue != null;
+
+        LOGGER.debug("Preparing {} stagers", this.stagersPerQueue);
+        int i;
+        for (i = 1; i <= this.stagersPerQueue; i++) {
+            LOGGER.info("Starting stager {} of {}", i, this.stagersPerQueue);
+
+            final Stager stager = StagersController.getInstance().create(queue);
+
+            final long delay = (long) (i - 1) * this.getMillisBetweenStagers();
+            LOGGER.debug("Stager {} deferred {} millis", stager.getName(),
+                    delay);
+            StagersController.getInstance().execute(stager, delay);
+        }
+        LOGGER.debug("Launched {} stager(s)", (i - 1));
+
+        LOGGER.trace("< startStagers");
+    }
+
     /**
      * This method is just for tests, because it reinitializes the activator.
      * <p>
@@ -543,6 +688,31 @@ public final class Activator extends AbstractProcess {
         LOGGER.trace("< restart");
     }
 
+    /**
+     * Activates a queue that was activated in the previous execution, before
+     * the other queues compete for the drives. The queue has been rebuilt with
+     * its remaining files, thus it continues from its head position.
+     *
+     * @param queue
+     *            Rebuilt queue.
+     * @throws TReqSException
+     *             If there is a problem activating the queue.
+     * @since 1.5.6
+     */
+    public void resume(final Queue queue) throws TReqSException {
+        LOGGER.trace("> resume");
+
+        assert queue != null;
+
+        if (queue.getStatus() == QueueStatus.CREATED) {
+            LOGGER.info("Resuming queue {} of the previous execution", queue
+                    .getTape().getName());
+            this.activate(queue);
+        }
+
+        LOGGER.trace("< resume");
+    }
+
     /**
      * This is ONLY for test purposes. It does not have to be used.
      *
@@ -578,6 +748,8 @@ public final class Activator extends AbstractProcess {
         }
 
         this.maxStagers = max;
+        // The pool of the stagers has the same size.
+        StagersController.getInstance().setPoolSize(max);
 
         LOGGER.trace("< setMaxStagers");
     }
@@ -654,6 +826,44 @@ public final class Activator extends AbstractProcess {
         LOGGER.trace("< setSecondsBetweenStagers");
     }
 
+    /**
+     * Waits until the Activator is woken up, or until the first suspension
+     * ends, or at most the time between loops.
+     *
+     * @throws TReqSException
+     *             If there is a problem retrieving the queues.
+     */
+    void waitNextLoop() throws TReqSException {
+        LOGGER.trace("> waitNextLoop");
+
+        long deadline = System.currentTimeMillis()
+                + this.getMillisBetweenLoops();
+        final long suspensionEnd = QueuesController.getInstance()
+                .getNextSuspensionEnd();
+        if ((suspensionEnd > 0) && (suspensionEnd < deadline)) {
+            deadline = suspensionEnd;
+        }
+
+        synchronized (this.wakeUpLock) {
+            long remaining = deadline - System.currentTimeMillis();
+            LOGGER.debug("Waiting at most {} milliseconds", remaining);
+            while (!this.wakeUpPending && (remaining > 0)) {
+                try {
+                    this.wakeUpLock.wait(remaining);
+                } catch (final InterruptedException e) {
+                    LOGGER.error("message", e);
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+            if (this.wakeUpPending) {
+                LOGGER.debug("Activator woken up");
+            }
+            this.wakeUpPending = false;
+        }
+
+        LOGGER.trace("< waitNextLoop");
+    }
+
     /**
      * Just browse periodically the list of users and queues to activate the
      * best queue.
@@ -670,14 +880,8 @@ public final class Activator extends AbstractProcess {
                 this.action();
 
                 if (this.keepOn()) {
-                    LOGGER.debug("Sleeping {} milliseconds",
-                            this.getMillisBetweenLoops());
                     // Waits before restart the process.
-                    try {
-                        Thread.sleep(this.getMillisBetweenLoops());
-                    } catch (final InterruptedException e) {
-                        LOGGER.error("message", e);
-                    }
+                    this.waitNextLoop();
                 }
             }
         } catch (final Throwable t) {
@@ -0,0 +1,395 @@
+/*
+ * Copyright      Jonathan Schaeffer 2009-2010,
+ *                  CC-IN2P3, CNRS <jonathan.schaeffer@cc.in2p3.fr>
+ * Contributors   Andres Gomez,
+ *                  CC-IN2P3, CNRS <andres.gomez@cc.in2p3.fr>
+ *
+ * This software is a computer program whose purpose is to schedule, sort
+ * and submit file requests to the hierarchical storage system HPSS.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights, and the successive licensors have only limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+package fr.in2p3.cc.storage.treqs.control.archiver;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fr.in2p3.cc.storage.treqs.Constants;
+import fr.in2p3.cc.storage.treqs.DefaultProperties;
+import fr.in2p3.cc.storage.treqs.TReqSException;
+import fr.in2p3.cc.storage.treqs.control.process.AbstractProcess;
+import fr.in2p3.cc.storage.treqs.control.process.ProcessStatus;
+import fr.in2p3.cc.storage.treqs.persistence.AbstractDAOFactory;
+import fr.in2p3.cc.storage.treqs.tools.Configurator;
+
+/**
+ * Moves the processed requests and queues to the history. The requests in a
+ * final state and the ended or aborted queues are kept some days in the
+ * working tables, and then they are archived by batches. The requests are
+ * archived before the queues, because a queue cannot be archived while it
+ * still has requests.
+ * <p>
+ * A problem while archiving does not stop the application; the archive is
+ * retried in the next loop.
+ *
+ * @since 1.5.6
+ */
+public final class Archiver extends AbstractProcess {
+    /**
+     * The singleton instance.
+     */
+    private static Archiver instance = null;
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(Archiver.class);
+
+    /**
+     * Starts the stop of the instance, if it exists and it is running. The
+     * instance is not created if it does not exist.
+     */
+    public static void concludeInstance() {
+        LOGGER.trace("> concludeInstance");
+
+        final Archiver current = instance;
+        if ((current != null)
+                && ((current.getProcessStatus() == ProcessStatus.STARTING) || (current
+                        .getProcessStatus() == ProcessStatus.STARTED))) {
+            current.conclude();
+        }
+
+        LOGGER.trace("< concludeInstance");
+    }
+
+    /**
+     * Destroys the only instance. ONLY for testing purposes.
+     */
+    public static void destroyInstance() {
+        LOGGER.trace("> destroyInstance");
+
+        if (instance != null) {
+            if ((instance.getProcessStatus() == ProcessStatus.STARTING)
+                    || (instance.getProcessStatus() == ProcessStatus.STARTED)) {
+                instance.conclude();
+            }
+            if (instance.getProcessStatus() == ProcessStatus.STOPPING) {
+                instance.waitToFinish();
+            }
+            LOGGER.info("Instance destroyed");
+        }
+
+        instance = null;
+
+        LOGGER.trace("< destroyInstance");
+    }
+
+    /**
+     * Retrieves the singleton instance.
+     *
+     * @return Unique instance of this class.
+     * @throws TReqSException
+     *             If there is problem retrieving the configuration.
+     */
+    public static Archiver getInstance() throws TReqSException {
+        LOGGER.trace("> getInstance");
+
+        if (instance == null) {
+            LOGGER.debug("Creating instance.");
+
+            instance = new Archiver();
+        }
+
+        assert instance != null;
+
+        LOGGER.trace("< getInstance");
+
+        return instance;
+    }
+
+    /**
+     * Waits for the instance to finish, if it exists. The instance is not
+     * created if it does not exist.
+     */
+    public static void waitInstanceToFinish() {
+        LOGGER.trace("> waitInstanceToFinish");
+
+        final Archiver current = instance;
+        if (current != null) {
+            current.waitToFinish();
+        }
+
+        LOGGER.trace("< waitInstanceToFinish");
+    }
+
+    /**
+     * Quantity of requests or queues archived in each batch.
+     */
+    private int batchSize;
+    /**
+     * Time between loops.
+     */
+    private int millisBetweenLoops;
+    /**
+     * Days that the processed requests and queues are kept. Zero means that
+     * nothing is archived.
+     */
+    private short retentionDays;
+
+    /**
+     * Creates the archiver, establishing all the values.
+     *
+     * @throws TReqSException
+     *             If there is a problem while retrieving the configuration
+     *             file.
+     */
+    private Archiver() throws TReqSException {
+        super("Archiver");
+        LOGGER.trace("> create archiver");
+
+        final short interval = Configurator.getInstance().getShortValue(
+                Constants.SECTION_ARCHIVER, Constants.ARCHIVER_INTERVAL,
+                DefaultProperties.ARCHIVER_INTERVAL);
+        this.setSecondsBetweenLoops(interval);
+
+        final short days = Configurator.getInstance().getShortValue(
+                Constants.SECTION_ARCHIVER, Constants.RETENTION_DAYS,
+                DefaultProperties.RETENTION_DAYS);
+        this.setRetentionDays(days);
+
+        final short size = Configurator.getInstance().getShortValue(
+                Constants.SECTION_ARCHIVER, Constants.BATCH_SIZE,
+                DefaultProperties.ARCHIVER_BATCH_SIZE);
+        this.setBatchSize(size);
+
+        this.kickStart();
+
+        LOGGER.trace("< create archiver");
+    }
+
+    /**
+     * Archives the processed requests and then the processed queues. Each
+     * kind is archived batch by batch, until a batch is not full, or until the
+     * archiver is stopped.
+     *
+     * @return Quantity of archived requests and queues.
+     */
+    int action() {
+        LOGGER.trace("> action");
+
+        int total = 0;
+        if (this.retentionDays > 0) {
+            try {
+                int archived;
+                do {
+                    archived = AbstractDAOFactory.getDAOFactoryInstance()
+                            .getReadingDAO().archive(this.retentionDays,
+                                    this.batchSize);
+                    total += archived;
+                } while ((archived == this.batchSize) && this.keepOn());
+                LOGGER.info("{} requests archived", total);
+
+                int queues = 0;
+                do {
+                    archived = AbstractDAOFactory.getDAOFactoryInstance()
+                            .getQueueDAO().archive(this.retentionDays,
+                                    this.batchSize);
+                    queues += archived;
+                } while ((archived == this.batchSize) && this.keepOn());
+                LOGGER.info("{} queues archived", queues);
+                total += queues;
+            } catch (final TReqSException e) {
+                // The archive is not critical, it will be retried later.
+                LOGGER.error("Error archiving - {}", e.getMessage());
+            }
+        }
+
+        assert total >= 0;
+
+        LOGGER.trace("< action");
+
+        return total;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return Quantity of requests or queues archived in each batch.
+     */
+    int getBatchSize() {
+        LOGGER.trace(">< getBatchSize");
+
+        return this.batchSize;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return Quantity of milliseconds between loops.
+     */
+    public int getMillisBetweenLoops() {
+        LOGGER.trace(">< getMillisBetweenLoops");
+
+        return this.millisBetweenLoops;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return Days that the processed requests and queues are kept.
+     */
+    short getRetentionDays() {
+        LOGGER.trace(">< getRetentionDays");
+
+        return this.retentionDays;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see fr.in2p3.cc.storage.treqs.control.AbstractProcess#oneLoop()
+     */
+    @Override
+    public void oneLoop() {
+        LOGGER.trace("> oneLoop");
+
+        assert this.getProcessStatus() == ProcessStatus.STARTING : this
+                .getProcessStatus();
+
+        this.setStatus(ProcessStatus.STARTED);
+
+        this.action();
+
+        this.setStatus(ProcessStatus.STOPPED);
+
+        LOGGER.trace("< oneLoop");
+    }
+
+    /**
+     * This method is just for tests, because it reinitializes the archiver.
+     * <p>
+     * The process should be in stopped status.
+     */
+    public void restart() {
+        LOGGER.trace("> restart");
+
+        assert this.getProcessStatus() == ProcessStatus.STOPPED : this
+                .getProcessStatus();
+
+        super.setStatus(ProcessStatus.STARTING);
+
+        LOGGER.trace("< restart");
+    }
+
+    /**
+     * Setter.
+     *
+     * @param size
+     *            Quantity of requests or queues archived in each batch.
+     */
+    void setBatchSize(final int size) {
+        LOGGER.trace("> setBatchSize");
+
+        assert size > 0;
+
+        this.batchSize = size;
+
+        LOGGER.trace("< setBatchSize");
+    }
+
+    /**
+     * Setter.
+     *
+     * @param days
+     *            Days that the processed requests and queues are kept. Zero
+     *            deactivates the archive.
+     */
+    void setRetentionDays(final short days) {
+        LOGGER.trace("> setRetentionDays");
+
+        assert days >= 0;
+
+        this.retentionDays = days;
+        if (days == 0) {
+            LOGGER.warn("The archiver is deactivated");
+        }
+
+        LOGGER.trace("< setRetentionDays");
+    }
+
+    /**
+     * Setter.
+     *
+     * @param seconds
+     *            Quantity of seconds between loops.
+     */
+    public void setSecondsBetweenLoops(final short seconds) {
+        LOGGER.trace("> setSecondsBetweenLoops");
+
+        assert seconds > 0;
+
+        this.millisBetweenLoops = seconds * Constants.MILLISECONDS;
+        LOGGER.info("Seconds between loops {}", this.millisBetweenLoops);
+
+        LOGGER.trace("< setSecondsBetweenLoops");
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see fr.in2p3.cc.storage.treqs.control.process.AbstractProcess#toStart()
+     */
+    @Override
+    protected void toStart() {
+        LOGGER.trace("> toStart");
+
+        while (this.keepOn()) {
+
+            this.action();
+
+            // Waits before restart the process. The wait is done by small
+            // steps, because the time between loops is long, and the
+            // archiver has to stop as soon as it is asked.
+            final long deadline = System.currentTimeMillis()
+                    + this.getMillisBetweenLoops();
+            long remaining = deadline - System.currentTimeMillis();
+            while (this.keepOn() && (remaining > 0)) {
+                try {
+                    Thread.sleep(Math.min(remaining, Constants.MILLISECONDS));
+                } catch (final InterruptedException e) {
+                    LOGGER.error("Message", e);
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+        }
+
+        LOGGER.warn("Archiver Stopped");
+
+        LOGGER.trace("< toStart");
+    }
+}
@@ -34,29 +34,12 @@
  * knowledge of the CeCILL license and that you accept its terms.
  *
  */
-#include <jni.h>
-
-#ifndef PROCESSEXCEPTION_H_
-#define PROCESSEXCEPTION_H_
-
-//! Defines the mechanism to process the exceptions.
-/**
- * @author Andres Gomez
- */
-
-//! Throws the JNI exception due to a problem.
-/**
- * @param env (in) JNI environment.
- * @param message (in) message to put in the exception.
- * @return The value of throwing an exception.
- */
-jint throwJNIException(JNIEnv *env, char *message);
-//! Throws an exception if the requested exception is not valid.
 /**
- * @param env (in) JNI environment.
- * @param message (in) Message to show.
- * @return The value of throwing an exception.
+ * Implementation of the archiver, a component that moves the processed
+ * requests and queues to the history, in order to keep the working tables
+ * small.
+ *
+ * @since 1.5.6
  */
-jint throwNoClassDefError(JNIEnv *env, const char *message);
+package fr.in2p3.cc.storage.treqs.control.archiver;
 
-#endif /* PROCESSEXCEPTION_H_ */
@@ -36,7 +36,7 @@
  */
 package fr.in2p3.cc.storage.treqs.control.controller;
 
-import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,18 +58,17 @@ abstract class AbstractController {
     private static final Logger LOGGER = LoggerFactory
             .getLogger(AbstractController.class);
     /**
-     * Set of objects controlled by this class.
+     * Set of objects controlled by this class. It is a concurrent map, thus
+     * the objects can be queried and added without locking the whole map.
      */
-    private Map<String, Object> objectMap;
+    private ConcurrentMap<String, Object> objectMap;
 
     /**
      * Creates a new object instance and insert it in the map if the "same"
      * object does not exist. Return a new instance or throw an exception if it
      * already exists.
      * <p>
-     * This method should be always called in a synchronized method with the
-     * objectMap as object. This prevents to have multiple modifications in the
-     * map.
+     * The verification and the insertion are done atomically by the map.
      *
      * @param key
      *            The key of the object in the map.
@@ -85,15 +84,47 @@ abstract class AbstractController {
         assert key != null;
         assert value != null;
 
-        if (this.objectMap.get(key) != null) {
+        if (this.objectMap.putIfAbsent(key, value) != null) {
             LOGGER.debug("Object {} already exist", key);
             throw new ControllerInsertException();
         }
-        this.objectMap.put(key, value);
 
         LOGGER.trace("< add");
     }
 
+    /**
+     * Inserts an object in the map if there is not another one with the same
+     * key, and returns the object that stays in the map. When several threads
+     * add the same key concurrently, all of them retrieve the same instance.
+     *
+     * @param key
+     *            The key of the object in the map.
+     * @param value
+     *            Object to add if the key is not already in the map.
+     * @return The object already referenced by the key, or the given value if
+     *         it has been inserted.
+     * @since 1.5.6
+     */
+    protected final Object addIfAbsent(final String key, final Object value) {
+        LOGGER.trace("> addIfAbsent");
+
+        assert key != null;
+        assert value != null;
+
+        Object ret = this.objectMap.putIfAbsent(key, value);
+        if (ret == null) {
+            ret = value;
+        } else {
+            LOGGER.debug("Object {} already exist", key);
+        }
+
+        assert ret != null;
+
+        LOGGER.trace("< addIfAbsent");
+
+        return ret;
+    }
+
     /**
      * Find an object using the key and return the reference to it.
      *
@@ -126,16 +157,15 @@ abstract class AbstractController {
      *
      * @return Object map.
      */
-    protected Map<String, Object> getObjectMap() {
+    protected ConcurrentMap<String, Object> getObjectMap() {
         return this.objectMap;
     }
 
     /**
      * Deletes the reference to an object from the set of objects.
      * <p>
-     * This method should not be called from a synchronous block. This method is
-     * to be called from other classes, not the implementations of the
-     * controllers.
+     * This method is to be called from other classes, not the implementations
+     * of the controllers.
      *
      * @param key
      *            Identifier of the object.
@@ -145,11 +175,7 @@ abstract class AbstractController {
 
         assert key != null;
 
-        synchronized (this.objectMap) {
-            this.exists(key);
-
-            this.objectMap.remove(key);
-        }
+        this.objectMap.remove(key);
 
         LOGGER.debug("Object {} removed", key);
 
@@ -162,7 +188,7 @@ abstract class AbstractController {
      * @param map
      *            Object's map.
      */
-    protected void setObjectMap(final Map<String, Object> map) {
+    protected void setObjectMap(final ConcurrentMap<String, Object> map) {
         this.objectMap = map;
     }
 }
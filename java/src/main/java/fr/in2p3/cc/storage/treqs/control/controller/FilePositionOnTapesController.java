@@ -36,10 +36,9 @@
  */
 package fr.in2p3.cc.storage.treqs.control.controller;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -110,7 +109,7 @@ public final class FilePositionOnTapesController extends AbstractController {
     private FilePositionOnTapesController() {
         LOGGER.trace("> create instance");
 
-        super.setObjectMap(new HashMap<String, Object>());
+        super.setObjectMap(new ConcurrentHashMap<String, Object>());
 
         LOGGER.trace("< create instance");
     }
@@ -143,32 +142,34 @@ public final class FilePositionOnTapesController extends AbstractController {
         assert position >= 0;
         assert user != null;
 
-        FilePositionOnTape fpot = null;
-        synchronized (this.getObjectMap()) {
-            fpot = (FilePositionOnTape) this.exists(file.getName());
-            if (fpot == null) {
-                LOGGER.debug("Creating a new fpot");
-                fpot = this.create(file, tape, position, user);
-            } else {
-                // TODO v2.0 The file could have been repacked, then the file is
-                // in a new tape
-                // if (!tape.getName().equals(fpot.getTape().getName())) {
-                // Collection<Queue> queues = QueuesController.getInstance()
-                // .getQueuesOnTape(fpot.getTape().getName());
-                // Deletes the old reference from all queues.
-                // for (Queue queue : queues) {
-                // This method should be synchronized and this should update the
-                // db.
-                // Recalculates the owner and the size.
-                // queue.unregisterFPOT(fpot);
-                // }
-                // The file is not updated. If the size changes it is not
-                // important, it only affect the size of the queue if it is
-                // still in the same tape.
-                LOGGER.debug("Updating old fpot");
-                fpot.updateMetadata(tape, position);
-                // }
-            }
+        FilePositionOnTape created = null;
+        FilePositionOnTape fpot = (FilePositionOnTape) this.exists(file
+                .getName());
+        if (fpot == null) {
+            LOGGER.debug("Creating a new fpot");
+            created = new FilePositionOnTape(file, position, tape, user);
+            fpot = (FilePositionOnTape) this.addIfAbsent(file.getName(),
+                    created);
+        }
+        if (fpot != created) {
+            // TODO v2.0 The file could have been repacked, then the file is
+            // in a new tape
+            // if (!tape.getName().equals(fpot.getTape().getName())) {
+            // Collection<Queue> queues = QueuesController.getInstance()
+            // .getQueuesOnTape(fpot.getTape().getName());
+            // Deletes the old reference from all queues.
+            // for (Queue queue : queues) {
+            // This method should be synchronized and this should update the
+            // db.
+            // Recalculates the owner and the size.
+            // queue.unregisterFPOT(fpot);
+            // }
+            // The file is not updated. If the size changes it is not
+            // important, it only affect the size of the queue if it is
+            // still in the same tape.
+            LOGGER.debug("Updating old fpot");
+            fpot.updateMetadata(tape, position);
+            // }
         }
 
         LOGGER.trace("< add");
@@ -187,26 +188,20 @@ public final class FilePositionOnTapesController extends AbstractController {
         LOGGER.trace("> cleanup");
 
         int size = 0;
-        final List<String> toRemove = new ArrayList<String>();
-        synchronized (this.getObjectMap()) {
-
-            // Checks the references without queues.
-            final Iterator<String> iter = this.getObjectMap().keySet().iterator();
-            while (iter.hasNext()) {
-                final String key = iter.next();
-                final FilePositionOnTape fpot = (FilePositionOnTape) this
-                        .getObjectMap().get(key);
-                final String tapename = fpot.getTape().getName();
-                final boolean exist = QueuesController.getInstance().exists(tapename);
-                if (!exist) {
-                    toRemove.add(tapename);
-                }
-            }
-            // Delete the fpots.
-            size = toRemove.size();
-            for (int i = 0; i < size; i++) {
-                LOGGER.debug("Deleting {}", toRemove.get(i));
-                this.getObjectMap().remove(toRemove.get(i));
+        // Checks the references without queues. An fpot is deleted only if it
+        // has not been replaced while checking.
+        final Iterator<Map.Entry<String, Object>> iter = this.getObjectMap()
+                .entrySet().iterator();
+        while (iter.hasNext()) {
+            final Map.Entry<String, Object> entry = iter.next();
+            final FilePositionOnTape fpot = (FilePositionOnTape) entry
+                    .getValue();
+            final String tapename = fpot.getTape().getName();
+            final boolean exist = QueuesController.getInstance().exists(
+                    tapename);
+            if (!exist && this.getObjectMap().remove(entry.getKey(), fpot)) {
+                LOGGER.debug("Deleting {}", entry.getKey());
+                size++;
             }
         }
 
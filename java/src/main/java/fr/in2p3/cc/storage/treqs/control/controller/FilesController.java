@@ -36,10 +36,9 @@
  */
 package fr.in2p3.cc.storage.treqs.control.controller;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -109,7 +108,7 @@ public final class FilesController extends AbstractController {
     private FilesController() {
         LOGGER.trace("> FilesController");
 
-        this.setObjectMap(new HashMap<String, Object>());
+        this.setObjectMap(new ConcurrentHashMap<String, Object>());
 
         LOGGER.trace("< FilesController");
     }
@@ -131,12 +130,9 @@ public final class FilesController extends AbstractController {
         assert (name != null) && !name.equals("");
         assert size >= 0;
 
-        File file = null;
-        synchronized (this.getObjectMap()) {
-            file = (File) this.exists(name);
-            if (file == null) {
-                file = this.create(name, size);
-            }
+        File file = (File) this.exists(name);
+        if (file == null) {
+            file = (File) this.addIfAbsent(name, new File(name, size));
         }
 
         LOGGER.trace("< add");
@@ -154,25 +150,19 @@ public final class FilesController extends AbstractController {
         LOGGER.trace("> cleanup");
 
         int size = 0;
-        final List<String> toRemove = new ArrayList<String>();
-        synchronized (this.getObjectMap()) {
-            // Checks the references without fpots.
-            final Iterator<String> iter = this.getObjectMap().keySet().iterator();
-            while (iter.hasNext()) {
-                final String key = iter.next();
-                final File file = (File) this.getObjectMap().get(key);
-                final String filename = file.getName();
-                final FilePositionOnTape fpot = (FilePositionOnTape) FilePositionOnTapesController
-                        .getInstance().exists(filename);
-                if (fpot == null) {
-                    toRemove.add(filename);
-                }
-            }
-            // Delete the files.
-            size = toRemove.size();
-            for (int i = 0; i < size; i++) {
-                LOGGER.debug("Deleting {}", toRemove.get(i));
-                this.getObjectMap().remove(toRemove.get(i));
+        // Checks the references without fpots. A file is deleted only if it
+        // has not been replaced while checking.
+        final Iterator<Map.Entry<String, Object>> iter = this.getObjectMap()
+                .entrySet().iterator();
+        while (iter.hasNext()) {
+            final Map.Entry<String, Object> entry = iter.next();
+            final File file = (File) entry.getValue();
+            final FilePositionOnTape fpot = (FilePositionOnTape) FilePositionOnTapesController
+                    .getInstance().exists(file.getName());
+            if ((fpot == null)
+                    && this.getObjectMap().remove(entry.getKey(), file)) {
+                LOGGER.debug("Deleting {}", entry.getKey());
+                size++;
             }
         }
 
@@ -36,8 +36,11 @@
  */
 package fr.in2p3.cc.storage.treqs.control.controller;
 
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,11 +54,32 @@ import fr.in2p3.cc.storage.treqs.model.MediaType;
  * <p>
  * The key is the name of the media type in the controller, however the id is
  * the primary key in the data source.
+ * <p>
+ * The media types whose regular expression starts with literal characters are
+ * indexed in a prefix tree, and the media type found for each tape name is
+ * kept, thus a tape name is analyzed only once.
  * 
  * @author Andres Gomez
  * @since 1.5
  */
 public final class MediaTypesController extends AbstractController {
+    /**
+     * Node of the prefix tree of the media types. Each node represents a
+     * string, and the children are the strings with one more character.
+     * 
+     * @since 1.5.6
+     */
+    private static final class PrefixNode {
+        /**
+         * Nodes of the strings with one more character.
+         */
+        private final Map<Character, PrefixNode> children = new HashMap<Character, PrefixNode>();
+        /**
+         * Media types whose literal prefix is the string of this node.
+         */
+        private final List<MediaType> medias = new ArrayList<MediaType>();
+    }
+
     /**
      * Singleton instance.
      */
@@ -102,13 +126,32 @@ public final class MediaTypesController extends AbstractController {
         return instance;
     }
 
+    /**
+     * Media types whose regular expression does not start with literal
+     * characters. They have to be analyzed for each tape name.
+     */
+    private final List<MediaType> nonPrefixed;
+    /**
+     * Root of the prefix tree of the media types that start with literal
+     * characters.
+     */
+    private final PrefixNode prefixes;
+    /**
+     * Media type already found for each tape name. It is read without locking
+     * the controller.
+     */
+    private final Map<String, MediaType> resolved;
+
     /**
      * Builds the controller initializing the map.
      */
     public MediaTypesController() {
         LOGGER.trace("> create instance");
 
-        super.setObjectMap(new HashMap<String, Object>());
+        super.setObjectMap(new ConcurrentHashMap<String, Object>());
+        this.nonPrefixed = new ArrayList<MediaType>();
+        this.prefixes = new PrefixNode();
+        this.resolved = new ConcurrentHashMap<String, MediaType>();
 
         LOGGER.trace("< create instance");
     }
@@ -174,6 +217,7 @@ public final class MediaTypesController extends AbstractController {
 
         final MediaType media = new MediaType(id, name, regExpId);
         super.add(name, media);
+        this.index(media);
 
         assert media != null;
 
@@ -182,9 +226,62 @@ public final class MediaTypesController extends AbstractController {
         return media;
     }
 
+    /**
+     * Looks for the media type that corresponds to a tape name, analyzing
+     * first the media types whose literal prefix is the longest, and then the
+     * media types without literal prefix, in the order they were added.
+     * <p>
+     * This method should be always called in a synchronized method with the
+     * objectMap as object.
+     * 
+     * @param id
+     *            Storage id to analyze.
+     * @return The first media type that accords with the storage name, or
+     *         null if there is not any.
+     */
+    private MediaType find(final String id) {
+        LOGGER.trace("> find");
+
+        assert (id != null) && !id.equals("");
+
+        // Walks the tree, keeping the nodes whose prefix starts the id.
+        final List<PrefixNode> path = new ArrayList<PrefixNode>();
+        PrefixNode node = this.prefixes;
+        int index = 0;
+        while (node != null) {
+            path.add(node);
+            if (index < id.length()) {
+                node = node.children.get(id.charAt(index));
+                index++;
+            } else {
+                node = null;
+            }
+        }
+
+        MediaType ret = null;
+        for (int i = path.size() - 1; (i >= 0) && (ret == null); i--) {
+            final List<MediaType> medias = path.get(i).medias;
+            for (int j = 0; (j < medias.size()) && (ret == null); j++) {
+                if (medias.get(j).belongs(id)) {
+                    ret = medias.get(j);
+                }
+            }
+        }
+        for (int j = 0; (j < this.nonPrefixed.size()) && (ret == null); j++) {
+            if (this.nonPrefixed.get(j).belongs(id)) {
+                ret = this.nonPrefixed.get(j);
+            }
+        }
+
+        LOGGER.trace("< find");
+
+        return ret;
+    }
+
     /**
      * Returns the type of media, comparing the given id with the pattern of the
-     * regular expression.
+     * regular expression. The result is kept, thus the next time the same id
+     * is queried, the media type is returned directly.
      * 
      * @param id
      *            Storage id that will be queried.
@@ -200,14 +297,12 @@ public final class MediaTypesController extends AbstractController {
 
         assert (id != null) && !id.equals("");
 
-        MediaType ret = null;
-        synchronized (this.getObjectMap()) {
-            Iterator<String> medias = this.getObjectMap().keySet().iterator();
-            while (medias.hasNext()) {
-                MediaType media = (MediaType) this.getObjectMap().get(
-                        medias.next());
-                if (media.belongs(id)) {
-                    ret = media;
+        MediaType ret = this.resolved.get(id);
+        if (ret == null) {
+            synchronized (this.getObjectMap()) {
+                ret = this.find(id);
+                if (ret != null) {
+                    this.resolved.put(id, ret);
                 }
             }
         }
@@ -222,4 +317,40 @@ public final class MediaTypesController extends AbstractController {
 
         return ret;
     }
+
+    /**
+     * Puts a new media type in the prefix tree, or in the list of media types
+     * without prefix. The tape names already analyzed are forgotten, because
+     * they could correspond to the new media type.
+     * <p>
+     * This method should be always called in a synchronized method with the
+     * objectMap as object.
+     * 
+     * @param media
+     *            Media type to index.
+     */
+    private void index(final MediaType media) {
+        LOGGER.trace("> index");
+
+        assert media != null;
+
+        final String prefix = media.getLiteralPrefix();
+        if (prefix.equals("")) {
+            this.nonPrefixed.add(media);
+        } else {
+            PrefixNode node = this.prefixes;
+            for (int i = 0; i < prefix.length(); i++) {
+                PrefixNode child = node.children.get(prefix.charAt(i));
+                if (child == null) {
+                    child = new PrefixNode();
+                    node.children.put(prefix.charAt(i), child);
+                }
+                node = child;
+            }
+            node.medias.add(media);
+        }
+        this.resolved.clear();
+
+        LOGGER.trace("< index");
+    }
 }
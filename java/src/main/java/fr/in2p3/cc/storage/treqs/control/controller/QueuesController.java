@@ -38,8 +38,12 @@ package fr.in2p3.cc.storage.treqs.control.controller;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.collections.MultiMap;
 import org.apache.commons.collections.map.MultiValueMap;
@@ -57,6 +61,7 @@ import fr.in2p3.cc.storage.treqs.model.Queue;
 import fr.in2p3.cc.storage.treqs.model.QueueStatus;
 import fr.in2p3.cc.storage.treqs.model.Resource;
 import fr.in2p3.cc.storage.treqs.model.User;
+import fr.in2p3.cc.storage.treqs.model.exception.MaximalSuspensionTriesException;
 import fr.in2p3.cc.storage.treqs.tools.Configurator;
 import fr.in2p3.cc.storage.treqs.tools.Instantiator;
 import fr.in2p3.cc.storage.treqs.tools.KeyNotFoundException;
@@ -71,11 +76,23 @@ import fr.in2p3.cc.storage.treqs.tools.KeyNotFoundException;
  * <p>
  * It can eventually exists several Queues in Ended state, if the
  * cleanDoneQueues method is not call periodically.
+ * <p>
+ * The queues are also indexed per status and media type, per status and owner,
+ * and per tape for the activated ones. These indexes are updated by the queues
+ * each time their status or their owner change, under the same lock used to
+ * change the field of the queue, and they permit to retrieve
+ * the waiting queues or the activated ones without browsing all the queues.
  * 
  * @author Jonathan Schaeffer
  * @since 1.0
  */
 public final class QueuesController {
+    /**
+     * Lock for the indexes. The queues also hold it while they change their
+     * status or their owner, thus the indexes always correspond to the fields
+     * of the queues.
+     */
+    private static final Object INDEX_LOCK = new Object();
     /**
      * Singleton instance.
      */
@@ -100,6 +117,54 @@ public final class QueuesController {
         LOGGER.trace("< destroyInstance");
     }
 
+    /**
+     * Updates the indexes of a queue after a change of its status or of its
+     * owner. The queue gives the values it had before the change. If the
+     * controller does not exist, or if the queue is not registered in it,
+     * nothing is done.
+     * <p>
+     * The queue has to hold the index lock while it changes the field and
+     * calls this method, otherwise a concurrent change of the other field
+     * could index the queue with a stale value.
+     * 
+     * @param queue
+     *            Queue that has changed.
+     * @param previousStatus
+     *            Status of the queue before the change.
+     * @param previousOwner
+     *            Owner of the queue before the change.
+     */
+    public static void reindex(final Queue queue,
+            final QueueStatus previousStatus, final User previousOwner) {
+        LOGGER.trace("> reindex");
+
+        assert queue != null;
+        assert previousStatus != null;
+
+        final QueuesController controller = instance;
+        if (controller != null) {
+            synchronized (INDEX_LOCK) {
+                if (controller.unindex(queue, previousStatus, previousOwner)) {
+                    controller.index(queue);
+                }
+            }
+        }
+
+        LOGGER.trace("< reindex");
+    }
+
+    /**
+     * Retrieves the lock of the indexes. The queues hold it while they change
+     * their status or their owner and call {@link #reindex}.
+     * 
+     * @return The lock of the indexes.
+     */
+    public static Object getIndexLock() {
+        LOGGER.trace(">< getIndexLock");
+
+        return INDEX_LOCK;
+    }
+
     /**
      * Provides access to the singleton.
      * 
@@ -121,11 +186,40 @@ public final class QueuesController {
         return instance;
     }
 
+    /**
+     * Activated queues per tape name.
+     */
+    private final Map<String, Set<Queue>> activatedQueues;
+
     /**
      * The list of queues. Non-Unique key of the multimap is the Queue's name.
      */
     private final MultiMap queuesMap;
 
+    /**
+     * Queues per status and per media type.
+     */
+    private final Map<QueueStatus, Map<MediaType, Set<Queue>>> queuesPerMedia;
+
+    /**
+     * Queues per status and per owner.
+     */
+    private final Map<QueueStatus, Map<User, Set<Queue>>> queuesPerOwner;
+
+    /**
+     * Selector of the best queue. It is kept between calls, and it is
+     * instantiated again only when the configuration changes.
+     */
+    private Selector selector;
+    /**
+     * Configuration used to instantiate the selector.
+     */
+    private Configurator selectorConfigurator;
+    /**
+     * Quantity of modifications of the configuration when the selector was
+     * instantiated.
+     */
+    private int selectorModifications;
     /**
      * How much time a queue can be suspended.
      */
@@ -143,6 +237,12 @@ public final class QueuesController {
         LOGGER.trace("> create QueuesController");
 
         this.queuesMap = new MultiValueMap();
+        this.activatedQueues = new HashMap<String, Set<Queue>>();
+        this.queuesPerMedia = new HashMap<QueueStatus, Map<MediaType, Set<Queue>>>();
+        this.queuesPerOwner = new HashMap<QueueStatus, Map<User, Set<Queue>>>();
+        this.selector = null;
+        this.selectorConfigurator = null;
+        this.selectorModifications = 0;
 
         this.suspendTimeForQueues = Configurator.getInstance().getShortValue(
                 Constants.SECTION_QUEUE, Constants.SUSPEND_DURATION,
@@ -187,8 +287,9 @@ public final class QueuesController {
             // 2. There is only one created queue.
             // 3. There is not any queue.
             // Find out if there is an activated queue.
-            queue = this
-                    .exists(fpot.getTape().getName(), QueueStatus.ACTIVATED);
+            final Queue activated = this.exists(fpot.getTape().getName(),
+                    QueueStatus.ACTIVATED);
+            queue = activated;
             if (queue != null) {
                 LOGGER.debug("We have an activated queue.");
 
@@ -243,11 +344,14 @@ public final class QueuesController {
                     // is after the file position.
                     LOGGER.info("A queue with status CREATED already exists.");
                     queue.registerFPOT(fpot, retry);
-                    // TODO v2.0 Create a special flag in the queue, indicating
-                    // that there is an activated queue for the same tape, so
-                    // this new queue has to be activated once the other has
-                    // finished. This prevents to unmount an already mounted
-                    // tape.
+                }
+                if (activated != null) {
+                    // The created queue will be activated once the activated
+                    // one has finished. This prevents to unmount an already
+                    // mounted tape.
+                    LOGGER.debug("Queue {} follows the activated one.", queue
+                            .getTape().getName());
+                    queue.setSuccessor(true);
                 }
             }
         }
@@ -304,6 +408,9 @@ public final class QueuesController {
 
                     LOGGER.debug("Deleting {} {}", key, queue.toString());
                     this.queuesMap.remove(key, queue);
+                    synchronized (INDEX_LOCK) {
+                        this.unindex(queue, queue.getStatus(), queue.getOwner());
+                    }
 
                 }
 
@@ -328,27 +435,27 @@ public final class QueuesController {
         assert resources != null;
 
         short active = 0;
-        // Iterating through all queues.
-        @SuppressWarnings("unchecked")
-        final Iterator<String> iterator1 = this.queuesMap.keySet().iterator();
-        while (iterator1.hasNext()) {
-            final String key = iterator1.next();
-            @SuppressWarnings("unchecked")
-            final Iterator<Queue> iterator2 = ((Collection<Queue>) this.queuesMap
-                    .get(key)).iterator();
-            while (iterator2.hasNext()) {
-                final Queue queue = iterator2.next();
+        synchronized (INDEX_LOCK) {
+            final Map<MediaType, Set<Queue>> activated = this.queuesPerMedia
+                    .get(QueueStatus.ACTIVATED);
+            if (activated != null) {
                 // Counting active queues.
-                if (queue.getStatus() == QueueStatus.ACTIVATED) {
-                    active++;
-                    boolean found = false;
-                    final Iterator<Resource> iterator3 = resources.iterator();
-                    while (iterator3.hasNext() && !found) {
-                        final Resource resource = iterator3.next();
-                        if (resource.getMediaType().equals(
-                                queue.getTape().getMediaType())) {
-                            resource.increaseUsedResources(queue.getOwner());
-                            found = true;
+                final Iterator<Set<Queue>> iterator1 = activated.values()
+                        .iterator();
+                while (iterator1.hasNext()) {
+                    active += iterator1.next().size();
+                }
+                // Assigning the active queues to the resources.
+                final Iterator<Resource> iterator2 = resources.iterator();
+                while (iterator2.hasNext()) {
+                    final Resource resource = iterator2.next();
+                    final Set<Queue> queues = activated.get(resource
+                            .getMediaType());
+                    if (queues != null) {
+                        final Iterator<Queue> iterator3 = queues.iterator();
+                        while (iterator3.hasNext()) {
+                            resource.increaseUsedResources(iterator3.next()
+                                    .getOwner());
                         }
                     }
                 }
@@ -387,8 +494,14 @@ public final class QueuesController {
         LOGGER.debug("Creating new queue on tape {}", fpot.getTape().getName());
         retQueue.setSuspendDuration(this.suspendTimeForQueues);
         this.queuesMap.put(fpot.getTape().getName(), retQueue);
+        synchronized (INDEX_LOCK) {
+            this.index(retQueue);
+        }
         LOGGER.info("Queue created for tape {}", fpot.getTape().getName());
 
+        // There is a new queue to activate.
+        Activator.wakeUp();
+
         assert retQueue != null;
 
         LOGGER.trace("< create");
@@ -437,7 +550,14 @@ public final class QueuesController {
         @SuppressWarnings("unchecked")
         final Collection<Queue> ret = (Collection<Queue>) this.queuesMap
                 .get(name);
-        if (ret != null) {
+        if (status == QueueStatus.ACTIVATED) {
+            synchronized (INDEX_LOCK) {
+                final Set<Queue> activated = this.activatedQueues.get(name);
+                if (activated != null) {
+                    retQueue = activated.iterator().next();
+                }
+            }
+        } else if (ret != null) {
             final Iterator<Queue> iterator = ret.iterator();
             while (iterator.hasNext() && !found) {
                 final Queue queue = iterator.next();
@@ -470,19 +590,12 @@ public final class QueuesController {
         assert status != null : "status null";
 
         boolean ret = false;
-        @SuppressWarnings("unchecked")
-        final Iterator<String> iterator = this.queuesMap.keySet().iterator();
-        while (iterator.hasNext() && !ret) {
-            final String key = iterator.next();
-            @SuppressWarnings("unchecked")
-            final Iterator<Queue> iterator2 = ((Collection<Queue>) this.queuesMap
-                    .get(key)).iterator();
-            while (iterator2.hasNext() && !ret) {
-                final Queue queue = iterator2.next();
-                if (queue.getOwner().equals(user)
-                        && (queue.getStatus() == status)) {
-                    ret = true;
-                }
+        synchronized (INDEX_LOCK) {
+            final Map<User, Set<Queue>> owners = this.queuesPerOwner
+                    .get(status);
+            if (owners != null) {
+                final Set<Queue> queues = owners.get(user);
+                ret = (queues != null) && !queues.isEmpty();
             }
         }
 
@@ -523,6 +636,61 @@ public final class QueuesController {
 
     }
 
+    /**
+     * Starts a new pass of selection. The scores of the queues calculated in
+     * the previous pass are forgotten, thus each queue is scored once per
+     * pass.
+     * 
+     * @throws TReqSException
+     *             If there is a problem retrieving the selector.
+     */
+    public void newSelectionPass() throws TReqSException {
+        LOGGER.trace("> newSelectionPass");
+
+        this.getSelector().clearScores();
+
+        LOGGER.trace("< newSelectionPass");
+    }
+
+    /**
+     * Retrieves the moment when the first suspension of the temporarily
+     * suspended queues ends. The suspensions that have already ended are not
+     * taken into account, because those queues are unsuspended at the
+     * beginning of the next pass of the Activator.
+     * 
+     * @return Time in milliseconds when the first suspension ends, or 0 if
+     *         there are not suspended queues whose suspension is still
+     *         running.
+     */
+    @SuppressWarnings("unchecked")
+    public long getNextSuspensionEnd() {
+        LOGGER.trace("> getNextSuspensionEnd");
+
+        final long now = System.currentTimeMillis();
+        long ret = 0;
+        synchronized (this.queuesMap) {
+            final Iterator<Queue> iterator = this.queuesMap.values()
+                    .iterator();
+            while (iterator.hasNext()) {
+                final Queue queue = iterator.next();
+                if ((queue.getStatus() == QueueStatus.TEMPORARILY_SUSPENDED)
+                        && (queue.getSuspensionTime() != null)) {
+                    final long end = queue.getSuspensionTime()
+                            .getTimeInMillis();
+                    if ((end > now) && ((ret == 0) || (end < ret))) {
+                        ret = end;
+                    }
+                }
+            }
+        }
+
+        assert ret >= 0;
+
+        LOGGER.trace("< getNextSuspensionEnd");
+
+        return ret;
+    }
+
     /**
      * Retrieves the list of queues of the controller.
      * 
@@ -562,31 +730,42 @@ public final class QueuesController {
     }
 
     /**
-     * Instantiates a selector dynamically. This permits to change the selector
-     * in hot, without recycling the application.
-     * <p>
-     * TODO v1.5.6 The parameters should be dynamic, this permits to reload the
-     * configuration file in hot. Check if the value has changed.
+     * Retrieves the selector defined in the configuration. The selector is
+     * kept between calls, and it is instantiated again when the configuration
+     * changes. This permits to change the selector in hot, without recycling
+     * the application.
      * 
      * @return The selector defined in the configuration file, or the default
      *         one.
      * @throws TReqSException
      *             If there is any problem.
      */
-    private Selector getSelector() throws TReqSException {
+    private synchronized Selector getSelector() throws TReqSException {
         LOGGER.trace("> getSelector");
 
-        String selectorName = DefaultProperties.DEFAULT_SELECTOR;
-        try {
-            selectorName = Configurator.getInstance().getStringValue(
-                    Constants.SECTION_SELECTOR, Constants.SELECTOR_NAME);
-        } catch (final KeyNotFoundException e) {
-            LOGGER.debug("No setting for {}.{}, default "
-                    + "value will be used: {}", new Object[] {
-                    Constants.SECTION_SELECTOR, Constants.SELECTOR_NAME,
-                    selectorName });
+        final Configurator configurator = Configurator.getInstance();
+        if ((this.selector == null)
+                || (this.selectorConfigurator != configurator)
+                || (this.selectorModifications != configurator
+                        .getModifications())) {
+            // The modifications are read before the value.
+            final int modifications = configurator.getModifications();
+            String selectorName = DefaultProperties.DEFAULT_SELECTOR;
+            try {
+                selectorName = configurator.getStringValue(
+                        Constants.SECTION_SELECTOR, Constants.SELECTOR_NAME);
+            } catch (final KeyNotFoundException e) {
+                LOGGER.debug("No setting for {}.{}, default "
+                        + "value will be used: {}", new Object[] {
+                        Constants.SECTION_SELECTOR, Constants.SELECTOR_NAME,
+                        selectorName });
+            }
+            this.selector = Instantiator.getSelector(selectorName);
+            this.selectorConfigurator = configurator;
+            this.selectorModifications = modifications;
         }
-        final Selector ret = Instantiator.getSelector(selectorName);
+
+        final Selector ret = this.selector;
 
         assert ret != null : "Selector cannot be null";
 
@@ -614,23 +793,20 @@ public final class QueuesController {
 
         final List<Queue> queues = new ArrayList<Queue>();
 
-        @SuppressWarnings("unchecked")
-        final Iterator<String> iterator = this.queuesMap.keySet().iterator();
-        while (iterator.hasNext()) {
-            final String key = iterator.next();
-            @SuppressWarnings("unchecked")
-            final Iterator<Queue> iterator2 = ((Collection<Queue>) this.queuesMap
-                    .get(key)).iterator();
-            while (iterator2.hasNext()) {
-                final Queue queue = iterator2.next();
-                if ((queue.getStatus() == QueueStatus.CREATED)
-                        && queue.getTape().getMediaType().equals(media)
-                        && (QueuesController.getInstance().exists(
-                                queue.getTape().getName(),
-                                QueueStatus.ACTIVATED) == null)) {
-                    LOGGER.debug("Queue {} - {}", queue.getId(), queue
-                            .getTape().getName());
-                    queues.add(queue);
+        synchronized (INDEX_LOCK) {
+            final Map<MediaType, Set<Queue>> created = this.queuesPerMedia
+                    .get(QueueStatus.CREATED);
+            if ((created != null) && (created.get(media) != null)) {
+                final Iterator<Queue> iterator = created.get(media).iterator();
+                while (iterator.hasNext()) {
+                    final Queue queue = iterator.next();
+                    // There is not an activated queue for the same tape.
+                    if (!this.activatedQueues.containsKey(queue.getTape()
+                            .getName())) {
+                        LOGGER.debug("Queue {} - {}", queue.getId(), queue
+                                .getTape().getName());
+                        queues.add(queue);
+                    }
                 }
             }
         }
@@ -645,6 +821,151 @@ public final class QueuesController {
         return queues;
     }
 
+    /**
+     * Registers a queue in the indexes, with its current status and owner. The
+     * index lock has to be held.
+     * 
+     * @param queue
+     *            Queue to index.
+     */
+    private void index(final Queue queue) {
+        LOGGER.trace("> index");
+
+        assert queue != null;
+
+        final QueueStatus status = queue.getStatus();
+        indexAdd(perStatus(this.queuesPerMedia, status), queue.getTape()
+                .getMediaType(), queue);
+        if (queue.getOwner() != null) {
+            indexAdd(perStatus(this.queuesPerOwner, status), queue.getOwner(),
+                    queue);
+        }
+        if (status == QueueStatus.ACTIVATED) {
+            indexAdd(this.activatedQueues, queue.getTape().getName(), queue);
+        }
+
+        LOGGER.trace("< index");
+    }
+
+    /**
+     * Adds a queue in an index.
+     * 
+     * @param <K>
+     *            Type of the key of the index.
+     * @param index
+     *            Index to modify.
+     * @param key
+     *            Key of the queue in the index.
+     * @param queue
+     *            Queue to add.
+     */
+    private static <K> void indexAdd(final Map<K, Set<Queue>> index,
+            final K key, final Queue queue) {
+        LOGGER.trace("> indexAdd");
+
+        Set<Queue> queues = index.get(key);
+        if (queues == null) {
+            queues = new LinkedHashSet<Queue>();
+            index.put(key, queues);
+        }
+        queues.add(queue);
+
+        LOGGER.trace("< indexAdd");
+    }
+
+    /**
+     * Removes a queue from an index.
+     * 
+     * @param <K>
+     *            Type of the key of the index.
+     * @param index
+     *            Index to modify.
+     * @param key
+     *            Key of the queue in the index.
+     * @param queue
+     *            Queue to remove.
+     * @return true if the queue was in the index.
+     */
+    private static <K> boolean indexRemove(final Map<K, Set<Queue>> index,
+            final K key, final Queue queue) {
+        LOGGER.trace("> indexRemove");
+
+        boolean ret = false;
+        final Set<Queue> queues = index.get(key);
+        if (queues != null) {
+            ret = queues.remove(queue);
+            if (queues.isEmpty()) {
+                index.remove(key);
+            }
+        }
+
+        LOGGER.trace("< indexRemove");
+
+        return ret;
+    }
+
+    /**
+     * Retrieves the part of an index for a given status, creating it if
+     * necessary.
+     * 
+     * @param <K>
+     *            Type of the second key of the index.
+     * @param index
+     *            Index per status.
+     * @param status
+     *            Status of the queues.
+     * @return The index of the queues in the given status.
+     */
+    private static <K> Map<K, Set<Queue>> perStatus(
+            final Map<QueueStatus, Map<K, Set<Queue>>> index,
+            final QueueStatus status) {
+        LOGGER.trace("> perStatus");
+
+        Map<K, Set<Queue>> ret = index.get(status);
+        if (ret == null) {
+            ret = new HashMap<K, Set<Queue>>();
+            index.put(status, ret);
+        }
+
+        LOGGER.trace("< perStatus");
+
+        return ret;
+    }
+
+    /**
+     * Removes a queue from the indexes, where it was registered with the given
+     * status and owner. The index lock has to be held.
+     * 
+     * @param queue
+     *            Queue to remove.
+     * @param status
+     *            Status of the queue in the indexes.
+     * @param owner
+     *            Owner of the queue in the indexes.
+     * @return true if the queue was indexed.
+     */
+    private boolean unindex(final Queue queue, final QueueStatus status,
+            final User owner) {
+        LOGGER.trace("> unindex");
+
+        assert queue != null;
+        assert status != null;
+
+        final boolean ret = indexRemove(
+                perStatus(this.queuesPerMedia, status), queue.getTape()
+                        .getMediaType(), queue);
+        if (owner != null) {
+            indexRemove(perStatus(this.queuesPerOwner, status), owner, queue);
+        }
+        if (status == QueueStatus.ACTIVATED) {
+            indexRemove(this.activatedQueues, queue.getTape().getName(), queue);
+        }
+
+        LOGGER.trace("< unindex");
+
+        return ret;
+    }
+
     /**
      * Removes a queue which is in a specific status.
      * 
@@ -670,6 +991,9 @@ public final class QueuesController {
                     final Queue queue = iterator.next();
                     if (queue.getStatus() == status) {
                         this.queuesMap.remove(name, queue);
+                        synchronized (INDEX_LOCK) {
+                            this.unindex(queue, status, queue.getOwner());
+                        }
                         found = true;
                     }
                 }
@@ -679,6 +1003,49 @@ public final class QueuesController {
         LOGGER.trace("< remove");
     }
 
+    /**
+     * Changes to created the temporarily suspended queues whose suspension has
+     * ended. Thus, they can be selected again by the Activator. The queues that
+     * have been suspended too many times are canceled instead.
+     * 
+     * @return Quantity of unsuspended or canceled queues.
+     * @throws TReqSException
+     *             If there is a problem changing the state of a queue.
+     */
+    @SuppressWarnings("unchecked")
+    public int unsuspendQueues() throws TReqSException {
+        LOGGER.trace("> unsuspendQueues");
+
+        final long now = System.currentTimeMillis();
+        final List<Queue> ended = new ArrayList<Queue>();
+        synchronized (this.queuesMap) {
+            final Iterator<Queue> iterator = this.queuesMap.values()
+                    .iterator();
+            while (iterator.hasNext()) {
+                final Queue queue = iterator.next();
+                if ((queue.getStatus() == QueueStatus.TEMPORARILY_SUSPENDED)
+                        && (queue.getSuspensionTime() != null)
+                        && (queue.getSuspensionTime().getTimeInMillis() <= now)) {
+                    ended.add(queue);
+                }
+            }
+        }
+        // The state is written in the data source out of the lock.
+        final Iterator<Queue> iterator = ended.iterator();
+        while (iterator.hasNext()) {
+            final Queue queue = iterator.next();
+            try {
+                queue.unsuspend();
+            } catch (final MaximalSuspensionTriesException e) {
+                queue.cancel();
+            }
+        }
+
+        LOGGER.trace("< unsuspendQueues");
+
+        return ended.size();
+    }
+
     /**
      * Updates the SuspendTime of all the queues. Sets the localSuspendTime.
      * This value is in seconds.
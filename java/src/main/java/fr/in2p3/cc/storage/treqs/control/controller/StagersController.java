@@ -40,11 +40,16 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import fr.in2p3.cc.storage.treqs.Constants;
+import fr.in2p3.cc.storage.treqs.TReqSException;
+import fr.in2p3.cc.storage.treqs.control.activator.Activator;
 import fr.in2p3.cc.storage.treqs.control.process.ProcessStatus;
 import fr.in2p3.cc.storage.treqs.model.Queue;
 import fr.in2p3.cc.storage.treqs.model.Stager;
@@ -52,6 +57,10 @@ import fr.in2p3.cc.storage.treqs.model.Stager;
 /**
  * This is the controller of the stagers. It also manages the end of the created
  * threads.
+ * <p>
+ * The stagers are executed as tasks in a pool of threads, whose size is the
+ * maximal quantity of stagers of the Activator. The threads are reused between
+ * stagers, and a stager is unreferenced as soon as it finishes.
  *
  * @author Jonathan Schaeffer
  * @since 1.0
@@ -74,6 +83,9 @@ public final class StagersController {
         LOGGER.debug("> destroyInstance");
 
         if (instance != null) {
+            if (instance.executor != null) {
+                instance.executor.shutdownNow();
+            }
             LOGGER.info("Instance destroyed");
         }
         instance = null;
@@ -102,6 +114,16 @@ public final class StagersController {
         return instance;
     }
 
+    /**
+     * Quantity of stagers created by this controller. It gives a unique id to
+     * each stager, even when the previous ones have been unreferenced.
+     */
+    private int createdStagers;
+    /**
+     * Pool of threads that executes the stagers. It is created with the first
+     * execution.
+     */
+    private ScheduledThreadPoolExecutor executor;
     /**
      * List of created stagers.
      */
@@ -114,6 +136,8 @@ public final class StagersController {
         LOGGER.trace("> create StagersController");
 
         this.stagers = new ArrayList<Stager>();
+        this.createdStagers = 0;
+        this.executor = null;
 
         LOGGER.trace("< create StagersController");
     }
@@ -164,14 +188,16 @@ public final class StagersController {
     public void conclude() {
         LOGGER.trace("> conclude");
 
-        final Iterator<Stager> iterator = this.stagers.iterator();
-        while (iterator.hasNext()) {
-            final Stager stager = iterator.next();
-            LOGGER.debug("Stager {} in status {}", stager.getName(), stager
-                    .getProcessStatus().name());
-            if ((stager.getProcessStatus() == ProcessStatus.STARTED)
-                    || (stager.getProcessStatus() == ProcessStatus.STARTING)) {
-                stager.conclude();
+        synchronized (this.stagers) {
+            final Iterator<Stager> iterator = this.stagers.iterator();
+            while (iterator.hasNext()) {
+                final Stager stager = iterator.next();
+                LOGGER.debug("Stager {} in status {}", stager.getName(),
+                        stager.getProcessStatus().name());
+                if ((stager.getProcessStatus() == ProcessStatus.STARTED)
+                        || (stager.getProcessStatus() == ProcessStatus.STARTING)) {
+                    stager.conclude();
+                }
             }
         }
 
@@ -190,8 +216,10 @@ public final class StagersController {
 
         assert queue != null;
 
-        final Stager stager = new Stager(this.stagers.size(), queue);
+        Stager stager;
         synchronized (this.stagers) {
+            stager = new Stager(this.createdStagers, queue);
+            this.createdStagers++;
             this.stagers.add(stager);
         }
 
@@ -202,6 +230,87 @@ public final class StagersController {
         return stager;
     }
 
+    /**
+     * Executes a stager in the pool of threads, after the given delay. When
+     * the stager finishes, it is unreferenced immediately.
+     *
+     * @param stager
+     *            Stager to execute. It has to be created by this controller.
+     * @param delay
+     *            Milliseconds to wait before the execution.
+     * @throws TReqSException
+     *             If there is a problem retrieving the configuration.
+     */
+    public void execute(final Stager stager, final long delay)
+            throws TReqSException {
+        LOGGER.trace("> execute");
+
+        assert stager != null;
+        assert delay >= 0;
+
+        final ScheduledThreadPoolExecutor pool = this.getExecutor();
+        pool.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // The stager is not started as a thread, it is executed
+                    // in the current one.
+                    stager.run();
+                } finally {
+                    StagersController.this.finished(stager);
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+
+        LOGGER.trace("< execute");
+    }
+
+    /**
+     * Unreferences a stager that has finished, and notifies the ones that are
+     * waiting the stagers to finish.
+     *
+     * @param stager
+     *            Finished stager.
+     */
+    private void finished(final Stager stager) {
+        LOGGER.trace("> finished");
+
+        assert stager != null;
+
+        synchronized (this.stagers) {
+            this.stagers.remove(stager);
+            this.stagers.notifyAll();
+        }
+        LOGGER.debug("Stager {} finished", stager.getName());
+
+        LOGGER.trace("< finished");
+    }
+
+    /**
+     * Retrieves the quantity of stagers that have not finished. This includes
+     * the stagers waiting to be executed.
+     *
+     * @return Quantity of active stagers.
+     */
+    public int getActiveStagers() {
+        LOGGER.trace("> getActiveStagers");
+
+        int ret = 0;
+        synchronized (this.stagers) {
+            for (final Stager stager : this.stagers) {
+                if (stager.getProcessStatus() != ProcessStatus.STOPPED) {
+                    ret++;
+                }
+            }
+        }
+
+        assert ret >= 0;
+
+        LOGGER.trace("< getActiveStagers");
+
+        return ret;
+    }
+
     /**
      * Retrieves the quantity of active stagers for a given queue.
      *
@@ -209,17 +318,20 @@ public final class StagersController {
      *            Queue to analyze.
      * @return Quantity of active stagers for the given queue.
      */
-    public synchronized int getActiveStagersForQueue(final Queue queue) {
+    public int getActiveStagersForQueue(final Queue queue) {
         LOGGER.trace("> getActiveStagersForQueue");
 
         assert queue != null;
 
         int ret = 0;
         final String tapeName = queue.getTape().getName();
-        for (final Stager stager : this.stagers) {
-            if ((stager.getProcessStatus() == ProcessStatus.STARTED)
-                    && stager.getQueue().getTape().getName().equals(tapeName)) {
-                ret++;
+        synchronized (this.stagers) {
+            for (final Stager stager : this.stagers) {
+                if ((stager.getProcessStatus() == ProcessStatus.STARTED)
+                        && stager.getQueue().getTape().getName()
+                                .equals(tapeName)) {
+                    ret++;
+                }
             }
         }
 
@@ -231,35 +343,92 @@ public final class StagersController {
     }
 
     /**
-     * Waits for all threads to finish.
+     * Retrieves the pool of threads, creating it the first time. The size of
+     * the pool is the maximal quantity of stagers of the Activator.
+     *
+     * @return The pool of threads for the stagers.
+     * @throws TReqSException
+     *             If there is a problem retrieving the configuration.
+     */
+    private synchronized ScheduledThreadPoolExecutor getExecutor()
+            throws TReqSException {
+        LOGGER.trace("> getExecutor");
+
+        if (this.executor == null) {
+            final short size = Activator.getInstance().getMaxStagers();
+            LOGGER.info("Creating a pool of {} threads for the stagers", size);
+            this.executor = new ScheduledThreadPoolExecutor(size,
+                    new ThreadFactory() {
+                        /**
+                         * Quantity of created threads.
+                         */
+                        private int created = 0;
+
+                        @Override
+                        public Thread newThread(final Runnable runnable) {
+                            final Thread thread = new Thread(runnable,
+                                    "stager-pool-" + this.created++);
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+
+        assert this.executor != null;
+
+        LOGGER.trace("< getExecutor");
+
+        return this.executor;
+    }
+
+    /**
+     * Retrieves the size of the pool of threads. ONLY for testing purposes.
+     *
+     * @return Size of the pool, or 0 if the pool has not been created yet.
+     */
+    public synchronized int getPoolSize() {
+        LOGGER.trace(">< getPoolSize");
+
+        int size = 0;
+        if (this.executor != null) {
+            size = this.executor.getCorePoolSize();
+        }
+        return size;
+    }
+
+    /**
+     * Changes the size of the pool of threads, if it has already been created.
+     * The pool keeps the same size as the maximal quantity of stagers of the
+     * Activator.
+     *
+     * @param size
+     *            New size of the pool.
+     */
+    public synchronized void setPoolSize(final int size) {
+        LOGGER.trace("> setPoolSize");
+
+        assert size > 0;
+
+        if (this.executor != null) {
+            LOGGER.info("Resizing the pool of the stagers to {} threads", size);
+            this.executor.setCorePoolSize(size);
+        }
+
+        LOGGER.trace("< setPoolSize");
+    }
+
+    /**
+     * Waits for all stagers to finish. The stagers executed in the pool notify
+     * their end; the others are checked periodically.
      */
     public void waitToFinish() {
         LOGGER.trace("> waitToFinish");
 
-        boolean stopped = false;
-        while (!stopped) {
-            boolean iteration = true;
-            final Iterator<Stager> iterator = this.stagers.iterator();
-            while (iterator.hasNext()) {
-                final Stager stager = iterator.next();
-                final ProcessStatus status = stager.getProcessStatus();
-                if (status == ProcessStatus.STOPPED) {
-                    iteration &= true;
-                } else {
-                    LOGGER.debug("Stager has not finished: {}",
-                            stager.getName());
-                    iteration &= false;
-                }
-            }
-            // All stagers are stopped
-            if (iteration) {
-                stopped = true;
-            } else {
-                LOGGER.debug("Sleeping {} milliseconds.",
-                        Constants.MILLISECONDS);
-                // Waiting a while for the stagers to finish.
+        synchronized (this.stagers) {
+            while (this.getActiveStagers() > 0) {
+                LOGGER.debug("Waiting the stagers to finish.");
                 try {
-                    Thread.sleep(Constants.MILLISECONDS);
+                    this.stagers.wait(Constants.MILLISECONDS);
                 } catch (final InterruptedException e) {
                     LOGGER.error("message", e);
                 }
@@ -36,10 +36,9 @@
  */
 package fr.in2p3.cc.storage.treqs.control.controller;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -108,7 +107,7 @@ public final class TapesController extends AbstractController {
     private TapesController() {
         LOGGER.trace("> create instance");
 
-        super.setObjectMap(new HashMap<String, Object>());
+        super.setObjectMap(new ConcurrentHashMap<String, Object>());
 
         LOGGER.trace("< create instance");
     }
@@ -131,12 +130,9 @@ public final class TapesController extends AbstractController {
         assert (name != null) && !name.equals("");
         assert media != null;
 
-        Tape tape = null;
-        synchronized (this.getObjectMap()) {
-            tape = (Tape) this.exists(name);
-            if (tape == null) {
-                tape = this.create(name, media);
-            }
+        Tape tape = (Tape) this.exists(name);
+        if (tape == null) {
+            tape = (Tape) this.addIfAbsent(name, new Tape(name, media));
         }
 
         assert tape != null;
@@ -155,25 +151,18 @@ public final class TapesController extends AbstractController {
         LOGGER.trace("> cleanup");
 
         int size = 0;
-        final List<String> toRemove = new ArrayList<String>();
-        synchronized (this.getObjectMap()) {
-
-            // Checks the references without fpots.
-            final Iterator<String> iter = this.getObjectMap().keySet().iterator();
-            while (iter.hasNext()) {
-                final String name = iter.next();
-                final Tape tape = (Tape) this.getObjectMap().get(name);
-                final boolean exist = FilePositionOnTapesController.getInstance()
-                        .exists(tape);
-                if (!exist) {
-                    toRemove.add(name);
-                }
-            }
-            // Delete the tapes.
-            size = toRemove.size();
-            for (int i = 0; i < size; i++) {
-                LOGGER.debug("Deleting {}", toRemove.get(i));
-                this.getObjectMap().remove(toRemove.get(i));
+        // Checks the references without fpots. A tape is deleted only if it
+        // has not been replaced while checking.
+        final Iterator<Map.Entry<String, Object>> iter = this.getObjectMap()
+                .entrySet().iterator();
+        while (iter.hasNext()) {
+            final Map.Entry<String, Object> entry = iter.next();
+            final Tape tape = (Tape) entry.getValue();
+            final boolean exist = FilePositionOnTapesController.getInstance()
+                    .exists(tape);
+            if (!exist && this.getObjectMap().remove(entry.getKey(), tape)) {
+                LOGGER.debug("Deleting {}", entry.getKey());
+                size++;
             }
         }
 
@@ -36,10 +36,9 @@
  */
 package fr.in2p3.cc.storage.treqs.control.controller;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -112,7 +111,7 @@ public final class UsersController extends AbstractController {
     private UsersController() {
         LOGGER.trace("> create instance");
 
-        super.setObjectMap(new HashMap<String, Object>());
+        super.setObjectMap(new ConcurrentHashMap<String, Object>());
 
         LOGGER.trace("< create instance");
     }
@@ -132,12 +131,9 @@ public final class UsersController extends AbstractController {
 
         assert userName != null;
 
-        User user = null;
-        synchronized (this.getObjectMap()) {
-            user = (User) this.exists(userName);
-            if (user == null) {
-                user = this.create(userName);
-            }
+        User user = (User) this.exists(userName);
+        if (user == null) {
+            user = (User) this.addIfAbsent(userName, new User(userName));
         }
 
         LOGGER.trace("< add");
@@ -154,28 +150,21 @@ public final class UsersController extends AbstractController {
         LOGGER.trace("> cleanup");
 
         int size = 0;
-        final List<String> toRemove = new ArrayList<String>();
-        synchronized (this.getObjectMap()) {
-
-            // Checks the references of users.
-            final Iterator<String> iter = this.getObjectMap().keySet().iterator();
-            while (iter.hasNext()) {
-                final String name = iter.next();
-                final User user = (User) this.getObjectMap().get(name);
-                boolean exist = FilePositionOnTapesController.getInstance()
-                        .exists(user);
-                if (!exist) {
-                    exist = ResourcesController.getInstance().exist(user);
-                }
-                if (!exist) {
-                    toRemove.add(name);
-                }
+        // Checks the references of users. A user is deleted only if it has not
+        // been replaced while checking.
+        final Iterator<Map.Entry<String, Object>> iter = this.getObjectMap()
+                .entrySet().iterator();
+        while (iter.hasNext()) {
+            final Map.Entry<String, Object> entry = iter.next();
+            final User user = (User) entry.getValue();
+            boolean exist = FilePositionOnTapesController.getInstance()
+                    .exists(user);
+            if (!exist) {
+                exist = ResourcesController.getInstance().exist(user);
             }
-            // Delete the tapes.
-            size = toRemove.size();
-            for (int i = 0; i < size; i++) {
-                LOGGER.debug("Deleting {}", toRemove.get(i));
-                this.getObjectMap().remove(toRemove.get(i));
+            if (!exist && this.getObjectMap().remove(entry.getKey(), user)) {
+                LOGGER.debug("Deleting {}", entry.getKey());
+                size++;
             }
         }
 
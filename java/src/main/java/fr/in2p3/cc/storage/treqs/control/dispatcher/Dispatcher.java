@@ -36,9 +36,17 @@
  */
 package fr.in2p3.cc.storage.treqs.control.dispatcher;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.commons.collections.MultiMap;
 import org.apache.commons.collections.map.MultiValueMap;
@@ -61,18 +69,20 @@ import fr.in2p3.cc.storage.treqs.control.starter.Starter;
 import fr.in2p3.cc.storage.treqs.hsm.AbstractHSMException;
 import fr.in2p3.cc.storage.treqs.hsm.HSMDirectoryException;
 import fr.in2p3.cc.storage.treqs.hsm.HSMEmptyFileException;
-import fr.in2p3.cc.storage.treqs.hsm.HSMFactory;
 import fr.in2p3.cc.storage.treqs.hsm.HSMHelperFileProperties;
+import fr.in2p3.cc.storage.treqs.hsm.HSMTimeoutException;
 import fr.in2p3.cc.storage.treqs.media.MediaFinderFactory;
 import fr.in2p3.cc.storage.treqs.model.File;
 import fr.in2p3.cc.storage.treqs.model.FilePositionOnTape;
 import fr.in2p3.cc.storage.treqs.model.MediaType;
+import fr.in2p3.cc.storage.treqs.model.Queue;
 import fr.in2p3.cc.storage.treqs.model.RequestStatus;
 import fr.in2p3.cc.storage.treqs.model.Tape;
 import fr.in2p3.cc.storage.treqs.model.User;
 import fr.in2p3.cc.storage.treqs.persistence.AbstractDAOFactory;
 import fr.in2p3.cc.storage.treqs.persistence.AbstractPersistanceException;
 import fr.in2p3.cc.storage.treqs.persistence.helper.PersistenceHelperFileRequest;
+import fr.in2p3.cc.storage.treqs.persistence.helper.PersistenceHelperUnfinishedRequest;
 import fr.in2p3.cc.storage.treqs.tools.Configurator;
 import fr.in2p3.cc.storage.treqs.tools.ProblematicConfiguationFileException;
 
@@ -85,29 +95,16 @@ import fr.in2p3.cc.storage.treqs.tools.ProblematicConfiguationFileException;
  * all, but this kind of problems appear when there is a problem with the
  * database, so the application has to be restarted.
  * <p>
- * TODO v2.0 This class has to use threads. The implementation will be like
- * this:<br>
- * All the new requests are read from the databases and they are put in a list.
- * After that, the requests are passed to a set of list, each one for a
- * different user. Each of the second list represents the requests from a same
- * client. After that, there are two possibilities:
- * <ul>
- * <li>The requests are processed sequentially, and the user to pick is selected
- * via the algorithm of best user from the Selector. This permits to privilege
- * the users that do not have a lot of requests against the user that has
- * thousand of requests (for example a prestaging.</li>
- * <li>Each of those list are processed in a separated thread. This will lead to
- * create another object called Analyzer, and it will process sequentially the
- * requests from a single user. This means, that if a user has a lot of
- * requests, it will be limited by its own requests, and it will not depend on
- * the others. This has an impact in the parallelism, because it has to check
- * the points where the queues are created and assigned to assure that is thread
- * safe. This possibility also will reduce the complexity of this class
- * Dispatcher, by reducing the coupling and specializing the two possible
- * classed: Dispatcher and Analyzer. The quantity of Analyzer will be
- * configuration parameter, and it could be or not be possible to have several
- * Analyzer for the same user.</li>
- * </ul>
+ * The intake is adaptive. The time between loops shrinks while new requests
+ * arrive, down to one second, and grows again up to the configured interval
+ * when there are no new requests. The quantity of requests fetched per query
+ * grows while the queries return full pages (there is a backlog), limited by
+ * the quantity of requests that can be processed in one interval at the
+ * observed rate, and it returns to the configured size when the backlog has
+ * been absorbed.
+ * <p>
+ * The metadata of the files is queried in parallel by a pool of threads, but
+ * the requests are assigned to the queues one by one, in their arrival order.
  * 
  * @author Jonathan Schaeffer
  * @since 1.0
@@ -123,6 +120,15 @@ public final class Dispatcher extends AbstractProcess {
      */
     private static final Logger LOGGER = LoggerFactory
             .getLogger(Dispatcher.class);
+    /**
+     * Maximal quantity of requests per query, as a multiple of the configured
+     * quantity.
+     */
+    private static final int MAX_FETCH_FACTOR = 20;
+    /**
+     * Minimal quantity of millis between loops while new requests arrive.
+     */
+    private static final int MIN_MILLIS_BETWEEN_LOOPS = Constants.MILLISECONDS;
 
     /**
      * Destroys the only instance. ONLY for testing purposes.
@@ -138,6 +144,7 @@ public final class Dispatcher extends AbstractProcess {
             if (instance.getProcessStatus() == ProcessStatus.STOPPING) {
                 instance.waitToFinish();
             }
+            instance.metadataPool.shutdownNow();
             LOGGER.info("Instance destroyed");
         }
 
@@ -170,6 +177,16 @@ public final class Dispatcher extends AbstractProcess {
         return instance;
     }
 
+    /**
+     * Quantity of requests to fetch in the next query. It is at least
+     * maxRequests, and it grows while there is a backlog.
+     */
+    private int fetchSize;
+    /**
+     * Id of the last request read in the current pass. The next page starts
+     * after this id.
+     */
+    private int lastRequestId;
     /**
      * Quantity of requests to process before showing a log message.
      */
@@ -178,15 +195,29 @@ public final class Dispatcher extends AbstractProcess {
      * The number of requests to fetch per run.
      */
     private short maxRequests;
-
     /**
-     * Quantity of millis between loops.
+     * Threads that query the HSM for the metadata of the new files.
+     */
+    private final ExecutorService metadataPool;
+    /**
+     * Configured quantity of millis between loops. This is the interval when
+     * there are no new requests.
      */
     private int millisBetweenLoops;
+    /**
+     * Quantity of millis to wait before the next loop. It shrinks while new
+     * requests arrive.
+     */
+    private int millisToNextLoop;
     /**
      * Flag to indicate that there are more requests to process.
      */
     private boolean moreRequests;
+    /**
+     * Metadata queries submitted to the pool for the requests being processed.
+     * The key is the filename.
+     */
+    private final Map<String, Future<HSMHelperFileProperties>> pendingProperties;
 
     /**
      * Creates the dispatcher. Initializes the attributes.
@@ -214,11 +245,93 @@ public final class Dispatcher extends AbstractProcess {
                 DefaultProperties.SECONDS_BETWEEN_LOOPS);
         this.setSecondsBetweenLoops(interval);
 
+        final byte threads = Configurator.getInstance().getByteValue(
+                Constants.SECTION_DISPATCHER, Constants.METADATA_THREADS,
+                DefaultProperties.METADATA_THREADS);
+        assert threads > 0;
+        LOGGER.info("Threads for metadata {}", threads);
+        this.metadataPool = Executors.newFixedThreadPool(threads,
+                new ThreadFactory() {
+                    private int counter = 0;
+
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        this.counter++;
+                        final Thread thread = new Thread(runnable,
+                                "Dispatcher-metadata-" + this.counter);
+                        // The pool does not prevent the application to stop.
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        this.pendingProperties = new HashMap<String, Future<HSMHelperFileProperties>>();
+
         this.kickStart();
 
         LOGGER.trace("< create Dispatcher");
     }
 
+    /**
+     * Adapts the size of the next query after processing a page of requests.
+     * If the page was full, there is a backlog, and the next page is doubled,
+     * but it is limited to the requests that can be processed in one interval
+     * at the observed rate. Otherwise, the configured size is used again.
+     * 
+     * @param fetched
+     *            Quantity of requests of the page.
+     * @param millis
+     *            Milliseconds used to process the page.
+     */
+    private void adaptFetchSize(final int fetched, final long millis) {
+        LOGGER.trace("> adaptFetchSize");
+
+        assert fetched >= 0;
+        assert millis >= 0;
+
+        int size = this.maxRequests;
+        if (fetched == this.fetchSize) {
+            long next = this.fetchSize * 2L;
+            if (millis > 0) {
+                final long perInterval = fetched
+                        * (long) this.millisBetweenLoops / millis;
+                next = Math.min(next, perInterval);
+            }
+            next = Math.min(next, this.maxRequests * (long) MAX_FETCH_FACTOR);
+            size = (int) Math.max(next, this.maxRequests);
+        }
+        if (size != this.fetchSize) {
+            LOGGER.debug("Fetch size changed from {} to {}", this.fetchSize,
+                    size);
+        }
+        this.fetchSize = size;
+
+        LOGGER.trace("< adaptFetchSize");
+    }
+
+    /**
+     * Adapts the time to the next loop. It is halved if there were new
+     * requests, and it is doubled otherwise, between one second and the
+     * configured interval.
+     * 
+     * @param fetched
+     *            Quantity of new requests retrieved in the loop.
+     */
+    private void adaptMillisToNextLoop(final int fetched) {
+        LOGGER.trace("> adaptMillisToNextLoop");
+
+        assert fetched >= 0;
+
+        if (fetched > 0) {
+            this.millisToNextLoop = Math.max(MIN_MILLIS_BETWEEN_LOOPS,
+                    this.millisToNextLoop / 2);
+        } else {
+            this.millisToNextLoop = (int) Math.min(this.millisBetweenLoops,
+                    this.millisToNextLoop * 2L);
+        }
+
+        LOGGER.trace("< adaptMillisToNextLoop");
+    }
+
     /**
      * Performs the process of the dispatcher.
      * 
@@ -260,7 +373,9 @@ public final class Dispatcher extends AbstractProcess {
     }
 
     /**
-     * Checks if the exception is about an empty file.
+     * Checks if the exception is about an empty file. If the HSM has not
+     * answered in time, the request is not modified, thus it will be processed
+     * again in the next loop.
      * 
      * @param fileRequest
      *            Request.
@@ -274,7 +389,10 @@ public final class Dispatcher extends AbstractProcess {
         assert fileRequest != null;
         assert e != null;
 
-        if (!(e instanceof HSMEmptyFileException)
+        if (e instanceof HSMTimeoutException) {
+            LOGGER.warn("Request {} will be retried: {}", fileRequest.getId(),
+                    e.getMessage());
+        } else if (!(e instanceof HSMEmptyFileException)
                 && !(e instanceof HSMDirectoryException)) {
             this.processException(e, fileRequest);
         } else {
@@ -369,6 +487,67 @@ public final class Dispatcher extends AbstractProcess {
         LOGGER.trace("< fileOnDisk");
     }
 
+    /**
+     * Retrieves the quantity of requests to fetch in the next query.
+     * 
+     * @return Quantity of requests of the next query.
+     * @since 1.5.6
+     */
+    int getFetchSize() {
+        LOGGER.trace(">< getFetchSize");
+
+        return this.fetchSize;
+    }
+
+    /**
+     * Retrieves the metadata of a file. If the query was already submitted to
+     * the pool of metadata threads, it waits for its result; otherwise, the
+     * HSM is queried directly.
+     * 
+     * @param filename
+     *            Name of the file to query.
+     * @return The properties of the file.
+     * @throws TReqSException
+     *             If there is a problem retrieving the metadata. If the file
+     *             has a problem in the HSM, the exception is an
+     *             AbstractHSMException.
+     */
+    private HSMHelperFileProperties getFileProperties(final String filename)
+            throws TReqSException {
+        LOGGER.trace("> getFileProperties");
+
+        assert (filename != null) && !filename.equals("");
+
+        HSMHelperFileProperties fileProperties = null;
+        final Future<HSMHelperFileProperties> future = this.pendingProperties
+                .get(filename);
+        if (future == null) {
+            fileProperties = new FilePropertiesLookup(filename).lookup();
+        } else {
+            try {
+                fileProperties = future.get();
+            } catch (final InterruptedException e) {
+                throw new DispatcherException(e);
+            } catch (final ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof TReqSException) {
+                    throw (TReqSException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new DispatcherException((Exception) cause);
+            }
+        }
+
+        assert fileProperties != null;
+
+        LOGGER.trace("< getFileProperties");
+
+        return fileProperties;
+    }
+
     /**
      * Getter for max requests.
      * 
@@ -430,6 +609,18 @@ public final class Dispatcher extends AbstractProcess {
         return this.millisBetweenLoops;
     }
 
+    /**
+     * Retrieves the quantity of milliseconds to wait before the next loop.
+     * 
+     * @return Quantity of milliseconds to wait.
+     * @since 1.5.6
+     */
+    long getMillisToNextLoop() {
+        LOGGER.trace(">< getMillisToNextLoop");
+
+        return this.millisToNextLoop;
+    }
+
     /**
      * Scans new requests via DAO. Puts all new requests in the RequestsList
      * container.
@@ -438,17 +629,18 @@ public final class Dispatcher extends AbstractProcess {
      * @throws TReqSException
      *             If there is a problem in any component.
      */
-    private MultiMap/* <!,!>! */getNewRequests() throws TReqSException {
+    private MultiValueMap/* <!,!>! */getNewRequests() throws TReqSException {
         LOGGER.trace("> getNewRequests");
 
         // newRequests will be returned at the end
-        final MultiMap newRequests = new MultiValueMap();
+        final MultiValueMap newRequests = new MultiValueMap();
         List<PersistenceHelperFileRequest> listRequests = null;
 
         LOGGER.info("Looking for new requests");
         try {
             listRequests = AbstractDAOFactory.getDAOFactoryInstance()
-                    .getReadingDAO().getNewRequests(this.getMaxRequests());
+                    .getReadingDAO().getNewRequests(this.lastRequestId,
+                            this.fetchSize);
         } catch (final AbstractPersistanceException e) {
             LOGGER.error("Exception caught: {}", e.getMessage());
             throw e;
@@ -459,7 +651,10 @@ public final class Dispatcher extends AbstractProcess {
 
             this.getNewRequestsInner(newRequests, listRequests);
 
-            if (listRequests.size() == this.getMaxRequests()) {
+            // The requests are ordered by id.
+            this.lastRequestId = listRequests.get(listRequests.size() - 1)
+                    .getId();
+            if (listRequests.size() == this.fetchSize) {
                 this.moreRequests = true;
             }
         }
@@ -540,14 +735,9 @@ public final class Dispatcher extends AbstractProcess {
         if (file == null) {
             // The object file has to be created.
 
-            // TODO v2.0 The next lines are repeated.
             // Get the file properties from HSM.
             try {
-                long time = System.currentTimeMillis();
-                fileProperties = HSMFactory.getHSMBridge().getFileProperties(
-                        fileRequest.getName());
-                time = System.currentTimeMillis() - time;
-                LOGGER.debug("total time getProperties: {}", time);
+                fileProperties = this.getFileProperties(fileRequest.getName());
             } catch (final AbstractHSMException e) {
                 this.checkIfEmptyFile(fileRequest, e);
                 cont = false;
@@ -580,13 +770,9 @@ public final class Dispatcher extends AbstractProcess {
                 if (fpot.isMetadataOutdated()) {
                     LOGGER.info("Refreshing metadata of file {}",
                             fileRequest.getName());
-                    // TODO v2.0 The next lines are repeated.
                     try {
-                        long time = System.currentTimeMillis();
-                        fileProperties = HSMFactory.getHSMBridge()
-                                .getFileProperties(fileRequest.getName());
-                        time = System.currentTimeMillis() - time;
-                        LOGGER.debug("total time getProperties: {}", time);
+                        fileProperties = this.getFileProperties(fileRequest
+                                .getName());
                     } catch (final AbstractHSMException e) {
                         this.checkIfEmptyFile(fileRequest, e);
                         cont = false;
@@ -669,10 +855,52 @@ public final class Dispatcher extends AbstractProcess {
     }
 
     /**
-     * Processes the new requests and then put them in queues.
+     * Submits to the pool of metadata threads the queries for the files that
+     * are not registered in the application, or whose metadata is outdated.
+     * There is just one query per file, and the results are taken sequentially
+     * by the Dispatcher thread when processing each request. This keeps the
+     * assignment to queues in the same order as the requests.
+     * 
+     * @param newRequests
+     *            Map of new requests. The key is the filename.
+     */
+    @SuppressWarnings("unchecked")
+    private void lookupFileProperties(final MultiMap newRequests) {
+        LOGGER.trace("> lookupFileProperties");
+
+        assert newRequests != null;
+
+        final Iterator<String> iterator = newRequests.keySet().iterator();
+        while (iterator.hasNext()) {
+            final String filename = iterator.next();
+            boolean lookup = true;
+            final File file = (File) FilesController.getInstance().exists(
+                    filename);
+            if (file != null) {
+                final FilePositionOnTape fpot = (FilePositionOnTape) FilePositionOnTapesController
+                        .getInstance().exists(filename);
+                lookup = (fpot != null) && fpot.isMetadataOutdated();
+            }
+            if (lookup) {
+                this.pendingProperties.put(filename, this.metadataPool
+                        .submit(new FilePropertiesLookup(filename)));
+            }
+        }
+        LOGGER.debug("{} metadata queries submitted",
+                this.pendingProperties.size());
+
+        LOGGER.trace("< lookupFileProperties");
+    }
+
+    /**
+     * Processes the new requests and then put them in queues. The metadata of
+     * the files is retrieved in parallel, but the requests are registered in
+     * the queues one by one.
      * <p>
-     * TODO v2.0 This should be multithreaded in order to ask several file
-     * properties to the server simultaneously.
+     * The requests for the same file are coalesced: just the first one is
+     * processed, and then there is only one metadata query and one reading for
+     * all of them. The status of the reading is written in the data source per
+     * file, thus all the requests receive the final status.
      * 
      * @param newRequests
      *            Map of new requests.
@@ -685,27 +913,52 @@ public final class Dispatcher extends AbstractProcess {
 
         assert newRequests != null;
 
-        short counter = this.maxFilesBeforeMessage;
-        final Iterator<String> iterator = newRequests.keySet().iterator();
-        while (iterator.hasNext()) {
-            final String filename = iterator.next();
-            final Iterator<FileRequest> iterator2 = ((Collection<FileRequest>) newRequests
-                    .get(filename)).iterator();
-            while (iterator2.hasNext()) {
-                final FileRequest fileRequest = iterator2.next();
-
-                counter--;
-                if (counter == 0) {
-                    LOGGER.info("{} files done", this.maxFilesBeforeMessage);
-                    counter = this.maxFilesBeforeMessage;
-                }
+        this.lookupFileProperties(newRequests);
 
-                this.innerProcess(fileRequest);
+        short counter = this.maxFilesBeforeMessage;
+        try {
+            final Iterator<String> iterator = newRequests.keySet().iterator();
+            while (iterator.hasNext()) {
+                final String filename = iterator.next();
+                final Iterator<FileRequest> iterator2 = ((Collection<FileRequest>) newRequests
+                        .get(filename)).iterator();
+                // The first request serves all the requests for the same file.
+                FileRequest fileRequest = null;
+                while (iterator2.hasNext()) {
+                    final FileRequest current = iterator2.next();
+                    if (fileRequest == null) {
+                        fileRequest = current;
+                    } else {
+                        fileRequest.coalesce(current);
+                    }
 
+                    counter--;
+                    if (counter == 0) {
+                        LOGGER.info("{} files done",
+                                this.maxFilesBeforeMessage);
+                        counter = this.maxFilesBeforeMessage;
+                    }
+                }
+                if (fileRequest != null) {
+                    if (!fileRequest.getCoalescedRequests().isEmpty()) {
+                        LOGGER.debug("{} requests coalesced for file {}",
+                                fileRequest.getCoalescedRequests().size(),
+                                filename);
+                    }
+                    this.innerProcess(fileRequest);
+                }
+                if (newRequests.size() > 0) {
+                    LOGGER.info("Processing {} request(s)", newRequests.size());
+                }
             }
-            if (newRequests.size() > 0) {
-                LOGGER.info("Processing {} request(s)", newRequests.size());
+        } finally {
+            // Queries not consumed because of an error are discarded.
+            final Iterator<Future<HSMHelperFileProperties>> futures = this.pendingProperties
+                    .values().iterator();
+            while (futures.hasNext()) {
+                futures.next().cancel(false);
             }
+            this.pendingProperties.clear();
         }
 
         LOGGER.trace("< process");
@@ -735,6 +988,74 @@ public final class Dispatcher extends AbstractProcess {
         LOGGER.trace("< processException");
     }
 
+    /**
+     * Registers again in queues the requests that were unfinished in the
+     * previous execution. The tape and the position stored for each request
+     * are used, without querying the HSM. Requests for the same file are served
+     * by the first one, like the new requests. If the media type of the tape is
+     * not defined, the request is skipped, and it will be processed as a new
+     * one.
+     * <p>
+     * This has to be called before starting the Dispatcher.
+     * 
+     * @param requests
+     *            Unfinished requests, ordered by tape and position.
+     * @return The queues where the requests were registered.
+     * @throws TReqSException
+     *             If there is a problem registering a request.
+     * @since 1.5.6
+     */
+    public List<Queue> recover(
+            final List<PersistenceHelperUnfinishedRequest> requests)
+            throws TReqSException {
+        LOGGER.trace("> recover");
+
+        assert requests != null;
+
+        final List<Queue> queues = new ArrayList<Queue>();
+        final Iterator<PersistenceHelperUnfinishedRequest> iterator = requests
+                .iterator();
+        while (iterator.hasNext()) {
+            final PersistenceHelperUnfinishedRequest request = iterator.next();
+            if (FilesController.getInstance().exists(request.getFileName()) != null) {
+                LOGGER.debug("Request {} served by another one for file {}",
+                        request.getId(), request.getFileName());
+            } else {
+                MediaType media = null;
+                try {
+                    media = MediaFinderFactory.getDAOFactoryInstance()
+                            .getMediaType(request.getTapeName());
+                } catch (final NotMediaTypeDefinedException e) {
+                    LOGGER.warn("Request {} not recovered: {}",
+                            request.getId(), e.getMessage());
+                }
+                if (media != null) {
+                    final User owner = UsersController.getInstance().add(
+                            request.getOwnerName());
+                    final File file = FilesController.getInstance().add(
+                            request.getFileName(), request.getSize());
+                    final Tape tape = TapesController.getInstance().add(
+                            request.getTapeName(), media);
+                    final FilePositionOnTape fpot = FilePositionOnTapesController
+                            .getInstance().add(file, tape,
+                                    request.getPosition(), owner);
+                    final Queue queue = QueuesController.getInstance()
+                            .addFilePositionOnTape(fpot,
+                                    request.getNumberTries());
+                    if (!queues.contains(queue)) {
+                        queues.add(queue);
+                    }
+                }
+            }
+        }
+        LOGGER.info("{} requests recovered in {} queues", requests.size(),
+                queues.size());
+
+        LOGGER.trace("< recover");
+
+        return queues;
+    }
+
     /**
      * This method is just for tests, because it reinitializes the dispatcher.
      * <p>
@@ -752,7 +1073,11 @@ public final class Dispatcher extends AbstractProcess {
     }
 
     /**
-     * Retrieves the requests from the data source.
+     * Retrieves the requests from the data source. The pages are retrieved one
+     * after the other while they are full. Each page starts after the last
+     * request of the previous one, thus the requests that are still in created
+     * state are not read again in the same pass, and the memory used is
+     * limited to one page, whatever the quantity of new requests is.
      * <p>
      * This method has a default visibility just for testing purposes.
      * 
@@ -762,23 +1087,29 @@ public final class Dispatcher extends AbstractProcess {
     void retrieveNewRequests() throws TReqSException {
         LOGGER.trace("> retrieveNewRequest");
 
-        // Get new requests
-        final MultiMap newRequests = this.getNewRequests();
-        if (newRequests != null) {
+        int total = 0;
+        this.lastRequestId = 0;
+        do {
+            this.moreRequests = false;
+            long time = System.currentTimeMillis();
+
+            // Get new requests
+            final MultiValueMap newRequests = this.getNewRequests();
+            final int fetched = newRequests.totalSize();
+            total += fetched;
 
             // Loop through the new requests.
-            if (newRequests.size() > 0) {
+            if (fetched > 0) {
                 LOGGER.info("Beginning MetaData fishing on HSM for {} files",
                         newRequests.size());
             }
             this.process(newRequests);
 
+            time = System.currentTimeMillis() - time;
+            this.adaptFetchSize(fetched, time);
             // Process more requests.
-            if (this.moreRequests) {
-                this.moreRequests = false;
-                this.retrieveNewRequests();
-            }
-        }
+        } while (this.moreRequests);
+        this.adaptMillisToNextLoop(total);
 
         LOGGER.trace("< retrieveNewRequest");
     }
@@ -811,6 +1142,7 @@ public final class Dispatcher extends AbstractProcess {
         assert max > 0;
 
         this.maxRequests = max;
+        this.fetchSize = max;
 
         LOGGER.trace("< setMaxRequests");
     }
@@ -827,6 +1159,7 @@ public final class Dispatcher extends AbstractProcess {
         assert seconds > 0;
 
         this.millisBetweenLoops = seconds * Constants.MILLISECONDS;
+        this.millisToNextLoop = this.millisBetweenLoops;
         LOGGER.info("Seconds between loops {}", this.millisBetweenLoops);
 
         LOGGER.trace("< setSecondsBetweenLoops");
@@ -889,10 +1222,10 @@ public final class Dispatcher extends AbstractProcess {
 
                 if (this.keepOn()) {
                     LOGGER.debug("Sleeping {} milliseconds",
-                            this.getMillisBetweenLoops());
+                            this.getMillisToNextLoop());
                     // Waits before restart the process.
                     try {
-                        Thread.sleep(this.getMillisBetweenLoops());
+                        Thread.sleep(this.getMillisToNextLoop());
                     } catch (final InterruptedException e) {
                         LOGGER.error("Message", e);
                     }
@@ -914,7 +1247,8 @@ public final class Dispatcher extends AbstractProcess {
     }
 
     /**
-     * Writes the status for a request in the data source.
+     * Writes the status for a request, and for the requests coalesced in it, in
+     * the data source.
      * 
      * @param request
      *            Request to process.
@@ -933,15 +1267,22 @@ public final class Dispatcher extends AbstractProcess {
         assert (message != null) && !message.equals("");
         assert status != null;
 
-        try {
-            AbstractDAOFactory
-                    .getDAOFactoryInstance()
-                    .getReadingDAO()
-                    .setRequestStatusById(request.getId(), status, code,
-                            message);
-        } catch (final TReqSException e) {
-            LOGGER.error("Error trying to update request status: {}",
-                    e.getMessage());
+        final List<FileRequest> requests = new ArrayList<FileRequest>();
+        requests.add(request);
+        requests.addAll(request.getCoalescedRequests());
+        final Iterator<FileRequest> iterator = requests.iterator();
+        while (iterator.hasNext()) {
+            final FileRequest current = iterator.next();
+            try {
+                AbstractDAOFactory
+                        .getDAOFactoryInstance()
+                        .getReadingDAO()
+                        .setRequestStatusById(current.getId(), status, code,
+                                message);
+            } catch (final TReqSException e) {
+                LOGGER.error("Error trying to update request status: {}",
+                        e.getMessage());
+            }
         }
 
         LOGGER.trace("< writeRequestStatus");
@@ -0,0 +1,119 @@
+/*
+ * Copyright      Jonathan Schaeffer 2009-2010,
+ *                  CC-IN2P3, CNRS <jonathan.schaeffer@cc.in2p3.fr>
+ * Contributors   Andres Gomez,
+ *                  CC-IN2P3, CNRS <andres.gomez@cc.in2p3.fr>
+ *
+ * This software is a computer program whose purpose is to schedule, sort
+ * and submit file requests to the hierarchical storage system HPSS.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights, and the successive licensors have only limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+package fr.in2p3.cc.storage.treqs.control.dispatcher;
+
+import java.util.concurrent.Callable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fr.in2p3.cc.storage.treqs.TReqSException;
+import fr.in2p3.cc.storage.treqs.hsm.HSMHelperFileProperties;
+import fr.in2p3.cc.storage.treqs.hsm.HSMMetadataCache;
+
+/**
+ * Retrieves the metadata of a file from the HSM. This task is executed by the
+ * pool of metadata threads of the Dispatcher, and it does not modify any
+ * object of the model; the result is registered in the queues by the
+ * Dispatcher thread.
+ *
+ * @since 1.5.6
+ */
+final class FilePropertiesLookup implements
+        Callable<HSMHelperFileProperties> {
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(FilePropertiesLookup.class);
+    /**
+     * Name of the file to query.
+     */
+    private final String filename;
+
+    /**
+     * Creates the task for a given file.
+     *
+     * @param name
+     *            Name of the file to query.
+     */
+    FilePropertiesLookup(final String name) {
+        LOGGER.trace("> Creating instance.");
+
+        assert (name != null) && !name.equals("");
+
+        this.filename = name;
+
+        LOGGER.trace("< Creating instance.");
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.util.concurrent.Callable#call()
+     */
+    @Override
+    public HSMHelperFileProperties call() throws TReqSException {
+        LOGGER.trace(">< call");
+
+        return this.lookup();
+    }
+
+    /**
+     * Queries the HSM for the properties of the file.
+     *
+     * @return The properties of the file.
+     * @throws TReqSException
+     *             If there is a problem retrieving the HSM bridge or if the
+     *             file has a problem in the HSM.
+     */
+    HSMHelperFileProperties lookup() throws TReqSException {
+        LOGGER.trace("> lookup");
+
+        long time = System.currentTimeMillis();
+        final HSMHelperFileProperties properties = HSMMetadataCache
+                .getInstance().getFileProperties(this.filename);
+        time = System.currentTimeMillis() - time;
+        LOGGER.debug("total time getProperties: {}", time);
+
+        assert properties != null;
+
+        LOGGER.trace("< lookup");
+
+        return properties;
+    }
+}
@@ -36,6 +36,9 @@
  */
 package fr.in2p3.cc.storage.treqs.control.dispatcher;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -55,6 +58,10 @@ import fr.in2p3.cc.storage.treqs.model.User;
  * There could be many FileRequests from different users to the same file, but
  * the first user that asked for the file will be considered as the file
  * requester and this information is on the file position on tape.
+ * <p>
+ * The requests for the same file retrieved in the same loop are coalesced in
+ * the first one: only this request is processed, and the others receive the
+ * same final status.
  *
  * @author Jonathan Schaeffer
  * @since 1.0
@@ -65,6 +72,10 @@ final class FileRequest {
      */
     private static final Logger LOGGER = LoggerFactory
             .getLogger(FileRequest.class);
+    /**
+     * Other requests for the same file that are served by this one.
+     */
+    private final List<FileRequest> coalescedRequests;
     /**
      * Unique Id of the request.
      */
@@ -105,12 +116,45 @@ final class FileRequest {
         this.id = fileRequestId;
         this.name = requestedFilename;
         this.user = requesterUser;
+        this.coalescedRequests = new ArrayList<FileRequest>();
 
         this.setNumberTries(tries);
 
         LOGGER.trace("< Creating instance.");
     }
 
+    /**
+     * Attaches another request for the same file to this one. The attached
+     * request will not be processed by itself; it will receive the same final
+     * status as this request.
+     *
+     * @param request
+     *            Request for the same file.
+     */
+    public void coalesce(final FileRequest request) {
+        LOGGER.trace("> coalesce");
+
+        assert request != null;
+        assert request != this;
+        assert request.getName().equals(this.name);
+        assert request.getCoalescedRequests().isEmpty();
+
+        this.coalescedRequests.add(request);
+
+        LOGGER.trace("< coalesce");
+    }
+
+    /**
+     * Getter for the requests attached to this one.
+     *
+     * @return The other requests for the same file.
+     */
+    public List<FileRequest> getCoalescedRequests() {
+        LOGGER.trace(">< getCoalescedRequests");
+
+        return this.coalescedRequests;
+    }
+
     /**
      * Getter for id member.
      *
@@ -54,7 +54,6 @@ import fr.in2p3.cc.storage.treqs.model.QueueStatus;
 import fr.in2p3.cc.storage.treqs.model.Resource;
 import fr.in2p3.cc.storage.treqs.model.User;
 import fr.in2p3.cc.storage.treqs.tools.Configurator;
-import fr.in2p3.cc.storage.treqs.tools.KeyNotFoundException;
 import fr.in2p3.cc.storage.treqs.tools.ProblematicConfiguationFileException;
 
 /**
@@ -138,30 +137,54 @@ public final class AndresSelector extends Selector {
             .getLogger(AndresSelector.class);
 
     /**
-     * Calculates the score of the queue with the described function.
-     * 
-     * @param queue
-     *            Queue to analyze.
-     * @return Score of the queue.
+     * The square of the limited time (a ** 2).
+     */
+    private final double limitedTimeSquare;
+    /**
+     * Pi divided by the best quantity of files to stage (pi / c).
+     */
+    private final double piPerAverageFile;
+
+    /**
+     * Creates the selector, reading the constants of the formula.
+     *
      * @throws ProblematicConfiguationFileException
      *             If there is a problem with the configuration.
      */
-    private double calculateQueueScore(final Queue queue)
-            throws ProblematicConfiguationFileException {
-        LOGGER.trace("> calculateQueueScore");
+    public AndresSelector() throws ProblematicConfiguationFileException {
+        super();
 
-        assert queue != null;
+        LOGGER.trace("> Creating AndresSelector");
 
         final short a = Configurator.getInstance().getShortValue("ANDRES",
                 "LIMITED_TIME", (short) 180);
         final short c = Configurator.getInstance().getShortValue("ANDRES",
                 "AVERAGE_FILE", (short) 180);
+        this.limitedTimeSquare = Math.pow(a, 2);
+        this.piPerAverageFile = Math.PI / c;
+
+        LOGGER.trace("< Creating AndresSelector");
+    }
+
+    /**
+     * Calculates the score of the queue with the described function.
+     *
+     * @param queue
+     *            Queue to analyze.
+     * @return Score of the queue.
+     */
+    @Override
+    protected double calculateQueueScore(final Queue queue) {
+        LOGGER.trace("> calculateQueueScore");
+
+        assert queue != null;
+
         final double pi = Math.PI;
 
         // The elapsed time in minutes from the creation time.
-        final long z = new GregorianCalendar().getTimeInMillis()
-                - queue.getCreationTime().getTimeInMillis()
-                * Constants.MILLISECONDS * 60;
+        final long z = (new GregorianCalendar().getTimeInMillis() - queue
+                .getCreationTime().getTimeInMillis())
+                / (Constants.MILLISECONDS * 60);
         // File average.
         final long y = queue.getByteSize() / queue.getRequestsSize();
         // Quantity of files to read.
@@ -169,9 +192,10 @@ public final class AndresSelector extends Selector {
 
         final double first = Math.pow(z, 2);
 
-        final double secondA = y / Math.pow(a, 2);
+        final double secondA = y / this.limitedTimeSquare;
 
-        final double secondB = Math.sin(pi * x / c - pi) / (pi * x / c - pi);
+        final double angle = this.piPerAverageFile * x - pi;
+        final double secondB = Math.sin(angle) / angle;
 
         final double score = first + secondA * secondB;
 
@@ -227,40 +251,6 @@ public final class AndresSelector extends Selector {
         LOGGER.trace("< checkUser");
     }
 
-    /*
-     * (non-Javadoc)
-     * 
-     * @see
-     * fr.in2p3.cc.storage.treqs.control.selector.Selector#compareQueue(fr.in2p3
-     * .cc.storage.treqs.model.Queue, fr.in2p3.cc.storage.treqs.model.Queue)
-     */
-    @Override
-    protected Queue compareQueue(final Queue bestQueue, final Queue currentQueue)
-            throws TReqSException {
-        LOGGER.trace("> compareQueue");
-
-        assert bestQueue != null : "Current best queue null";
-        assert currentQueue != null : "Current queue null";
-
-        final double bestQueueScore = this.calculateQueueScore(bestQueue);
-        final double currentQueueScore = this.calculateQueueScore(currentQueue);
-
-        Queue newBest = null;
-        if (bestQueueScore < currentQueueScore) {
-            newBest = currentQueue;
-        } else {
-            newBest = bestQueue;
-        }
-
-        LOGGER.debug("Selected queue: {}", newBest.getTape().getName());
-
-        assert newBest != null : "Best queue null";
-
-        LOGGER.trace("< compareQueue");
-
-        return newBest;
-    }
-
     /**
      * Returns a users that has queues in created state.
      * 
@@ -309,13 +299,7 @@ public final class AndresSelector extends Selector {
         assert resource != null : "resource null";
 
         Queue ret = null;
-        String fairShare = Constants.NO;
-        try {
-            fairShare = Configurator.getInstance().getStringValue(
-                    Constants.SECTION_SELECTOR, Constants.FAIR_SHARE);
-        } catch (final KeyNotFoundException e) {
-        }
-        if (fairShare.equalsIgnoreCase(Constants.YES)) {
+        if (this.isFairShare()) {
             final User bestUser = this.selectBestUser(queues, resource);
             if (bestUser == null) {
                 // There is not non-blocked user among the waiting
@@ -362,29 +346,7 @@ public final class AndresSelector extends Selector {
         assert resource != null : "resource null";
         assert user != null : "user null";
 
-        Queue best = null;
-        // First get the list of queues
-        final int length = queues.size();
-        if (length >= 1) {
-            best = queues.get(0);
-            for (int j = 1; j < length; j++) {
-                final Queue queue = queues.get(j);
-                // The queue belong to this user.
-                if (queue.getOwner().equals(user)) {
-                    if (this.checkQueue(resource, queue)) {
-                        if (best != null) {
-                            best = this.compareQueue(best, queue);
-                        } else {
-                            best = queue;
-                        }
-                    } else {
-                        LOGGER.debug(
-                                "Different owner: current queue {} searched {}",
-                                queue.getOwner().getName(), user.getName());
-                    }
-                }
-            }
-        }
+        final Queue best = this.chooseBestQueue(queues, resource, user);
 
         if (best != null) {
             LOGGER.info("Best queue for {} is on tape {}", user.getName(), best
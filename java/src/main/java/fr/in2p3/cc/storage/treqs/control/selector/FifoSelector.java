@@ -66,46 +66,21 @@ public class FifoSelector extends Selector {
      * (non-Javadoc)
      * 
      * @see
-     * fr.in2p3.cc.storage.treqs.control.selector.Selector#compareQueue(fr.in2p3
-     * .cc.storage.treqs.model.Queue, fr.in2p3.cc.storage.treqs.model.Queue)
+     * fr.in2p3.cc.storage.treqs.control.selector.Selector#calculateQueueScore
+     * (fr.in2p3.cc.storage.treqs.model.Queue)
      */
     @Override
-    protected final Queue compareQueue(final Queue bestQueue,
-            final Queue currentQueue) throws TReqSException {
-        LOGGER.trace("> compareQueue");
-
-        assert bestQueue != null : "Current best queue null";
-        assert currentQueue != null : "Current queue null";
-
-        Queue newBest = null;
-        if (bestQueue.getCreationTime().getTimeInMillis() >= currentQueue
-                .getCreationTime().getTimeInMillis()) {
-            // Select the oldest queue.
-            LOGGER.debug("It is better the new one {} than the "
-                    + "selected one {} ({}>={})", new Object[] {
-                    currentQueue.getTape().getName(),
-                    bestQueue.getTape().getName(),
-                    bestQueue.getCreationTime().getTimeInMillis(),
-                    currentQueue.getCreationTime().getTimeInMillis() });
-            newBest = currentQueue;
-        } else if (bestQueue.getCreationTime().getTimeInMillis() < currentQueue
-                .getCreationTime().getTimeInMillis()) {
-            LOGGER.debug("It is better the already selected {} "
-                    + "than the new one {} ({}<{})", new Object[] {
-                    bestQueue.getTape().getName(),
-                    currentQueue.getTape().getName(),
-                    bestQueue.getCreationTime().getTimeInMillis(),
-                    currentQueue.getCreationTime().getTimeInMillis() });
-            newBest = bestQueue;
-        }
-
-        LOGGER.debug("Selected queue: {}", newBest.getTape().getName());
-
-        assert newBest != null : "Best queue null";
-
-        LOGGER.trace("< compareQueue");
-
-        return newBest;
+    protected final double calculateQueueScore(final Queue queue) {
+        LOGGER.trace("> calculateQueueScore");
+
+        assert queue != null : "Current queue null";
+
+        // Select the oldest queue: older the queue, higher the score.
+        final double score = -queue.getCreationTime().getTimeInMillis();
+
+        LOGGER.trace("< calculateQueueScore");
+
+        return score;
     }
 
     /*
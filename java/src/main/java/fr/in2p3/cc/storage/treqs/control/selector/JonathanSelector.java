@@ -45,15 +45,12 @@ import java.util.NoSuchElementException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import fr.in2p3.cc.storage.treqs.Constants;
 import fr.in2p3.cc.storage.treqs.TReqSException;
 import fr.in2p3.cc.storage.treqs.control.controller.QueuesController;
 import fr.in2p3.cc.storage.treqs.model.Queue;
 import fr.in2p3.cc.storage.treqs.model.QueueStatus;
 import fr.in2p3.cc.storage.treqs.model.Resource;
 import fr.in2p3.cc.storage.treqs.model.User;
-import fr.in2p3.cc.storage.treqs.tools.Configurator;
-import fr.in2p3.cc.storage.treqs.tools.KeyNotFoundException;
 
 /**
  * Implementation of the algorithm to choose the best queue.
@@ -180,13 +177,7 @@ public final class JonathanSelector extends FifoSelector {
         assert resource != null : "resource null";
 
         Queue ret = null;
-        String fairShare = Constants.NO;
-        try {
-            fairShare = Configurator.getInstance().getStringValue(
-                    Constants.SECTION_SELECTOR, Constants.FAIR_SHARE);
-        } catch (final KeyNotFoundException e) {
-        }
-        if (fairShare.equalsIgnoreCase(Constants.YES)) {
+        if (this.isFairShare()) {
             final User bestUser = this.selectBestUser(queues, resource);
             if (bestUser == null) {
                 // There is not non-blocked user among the waiting
@@ -233,29 +224,7 @@ public final class JonathanSelector extends FifoSelector {
         assert resource != null : "resource null";
         assert user != null : "user null";
 
-        Queue best = null;
-        // First get the list of queues
-        final int length = queues.size();
-        if (length >= 1) {
-            best = queues.get(0);
-            for (int j = 1; j < length; j++) {
-                final Queue queue = queues.get(j);
-                // The queue belong to this user.
-                if (queue.getOwner().equals(user)) {
-                    if (this.checkQueue(resource, queue)) {
-                        if (best != null) {
-                            best = this.compareQueue(best, queue);
-                        } else {
-                            best = queue;
-                        }
-                    } else {
-                        LOGGER.debug(
-                                "Different owner: current queue {} searched {}",
-                                queue.getOwner().getName(), user.getName());
-                    }
-                }
-            }
-        }
+        final Queue best = this.chooseBestQueue(queues, resource, user);
 
         if (best != null) {
             LOGGER.info("Best queue for {} is on tape {}", user.getName(), best
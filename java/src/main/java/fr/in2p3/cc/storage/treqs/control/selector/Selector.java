@@ -36,21 +36,31 @@
  */
 package fr.in2p3.cc.storage.treqs.control.selector;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import fr.in2p3.cc.storage.treqs.Constants;
 import fr.in2p3.cc.storage.treqs.TReqSException;
 import fr.in2p3.cc.storage.treqs.control.controller.QueuesController;
 import fr.in2p3.cc.storage.treqs.model.Queue;
 import fr.in2p3.cc.storage.treqs.model.QueueStatus;
 import fr.in2p3.cc.storage.treqs.model.Resource;
+import fr.in2p3.cc.storage.treqs.model.User;
+import fr.in2p3.cc.storage.treqs.tools.Configurator;
+import fr.in2p3.cc.storage.treqs.tools.KeyNotFoundException;
 
 /**
  * Template for the algorithm to choose the best user and the best queue.
  * <p>
  * The constructor should be without parameters.
+ * <p>
+ * A selector is kept between the passes of the Activator. The score of each
+ * queue is calculated once per pass, and the best queue is the one with the
+ * highest score, found in a single pass over the queues.
  * 
  * @author Andres Gomez
  * @since 1.5
@@ -61,6 +71,40 @@ public abstract class Selector {
      */
     private static final Logger LOGGER = LoggerFactory
             .getLogger(Selector.class);
+    /**
+     * If the users are taken into account. It is read from the configuration
+     * the first time it is used.
+     */
+    private Boolean fairShare;
+    /**
+     * Scores of the queues calculated in the current pass.
+     */
+    private final Map<Queue, Double> scores;
+
+    /**
+     * Creates the selector.
+     */
+    protected Selector() {
+        LOGGER.trace("> Creating selector");
+
+        this.fairShare = null;
+        this.scores = new HashMap<Queue, Double>();
+
+        LOGGER.trace("< Creating selector");
+    }
+
+    /**
+     * Calculates the score of a queue. The queue with the highest score is the
+     * best one.
+     *
+     * @param queue
+     *            Queue to analyze.
+     * @return Score of the queue.
+     * @throws TReqSException
+     *             Problem in the configurator.
+     */
+    protected abstract double calculateQueueScore(final Queue queue)
+            throws TReqSException;
 
     /**
      * Checks if the queue has to be selected.
@@ -121,21 +165,125 @@ public abstract class Selector {
     }
 
     /**
-     * Compares the two queue to see which one can be selected. Both of them are
-     * eligible.
+     * Chooses the best queue among the eligible ones. The first queue is the
+     * initial best one, and each other eligible queue is scored once.
      * <p>
-     * 
-     * 
-     * @param best
-     *            This is the best queue at the moment.
+     * With the same score, the first queue is kept.
+     *
+     * @param queues
+     *            List of queues.
+     * @param resource
+     *            Type of resource to analyze.
+     * @param user
+     *            Owner of the queues to consider, or null to consider all the
+     *            queues.
+     * @return The best queue, or null if the list is empty.
+     * @throws TReqSException
+     *             If there is a problem while doing the calculation.
+     */
+    protected final Queue chooseBestQueue(final List<Queue> queues,
+            final Resource resource, final User user) throws TReqSException {
+        LOGGER.trace("> chooseBestQueue");
+
+        assert queues != null : "queues null";
+        assert resource != null : "resource null";
+
+        Queue best = null;
+        final int length = queues.size();
+        if (length >= 1) {
+            best = queues.get(0);
+            double bestScore = this.getQueueScore(best);
+            for (int j = 1; j < length; j++) {
+                final Queue queue = queues.get(j);
+                // The queue belong to the user, if there is one.
+                if (((user == null) || queue.getOwner().equals(user))
+                        && this.checkQueue(resource, queue)) {
+                    final double score = this.getQueueScore(queue);
+                    if (score > bestScore) {
+                        best = queue;
+                        bestScore = score;
+                    }
+                }
+            }
+            LOGGER.debug("Selected queue: {}", best.getTape().getName());
+        }
+
+        LOGGER.trace("< chooseBestQueue");
+
+        return best;
+    }
+
+    /**
+     * Forgets the scores calculated in the previous pass. This has to be
+     * called at the beginning of each pass of the Activator, because the
+     * scores change with the time.
+     */
+    public final void clearScores() {
+        LOGGER.trace("> clearScores");
+
+        this.scores.clear();
+
+        LOGGER.trace("< clearScores");
+    }
+
+    /**
+     * Retrieves the score of a queue, calculating it only the first time in
+     * the current pass.
+     *
      * @param queue
-     *            The currently analyzed queue.
-     * @return The new best queue.
+     *            Queue to analyze.
+     * @return Score of the queue.
      * @throws TReqSException
      *             Problem in the configurator.
      */
-    protected abstract Queue compareQueue(final Queue best, final Queue queue)
-            throws TReqSException;
+    private double getQueueScore(final Queue queue) throws TReqSException {
+        LOGGER.trace("> getQueueScore");
+
+        assert queue != null;
+
+        Double score = this.scores.get(queue);
+        if (score == null) {
+            score = this.calculateQueueScore(queue);
+            this.scores.put(queue, score);
+            LOGGER.debug("Score of queue {}: {}", queue.getTape().getName(),
+                    score);
+        }
+
+        LOGGER.trace("< getQueueScore");
+
+        return score;
+    }
+
+    /**
+     * Tests if the selector has to choose a best user before the best queue.
+     * The value is read from the configuration only once.
+     *
+     * @return true if the fair share is activated.
+     * @throws TReqSException
+     *             If there is a problem getting the configuration.
+     */
+    protected final boolean isFairShare() throws TReqSException {
+        LOGGER.trace("> isFairShare");
+
+        if (this.fairShare == null) {
+            String value = Constants.NO;
+            try {
+                value = Configurator.getInstance().getStringValue(
+                        Constants.SECTION_SELECTOR, Constants.FAIR_SHARE);
+            } catch (final KeyNotFoundException e) {
+                LOGGER.debug("No setting for {}.{}, default value will be "
+                        + "used: {}", new Object[] {
+                        Constants.SECTION_SELECTOR, Constants.FAIR_SHARE,
+                        value });
+            }
+            this.fairShare = Boolean.valueOf(value
+                    .equalsIgnoreCase(Constants.YES));
+        }
+
+        LOGGER.trace("< isFairShare");
+
+        return this.fairShare;
+    }
 
     /**
      * Chooses the best queue candidate for activation for a given resource.
@@ -171,18 +319,7 @@ public abstract class Selector {
         assert queues != null : "queues null";
         assert resource != null : "resource null";
 
-        Queue best = null;
-        // First get the list of queues
-        final int length = queues.size();
-        if (length >= 1) {
-            best = queues.get(0);
-            for (int j = 1; j < length; j++) {
-                final Queue queue = queues.get(j);
-                if (this.checkQueue(resource, queue)) {
-                    best = this.compareQueue(best, queue);
-                }
-            }
-        }
+        final Queue best = this.chooseBestQueue(queues, resource, null);
 
         if (best != null) {
             LOGGER.info("Best queue is on tape {}", best.getTape().getName());
@@ -36,6 +36,10 @@
  */
 package fr.in2p3.cc.storage.treqs.control.starter;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.HelpFormatter;
@@ -49,12 +53,16 @@ import fr.in2p3.cc.storage.treqs.Constants;
 import fr.in2p3.cc.storage.treqs.DefaultProperties;
 import fr.in2p3.cc.storage.treqs.TReqSException;
 import fr.in2p3.cc.storage.treqs.control.activator.Activator;
+import fr.in2p3.cc.storage.treqs.control.archiver.Archiver;
 import fr.in2p3.cc.storage.treqs.control.controller.StagersController;
 import fr.in2p3.cc.storage.treqs.control.dispatcher.Dispatcher;
 import fr.in2p3.cc.storage.treqs.control.exception.ExecutionErrorException;
 import fr.in2p3.cc.storage.treqs.control.process.ProcessStatus;
+import fr.in2p3.cc.storage.treqs.model.Queue;
 import fr.in2p3.cc.storage.treqs.persistence.AbstractDAOFactory;
+import fr.in2p3.cc.storage.treqs.persistence.helper.PersistenceHelperUnfinishedRequest;
 import fr.in2p3.cc.storage.treqs.tools.Configurator;
+import fr.in2p3.cc.storage.treqs.tools.KeyNotFoundException;
 import fr.in2p3.cc.storage.treqs.tools.RegisterInformation;
 import fr.in2p3.cc.storage.treqs.tools.Watchdog;
 
@@ -193,6 +201,33 @@ public final class Starter {
         // Nothing.
     }
 
+    /**
+     * Checks if the queues of the previous execution have to be rebuilt at
+     * startup.
+     *
+     * @return true if it is a warm restart.
+     * @throws TReqSException
+     *             If there is a problem retrieving the configuration.
+     */
+    private boolean isWarmRestart() throws TReqSException {
+        LOGGER.trace("> isWarmRestart");
+
+        String value = Constants.NO;
+        try {
+            value = Configurator.getInstance().getStringValue(
+                    Constants.SECTION_DISPATCHER, Constants.WARM_RESTART);
+        } catch (final KeyNotFoundException e) {
+            LOGGER.debug("No setting for {}.{}, default value will be used: "
+                    + "{}", new Object[] { Constants.SECTION_DISPATCHER,
+                    Constants.WARM_RESTART, value });
+        }
+        final boolean warm = value.equalsIgnoreCase(Constants.YES);
+
+        LOGGER.trace("< isWarmRestart");
+
+        return warm;
+    }
+
     /**
      * Prepares the options passed.
      *
@@ -293,6 +328,56 @@ public final class Starter {
         LOGGER.trace("< process");
     }
 
+    /**
+     * Rebuilds the queues of the previous execution from the data source. The
+     * unfinished requests are read before aborting the pending queues and
+     * before changing the requests to created. Then, the requests are
+     * registered again in new queues, with their stored tape and position.
+     * The queues that were activated are resumed, and the other requests are
+     * registered after them, thus they are put in the resumed queues when
+     * their position is after the head. The requests that cannot be recovered
+     * stay in created, and they are processed by the Dispatcher as new ones.
+     *
+     * @throws TReqSException
+     *             If there is a problem recovering the requests.
+     */
+    private void recover() throws TReqSException {
+        LOGGER.trace("> recover");
+
+        final List<PersistenceHelperUnfinishedRequest> requests = AbstractDAOFactory
+                .getDAOFactoryInstance().getReadingDAO()
+                .getUnfinishedRequests();
+
+        int qty = AbstractDAOFactory.getDAOFactoryInstance().getQueueDAO()
+                .abortPendingQueues();
+        LOGGER.info("Aborted queues " + qty);
+        qty = AbstractDAOFactory.getDAOFactoryInstance().getReadingDAO()
+                .updateUnfinishedRequests();
+        LOGGER.warn("Unfinished requests from previous execution " + qty);
+
+        final List<PersistenceHelperUnfinishedRequest> activated = new ArrayList<PersistenceHelperUnfinishedRequest>();
+        final List<PersistenceHelperUnfinishedRequest> others = new ArrayList<PersistenceHelperUnfinishedRequest>();
+        final Iterator<PersistenceHelperUnfinishedRequest> iterator = requests
+                .iterator();
+        while (iterator.hasNext()) {
+            final PersistenceHelperUnfinishedRequest request = iterator.next();
+            if (request.isActivated()) {
+                activated.add(request);
+            } else {
+                others.add(request);
+            }
+        }
+
+        final Iterator<Queue> queues = Dispatcher.getInstance()
+                .recover(activated).iterator();
+        while (queues.hasNext()) {
+            Activator.getInstance().resume(queues.next());
+        }
+        Dispatcher.getInstance().recover(others);
+
+        LOGGER.trace("< recover");
+    }
+
     /**
      * Shows the help of the application.
      */
@@ -320,6 +405,21 @@ public final class Starter {
         LOGGER.trace("< startActivator");
     }
 
+    /**
+     * Starts the archiver.
+     *
+     * @throws TReqSException
+     *             If there is a problem retrieving the instance.
+     */
+    private void startArchiver() throws TReqSException {
+        LOGGER.trace("> startArchiver");
+
+        LOGGER.debug("Starting an Archiver instance");
+        Archiver.getInstance().start();
+
+        LOGGER.trace("< startArchiver");
+    }
+
     /**
      * Starts the Dispatcher.
      *
@@ -358,13 +458,18 @@ public final class Starter {
         // Initializes the watchdog.
         Watchdog.getInstance();
 
-        // Cleans the database.
-        int qty = AbstractDAOFactory.getDAOFactoryInstance().getQueueDAO()
-                .abortPendingQueues();
-        LOGGER.info("Aborted queues " + qty);
-        qty = AbstractDAOFactory.getDAOFactoryInstance().getReadingDAO()
-                .updateUnfinishedRequests();
-        LOGGER.warn("Unfinished requests from previous execution " + qty);
+        // Rebuilds the queues of the previous execution, or cleans the
+        // database.
+        if (this.isWarmRestart()) {
+            this.recover();
+        } else {
+            int qty = AbstractDAOFactory.getDAOFactoryInstance()
+                    .getQueueDAO().abortPendingQueues();
+            LOGGER.info("Aborted queues " + qty);
+            qty = AbstractDAOFactory.getDAOFactoryInstance().getReadingDAO()
+                    .updateUnfinishedRequests();
+            LOGGER.warn("Unfinished requests from previous execution " + qty);
+        }
 
         // Creates the Dispatcher
         Dispatcher.getInstance();
@@ -380,6 +485,8 @@ public final class Starter {
 
             this.startActivator();
 
+            this.startArchiver();
+
             sleep = DefaultProperties.TIME_BETWEEN_CHECK;
             sleep = Configurator.getInstance().getShortValue(
                     Constants.WATCHDOG, Constants.WATCHDOG_INTERVAL,
@@ -422,6 +529,8 @@ public final class Starter {
                 || (Dispatcher.getInstance().getProcessStatus() == ProcessStatus.STARTED)) {
             Dispatcher.getInstance().conclude();
         }
+        // The Archiver is not created if it has not been started.
+        Archiver.concludeInstance();
         StagersController.getInstance().conclude();
 
         LOGGER.trace("< toStop");
@@ -442,6 +551,7 @@ public final class Starter {
         // Waits for the process to finish.
         Activator.getInstance().waitToFinish();
         Dispatcher.getInstance().waitToFinish();
+        Archiver.waitInstanceToFinish();
         StagersController.getInstance().waitToFinish();
 
         LOGGER.trace("< toStopAndWait");
@@ -36,10 +36,26 @@
  */
 package fr.in2p3.cc.storage.treqs.hsm;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import fr.in2p3.cc.storage.treqs.Constants;
+import fr.in2p3.cc.storage.treqs.DefaultProperties;
 import fr.in2p3.cc.storage.treqs.TReqSException;
 import fr.in2p3.cc.storage.treqs.model.File;
 import fr.in2p3.cc.storage.treqs.tools.Configurator;
@@ -53,20 +69,200 @@ import fr.in2p3.cc.storage.treqs.tools.ProblematicConfiguationFileException;
  * two. One using mini C programs that uses the HPSS API. The other one is just
  * for tests, it retrieves random values for the requests. This is useful if the
  * application will used in other environment, because it is flexible.
+ * <p>
+ * The calls to the HSM are supervised: they are executed in a separated thread
+ * and the caller waits for them until a deadline per operation. When the
+ * deadline is reached, the caller receives a HSMTimeoutException and continues
+ * with its work, thus a hung HSM does not block the Dispatcher or the Stagers.
+ * The abandoned call is counted as stuck until it returns, and when there are
+ * too many stuck calls, the new calls are rejected instead of creating more
+ * threads. A file whose abandoned stage has not returned yet is not staged
+ * again until the previous call returns. The implementations that stage
+ * several files at once use the same supervision.
  *
  * @author Andres Gomez
  * @since 1.5
  */
 public abstract class AbstractHSMBridge {
+    /**
+     * Operation executed in the HSM.
+     *
+     * @param <T>
+     *            Type of the result of the operation.
+     * @since 1.5.6
+     */
+    protected interface HSMOperation<T> {
+        /**
+         * Executes the operation.
+         *
+         * @return The result of the operation.
+         * @throws AbstractHSMException
+         *             If there is a problem accessing the HSM.
+         */
+        T execute() throws AbstractHSMException;
+    }
+
+    /**
+     * Call to the HSM executed by the supervision threads. It knows if the
+     * caller has stopped waiting for it, in order to count the stuck calls.
+     *
+     * @param <T>
+     *            Type of the result of the call.
+     * @since 1.5.6
+     */
+    private static final class SupervisedCall<T> implements Callable<T> {
+        /**
+         * Names of the files concerned by the call. It is empty if the call is
+         * not a stage.
+         */
+        private final List<String> keys;
+        /**
+         * Name of the operation.
+         */
+        private final String operation;
+        /**
+         * Operation to execute.
+         */
+        private final HSMOperation<T> task;
+        /**
+         * If the caller has stopped waiting for the call.
+         */
+        private boolean abandoned = false;
+        /**
+         * If the call has returned.
+         */
+        private boolean finished = false;
+
+        /**
+         * Creates the call.
+         *
+         * @param name
+         *            Name of the operation.
+         * @param filenames
+         *            Names of the staged files, or an empty list.
+         * @param hsmOperation
+         *            Operation to execute.
+         */
+        SupervisedCall(final String name, final List<String> filenames,
+                final HSMOperation<T> hsmOperation) {
+            this.operation = name;
+            this.keys = filenames;
+            this.task = hsmOperation;
+        }
+
+        /**
+         * Marks the call as abandoned by the caller, if it has not returned
+         * yet. In this case, it is counted as stuck, and its files cannot be
+         * staged again until it returns.
+         *
+         * @return true if the call was abandoned, false if it has already
+         *         returned.
+         */
+        synchronized boolean abandon() {
+            if (!this.finished && !this.abandoned) {
+                this.abandoned = true;
+                STUCK_CALLS.incrementAndGet();
+                ABANDONED_STAGES.addAll(this.keys);
+            }
+            return this.abandoned;
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see java.util.concurrent.Callable#call()
+         */
+        @Override
+        public T call() throws AbstractHSMException {
+            try {
+                return this.task.execute();
+            } finally {
+                this.finish();
+            }
+        }
+
+        /**
+         * Marks the call as returned. If the caller has abandoned it, it is not
+         * stuck anymore.
+         */
+        private synchronized void finish() {
+            this.finished = true;
+            if (this.abandoned) {
+                ABANDONED_STAGES.removeAll(this.keys);
+                final int stuck = STUCK_CALLS.decrementAndGet();
+                LOGGER.warn("The abandoned HSM operation {} has returned, "
+                        + "{} calls still stuck", this.operation, stuck);
+            }
+        }
+    }
+
+    /**
+     * Names of the files whose stage has been abandoned but is still running
+     * in the HSM.
+     */
+    private static final Set<String> ABANDONED_STAGES = Collections
+            .synchronizedSet(new HashSet<String>());
     /**
      * Logger.
      */
     private static final Logger LOGGER = LoggerFactory
             .getLogger(AbstractHSMBridge.class);
+    /**
+     * Quantity of calls to the HSM that have not returned after their
+     * deadline.
+     */
+    private static final AtomicInteger STUCK_CALLS = new AtomicInteger(0);
+    /**
+     * Threads that execute the calls to the HSM. A thread blocked in a stuck
+     * call is replaced by a new one for the next calls.
+     */
+    private static final ExecutorService SUPERVISED_CALLS = Executors
+            .newCachedThreadPool(new ThreadFactory() {
+                private final AtomicInteger counter = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "HSM-call-"
+                            + this.counter.incrementAndGet());
+                    // A stuck call does not prevent the application to stop.
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /**
+     * Retrieves the quantity of calls to the HSM that have not returned after
+     * their deadline.
+     *
+     * @return Quantity of stuck calls.
+     * @since 1.5.6
+     */
+    public static int getStuckCalls() {
+        LOGGER.trace(">< getStuckCalls");
+
+        return STUCK_CALLS.get();
+    }
+
+    /**
+     * Milliseconds to wait for the initialization of the HSM environment.
+     */
+    private long initTimeout;
     /**
      * The keytab path.
      */
     private String keytabPath;
+    /**
+     * Maximal quantity of stuck calls before rejecting the new ones.
+     */
+    private int maxStuckCalls;
+    /**
+     * Milliseconds to wait for the metadata of a file.
+     */
+    private long propertiesTimeout;
+    /**
+     * Milliseconds to wait for the staging of a file.
+     */
+    private long stageTimeout;
 
     /**
      * Checks the keytab.
@@ -82,20 +278,53 @@ public abstract class AbstractHSMBridge {
         // Tests if the keytab could be acceded from HPSS.
         this.testKeytab();
 
+        this.initTimeouts();
+
         LOGGER.trace("< AbstractHSMBridge creating");
     }
 
     /**
-     * Gets file metadata from the HSM.
+     * Gets file metadata from the HSM. The call is supervised with the
+     * properties timeout.
      *
      * @param name
      *            the name of the file.
      * @return Helper that contains the metadata of the file.
      * @throws AbstractHSMException
-     *             If there is a problem accessing the HSM.
+     *             If there is a problem accessing the HSM, or if the HSM has
+     *             not answered in time.
      */
-    public abstract HSMHelperFileProperties getFileProperties(final String name)
-            throws AbstractHSMException;
+    public final HSMHelperFileProperties getFileProperties(final String name)
+            throws AbstractHSMException {
+        LOGGER.trace("> getFileProperties");
+
+        final HSMHelperFileProperties properties = this.supervise(
+                "getFileProperties",
+                new HSMOperation<HSMHelperFileProperties>() {
+                    @Override
+                    public HSMHelperFileProperties execute()
+                            throws AbstractHSMException {
+                        return AbstractHSMBridge.this.queryFileProperties(name);
+                    }
+                }, this.propertiesTimeout);
+
+        LOGGER.trace("< getFileProperties");
+
+        return properties;
+    }
+
+    /**
+     * Gets the milliseconds to wait for the initialization of the HSM
+     * environment.
+     *
+     * @return Timeout of the initialization.
+     * @since 1.5.6
+     */
+    protected final long getInitTimeout() {
+        LOGGER.trace(">< getInitTimeout");
+
+        return this.initTimeout;
+    }
 
     /**
      * Gets the keytab to authenticate against the HSM.
@@ -130,6 +359,54 @@ public abstract class AbstractHSMBridge {
         LOGGER.trace("< initKeytab");
     }
 
+    /**
+     * Reads the deadlines of the operations and the maximal quantity of stuck
+     * calls. A timeout of zero disables the supervision of the operation.
+     *
+     * @throws ProblematicConfiguationFileException
+     *             If there is a problem retrieving the properties.
+     */
+    private void initTimeouts() throws ProblematicConfiguationFileException {
+        LOGGER.trace("> initTimeouts");
+
+        final Configurator configurator = Configurator.getInstance();
+        this.initTimeout = configurator.getShortValue(
+                Constants.SECTION_HSM_BRIDGE, Constants.HSM_INIT_TIMEOUT,
+                DefaultProperties.HSM_INIT_TIMEOUT)
+                * (long) Constants.MILLISECONDS;
+        this.propertiesTimeout = configurator.getShortValue(
+                Constants.SECTION_HSM_BRIDGE,
+                Constants.HSM_PROPERTIES_TIMEOUT,
+                DefaultProperties.HSM_PROPERTIES_TIMEOUT)
+                * (long) Constants.MILLISECONDS;
+        this.stageTimeout = configurator.getShortValue(
+                Constants.SECTION_HSM_BRIDGE, Constants.HSM_STAGE_TIMEOUT,
+                DefaultProperties.HSM_STAGE_TIMEOUT)
+                * (long) Constants.MILLISECONDS;
+        this.maxStuckCalls = configurator.getByteValue(
+                Constants.SECTION_HSM_BRIDGE, Constants.MAX_STUCK_CALLS,
+                DefaultProperties.MAX_STUCK_CALLS);
+        LOGGER.info("HSM timeouts: init {} ms, properties {} ms, stage {} ms",
+                new Object[] { this.initTimeout, this.propertiesTimeout,
+                        this.stageTimeout });
+
+        LOGGER.trace("< initTimeouts");
+    }
+
+    /**
+     * Queries the HSM for the metadata of a file. This is the operation
+     * supervised by {@link #getFileProperties(String)}.
+     *
+     * @param name
+     *            the name of the file.
+     * @return Helper that contains the metadata of the file.
+     * @throws AbstractHSMException
+     *             If there is a problem accessing the HSM.
+     * @since 1.5.6
+     */
+    protected abstract HSMHelperFileProperties queryFileProperties(
+            final String name) throws AbstractHSMException;
+
     /**
      * Setter for the keytab path.
      *
@@ -146,14 +423,204 @@ public abstract class AbstractHSMBridge {
     }
 
     /**
-     * Stages a given file to HSM's disks.
+     * Stages a given file to HSM's disks. The call is supervised with the stage
+     * timeout. If a previous stage of the same file has been abandoned and it
+     * has not returned yet, the file is not staged again.
+     *
+     * @param file
+     *            File to stage.
+     * @throws AbstractHSMException
+     *             If there is a problem accessing the HSM, or if the HSM has
+     *             not answered in time.
+     */
+    public final void stage(final File file) throws AbstractHSMException {
+        LOGGER.trace("> stage");
+
+        assert file != null;
+
+        this.superviseStage(Collections.singletonList(file),
+                new HSMOperation<Object>() {
+                    @Override
+                    public Object execute() throws AbstractHSMException {
+                        AbstractHSMBridge.this.stageFile(file);
+                        return null;
+                    }
+                });
+
+        LOGGER.trace("< stage");
+    }
+
+    /**
+     * Stages a given file to HSM's disks. This is the operation supervised by
+     * {@link #stage(File)}.
      *
      * @param file
      *            File to stage.
      * @throws AbstractHSMException
      *             If there is a problem accessing the HSM.
+     * @since 1.5.6
+     */
+    protected abstract void stageFile(final File file)
+            throws AbstractHSMException;
+
+    /**
+     * Executes an operation in the HSM and waits for it until the given
+     * timeout. If the operation does not return in time, it continues in its
+     * thread but it is counted as stuck, and the caller receives a
+     * HSMTimeoutException. If there are already too many stuck calls, the
+     * operation is not executed.
+     *
+     * @param <T>
+     *            Type of the result of the operation.
+     * @param operation
+     *            Name of the operation.
+     * @param task
+     *            Operation to execute.
+     * @param millis
+     *            Milliseconds to wait for the operation. Zero to execute the
+     *            operation in the caller thread without supervision.
+     * @return The result of the operation.
+     * @throws AbstractHSMException
+     *             If there is a problem accessing the HSM, or if the HSM has
+     *             not answered in time.
+     * @since 1.5.6
+     */
+    protected final <T> T supervise(final String operation,
+            final HSMOperation<T> task, final long millis)
+            throws AbstractHSMException {
+        LOGGER.trace(">< supervise");
+
+        return this.supervise(operation, Collections.<String> emptyList(),
+                task, millis);
+    }
+
+    /**
+     * Executes an operation in the HSM and waits for it until the given
+     * timeout, keeping the names of the concerned files while the call is
+     * stuck.
+     *
+     * @param <T>
+     *            Type of the result of the operation.
+     * @param operation
+     *            Name of the operation.
+     * @param filenames
+     *            Names of the staged files, or an empty list if the operation
+     *            is not a stage.
+     * @param task
+     *            Operation to execute.
+     * @param millis
+     *            Milliseconds to wait for the operation. Zero to execute the
+     *            operation in the caller thread without supervision.
+     * @return The result of the operation.
+     * @throws AbstractHSMException
+     *             If there is a problem accessing the HSM, or if the HSM has
+     *             not answered in time.
+     */
+    private <T> T supervise(final String operation,
+            final List<String> filenames, final HSMOperation<T> task,
+            final long millis) throws AbstractHSMException {
+        LOGGER.trace("> supervise");
+
+        assert operation != null;
+        assert filenames != null;
+        assert task != null;
+        assert millis >= 0;
+
+        T ret = null;
+        if (millis == 0) {
+            ret = task.execute();
+        } else {
+            final int stuck = STUCK_CALLS.get();
+            if (stuck >= this.maxStuckCalls) {
+                LOGGER.error("{} HSM calls are stuck, {} is not executed",
+                        stuck, operation);
+                throw new HSMTimeoutException(stuck + " HSM calls are stuck, "
+                        + operation + " has not been executed.");
+            }
+            final SupervisedCall<T> call = new SupervisedCall<T>(operation,
+                    filenames, task);
+            final Future<T> future = SUPERVISED_CALLS.submit(call);
+            try {
+                try {
+                    ret = future.get(millis, TimeUnit.MILLISECONDS);
+                } catch (final TimeoutException e) {
+                    if (call.abandon()) {
+                        LOGGER.error("The HSM operation {} has not returned "
+                                + "after {} ms, {} calls stuck", new Object[] {
+                                operation, millis, STUCK_CALLS.get() });
+                        throw new HSMTimeoutException("The HSM operation "
+                                + operation + " has not returned after "
+                                + millis + " ms.");
+                    }
+                    // It has just returned.
+                    ret = future.get();
+                }
+            } catch (final InterruptedException e) {
+                // The caller is being stopped, the call continues alone.
+                call.abandon();
+                Thread.currentThread().interrupt();
+                throw new HSMTimeoutException("Interrupted while waiting for "
+                        + "the HSM operation " + operation + ".");
+            } catch (final ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof AbstractHSMException) {
+                    throw (AbstractHSMException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                // The operations only throw AbstractHSMException.
+                throw new IllegalStateException(cause);
+            }
+        }
+
+        LOGGER.trace("< supervise");
+
+        return ret;
+    }
+
+    /**
+     * Executes a stage in the HSM and waits for it until the stage timeout. If
+     * a previous stage of one of the files has been abandoned and it has not
+     * returned yet, the stage is not executed. While the call is stuck, its
+     * files cannot be staged again.
+     *
+     * @param <T>
+     *            Type of the result of the stage.
+     * @param files
+     *            Files staged by the operation.
+     * @param task
+     *            Stage to execute.
+     * @return The result of the stage.
+     * @throws AbstractHSMException
+     *             If there is a problem accessing the HSM, or if the HSM has
+     *             not answered in time.
+     * @since 1.5.6
      */
-    public abstract void stage(final File file) throws AbstractHSMException;
+    protected final <T> T superviseStage(final List<File> files,
+            final HSMOperation<T> task) throws AbstractHSMException {
+        LOGGER.trace("> superviseStage");
+
+        assert (files != null) && (files.size() > 0);
+        assert task != null;
+
+        final List<String> names = new ArrayList<String>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            final String name = files.get(i).getName();
+            if (ABANDONED_STAGES.contains(name)) {
+                LOGGER.warn("The previous stage of {} is still running", name);
+                throw new HSMTimeoutException("The previous stage of " + name
+                        + " has not returned yet.");
+            }
+            names.add(name);
+        }
+        final T ret = this.supervise("stage", names, task, this.stageTimeout);
+
+        LOGGER.trace("< superviseStage");
+
+        return ret;
+    }
 
     /**
      * Tests the readability of the keytab file.
@@ -54,24 +54,97 @@ import fr.in2p3.cc.storage.treqs.tools.ProblematicConfiguationFileException;
  * After retrieving the value from the Configuration file, it returns the
  * appropriated HSM bridge. If no-one is defined, it will return HPSS bridge as
  * default.
+ * <p>
+ * The bridge is resolved once and kept, thus the configuration and the
+ * reflection are not used each time a file is processed. The bridge is
+ * resolved again when the configuration changes, and the new one replaces the
+ * previous one atomically. When the bridge changes, the metadata cache is
+ * cleared because it was filled by the previous one.
  *
  * @author Andres Gomez
  * @since 1.5
  */
 public final class HSMFactory {
+    /**
+     * Bridge resolved for a given state of the configuration. It is never
+     * modified, it is replaced.
+     *
+     * @since 1.5.6
+     */
+    private static final class ResolvedBridge {
+        /**
+         * The bridge.
+         */
+        private final AbstractHSMBridge bridge;
+        /**
+         * Configuration used to resolve the bridge.
+         */
+        private final Configurator configurator;
+        /**
+         * Quantity of modifications of the configuration when the bridge was
+         * resolved.
+         */
+        private final int modifications;
+
+        /**
+         * Creates the resolved bridge.
+         *
+         * @param hsmBridge
+         *            The bridge.
+         * @param config
+         *            Configuration used to resolve the bridge.
+         * @param configModifications
+         *            Quantity of modifications of the configuration.
+         */
+        ResolvedBridge(final AbstractHSMBridge hsmBridge,
+                final Configurator config, final int configModifications) {
+            this.bridge = hsmBridge;
+            this.configurator = config;
+            this.modifications = configModifications;
+        }
+
+        /**
+         * Tests if the bridge corresponds to the given configuration.
+         *
+         * @param config
+         *            Current configuration.
+         * @return true if the configuration has not changed since the bridge
+         *         was resolved.
+         */
+        boolean isValid(final Configurator config) {
+            return (this.configurator == config)
+                    && (this.modifications == config.getModifications());
+        }
+    }
+
     /**
      * Logger.
      */
     private static final Logger LOGGER = LoggerFactory
             .getLogger(HSMFactory.class);
+    /**
+     * Current resolved bridge.
+     */
+    private static volatile ResolvedBridge resolved = null;
+
+    /**
+     * Forgets the resolved bridge. This is useful when the bridge instance is
+     * destroyed, ONLY for testing purposes.
+     */
+    public static void destroyInstance() {
+        LOGGER.trace("> destroyInstance");
+
+        resolved = null;
+
+        LOGGER.trace("< destroyInstance");
+    }
 
     /**
      * Retrieves the corresponding HSM bridge. This method checks the value of
      * MAIN.HSM_BRIDGE in the configuration file. If no value was specify, it
      * will return HPSS bridge as default.
      * <p>
-     * TODO v1.5.6 The parameters should be dynamic, this permits to reload the
-     * configuration file in hot. Check if the value has changed.
+     * The value is only read when the configuration has changed.
      *
      * @return The configured HSM bridge.
      * @throws ProblematicConfiguationFileException
@@ -83,21 +156,12 @@ public final class HSMFactory {
             throws ProblematicConfiguationFileException, InstantiatorException {
         LOGGER.trace("> getHSMBridge");
 
-        String hsmBridgeClass = DefaultProperties.DEFAULT_HSM_BRIDGE;
-        try {
-            hsmBridgeClass = Configurator.getInstance().getStringValue(
-                    Constants.SECTION_HSM_BRIDGE, Constants.HSM_BRIDGE);
-        } catch (final KeyNotFoundException e) {
-            LOGGER.info("No setting for {}.{}, default value will be used: {}",
-                    new Object[] { Constants.SECTION_HSM_BRIDGE,
-                            Constants.HSM_BRIDGE, hsmBridgeClass });
+        final Configurator configurator = Configurator.getInstance();
+        ResolvedBridge current = resolved;
+        if ((current == null) || !current.isValid(configurator)) {
+            current = resolve(configurator);
         }
-
-        LOGGER.debug("HSM to return: '" + hsmBridgeClass + "'");
-        // TODO v2.0 Keep a copy of an object to invoke it fastly, not to do the
-        // whole process each time.
-        final AbstractHSMBridge bridge = Instantiator
-                .getInstanceClass(hsmBridgeClass);
+        final AbstractHSMBridge bridge = current.bridge;
 
         assert bridge != null;
 
@@ -106,6 +170,57 @@ public final class HSMFactory {
         return bridge;
     }
 
+    /**
+     * Resolves the bridge for the given configuration, and keeps it as the
+     * current one.
+     *
+     * @param configurator
+     *            Current configuration.
+     * @return The resolved bridge.
+     * @throws InstantiatorException
+     *             If there is a problem while instantiating the class.
+     */
+    private static synchronized ResolvedBridge resolve(
+            final Configurator configurator) throws InstantiatorException {
+        LOGGER.trace("> resolve");
+
+        assert configurator != null;
+
+        ResolvedBridge current = resolved;
+        // Other thread could have resolved it.
+        if ((current == null) || !current.isValid(configurator)) {
+            // The modifications are read before the value, thus a concurrent
+            // change will provoke a new resolution.
+            final int modifications = configurator.getModifications();
+            String hsmBridgeClass = DefaultProperties.DEFAULT_HSM_BRIDGE;
+            try {
+                hsmBridgeClass = configurator.getStringValue(
+                        Constants.SECTION_HSM_BRIDGE, Constants.HSM_BRIDGE);
+            } catch (final KeyNotFoundException e) {
+                LOGGER.info("No setting for {}.{}, default value will be "
+                        + "used: {}", new Object[] {
+                        Constants.SECTION_HSM_BRIDGE, Constants.HSM_BRIDGE,
+                        hsmBridgeClass });
+            }
+
+            LOGGER.debug("HSM to return: '" + hsmBridgeClass + "'");
+            final AbstractHSMBridge bridge = Instantiator
+                    .getInstanceClass(hsmBridgeClass);
+            if ((current != null) && (current.bridge != bridge)) {
+                LOGGER.info("HSM bridge changed, clearing the metadata cache");
+                HSMMetadataCache.clear();
+            }
+            current = new ResolvedBridge(bridge, configurator, modifications);
+            resolved = current;
+        }
+
+        assert current != null;
+
+        LOGGER.trace("< resolve");
+
+        return current;
+    }
+
     /**
      * Default constructor hidden.
      */
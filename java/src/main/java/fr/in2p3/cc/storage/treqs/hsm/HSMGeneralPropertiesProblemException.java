@@ -69,4 +69,17 @@ public final class HSMGeneralPropertiesProblemException extends
 
         LOGGER.trace(">< Instance creation");
     }
+
+    /**
+     * Creates the exception with an associated error code.
+     *
+     * @param hsmErrorcode
+     *            Error code.
+     * @since 1.5.6
+     */
+    public HSMGeneralPropertiesProblemException(final int hsmErrorcode) {
+        super(hsmErrorcode);
+
+        LOGGER.trace(">< Instance creation");
+    }
 }
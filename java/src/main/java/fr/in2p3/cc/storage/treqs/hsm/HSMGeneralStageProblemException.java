@@ -69,6 +69,19 @@ public final class HSMGeneralStageProblemException extends
         LOGGER.trace(">< Instance creation");
     }
 
+    /**
+     * Creates the exception with an associated error code.
+     *
+     * @param hsmErrorcode
+     *            Error code.
+     * @since 1.5.6
+     */
+    public HSMGeneralStageProblemException(final int hsmErrorcode) {
+        super(hsmErrorcode);
+
+        LOGGER.trace(">< Instance creation");
+    }
+
     /**
      * Creates the exception with a descriptive message.
      *
@@ -0,0 +1,359 @@
+/*
+ * Copyright      Jonathan Schaeffer 2009-2010,
+ *                  CC-IN2P3, CNRS <jonathan.schaeffer@cc.in2p3.fr>
+ * Contributors   Andres Gomez,
+ *                  CC-IN2P3, CNRS <andres.gomez@cc.in2p3.fr>
+ *
+ * This software is a computer program whose purpose is to schedule, sort
+ * and submit file requests to the hierarchical storage system HPSS.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights, and the successive licensors have only limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+package fr.in2p3.cc.storage.treqs.hsm;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fr.in2p3.cc.storage.treqs.Constants;
+import fr.in2p3.cc.storage.treqs.DefaultProperties;
+import fr.in2p3.cc.storage.treqs.TReqSException;
+import fr.in2p3.cc.storage.treqs.tools.Configurator;
+import fr.in2p3.cc.storage.treqs.tools.ProblematicConfiguationFileException;
+
+/**
+ * Keeps the metadata of the files retrieved from the HSM, independently of the
+ * life of the queues. This cache is in front of the getFileProperties method
+ * of the HSM bridge.
+ * <p>
+ * The quantity of entries is bounded, and the least recently used entries are
+ * evicted when the limit is reached. A valid metadata is kept the same time as
+ * the Max Metadata Age of the FilePositionOnTape. The problems that depend on
+ * the file (not existing, empty or directory) are also kept, but for a shorter
+ * time.
+ * <p>
+ * The entry of a file is removed once it has been staged, because its position
+ * on tape is not used anymore, and all the entries are removed when the HSM
+ * bridge changes.
+ *
+ * @since 1.5.6
+ */
+public final class HSMMetadataCache {
+    /**
+     * Entry of the cache. It contains the properties of the file or the
+     * problem found.
+     */
+    private static final class CacheEntry {
+        /**
+         * Problem of the file, if the entry is negative.
+         */
+        private final AbstractHSMException exception;
+        /**
+         * Time in millis when the entry is not valid anymore.
+         */
+        private final long expiration;
+        /**
+         * Properties of the file, if the entry is positive.
+         */
+        private final HSMHelperFileProperties properties;
+
+        /**
+         * Creates an entry.
+         *
+         * @param fileProperties
+         *            Properties of the file, or null.
+         * @param problem
+         *            Problem of the file, or null.
+         * @param millis
+         *            Time in millis the entry is valid.
+         */
+        CacheEntry(final HSMHelperFileProperties fileProperties,
+                final AbstractHSMException problem, final long millis) {
+            assert (fileProperties == null) != (problem == null);
+            assert millis >= 0;
+
+            this.properties = fileProperties;
+            this.exception = problem;
+            this.expiration = System.currentTimeMillis() + millis;
+        }
+    }
+
+    /**
+     * The singleton instance.
+     */
+    private static HSMMetadataCache instance = null;
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(HSMMetadataCache.class);
+
+    /**
+     * Removes all the entries. The next queries will go to the HSM. If the
+     * cache has not been created, nothing is done.
+     */
+    public static void clear() {
+        LOGGER.trace("> clear");
+
+        final HSMMetadataCache cache = instance;
+        if (cache != null) {
+            synchronized (cache.entries) {
+                cache.entries.clear();
+            }
+        }
+
+        LOGGER.trace("< clear");
+    }
+
+    /**
+     * Destroys the only instance. ONLY for testing purposes.
+     */
+    public static void destroyInstance() {
+        LOGGER.trace("> destroyInstance");
+
+        if (instance != null) {
+            LOGGER.info("Instance destroyed");
+        }
+        instance = null;
+
+        LOGGER.trace("< destroyInstance");
+    }
+
+    /**
+     * Retrieves the singleton instance.
+     *
+     * @return The singleton instance.
+     * @throws ProblematicConfiguationFileException
+     *             If there is a problem retrieving the configuration.
+     */
+    public static synchronized HSMMetadataCache getInstance()
+            throws ProblematicConfiguationFileException {
+        LOGGER.trace("> getInstance");
+
+        if (instance == null) {
+            LOGGER.debug("Creating instance.");
+
+            instance = new HSMMetadataCache();
+        }
+
+        assert instance != null;
+
+        LOGGER.trace("< getInstance");
+
+        return instance;
+    }
+
+    /**
+     * Removes the metadata of a file. The next query will go to the HSM. If the
+     * cache has not been created, nothing is done.
+     *
+     * @param filename
+     *            Name of the file.
+     */
+    public static void invalidate(final String filename) {
+        LOGGER.trace("> invalidate");
+
+        assert (filename != null) && !filename.equals("");
+
+        final HSMMetadataCache cache = instance;
+        if (cache != null) {
+            synchronized (cache.entries) {
+                cache.entries.remove(filename);
+            }
+        }
+
+        LOGGER.trace("< invalidate");
+    }
+
+    /**
+     * Entries of the cache in access order. The key is the filename.
+     */
+    private final Map<String, CacheEntry> entries;
+    /**
+     * Quantity of millis a valid metadata is kept.
+     */
+    private final long millisMetadataAge;
+    /**
+     * Quantity of millis a problem of a file is kept.
+     */
+    private final long millisNegativeAge;
+
+    /**
+     * Creates the cache, retrieving the size and the ages from the
+     * configuration.
+     *
+     * @throws ProblematicConfiguationFileException
+     *             If there is a problem retrieving the configuration.
+     */
+    private HSMMetadataCache() throws ProblematicConfiguationFileException {
+        LOGGER.trace("> Creating instance");
+
+        final int size = Configurator.getInstance().getIntValue(
+                Constants.SECTION_HSM_BRIDGE, Constants.METADATA_CACHE_SIZE,
+                DefaultProperties.METADATA_CACHE_SIZE);
+        assert size >= 0;
+        this.millisMetadataAge = Configurator.getInstance().getShortValue(
+                Constants.SECTION_FILE_POSITION_ON_TAPE,
+                Constants.MAX_METADATA_AGE, DefaultProperties.MAX_METADATA_AGE)
+                * (long) Constants.MILLISECONDS;
+        this.millisNegativeAge = Configurator.getInstance().getShortValue(
+                Constants.SECTION_HSM_BRIDGE,
+                Constants.METADATA_NEGATIVE_AGE,
+                DefaultProperties.METADATA_NEGATIVE_AGE)
+                * (long) Constants.MILLISECONDS;
+        LOGGER.info("Metadata cache of {} entries", size);
+
+        this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    final Entry<String, CacheEntry> eldest) {
+                return this.size() > size;
+            }
+        };
+
+        LOGGER.trace("< Creating instance");
+    }
+
+    /**
+     * Retrieves the properties of a file. If they are in the cache and still
+     * valid, the HSM is not queried.
+     *
+     * @param filename
+     *            Name of the file.
+     * @return The properties of the file.
+     * @throws TReqSException
+     *             If there is a problem retrieving the HSM bridge, or the
+     *             problem of the file in the HSM.
+     */
+    public HSMHelperFileProperties getFileProperties(final String filename)
+            throws TReqSException {
+        LOGGER.trace("> getFileProperties");
+
+        assert (filename != null) && !filename.equals("");
+
+        HSMHelperFileProperties properties = null;
+        CacheEntry entry;
+        synchronized (this.entries) {
+            entry = this.entries.get(filename);
+            if ((entry != null)
+                    && (entry.expiration <= System.currentTimeMillis())) {
+                this.entries.remove(filename);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            // The lock is not held while querying the HSM.
+            try {
+                properties = HSMFactory.getHSMBridge().getFileProperties(
+                        filename);
+                this.put(filename, new CacheEntry(properties, null,
+                        this.millisMetadataAge));
+            } catch (final HSMNotExistingFileException e) {
+                this.putNegative(filename, e);
+                throw e;
+            } catch (final HSMEmptyFileException e) {
+                this.putNegative(filename, e);
+                throw e;
+            } catch (final HSMDirectoryException e) {
+                this.putNegative(filename, e);
+                throw e;
+            }
+        } else if (entry.exception != null) {
+            LOGGER.debug("Problem of file {} taken from cache", filename);
+            throw entry.exception;
+        } else {
+            LOGGER.debug("Metadata of file {} taken from cache", filename);
+            properties = entry.properties;
+        }
+
+        assert properties != null;
+
+        LOGGER.trace("< getFileProperties");
+
+        return properties;
+    }
+
+    /**
+     * Puts an entry in the cache.
+     *
+     * @param filename
+     *            Name of the file.
+     * @param entry
+     *            Entry to keep.
+     */
+    private void put(final String filename, final CacheEntry entry) {
+        LOGGER.trace("> put");
+
+        assert filename != null;
+        assert entry != null;
+
+        synchronized (this.entries) {
+            this.entries.put(filename, entry);
+        }
+
+        LOGGER.trace("< put");
+    }
+
+    /**
+     * Keeps the problem of a file.
+     *
+     * @param filename
+     *            Name of the file.
+     * @param exception
+     *            Problem of the file.
+     */
+    private void putNegative(final String filename,
+            final AbstractHSMException exception) {
+        LOGGER.trace("> putNegative");
+
+        assert exception != null;
+
+        this.put(filename, new CacheEntry(null, exception,
+                this.millisNegativeAge));
+
+        LOGGER.trace("< putNegative");
+    }
+
+    /**
+     * Quantity of entries in the cache.
+     *
+     * @return Quantity of entries.
+     */
+    public int size() {
+        LOGGER.trace(">< size");
+
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+}
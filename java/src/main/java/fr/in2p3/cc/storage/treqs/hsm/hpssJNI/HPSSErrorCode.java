@@ -268,6 +268,44 @@ public enum HPSSErrorCode {
      */
     HPSS_EXDEV((byte) -18);
 
+    /**
+     * Table of the error codes indexed by the opposite of their value. This
+     * permits to retrieve the error of a native return code without iterating
+     * the values.
+     *
+     * @since 1.5.6
+     */
+    private static final HPSSErrorCode[] CODES;
+
+    static {
+        int max = 0;
+        for (final HPSSErrorCode error : values()) {
+            max = Math.max(max, -error.code);
+        }
+        CODES = new HPSSErrorCode[max + 1];
+        for (final HPSSErrorCode error : values()) {
+            CODES[-error.code] = error;
+        }
+    }
+
+    /**
+     * Retrieves the error that corresponds to a code returned by the native
+     * bridge.
+     *
+     * @param errorCode
+     *            Code returned by HPSS.
+     * @return The corresponding error, or null if the code is not an HPSS
+     *         error code, for example a code of the JNI layer.
+     * @since 1.5.6
+     */
+    public static HPSSErrorCode getHPSSErrorCode(final int errorCode) {
+        HPSSErrorCode ret = null;
+        if ((errorCode <= 0) && (-errorCode < CODES.length)) {
+            ret = CODES[-errorCode];
+        }
+        return ret;
+    }
+
     /**
      * Id of the error code.
      */
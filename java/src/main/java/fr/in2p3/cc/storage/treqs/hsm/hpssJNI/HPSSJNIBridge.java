@@ -36,6 +36,8 @@
  */
 package fr.in2p3.cc.storage.treqs.hsm.hpssJNI;
 
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,6 +47,7 @@ import fr.in2p3.cc.storage.treqs.hsm.AbstractHSMBridge;
 import fr.in2p3.cc.storage.treqs.hsm.AbstractHSMException;
 import fr.in2p3.cc.storage.treqs.hsm.HSMDirectoryException;
 import fr.in2p3.cc.storage.treqs.hsm.HSMEmptyFileException;
+import fr.in2p3.cc.storage.treqs.hsm.HSMFactory;
 import fr.in2p3.cc.storage.treqs.hsm.HSMGeneralPropertiesProblemException;
 import fr.in2p3.cc.storage.treqs.hsm.HSMGeneralStageProblemException;
 import fr.in2p3.cc.storage.treqs.hsm.HSMHelperFileProperties;
@@ -91,6 +94,8 @@ public final class HPSSJNIBridge extends AbstractHSMBridge {
             LOGGER.info("Instance destroyed");
         }
         instance = null;
+        // The factory has not to return the destroyed instance.
+        HSMFactory.destroyInstance();
 
         LOGGER.debug("< destroyInstance");
     }
@@ -117,34 +122,6 @@ public final class HPSSJNIBridge extends AbstractHSMBridge {
         return instance;
     }
 
-    /**
-     * Process the exception taking the code and returning it.
-     *
-     * @param e
-     *            Exception to process.
-     * @return Code of the exception.
-     */
-    static int processException(final JNIException e) {
-        LOGGER.trace("> processException");
-
-        assert e != null;
-
-        final String message = e.getCode();
-        System.err.println(message);
-        final int i = message.indexOf(':');
-        int ret = -1;
-        final String codeStr = message.substring(0, i);
-        try {
-            ret = Short.parseShort(codeStr);
-        } catch (final NumberFormatException e1) {
-            ret = -40000;
-        }
-
-        LOGGER.trace("< processException");
-
-        return ret;
-    }
-
     /**
      * The HSM authorization type.
      */
@@ -177,19 +154,25 @@ public final class HPSSJNIBridge extends AbstractHSMBridge {
         LOGGER.debug("Library path: {}",
                 System.getProperty("java.library.path"));
 
-        try {
-            // TODO v2.0 In a parallel thread check if the operation is not
-            // hung.
-            NativeBridge.getInstance().initContext(this.getAuthType(),
-                    this.getKeytabPath(), this.getUser());
-        } catch (final JNIException e) {
-            final int code = HPSSJNIBridge.processException(e);
-            if (code == HPSSErrorCode.HPSS_EPERM.getCode()) {
+        final int code = this.supervise("initContext",
+                new HSMOperation<Integer>() {
+                    @Override
+                    public Integer execute() {
+                        return NativeBridge.getInstance().initContext(
+                                HPSSJNIBridge.this.getAuthType(),
+                                HPSSJNIBridge.this.getKeytabPath(),
+                                HPSSJNIBridge.this.getUser());
+                    }
+                }, this.getInitTimeout());
+        if (code != HPSSErrorCode.HPSS_E_NOERROR.getCode()) {
+            final HPSSErrorCode error = HPSSErrorCode.getHPSSErrorCode(code);
+            LOGGER.debug("jni code {} {}", code, error);
+            if (error == HPSSErrorCode.HPSS_EPERM) {
                 throw new HSMCredentialProblemException(code);
-            } else if (code == HPSSErrorCode.HPSS_EIO.getCode()) {
+            } else if (error == HPSSErrorCode.HPSS_EIO) {
                 throw new HSMUnavailableException(code);
             } else {
-                throw new HSMGeneralInitProblemException(e);
+                throw new HSMGeneralInitProblemException(code);
             }
         }
 
@@ -207,66 +190,6 @@ public final class HPSSJNIBridge extends AbstractHSMBridge {
         return this.authType;
     }
 
-    /*
-     * (non-Javadoc)
-     *
-     * @see
-     * fr.in2p3.cc.storage.treqs.hsm.AbstractHSMBridge#getFileProperties(java
-     * .lang.String)
-     */
-    @Override
-    public HSMHelperFileProperties getFileProperties(final String name)
-            throws AbstractHSMException {
-        LOGGER.trace("> getFileProperties");
-
-        assert name != null;
-
-        HSMHelperFileProperties ret = null;
-        try {
-            // TODO v2.0 In a parallel thread check if the operation is not
-            // hung.
-            long time = System.currentTimeMillis();
-            ret = NativeBridge.getInstance().getFileProperties(name);
-            time = System.currentTimeMillis() - time;
-            LOGGER.debug("native time getProperties: {}", time);
-        } catch (final JNIException e) {
-            final int code = HPSSJNIBridge.processException(e);
-            LOGGER.info("jni code " + code);
-            if (code == HPSSErrorCode.HPSS_ENOENT.getCode()) {
-                throw new HSMNotExistingFileException(code);
-            } else if (code == HPSSErrorCode.HPSS_EISDIR.getCode()) {
-                throw new HSMDirectoryException(code);
-            } else if (code == HPSSErrorCode.HPSS_EACCES.getCode()) {
-                throw new HSMNoAuthenticatedException(code);
-            } else if (code == HPSSErrorCode.HPSS_EIO.getCode()) {
-                throw new HSMUnavailableException(code);
-            } else if (code == -30001) {
-                throw new HSMEmptyFileException(code);
-            } else if ((code >= -30004) && (code <= -30002)) {
-                throw new HSMJNIProblemException(e);
-            } else {
-                throw new HSMGeneralPropertiesProblemException(e);
-            }
-        }
-        // Checks if there was a problem while querying the file to HPSS.
-        if (LOGGER.isDebugEnabled()) {
-            // The ret variable is modified by getFileProperties.
-            if (ret != null) {
-                LOGGER.info("filename '{}' position '{}' storageName '{}' "
-                        + "size '{}'", new Object[] { name, ret.getPosition(),
-                        ret.getTapeName(), ret.getSize() });
-            } else {
-                LOGGER.info("ret object was null");
-            }
-        }
-
-        assert ret != null;
-
-        LOGGER.trace("< getFileProperties");
-
-        return ret;
-    }
-
     /**
      * Returns the user to be used for authentication purposes against HPSS.
      *
@@ -332,36 +255,139 @@ public final class HPSSJNIBridge extends AbstractHSMBridge {
      * (non-Javadoc)
      *
      * @see
-     * fr.in2p3.cc.storage.treqs.hsm.AbstractHSMBridge#stage(fr.in2p3.cc.storage
-     * .treqs.model.File)
+     * fr.in2p3.cc.storage.treqs.hsm.AbstractHSMBridge#queryFileProperties(java
+     * .lang.String)
      */
     @Override
-    public void stage(final File file) throws AbstractHSMException {
-        LOGGER.trace("> stage");
+    protected HSMHelperFileProperties queryFileProperties(final String name)
+            throws AbstractHSMException {
+        LOGGER.trace("> queryFileProperties");
+
+        assert name != null;
+
+        final int[] code = new int[1];
+        long time = System.currentTimeMillis();
+        final HSMHelperFileProperties ret = NativeBridge.getInstance()
+                .getFileProperties(name, code);
+        time = System.currentTimeMillis() - time;
+        LOGGER.debug("native time getProperties: {}", time);
+        if (code[0] != HPSSErrorCode.HPSS_E_NOERROR.getCode()) {
+            final HPSSErrorCode error = HPSSErrorCode.getHPSSErrorCode(code[0]);
+            LOGGER.debug("jni code {} {}", code[0], error);
+            if (error == HPSSErrorCode.HPSS_ENOENT) {
+                throw new HSMNotExistingFileException(code[0]);
+            } else if (error == HPSSErrorCode.HPSS_EISDIR) {
+                throw new HSMDirectoryException(code[0]);
+            } else if (error == HPSSErrorCode.HPSS_EACCES) {
+                throw new HSMNoAuthenticatedException(code[0]);
+            } else if (error == HPSSErrorCode.HPSS_EIO) {
+                throw new HSMUnavailableException(code[0]);
+            } else if (code[0] == -30001) {
+                throw new HSMEmptyFileException(code[0]);
+            } else if ((code[0] >= -30004) && (code[0] <= -30002)) {
+                throw new HSMJNIProblemException(code[0]);
+            } else {
+                throw new HSMGeneralPropertiesProblemException(code[0]);
+            }
+        }
+        // Checks if there was a problem while querying the file to HPSS.
+        if (LOGGER.isDebugEnabled()) {
+            // The ret variable is modified by getFileProperties.
+            if (ret != null) {
+                LOGGER.info("filename '{}' position '{}' storageName '{}' "
+                        + "size '{}'", new Object[] { name, ret.getPosition(),
+                        ret.getTapeName(), ret.getSize() });
+            } else {
+                LOGGER.info("ret object was null");
+            }
+        }
+
+        assert ret != null;
+
+        LOGGER.trace("< queryFileProperties");
+
+        return ret;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * fr.in2p3.cc.storage.treqs.hsm.AbstractHSMBridge#stageFile(fr.in2p3.cc
+     * .storage.treqs.model.File)
+     */
+    @Override
+    protected void stageFile(final File file) throws AbstractHSMException {
+        LOGGER.trace("> stageFile");
 
         assert file != null;
 
-        try {
-            // TODO v2.0 In a parallel thread check if the operation is not
-            // hung.
-            long time = System.currentTimeMillis();
-            NativeBridge.getInstance().stage(file.getName(), file.getSize());
-            time = System.currentTimeMillis() - time;
-            LOGGER.debug("native time stage: {}", time);
-        } catch (final JNIException e) {
-            final int code = HPSSJNIBridge.processException(e);
-            LOGGER.info("jni code " + code);
-            if (code == HPSSErrorCode.HPSS_ENOSPACE.getCode()) {
+        long time = System.currentTimeMillis();
+        final int code = NativeBridge.getInstance().stage(file.getName(),
+                file.getSize());
+        time = System.currentTimeMillis() - time;
+        LOGGER.debug("native time stage: {}", time);
+        if (code != HPSSErrorCode.HPSS_E_NOERROR.getCode()) {
+            final HPSSErrorCode error = HPSSErrorCode.getHPSSErrorCode(code);
+            LOGGER.debug("jni code {} {}", code, error);
+            if (error == HPSSErrorCode.HPSS_ENOSPACE) {
                 throw new HSMResourceException(code);
-            } else if (code == HPSSErrorCode.HPSS_ENOENT.getCode()) {
+            } else if (error == HPSSErrorCode.HPSS_ENOENT) {
                 throw new HSMNoAuthenticatedException(code);
-            } else if (code == HPSSErrorCode.HPSS_EIO.getCode()) {
+            } else if (error == HPSSErrorCode.HPSS_EIO) {
                 throw new HSMUnavailableException(code);
             } else {
-                throw new HSMGeneralStageProblemException(e);
+                throw new HSMGeneralStageProblemException(code);
             }
         }
 
+        LOGGER.trace("< stageFile");
+    }
+
+    /**
+     * Stages several files of the same tape with only one call to the native
+     * bridge. Contrary to {@link #stage(File)}, a problem with a file does not
+     * throw an exception, but it is returned as the code of this file. The call
+     * is supervised with the stage timeout, like the stage of one file.
+     *
+     * @param files
+     *            Files to stage, ordered by position in the tape.
+     * @return The HPSS code of each file, in the same order as the given
+     *         files. {@link HPSSErrorCode#HPSS_E_NOERROR} means that the file
+     *         has been staged.
+     * @throws AbstractHSMException
+     *             If the HSM has not answered in time, or if a previous stage
+     *             of one of the files has not returned yet.
+     * @since 1.5.6
+     */
+    public int[] stage(final List<File> files) throws AbstractHSMException {
+        LOGGER.trace("> stage");
+
+        assert (files != null) && (files.size() > 0);
+
+        final String[] names = new String[files.size()];
+        final long[] sizes = new long[files.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = files.get(i).getName();
+            sizes[i] = files.get(i).getSize();
+        }
+
+        long time = System.currentTimeMillis();
+        final int[] codes = this.superviseStage(files,
+                new HSMOperation<int[]>() {
+                    @Override
+                    public int[] execute() {
+                        return NativeBridge.getInstance().stageFiles(names,
+                                sizes);
+                    }
+                });
+        time = System.currentTimeMillis() - time;
+        LOGGER.debug("native time stage of {} files: {}", names.length, time);
+
+        assert codes.length == names.length;
+
         LOGGER.trace("< stage");
+
+        return codes;
     }
 }
@@ -60,13 +60,13 @@ final class HSMGeneralInitProblemException extends AbstractHSMInitException {
     private static final long serialVersionUID = -8873255407093192764L;
 
     /**
-     * Creates the exception wrapping another exception.
+     * Creates the exception with an associated error code.
      *
-     * @param exception
-     *            Wrapped exception
+     * @param hsmErrorcode
+     *            Error code.
      */
-    HSMGeneralInitProblemException(final JNIException exception) {
-        super(exception);
+    HSMGeneralInitProblemException(final int hsmErrorcode) {
+        super(hsmErrorcode);
 
         LOGGER.trace(">< Instance creation");
     }
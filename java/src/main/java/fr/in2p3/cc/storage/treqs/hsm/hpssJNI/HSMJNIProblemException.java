@@ -60,13 +60,13 @@ final class HSMJNIProblemException extends AbstractHSMException {
     private static final long serialVersionUID = -6872347249488992879L;
 
     /**
-     * Creates the exception wrapping another exception.
+     * Creates the exception with an associated error code.
      *
-     * @param exception
-     *            Wrapped exception
+     * @param hsmErrorcode
+     *            Error code.
      */
-    HSMJNIProblemException(final JNIException exception) {
-        super(exception);
+    HSMJNIProblemException(final int hsmErrorcode) {
+        super(hsmErrorcode);
 
         LOGGER.trace(">< Instance creation");
     }
@@ -112,22 +112,24 @@ public final class NativeBridge {
      *
      * @param filename
      *            Name of the file to query.
-     * @return Object that will contain the properties of the file.
-     * @throws JNIException
-     *             If there is a problem retrieving the information.
-     *             <p>
-     *             If the error code of the exception is
-     *             <ul>
-     *             <li>-30001: The file is empty.</li>
-     *             <li>-30002: JNI problem while converting the tape name.</li>
-     *             <li>-30003: JNI problem while looking for the helper class,
-     *             it was not found.</li>
-     *             <li>-30004: JNI problem while looking for the helper
-     *             constructor.</li>
-     *             </ul>
+     * @param code
+     *            Holder of one element where the HPSS code of the operation is
+     *            put. 0 means that the properties have been retrieved.
+     *            <p>
+     *            Besides the HPSS codes, the code could be
+     *            <ul>
+     *            <li>-30001: The file is empty.</li>
+     *            <li>-30002: JNI problem while converting the tape name.</li>
+     *            <li>-30003: JNI problem while looking for the helper class,
+     *            it was not found.</li>
+     *            <li>-30004: JNI problem while looking for the helper
+     *            constructor.</li>
+     *            </ul>
+     * @return Object that will contain the properties of the file, or null if
+     *         there was a problem retrieving the information.
      */
-    native HSMHelperFileProperties getFileProperties(final String filename)
-            throws JNIException;
+    native HSMHelperFileProperties getFileProperties(final String filename,
+            final int[] code);
 
     /**
      * Initializes credentials.
@@ -138,11 +140,11 @@ public final class NativeBridge {
      *            Complete path where the keytab could be found.
      * @param user
      *            User to be used in the HPSS login.
-     * @throws JNIException
-     *             If there is a problem initializing the environment.
+     * @return The HPSS code of the initialization. 0 means that the
+     *         environment has been initialized.
      */
-    native void initContext(final String authType, final String keyTab,
-            final String user) throws JNIException;
+    native int initContext(final String authType, final String keyTab,
+            final String user);
 
     /**
      * Stages the file with HPSS.
@@ -151,8 +153,22 @@ public final class NativeBridge {
      *            Name of the file to stage.
      * @param size
      *            Size of the file.
-     * @throws JNIException
-     *             If there is a problem while staging the file.
+     * @return The HPSS code of the staging. 0 means that the file has been
+     *         staged.
      */
-    native void stage(final String name, final long size) throws JNIException;
+    native int stage(final String name, final long size);
+
+    /**
+     * Stages several files of the same tape in one call. The files are staged
+     * in the given order, and a problem with one file does not stop the
+     * staging of the others.
+     *
+     * @param names
+     *            Names of the files to stage, ordered by position in the tape.
+     * @param sizes
+     *            Sizes of the files, in the same order as the names.
+     * @return The HPSS code of each file, in the same order as the names. 0
+     *         means that the file has been staged.
+     */
+    native int[] stageFiles(final String[] names, final long[] sizes);
 }
@@ -57,6 +57,57 @@ public final class MediaType {
      */
     private static final Logger LOGGER = LoggerFactory
             .getLogger(MediaType.class);
+    /**
+     * Characters that have a special meaning in a regular expression.
+     */
+    private static final String META_CHARACTERS = "\\^$.|?*+()[]{}";
+    /**
+     * Characters that change the cardinality of the preceding character.
+     */
+    private static final String QUANTIFIERS = "?*+{";
+
+    /**
+     * Retrieves the literal characters at the beginning of a regular
+     * expression. These characters are part of any string that matches the
+     * expression, for example "IT" for "IT.{4}". The prefix is empty when the
+     * expression does not start with a literal, or when it contains an
+     * alternation.
+     * 
+     * @param regex
+     *            Regular expression to analyze.
+     * @return Literal prefix of the expression, or an empty string.
+     */
+    private static String extractLiteralPrefix(final String regex) {
+        LOGGER.trace("> extractLiteralPrefix");
+
+        assert regex != null;
+
+        String ret = "";
+        if (regex.indexOf('|') == -1) {
+            int start = 0;
+            if (regex.startsWith("^")) {
+                start = 1;
+            }
+            int end = start;
+            while ((end < regex.length())
+                    && (META_CHARACTERS.indexOf(regex.charAt(end)) == -1)) {
+                end++;
+            }
+            // The last literal could be optional or repeated.
+            if ((end > start) && (end < regex.length())
+                    && (QUANTIFIERS.indexOf(regex.charAt(end)) != -1)) {
+                end--;
+            }
+            ret = regex.substring(start, end);
+        }
+
+        assert ret != null;
+
+        LOGGER.trace("< extractLiteralPrefix");
+
+        return ret;
+    }
+
     /**
      * Id of the media type.
      */
@@ -65,6 +116,15 @@ public final class MediaType {
      * Name of the media type.
      */
     private final String name;
+    /**
+     * Literal characters that start every tape name of this media type.
+     */
+    private final String literalPrefix;
+    /**
+     * Compiled regular expression, in order to not compile it each time a
+     * tape is analyzed.
+     */
+    private final Pattern pattern;
     /**
      * Identification that determines if a tape belongs to a media type.
      */
@@ -93,6 +153,8 @@ public final class MediaType {
         this.id = mediaId;
         this.name = mediaName;
         this.regExp = regex;
+        this.pattern = Pattern.compile(regex);
+        this.literalPrefix = extractLiteralPrefix(regex);
 
         LOGGER.trace("< Creating media type");
     }
@@ -111,7 +173,7 @@ public final class MediaType {
 
         assert (id != null) && (!id.equals(""));
 
-        boolean ret = Pattern.matches(this.regExp, id);
+        boolean ret = this.pattern.matcher(id).matches();
 
         LOGGER.trace("< belongs");
 
@@ -153,6 +215,20 @@ public final class MediaType {
         return this.id;
     }
 
+    /**
+     * Getter of the literal prefix. Every tape name that belongs to this media
+     * type starts with this prefix. It is empty if the regular expression does
+     * not start with literal characters.
+     * 
+     * @return Retrieves the literal prefix of the regular expression.
+     * @since 1.5.6
+     */
+    public String getLiteralPrefix() {
+        LOGGER.trace(">< getLiteralPrefix");
+
+        return this.literalPrefix;
+    }
+
     /**
      * Getter of the name.
      * 
@@ -38,8 +38,6 @@ package fr.in2p3.cc.storage.treqs.model;
 
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -53,6 +51,7 @@ import org.slf4j.LoggerFactory;
 import fr.in2p3.cc.storage.treqs.Constants;
 import fr.in2p3.cc.storage.treqs.DefaultProperties;
 import fr.in2p3.cc.storage.treqs.TReqSException;
+import fr.in2p3.cc.storage.treqs.control.activator.Activator;
 import fr.in2p3.cc.storage.treqs.control.controller.FilePositionOnTapesController;
 import fr.in2p3.cc.storage.treqs.control.controller.FilesController;
 import fr.in2p3.cc.storage.treqs.control.controller.QueuesController;
@@ -149,8 +148,8 @@ import fr.in2p3.cc.storage.treqs.tools.Configurator;
  * <li><b>To an <i>activated</i> queue</b>, if the file is located after the
  * current head's position. If the file is currently located before the head's
  * position, another queue in <i>created</i> state for the same tape will be
- * created (if necessary). Then, it is responsibility of the Dispatcher to
- * select immediately that new queue after the current activated one.</li>
+ * created (if necessary). This new queue is marked as successor, and the
+ * Activator activates it as soon as the current activated one ends.</li>
  * <li><b>To a ended queue</b>. A file cannot be added once the queue is done.</li>
  * </ul>
  * <p>
@@ -278,14 +277,20 @@ public final class Queue implements Comparable<Queue> {
      * Maximal retries of suspensions permitted of the queue.
      */
     private final byte maxSuspendRetries;
+    /**
+     * Position from where the next reading to stage is searched. There is not
+     * any reading in SUBMITTED state before this position, thus the readings
+     * already handed to the stagers are not walked again.
+     */
+    private int nextPosition;
     /**
      * Number of requests successfully staged.
      */
-    private byte numberDone;
+    private int numberDone;
     /**
      * Number of requests failed.
      */
-    private byte numberFailed;
+    private int numberFailed;
     /**
      * Number of suspensions.
      */
@@ -295,13 +300,29 @@ public final class Queue implements Comparable<Queue> {
      */
     private User owner;
     /**
-     * List of files to read &lt;position, Reading of file&gt;.
+     * Quantity of files per user in this queue.
+     */
+    private final Map<User, Integer> ownersScores;
+    /**
+     * List of files to read &lt;position, Readings of files&gt;. HPSS
+     * aggregates the small files, and the files of an aggregate have the same
+     * position in the tape, thus there could be several readings per position.
+     */
+    private final TreeMap<Integer, List<Reading>> readingList;
+    /**
+     * Quantity of readings in the queue.
      */
-    private final TreeMap<Integer, Reading> readingList;
+    private int requestsSize;
     /**
      * Status of this queue.
      */
     private QueueStatus status;
+    /**
+     * If this queue has been created while another queue for the same tape
+     * was activated. In this case, this queue is activated as soon as the
+     * other one ends, because the tape is still mounted.
+     */
+    private boolean successor;
     /**
      * Duration in seconds of a suspension.
      */
@@ -342,16 +363,20 @@ public final class Queue implements Comparable<Queue> {
         assert retries >= 0;
 
         this.byteSize = 0;
-        this.readingList = new TreeMap<Integer, Reading>();
+        this.readingList = new TreeMap<Integer, List<Reading>>();
+        this.requestsSize = 0;
         this.numberDone = 0;
         this.numberFailed = 0;
         this.numberSuspensions = 0;
         this.tape = fpot.getTape();
         this.headPosition = 0;
+        this.nextPosition = 0;
         // Then, it will be calculated.
         this.owner = null;
+        this.ownersScores = new HashMap<User, Integer>();
 
         this.status = QueueStatus.CREATED;
+        this.successor = false;
         this.setCreationTime(new GregorianCalendar());
         this.endTime = null;
         this.activationTime = null;
@@ -411,55 +436,34 @@ public final class Queue implements Comparable<Queue> {
     }
 
     /**
-     * Computes the owner of the queue. The owner of a tape is the user with
-     * more files in this queue. This selects the first users with more files in
-     * the queue, or the user that owns more than 50% of the files.
+     * Computes the owner of the queue after a new file has been registered.
+     * The owner of a tape is the user with more files in this queue. If
+     * several users have the same quantity of files, the owner is the last one
+     * in alphabetical order.
+     * <p>
+     * The quantity of files per user is kept in the queue, and only the score
+     * of the requester changes, so the owner is the previous one or the
+     * requester.
      * <p>
      * In this case, user is the requester.
+     *
+     * @param requester
+     *            User that requested the new file.
      */
-    private void calculateOwner() {
+    private void calculateOwner(final User requester) {
         LOGGER.trace("> calculateOwner");
 
-        final Map<User, Integer> ownersScores = this.calculateOwnersScores();
-
-        final ArrayList<User> list = new ArrayList<User>();
-        list.addAll(ownersScores.keySet());
-
-        Collections.sort(list, new Comparator<User>() {
-            /**
-             * Compares two queues
-             *
-             * @param o1
-             *            First queue.
-             * @param o2
-             *            Second queue.
-             * @return the difference between them, or 0 if they are the same.
-             */
-            @Override
-            public int compare(final User o1, final User o2) {
-                return o1.getName().compareTo(o2.getName());
-            }
-        });
-
-        int max = 0;
-        boolean found = false;
-        User bestUser = null;
-        // Takes the user with more files, and assigns it as queue's owner.
-        final Iterator<User> iterator = list.iterator();
-        while (iterator.hasNext() && !found) {
-            final User user = iterator.next();
-            final Integer score = ownersScores.get(user);
-            if (score >= max) {
-                max = score;
-                bestUser = user;
-                // One user has more than 50%+1 files of the queue.
-                if (max > this.readingList.size() / 2) {
-                    // We are sure to have the major owner of the queue
-                    found = true;
-                }
-            }
+        assert requester != null;
+
+        final int score = this.increaseScore(requester, 1);
+
+        User bestUser = this.owner;
+        if ((bestUser == null)
+                || this.isBetterOwner(requester, score, bestUser,
+                        this.ownersScores.get(bestUser))) {
+            bestUser = requester;
         }
-        this.owner = bestUser;
+        this.changeOwner(bestUser);
 
         assert this.owner != null;
 
@@ -467,34 +471,25 @@ public final class Queue implements Comparable<Queue> {
     }
 
     /**
-     * Calculates the score for all users that have registered files in the
-     * queue.
+     * Establishes a new owner, updating the indexes of the controller if the
+     * owner has changed.
      *
-     * @return Map containing the users and its score.
+     * @param bestUser
+     *            New owner of the queue.
      */
-    private Map<User, Integer> calculateOwnersScores() {
-        LOGGER.trace("> calculateOwnersScores");
-
-        final Map<User, Integer> ownersScores = new HashMap<User, Integer>();
-
-        // Calculates the quantity of files per owner.
-        final Iterator<Integer> iterator = this.readingList.keySet().iterator();
-        while (iterator.hasNext()) {
-            final User user = this.readingList.get(iterator.next())
-                    .getMetaData().getRequester();
-            final Integer score = ownersScores.get(user);
-            if (score != null) {
-                ownersScores.put(user, score + 1);
-            } else {
-                ownersScores.put(user, 1);
+    private void changeOwner(final User bestUser) {
+        LOGGER.trace("> changeOwner");
+
+        // The status cannot change while the owner is being changed.
+        synchronized (QueuesController.getIndexLock()) {
+            final User previousOwner = this.owner;
+            this.owner = bestUser;
+            if ((bestUser != null) && !bestUser.equals(previousOwner)) {
+                QueuesController.reindex(this, this.status, previousOwner);
             }
         }
 
-        assert ownersScores != null;
-
-        LOGGER.trace("< calculateOwnersScores");
-
-        return ownersScores;
+        LOGGER.trace("< changeOwner");
     }
 
     /**
@@ -510,6 +505,8 @@ public final class Queue implements Comparable<Queue> {
 
         this.setStatus(QueueStatus.ACTIVATED);
         this.setActivationTime(new GregorianCalendar());
+        // Once activated, it does not follow any other queue.
+        this.successor = false;
 
         LOGGER.trace("< changeToActivated");
     }
@@ -552,6 +549,68 @@ public final class Queue implements Comparable<Queue> {
         LOGGER.trace("< changeToSuspended");
     }
 
+    /**
+     * Cancels a temporarily suspended queue that has reached the maximal
+     * quantity of suspensions. The readings that have not been staged are
+     * marked as failed, and the queue is ended.
+     *
+     * @throws TReqSException
+     *             If there is a problem changing the states or registering them
+     *             in the data source.
+     */
+    public void cancel() throws TReqSException {
+        LOGGER.trace("> cancel");
+
+        assert this.getStatus() == QueueStatus.TEMPORARILY_SUSPENDED : this
+                .getStatus();
+
+        final List<Reading> pending = new ArrayList<Reading>();
+        synchronized (this.readingList) {
+            final Iterator<List<Reading>> positions = this.readingList
+                    .values().iterator();
+            while (positions.hasNext()) {
+                final Iterator<Reading> readings = positions.next().iterator();
+                while (readings.hasNext()) {
+                    final Reading reading = readings.next();
+                    if (reading.getRequestStatus() == RequestStatus.SUBMITTED) {
+                        pending.add(reading);
+                    }
+                }
+            }
+        }
+        // The readings are registered in the data source out of the lock.
+        final Iterator<Reading> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            iterator.next().cancel(
+                    "The queue has been suspended too many times.");
+        }
+
+        // A suspended queue cannot be ended by the normal transitions, only
+        // when it is canceled.
+        synchronized (this) {
+            synchronized (QueuesController.getIndexLock()) {
+                this.status = QueueStatus.ENDED;
+                QueuesController.reindex(this,
+                        QueueStatus.TEMPORARILY_SUSPENDED, this.owner);
+            }
+        }
+        this.suspensionTime = null;
+        this.setEndTime(new GregorianCalendar());
+
+        LOGGER.warn("Queue {} canceled ({}) after {} suspensions",
+                new Object[] { this.getTape().getName(), this.getId(),
+                        this.numberSuspensions });
+        AbstractDAOFactory
+                .getDAOFactoryInstance()
+                .getQueueDAO()
+                .updateState(this, this.getEndTime(), this.numberDone,
+                        this.numberFailed);
+
+        this.cleanReferences();
+
+        LOGGER.trace("< cancel");
+    }
+
     /**
      * Removes of the references from the queue, in order to help the Garbage
      * collector and it helps to only hold in memory the currently used objects.
@@ -562,26 +621,24 @@ public final class Queue implements Comparable<Queue> {
     private void cleanReferences() throws TReqSException {
         LOGGER.trace("> cleanReferences");
 
-        final List<Integer> positions = new ArrayList<Integer>();
         synchronized (this.readingList) {
-            @SuppressWarnings("rawtypes")
-            final Iterator keys = this.readingList.keySet().iterator();
-            while (keys.hasNext()) {
-                final int position = (Integer) keys.next();
-                positions.add(position);
-                final Reading reading = this.readingList.get(position);
-                final String filename = reading.getMetaData().getFile()
-                        .getName();
-
-                // Removes the file position on tape.
-                FilePositionOnTapesController.getInstance().remove(filename);
-                // Removes the file from the controller.
-                FilesController.getInstance().remove(filename);
+            final Iterator<List<Reading>> positions = this.readingList
+                    .values().iterator();
+            while (positions.hasNext()) {
+                final Iterator<Reading> readings = positions.next().iterator();
+                while (readings.hasNext()) {
+                    final String filename = readings.next().getMetaData()
+                            .getFile().getName();
+
+                    // Removes the file position on tape.
+                    FilePositionOnTapesController.getInstance().remove(
+                            filename);
+                    // Removes the file from the controller.
+                    FilesController.getInstance().remove(filename);
+                }
             }
             // Removes the objects of the list.
-            for (int i = 0; i < positions.size(); i++) {
-                this.readingList.remove(positions.get(i));
-            }
+            this.readingList.clear();
         }
         final String tapename = this.getTape().getName();
         // Removes the tape if there are not any Queue in created state for this
@@ -627,54 +684,8 @@ public final class Queue implements Comparable<Queue> {
     }
 
     /**
-     * Counts the processed fpots making difference between done and failed.
-     * Updates numberDone and numberFailed.
-     */
-    private void countRequests() {
-        LOGGER.trace("> countRequests");
-
-        byte nbFailed = 0;
-        byte nbDone = 0;
-        final Iterator<Integer> iterator = this.readingList.keySet().iterator();
-        while (iterator.hasNext()) {
-            switch (this.readingList.get(iterator.next()).getRequestStatus()) {
-            case FAILED:
-                nbFailed++;
-                break;
-            case STAGED:
-                nbDone++;
-                break;
-            case QUEUED:
-                // The file is being staged.
-                break;
-            case SUBMITTED:
-                // The file is waiting for being staged.
-                break;
-            case ON_DISK:
-                LOGGER.warn("THIS CASE EXISTS, DELETE THIS LOG FROM CODE 1.");
-                nbDone++;
-                break;
-            default:
-                // Count requests is called only when a Queue is in ACTIVATED
-                // state and all its files must be in QUEUED state or a
-                // final state.
-                LOGGER.error("Invalid state for a file in an activate"
-                        + "queue {}.", this.getTape().getName());
-                assert false;
-            }
-        }
-        synchronized (this) {
-            this.numberDone = nbDone;
-            this.numberFailed = nbFailed;
-        }
-
-        LOGGER.trace("< countRequests");
-    }
-
-    /**
-     * Sets the queue in a final state if appropriate. It counts the fpots in
-     * different states, and it calculates if all stagers have done their
-     * requests.
+     * Sets the queue in a final state if appropriate. It calculates if all
+     * stagers have done their requests.
      *
      * @throws TReqSException
      *             If the queue is in an invalid state. If the time is invalid.
@@ -683,22 +694,32 @@ public final class Queue implements Comparable<Queue> {
     void finalizeQueue() throws TReqSException {
         LOGGER.trace("> finalizeQueue");
 
-        this.countRequests();
-
-        // Asks for the item in the current position.
-        final Reading currentReading = this.readingList.get(this
-                .getHeadPosition());
-
-        if (currentReading != null) {
-            // Verifies if the current one is also the last one.
-            final Reading last = this.readingList.get(this.readingList
-                    .lastKey());
-            if (last == currentReading) {
-                final RequestStatus fs = currentReading.getRequestStatus();
-                // The last file is in a final state.
-                if ((fs == RequestStatus.STAGED)
-                        || (fs == RequestStatus.FAILED)
-                        || (fs == RequestStatus.ON_DISK)) {
+        // Asks for the items in the current position.
+        boolean exists = false;
+        boolean last = false;
+        boolean ended = true;
+        synchronized (this.readingList) {
+            final List<Reading> current = this.readingList.get(this
+                    .getHeadPosition());
+            exists = current != null;
+            // Verifies if the current position is also the last one.
+            last = exists
+                    && (this.readingList.lastKey() == this.getHeadPosition());
+            if (last) {
+                // All the files of the last position (aggregate) have to be
+                // in a final state.
+                for (int i = 0; (i < current.size()) && ended; i++) {
+                    final RequestStatus fs = current.get(i).getRequestStatus();
+                    ended = (fs == RequestStatus.STAGED)
+                            || (fs == RequestStatus.FAILED)
+                            || (fs == RequestStatus.ON_DISK);
+                }
+            }
+        }
+
+        if (exists) {
+            if (last) {
+                if (ended) {
                     this.changeToEnded();
 
                     LOGGER.info("Queue {} ended ({})",
@@ -710,9 +731,13 @@ public final class Queue implements Comparable<Queue> {
                                     this.numberDone, this.numberFailed);
 
                     this.cleanReferences();
+
+                    // The tape is still mounted, thus the queue that follows
+                    // this one is activated, or the drive is freed.
+                    Activator.activateSuccessor(this.getTape().getName());
                 } else {
-                    // If we get there, the last reading object is not in a
-                    // final state.
+                    // If we get there, a reading object of the last position
+                    // is not in a final state.
                     // There is not next reading object, but it should not be
                     // considered as an error. There are files in QUEUED
                     // state.
@@ -803,6 +828,10 @@ public final class Queue implements Comparable<Queue> {
      * readings have been processed, it will return NULL; that means the queue
      * is still in activated state, but at least one file is being read.
      * <p>
+     * The search starts from a cursor that is never after the first reading in
+     * SUBMITTED state, thus the readings already processed are not walked
+     * again.
+     * <p>
      * This function also updates the HeadPosition.
      *
      * @return a Reading instance, or NULL if there are not Reading to process
@@ -815,42 +844,49 @@ public final class Queue implements Comparable<Queue> {
         LOGGER.trace("> getNextReading");
 
         Reading ret = null;
-        boolean found = false;
-
-        final Iterator<Integer> iterator = this.readingList.keySet().iterator();
-        while (iterator.hasNext() && !found) {
-            final Integer key = iterator.next();
-            final Reading reading = this.readingList.get(key);
-            if (reading.getRequestStatus() == RequestStatus.SUBMITTED) {
-                // This is the file to return
-                if (this.getStatus() == QueueStatus.ACTIVATED) {
-                    // If the queue is activated, change the current head
-                    // position
-                    LOGGER.debug("File: {}, position {}, state {}",
-                            new Object[] {
-                                    reading.getMetaData().getFile().getName(),
-                                    key, reading.getRequestStatus() });
-
-                    this.setHeadPosition(key);
-                    this.countRequests();
-                    AbstractDAOFactory
-                            .getDAOFactoryInstance()
-                            .getQueueDAO()
-                            .updateState(this, this.getActivationTime(),
-                                    this.numberDone, this.numberFailed);
+
+        synchronized (this.readingList) {
+            // The search starts from the cursor, not from the beginning.
+            Integer key = this.readingList.ceilingKey(this.nextPosition);
+            while ((key != null) && (ret == null)) {
+                // The files of an aggregate are returned one after the other.
+                final List<Reading> readings = this.readingList.get(key);
+                for (int i = 0; (i < readings.size()) && (ret == null); i++) {
+                    if (readings.get(i).getRequestStatus() == RequestStatus.SUBMITTED) {
+                        ret = readings.get(i);
+                    }
                 }
-                // else {
-                // The queue is not in activated state, then, it just
-                // returns the next file to read, but it does not change
-                // anything in the queue.
-                // }
-
-                // There is a file to be processed.
-                ret = reading;
-                found = true;
+                if (ret == null) {
+                    key = this.readingList.higherKey(key);
+                }
+            }
+            if (key != null) {
+                // There is a file to be processed. The cursor stays in this
+                // position until all its readings are handed to the HSM.
+                this.nextPosition = key;
+            } else if (!this.readingList.isEmpty()) {
+                this.nextPosition = this.readingList.lastKey() + 1;
             }
         }
 
+        if ((ret != null) && (this.getStatus() == QueueStatus.ACTIVATED)) {
+            // If the queue is activated, change the current head position
+            final int position = ret.getMetaData().getPosition();
+            LOGGER.debug("File: {}, position {}, state {}", new Object[] {
+                    ret.getMetaData().getFile().getName(), position,
+                    ret.getRequestStatus() });
+
+            this.setHeadPosition(position);
+            // Only the counters change; they are written with a delay.
+            AbstractDAOFactory.getDAOFactoryInstance().getQueueDAO()
+                    .updateStatistics(this, this.numberDone, this.numberFailed);
+        }
+        // else {
+        // The queue is not in activated state, then, it just
+        // returns the next file to read, but it does not change
+        // anything in the queue.
+        // }
+
         LOGGER.trace("< getNextReading");
 
         return ret;
@@ -876,7 +912,7 @@ public final class Queue implements Comparable<Queue> {
     public int getRequestsSize() {
         LOGGER.trace(">< getRequestsSize");
 
-        return this.readingList.size();
+        return this.requestsSize;
     }
 
     /**
@@ -906,7 +942,7 @@ public final class Queue implements Comparable<Queue> {
      *
      * @return Time when the queue finish its suspension.
      */
-    private Calendar getSuspensionTime() {
+    public Calendar getSuspensionTime() {
         LOGGER.trace(">< getSuspensionTime");
 
         return this.suspensionTime;
@@ -923,6 +959,38 @@ public final class Queue implements Comparable<Queue> {
         return this.tape;
     }
 
+    /**
+     * Modifies the quantity of files of a user in this queue.
+     *
+     * @param user
+     *            User to modify.
+     * @param delta
+     *            Quantity of files to add (or to remove if negative.)
+     * @return The new quantity of files of the user.
+     */
+    private int increaseScore(final User user, final int delta) {
+        LOGGER.trace("> increaseScore");
+
+        assert user != null;
+
+        final Integer previous = this.ownersScores.get(user);
+        int score = delta;
+        if (previous != null) {
+            score += previous;
+        }
+        if (score > 0) {
+            this.ownersScores.put(user, score);
+        } else {
+            this.ownersScores.remove(user);
+        }
+
+        assert score >= 0;
+
+        LOGGER.trace("< increaseScore");
+
+        return score;
+    }
+
     /**
      * Process a part of the registerFPOT method, where the owner is calculated,
      * the reading is inserted in the list and it is registered in the database.
@@ -938,37 +1006,37 @@ public final class Queue implements Comparable<Queue> {
 
         assert reading != null;
 
-        this.readingList.put(reading.getMetaData().getPosition(), reading);
+        final int position = reading.getMetaData().getPosition();
+        List<Reading> readings = this.readingList.get(position);
+        if (readings == null) {
+            readings = new ArrayList<Reading>(1);
+            this.readingList.put(position, readings);
+        } else {
+            LOGGER.debug("File {} aggregated in position {}", reading
+                    .getMetaData().getFile().getName(), position);
+        }
+        readings.add(reading);
+        this.requestsSize++;
+        this.updateProgress(reading.getMetaData().getPosition(), null,
+                reading.getRequestStatus());
 
         this.byteSize += reading.getMetaData().getFile().getSize();
-        this.calculateOwner();
+        this.calculateOwner(reading.getMetaData().getRequester());
 
         LOGGER.info(
                 "Queue {} - {} now contains {} elements and is owned by {}",
                 new Object[] { this.getTape().getName(),
-                        this.getStatus().name(), this.readingList.size(),
+                        this.getStatus().name(), this.requestsSize,
                         this.getOwner().getName() });
-        // Inserts file in any position, because the queue is in CREATED
-        // state.
-        if (this.getStatus() == QueueStatus.CREATED) {
+        // The file is inserted in any position if the queue is in CREATED
+        // state, after the current head position if the queue is in ACTIVATED
+        // state, or in the queue if it is temporarily suspended. Only the
+        // counters change; they are written with a delay.
+        if ((this.getStatus() == QueueStatus.CREATED)
+                || (this.getStatus() == QueueStatus.ACTIVATED)
+                || (this.getStatus() == QueueStatus.TEMPORARILY_SUSPENDED)) {
             AbstractDAOFactory.getDAOFactoryInstance().getQueueDAO()
-                    .updateAddRequest(this);
-        } else if (this.getStatus() == QueueStatus.ACTIVATED) {
-            // Inserts the file after the current head position, because the
-            // queue is in ACTIVATED state.
-            AbstractDAOFactory
-                    .getDAOFactoryInstance()
-                    .getQueueDAO()
-                    .updateState(this, this.getActivationTime(),
-                            this.numberDone, this.numberFailed);
-        } else if (this.getStatus() == QueueStatus.TEMPORARILY_SUSPENDED) {
-            // Inserts the file in the queue because it is temporarily
-            // suspended.
-            AbstractDAOFactory
-                    .getDAOFactoryInstance()
-                    .getQueueDAO()
-                    .updateState(this, this.getSuspensionTime(),
-                            this.numberDone, this.numberFailed);
+                    .updateStatistics(this, this.numberDone, this.numberFailed);
         } else {
             LOGGER.error("This is not a valid state, error.");
             assert false;
@@ -977,6 +1045,80 @@ public final class Queue implements Comparable<Queue> {
         LOGGER.trace("< insertNotExistingFile");
     }
 
+    /**
+     * Compares two possible owners. The user with more files is better, and
+     * with the same quantity the last one in alphabetical order.
+     *
+     * @param user
+     *            Candidate user.
+     * @param score
+     *            Quantity of files of the candidate.
+     * @param best
+     *            Current best user.
+     * @param bestScore
+     *            Quantity of files of the current best user.
+     * @return true if the candidate is better than the current best user.
+     */
+    private boolean isBetterOwner(final User user, final int score,
+            final User best, final int bestScore) {
+        LOGGER.trace("> isBetterOwner");
+
+        final boolean ret = (score > bestScore)
+                || ((score == bestScore) && (user.getName().compareTo(
+                        best.getName()) >= 0));
+
+        LOGGER.trace("< isBetterOwner");
+
+        return ret;
+    }
+
+    /**
+     * Tells if this queue has to be activated as soon as the activated queue
+     * for the same tape ends.
+     *
+     * @return true if this queue follows an activated queue.
+     */
+    public boolean isSuccessor() {
+        LOGGER.trace(">< isSuccessor");
+
+        return this.successor;
+    }
+
+    /**
+     * Takes into account the new status of a reading of this queue. The
+     * quantity of done and failed files is updated, and the cursor of the next
+     * reading goes back if the reading has been submitted again.
+     *
+     * @param reading
+     *            Reading that has changed its status.
+     * @param previous
+     *            Status of the reading before the change.
+     */
+    void readingStatusChanged(final Reading reading,
+            final RequestStatus previous) {
+        LOGGER.trace("> readingStatusChanged");
+
+        assert reading != null;
+        assert previous != null;
+
+        synchronized (this.readingList) {
+            final int position = reading.getMetaData().getPosition();
+            // Only the readings registered in the queue are counted.
+            final List<Reading> readings = this.readingList.get(position);
+            boolean registered = false;
+            for (int i = 0; (readings != null) && (i < readings.size())
+                    && !registered; i++) {
+                registered = readings.get(i) == reading;
+            }
+            if (registered) {
+                this.updateProgress(position, previous,
+                        reading.getRequestStatus());
+            }
+        }
+
+        LOGGER.trace("< readingStatusChanged");
+    }
+
     /**
      * Validates the given parameters when registering a file.
      *
@@ -1055,22 +1197,23 @@ public final class Queue implements Comparable<Queue> {
         // The insert method ensures that the reading object is inserted
         // in the right place.
 
-        // FIXME v1.5.6 In HPSS version 7 the aggregation return the same position
-        // for different files.
+        // In HPSS version 7 the aggregation returns the same position for
+        // different files, thus the file name is compared.
         boolean exists = false;
         synchronized (this.readingList) {
-            exists = this.readingList.containsKey(fpot.getPosition());
+            final List<Reading> readings = this.readingList.get(fpot
+                    .getPosition());
+            for (int i = 0; (readings != null) && (i < readings.size())
+                    && !exists; i++) {
+                exists = readings.get(i).getMetaData().getFile().getName()
+                        .equals(fpot.getFile().getName());
+            }
             if (!exists) {
                 this.insertNotRegisteredFile(reading);
             } else {
                 // The file is already in the queue.
                 LOGGER.info("Queue {} already has a reading for file {}", this
                         .getTape().getName(), fpot.getFile().getName());
-                if (!this.readingList.get(fpot.getPosition()).getMetaData()
-                        .getFile().getName().equals(fpot.getFile().getName())) {
-                    assert false : "Two different files in the same position";
-                    // FIXME v1.5.6 This will happen when using aggregation.
-                }
             }
         }
 
@@ -1214,7 +1357,9 @@ public final class Queue implements Comparable<Queue> {
         // Verification.
         // TODO v2.0 To change when merge will be available. More tests.
 
-        if (this.numberSuspensions >= this.maxSuspendRetries) {
+        // A queue suspended too many times cannot be processed again.
+        if ((newQueueStatus == QueueStatus.CREATED)
+                && (this.numberSuspensions >= this.maxSuspendRetries)) {
             throw new MaximalSuspensionTriesException();
         }
         // Currently created.
@@ -1228,7 +1373,12 @@ public final class Queue implements Comparable<Queue> {
                 // Currently created but the activated one was temporarily
                 // suspended
                 || ((this.getStatus() == QueueStatus.CREATED) && (newQueueStatus == QueueStatus.ENDED))) {
-            this.status = newQueueStatus;
+            // The owner cannot change while the status is being changed.
+            synchronized (QueuesController.getIndexLock()) {
+                final QueueStatus previousStatus = this.status;
+                this.status = newQueueStatus;
+                QueuesController.reindex(this, previousStatus, this.owner);
+            }
             if (newQueueStatus == QueueStatus.TEMPORARILY_SUSPENDED) {
                 this.numberSuspensions++;
             }
@@ -1243,6 +1393,21 @@ public final class Queue implements Comparable<Queue> {
         LOGGER.trace("< setStatus");
     }
 
+    /**
+     * Establishes if this queue follows the activated queue for the same tape.
+     *
+     * @param follows
+     *            true if the queue has to be activated once the activated one
+     *            ends.
+     */
+    public void setSuccessor(final boolean follows) {
+        LOGGER.trace("> setSuccessor");
+
+        this.successor = follows;
+
+        LOGGER.trace("< setSuccessor");
+    }
+
     /**
      * Setter for suspend duration in seconds. Default is defined in
      * DefaultProperties.DEFAULT_SUSPEND_DURATION. This is controlled by the
@@ -1318,6 +1483,9 @@ public final class Queue implements Comparable<Queue> {
                 .updateState(this, this.getSuspensionTime(), this.numberDone,
                         this.numberFailed);
 
+        // The drive is free for another queue.
+        Activator.wakeUp();
+
         LOGGER.trace("< suspend");
     }
 
@@ -1336,7 +1504,7 @@ public final class Queue implements Comparable<Queue> {
         ret += ", status: " + this.getStatus();
         ret += ", id: " + this.getId();
         ret += ", byte size: " + this.byteSize;
-        ret += ", number of requests: " + this.readingList.size();
+        ret += ", number of requests: " + this.requestsSize;
         ret += ", number of done: " + this.numberDone;
         ret += ", number of failed: " + this.numberFailed;
         ret += ", number of suspended: " + this.numberSuspensions;
@@ -1369,34 +1537,73 @@ public final class Queue implements Comparable<Queue> {
 
     /**
      * Remove the suspended status from the queue. Puts the queue in CREATED
-     * state.
-     * <p>
-     * TODO v2.0 Reactivate the queue from the Activator.
+     * state. The Activator calls it when the suspension time is over.
      *
+     * @throws MaximalSuspensionTriesException
+     *             If the queue has been suspended too many times. The queue
+     *             keeps its state, and it should be canceled.
      * @throws TReqSException
-     *             If the queue has been suspended too many times.
+     *             If there is a problem registering the state.
      */
-    void unsuspend() throws TReqSException {
+    public void unsuspend() throws TReqSException {
         LOGGER.trace("> unsuspend");
 
+        this.setStatus(QueueStatus.CREATED);
         this.suspensionTime = null;
         this.activationTime = null;
-        this.setStatus(QueueStatus.CREATED);
 
         LOGGER.info("Queue {} unsuspended.", this.getTape().getName());
 
-        // This method does not register the change in the database. The last
-        // time in the database is when it was suspended. The new time cannot
-        // be registered as created, because the queue has been created long
-        // time ago. The new time cannot be activated, because the queue is not
-        // active. So it is better to leave the last time, the suspension time.
+        // The creation time is not changed, and there is not any new time to
+        // register. The suspension time is removed in the database.
         AbstractDAOFactory
                 .getDAOFactoryInstance()
                 .getQueueDAO()
-                .updateState(this, this.getActivationTime(), this.numberDone,
-                        this.numberFailed);
+                .updateState(this, null, this.numberDone, this.numberFailed);
 
         LOGGER.trace("< unsuspend");
     }
 
+    /**
+     * Updates the quantity of done and failed files, and the position of the
+     * cursor of the next reading, after a status change of the reading in the
+     * given position. This is done incrementally, without walking the list of
+     * readings.
+     * <p>
+     * The caller has to hold the lock of the reading list.
+     *
+     * @param position
+     *            Position of the reading.
+     * @param previous
+     *            Previous status, or null if the reading has been added.
+     * @param current
+     *            New status, or null if the reading has been removed.
+     */
+    private void updateProgress(final int position,
+            final RequestStatus previous, final RequestStatus current) {
+        LOGGER.trace("> updateProgress");
+
+        assert position >= 0;
+        assert (previous != null) || (current != null);
+
+        if ((previous == RequestStatus.STAGED)
+                || (previous == RequestStatus.ON_DISK)) {
+            this.numberDone--;
+        } else if (previous == RequestStatus.FAILED) {
+            this.numberFailed--;
+        }
+        if ((current == RequestStatus.STAGED)
+                || (current == RequestStatus.ON_DISK)) {
+            this.numberDone++;
+        } else if (current == RequestStatus.FAILED) {
+            this.numberFailed++;
+        } else if ((current == RequestStatus.SUBMITTED)
+                && (position < this.nextPosition)) {
+            // A late file or a resubmitted one is behind the cursor.
+            this.nextPosition = position;
+        }
+
+        LOGGER.trace("< updateProgress");
+    }
+
 }
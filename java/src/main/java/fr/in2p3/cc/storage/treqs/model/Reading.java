@@ -48,7 +48,9 @@ import fr.in2p3.cc.storage.treqs.hsm.AbstractHSMException;
 import fr.in2p3.cc.storage.treqs.hsm.AbstractHSMPropertiesException;
 import fr.in2p3.cc.storage.treqs.hsm.AbstractHSMStageException;
 import fr.in2p3.cc.storage.treqs.hsm.HSMFactory;
+import fr.in2p3.cc.storage.treqs.hsm.HSMMetadataCache;
 import fr.in2p3.cc.storage.treqs.hsm.HSMResourceException;
+import fr.in2p3.cc.storage.treqs.hsm.HSMTimeoutException;
 import fr.in2p3.cc.storage.treqs.model.exception.InvalidStatusTransitionException;
 import fr.in2p3.cc.storage.treqs.model.exception.StagerException;
 import fr.in2p3.cc.storage.treqs.persistence.AbstractDAOFactory;
@@ -230,6 +232,36 @@ public final class Reading {
         return this.startTime;
     }
 
+    /**
+     * Marks this reading as failed without staging it, because its queue has
+     * been canceled. The failed status is registered in the data source.
+     *
+     * @param message
+     *            Reason of the cancellation.
+     * @throws TReqSException
+     *             If there is a problem registering the status in the
+     *             database.
+     */
+    void cancel(final String message) throws TReqSException {
+        LOGGER.trace("> cancel");
+
+        assert (message != null) && !message.equals("");
+        assert this.requestStatus == RequestStatus.SUBMITTED : this.requestStatus;
+
+        LOGGER.warn("{} canceled: {}", this.getMetaData().getFile().getName(),
+                message);
+        this.setErrorMessage(message);
+        final RequestStatus previous = this.requestStatus;
+        this.requestStatus = RequestStatus.FAILED;
+        this.queue.readingStatusChanged(this, previous);
+
+        // Failed status in the database.
+        AbstractDAOFactory.getDAOFactoryInstance().getReadingDAO()
+                .update(this, this.requestStatus);
+
+        LOGGER.trace("< cancel");
+    }
+
     /**
      * Logs the exception, updates the data source and changes the file status.
      *
@@ -308,6 +340,8 @@ public final class Reading {
                     .getDAOFactoryInstance()
                     .getReadingDAO()
                     .update(this, RequestStatus.STAGED);
+            // The file is on disk now, its position on tape is not valid.
+            HSMMetadataCache.invalidate(filename);
             LOGGER.info("File {} successfully staged.", filename);
         } catch (final AbstractHSMException e) {
             LOGGER.warn("Error processing this file: {} {}", filename,
@@ -325,6 +359,20 @@ public final class Reading {
                         .update(this, RequestStatus.SUBMITTED);
                 // We report this problem to the caller.
                 throw e;
+            } else if (e instanceof HSMTimeoutException) {
+                LOGGER.error("The HSM does not answer. Special action will be "
+                        + "taken");
+                // The HSM has not refused the file, thus this try is not
+                // counted and the file will be staged when the queue is
+                // resumed.
+                this.tries--;
+                this.setFileRequestStatus(RequestStatus.SUBMITTED);
+                AbstractDAOFactory
+                        .getDAOFactoryInstance()
+                        .getReadingDAO()
+                        .update(this, RequestStatus.SUBMITTED);
+                // We report this problem to the caller.
+                throw e;
             } else if (e instanceof AbstractHSMPropertiesException) {
                 this.logsException("Error opening. Retrying " + filename, e,
                         RequestStatus.CREATED);
@@ -404,7 +452,9 @@ public final class Reading {
                 || ((this.requestStatus == RequestStatus.QUEUED) && (status == RequestStatus.SUBMITTED))
                 // Currently queued and new failed.
                 || ((this.requestStatus == RequestStatus.QUEUED) && (status == RequestStatus.FAILED))) {
+            final RequestStatus previous = this.requestStatus;
             this.requestStatus = status;
+            this.queue.readingStatusChanged(this, previous);
         } else {
             LOGGER.error("Invalid change of request status. "
                     + "(from {} to {}) for file {}", new String[] {
@@ -457,6 +507,8 @@ public final class Reading {
      * <ul>
      * <li>HSMResourceException: Reset the file as SUBMITTED both in real state
      * and on the database. Throws the exception to the caller.</li>
+     * <li>HSMTimeoutException: The same as HSMResourceException, but the try is
+     * not counted, because the HSM has not answered.</li>
      * <li>Other exceptions: Set the Reading status as failed, and set the
      * database status as CREATED so it can be re-dispatched.</li>
      * <li>Consider Unknown errors as Fatal.</li>
@@ -481,7 +533,9 @@ public final class Reading {
             // If this file has been tried too much times...
             LOGGER.error("{} failed {} times. Giving up.", filename,
                     this.getNumberOfTries());
+            final RequestStatus previous = this.requestStatus;
             this.requestStatus = RequestStatus.FAILED;
+            this.queue.readingStatusChanged(this, previous);
 
             // Send update to the DAO. Failed status in the database.
             AbstractDAOFactory.getDAOFactoryInstance().getReadingDAO()
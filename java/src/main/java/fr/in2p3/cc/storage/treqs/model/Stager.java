@@ -46,10 +46,12 @@ import fr.in2p3.cc.storage.treqs.control.process.AbstractProcess;
 import fr.in2p3.cc.storage.treqs.control.process.ProcessStatus;
 import fr.in2p3.cc.storage.treqs.control.starter.Starter;
 import fr.in2p3.cc.storage.treqs.hsm.HSMResourceException;
+import fr.in2p3.cc.storage.treqs.hsm.HSMTimeoutException;
 import fr.in2p3.cc.storage.treqs.persistence.AbstractDAOFactory;
 
 /**
- * Reads files from a queue as a new thread. This is the responsible to demand
+ * Reads files from a queue as a task in the pool of threads of the
+ * StagersController. This is the responsible to demand
  * to the HSM to stage a specific file. This components sends the command to the
  * HSM and process the error code returned. There are multiple stagers asking
  * for files simultaneously for the same tape, this behavior is to prevent the
@@ -161,7 +163,8 @@ public final class Stager extends AbstractProcess {
      * For each Reading object to stage, it calls the Reading.stage() method and
      * catch exceptions.
      * <p>
-     * If the HSMResourceException is caught, then the queue is suspended.
+     * If the HSMResourceException or the HSMTimeoutException is caught, then the
+     * queue is suspended.
      *
      * @throws TReqSException
      *             If there is any uncontrolled problem.
@@ -185,6 +188,13 @@ public final class Stager extends AbstractProcess {
                     this.queue.suspend();
                     // Exists from the loop.
                     nextReading = null;
+                } catch (final HSMTimeoutException e) {
+                    // The HSM is hung, the next files would have the same
+                    // problem.
+                    LOGGER.warn("The HSM does not answer, suspending the "
+                            + "queue.");
+                    this.queue.suspend();
+                    nextReading = null;
                 }
             }
             final int qty = StagersController.getInstance()
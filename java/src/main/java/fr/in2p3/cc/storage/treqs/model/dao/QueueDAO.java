@@ -60,6 +60,23 @@ public interface QueueDAO {
      */
     int abortPendingQueues() throws TReqSException;
 
+    /**
+     * Moves to the history the ended or aborted queues that ended more than
+     * the given days ago, and that do not have requests any more. At most the
+     * given quantity of queues is moved in one call, in the order of their
+     * id, thus the archive is done by batches.
+     *
+     * @param days
+     *            Quantity of days that the processed queues are kept.
+     * @param limit
+     *            Maximal quantity of queues to archive.
+     * @return Quantity of archived queues.
+     * @throws TReqSException
+     *             If there is a problem accessing the persistence.
+     * @since 1.5.6
+     */
+    int archive(short days, int limit) throws TReqSException;
+
     /**
      * Insert a queue entry in the table.
      *
@@ -90,15 +107,36 @@ public interface QueueDAO {
      * @param queue
      *            The queue to update.
      * @param time
-     *            A time for update. Can be activation or end time.
+     *            A time for update. Can be activation, suspension or end time.
+     *            It is null when the queue has been unsuspended (created.)
+     * @param nbDone
+     *            The number of requests done.
+     * @param nbFailed
+     *            The number of requests failed.
+     * @throws TReqSException
+     *             If there is a problem executing the query.
+     */
+    void updateState(final Queue queue, Calendar time, int nbDone,
+            int nbFailed) throws TReqSException;
+
+    /**
+     * Updates the counters of a queue whose state has not changed. The write
+     * can be delayed, and only the last counters of each queue are written.
+     * <p>
+     * The changes of state are not written by this method, but by
+     * updateState, which writes them at once.
+     *
+     * @param queue
+     *            The queue to update.
      * @param nbDone
      *            The number of requests done.
      * @param nbFailed
      *            The number of requests failed.
      * @throws TReqSException
      *             If there is a problem executing the query.
+     * @since 1.5.6
      */
-    void updateState(final Queue queue, Calendar time, short nbDone,
-            short nbFailed) throws TReqSException;
+    void updateStatistics(final Queue queue, int nbDone, int nbFailed)
+            throws TReqSException;
 
 }
@@ -42,6 +42,7 @@ import fr.in2p3.cc.storage.treqs.TReqSException;
 import fr.in2p3.cc.storage.treqs.model.Reading;
 import fr.in2p3.cc.storage.treqs.model.RequestStatus;
 import fr.in2p3.cc.storage.treqs.persistence.helper.PersistenceHelperFileRequest;
+import fr.in2p3.cc.storage.treqs.persistence.helper.PersistenceHelperUnfinishedRequest;
 
 /**
  * Managing Reading object updates to database.
@@ -51,6 +52,23 @@ import fr.in2p3.cc.storage.treqs.persistence.helper.PersistenceHelperFileRequest
  */
 public interface ReadingDAO {
 
+    /**
+     * Moves to the history the requests in a final state (staged, on disk or
+     * failed) that ended more than the given days ago. At most the given
+     * quantity of requests is moved in one call, in the order of their id,
+     * thus the archive is done by batches.
+     *
+     * @param days
+     *            Quantity of days that the processed requests are kept.
+     * @param limit
+     *            Maximal quantity of requests to archive.
+     * @return Quantity of archived requests.
+     * @throws TReqSException
+     *             If there is a problem accessing the persistence.
+     * @since 1.5.6
+     */
+    int archive(short days, int limit) throws TReqSException;
+
     /**
      * Updates the status of a set of requests in the readings table according
      * to the filename This function is specifically used for inserting
@@ -67,8 +85,14 @@ public interface ReadingDAO {
     void firstUpdate(Reading reading, String message) throws TReqSException;
 
     /**
-     * Find new life requests in the requests table.
+     * Find new life requests in the requests table, in the order of their id.
+     * Only the requests with an id greater than the given one are returned,
+     * thus a big quantity of requests can be read page by page, passing the
+     * id of the last request of the previous page.
      *
+     * @param lastId
+     *            Id of the last request already read. 0 to read from the
+     *            beginning.
      * @param limit
      *            Number of requests to fetch. If 0, it means that there are no
      *            limit.
@@ -77,7 +101,21 @@ public interface ReadingDAO {
      * @throws TReqSException
      *             If there is a problem accessing the persistence.
      */
-    List<PersistenceHelperFileRequest> getNewRequests(int limit)
+    List<PersistenceHelperFileRequest> getNewRequests(int lastId, int limit)
+            throws TReqSException;
+
+    /**
+     * Retrieves the requests that were submitted or queued by a previous
+     * execution, with the metadata of their files (tape, position and size).
+     * They are ordered by tape and position. This permits to rebuild the
+     * queues without asking again the metadata to the HSM.
+     *
+     * @return List of unfinished requests.
+     * @throws TReqSException
+     *             If there is a problem accessing the persistence.
+     * @since 1.5.6
+     */
+    List<PersistenceHelperUnfinishedRequest> getUnfinishedRequests()
             throws TReqSException;
 
     /**
@@ -65,6 +65,12 @@ final class InitDBStatements {
      * Allocations table: allocation for a given user.
      */
     private static final String ALLOCATIONS_USER = MySQLStatements.ALLOCATIONS_USER;
+    /**
+     * Start of the command to create an index.
+     *
+     * @since 1.5.6
+     */
+    static final String CREATE_INDEX = "CREATE INDEX ";
     /**
      * Start of the command to create a table.
      */
@@ -86,6 +92,20 @@ final class InitDBStatements {
      * Heart beat table: Application start.
      */
     static final String HEART_BEAT_START_TIME = MySQLStatements.HEART_BEAT_START_TIME;
+    /**
+     * Index of the requests table to find the requests of a file that are not
+     * yet staged.
+     *
+     * @since 1.5.6
+     */
+    static final String INDEX_REQUESTS_FILE_STATUS = "requests_file_status";
+    /**
+     * Index of the requests table to read the new requests in the order of
+     * their id, page by page.
+     *
+     * @since 1.5.6
+     */
+    static final String INDEX_REQUESTS_STATUS_ID = "requests_status_id";
     /**
      * Informations table names;
      */
@@ -138,6 +158,12 @@ final class InitDBStatements {
      * Queues table: When the queue has been completely processed.
      */
     private static final String QUEUES_END_TIME = MySQLStatements.QUEUES_END_TIME;
+    /**
+     * History of the queues table name.
+     *
+     * @since 1.5.6
+     */
+    static final String QUEUES_HISTORY = MySQLStatements.QUEUES_HISTORY;
     /**
      * Queues table: Id of the queue.
      */
@@ -206,6 +232,12 @@ final class InitDBStatements {
      * Requests table: Name of the file to stage.
      */
     private static final String REQUESTS_FILE = MySQLStatements.REQUESTS_FILE;
+    /**
+     * History of the requests table name.
+     *
+     * @since 1.5.6
+     */
+    static final String REQUESTS_HISTORY = MySQLStatements.REQUESTS_HISTORY;
     /**
      * Requests table: Id of the request.
      */
@@ -263,6 +295,28 @@ final class InitDBStatements {
      * @since 1.5
      */
     private static final String REQUESTS_VERSION = MySQLStatements.REQUESTS_VERSION;
+    /**
+     * Command to show the indexes of a table.
+     *
+     * @since 1.5.6
+     */
+    static final String SHOW_INDEXES = "SHOW INDEX FROM ";
+    /**
+     * Columns of the index of the requests table by file and status. Only a
+     * prefix of the file name is indexed, because of the size limit of the
+     * keys.
+     *
+     * @since 1.5.6
+     */
+    static final String STRUCTURE_INDEX_REQUESTS_FILE_STATUS = '('
+            + REQUESTS_FILE + "(255), " + REQUESTS_STATUS + ')';
+    /**
+     * Columns of the index of the requests table by status and id.
+     *
+     * @since 1.5.6
+     */
+    static final String STRUCTURE_INDEX_REQUESTS_STATUS_ID = '('
+            + REQUESTS_STATUS + ", " + REQUESTS_ID + ')';
     /**
      * Structure of the table allocations.
      */
@@ -319,6 +373,14 @@ final class InitDBStatements {
             + QUEUES_MEDIATYPE_ID + ") REFERENCES " + MEDIATYPES + " ("
             + MEDIATYPES_ID + ")) ENGINE=InnoDB";
 
+    /**
+     * Structure of the table of the history of the queues. It has the same
+     * columns and indexes than the queues table, but not the foreign keys.
+     *
+     * @since 1.5.6
+     */
+    static final String STRUCTURE_TABLE_QUEUES_HISTORY = "LIKE " + QUEUES;
+
     /**
      * Structure of the table requests. The columns were sorted in order to have
      * the primary at first, followed by the more volatile columns.
@@ -344,6 +406,14 @@ final class InitDBStatements {
             + "), FOREIGN KEY (" + REQUESTS_QUEUE_ID + ") REFERENCES " + QUEUES
             + " (" + QUEUES_ID + ")) ENGINE=InnoDB";
 
+    /**
+     * Structure of the table of the history of the requests. It has the same
+     * columns and indexes than the requests table, but not the foreign keys.
+     *
+     * @since 1.5.6
+     */
+    static final String STRUCTURE_TABLE_REQUESTS_HISTORY = "LIKE " + REQUESTS;
+
     /**
      * Default constructor hidden.
      */
@@ -0,0 +1,472 @@
+/*
+ * Copyright      Jonathan Schaeffer 2009-2010,
+ *                  CC-IN2P3, CNRS <jonathan.schaeffer@cc.in2p3.fr>
+ * Contributors   Andres Gomez,
+ *                  CC-IN2P3, CNRS <andres.gomez@cc.in2p3.fr>
+ *
+ * This software is a computer program whose purpose is to schedule, sort
+ * and submit file requests to the hierarchical storage system HPSS.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights, and the successive licensors have only limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+package fr.in2p3.cc.storage.treqs.persistence.mysql;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fr.in2p3.cc.storage.treqs.Constants;
+import fr.in2p3.cc.storage.treqs.DefaultProperties;
+import fr.in2p3.cc.storage.treqs.TReqSException;
+import fr.in2p3.cc.storage.treqs.persistence.mysql.exception.MySQLExecuteException;
+import fr.in2p3.cc.storage.treqs.tools.Configurator;
+import fr.in2p3.cc.storage.treqs.tools.ProblematicConfiguationFileException;
+
+/**
+ * Groups the modifications of the requests table in JDBC batches. The
+ * modifications are kept in memory, in the same order they were received, and
+ * they are written when the quantity of pending modifications arrives to the
+ * batch size, or periodically.
+ * <p>
+ * The consecutive modifications with the same statement are written in a
+ * single batch. This keeps the order of the updates of a same request.
+ * <p>
+ * The pending modifications have to be written before reading the requests
+ * table, otherwise the reads could retrieve outdated values.
+ * <p>
+ * When the database rejects a batch, its modifications are kept to be written
+ * again. After a given quantity of tries, they are written one by one, and the
+ * ones that are still rejected are logged and dropped. The problems with the
+ * connection are not counted as tries.
+ *
+ * @since 1.5.6
+ */
+public final class MySQLBatchWriter {
+    /**
+     * A pending modification.
+     */
+    private static final class Modification {
+        /**
+         * Quantity of times the database has rejected the batch of this
+         * modification.
+         */
+        private int failures;
+        /**
+         * Values of the parameters of the statement.
+         */
+        private final Object[] parameters;
+        /**
+         * Statement to execute.
+         */
+        private final String query;
+
+        /**
+         * Creates a modification.
+         *
+         * @param statement
+         *            Statement to execute.
+         * @param values
+         *            Values of the parameters.
+         */
+        Modification(final String statement, final Object[] values) {
+            this.query = statement;
+            this.parameters = values;
+            this.failures = 0;
+        }
+    }
+
+    /**
+     * If the shutdown hook has been registered.
+     */
+    private static boolean hookRegistered = false;
+    /**
+     * The singleton instance.
+     */
+    private static MySQLBatchWriter instance = null;
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(MySQLBatchWriter.class);
+
+    /**
+     * Destroys the only instance, writing the pending modifications. ONLY for
+     * testing purposes.
+     */
+    public static synchronized void destroyInstance() {
+        LOGGER.trace("> destroyInstance");
+
+        if (instance != null) {
+            instance.timer.shutdownNow();
+            try {
+                instance.flush();
+            } catch (final TReqSException e) {
+                LOGGER.error("Pending modifications not written: {}",
+                        e.getMessage());
+            }
+            LOGGER.info("Instance destroyed");
+        }
+        instance = null;
+
+        LOGGER.trace("< destroyInstance");
+    }
+
+    /**
+     * Retrieves the singleton instance.
+     *
+     * @return The singleton instance.
+     * @throws ProblematicConfiguationFileException
+     *             If there is a problem retrieving the configuration.
+     */
+    public static synchronized MySQLBatchWriter getInstance()
+            throws ProblematicConfiguationFileException {
+        LOGGER.trace("> getInstance");
+
+        if (instance == null) {
+            LOGGER.debug("Creating instance.");
+
+            instance = new MySQLBatchWriter();
+            registerShutdownHook();
+        }
+
+        assert instance != null;
+
+        LOGGER.trace("< getInstance");
+
+        return instance;
+    }
+
+    /**
+     * Tells if the database has rejected the modifications, instead of a
+     * problem with the connection.
+     *
+     * @param exception
+     *            Problem writing the modifications.
+     * @return true if the statement has been rejected by the database.
+     */
+    private static boolean isRejected(final TReqSException exception) {
+        LOGGER.trace("> isRejected");
+
+        assert exception != null;
+
+        boolean rejected = false;
+        if ((exception instanceof MySQLExecuteException)
+                && (exception.getCause() instanceof SQLException)) {
+            final String state = ((SQLException) exception.getCause())
+                    .getSQLState();
+            // The class 08 is the one of the connection exceptions.
+            rejected = (state == null) || !state.startsWith("08");
+        }
+
+        LOGGER.trace("< isRejected");
+
+        return rejected;
+    }
+
+    /**
+     * Registers, only once for all the instances, the hook that writes the
+     * pending modifications of the current instance when the application stops.
+     */
+    private static void registerShutdownHook() {
+        LOGGER.trace("> registerShutdownHook");
+
+        if (!hookRegistered) {
+            Runtime.getRuntime().addShutdownHook(
+                    new Thread("MySQLBatchWriter-shutdown") {
+                        @Override
+                        public void run() {
+                            MySQLBatchWriter current;
+                            synchronized (MySQLBatchWriter.class) {
+                                current = instance;
+                            }
+                            if (current != null) {
+                                try {
+                                    current.flush();
+                                } catch (final TReqSException e) {
+                                    LOGGER.error("Pending modifications not "
+                                            + "written: {}", e.getMessage());
+                                }
+                            }
+                        }
+                    });
+            hookRegistered = true;
+        }
+
+        LOGGER.trace("< registerShutdownHook");
+    }
+
+    /**
+     * Quantity of pending modifications that provokes a write.
+     */
+    private final short batchSize;
+    /**
+     * Lock to write the batches one after the other.
+     */
+    private final Object flushLock = new Object();
+    /**
+     * Quantity of rejected batches before writing their modifications alone.
+     */
+    private final byte maxRetries;
+    /**
+     * Modifications not yet written, in order.
+     */
+    private List<Modification> pending;
+    /**
+     * Thread that writes the pending modifications periodically.
+     */
+    private final ScheduledExecutorService timer;
+
+    /**
+     * Creates the writer, and starts the periodic write.
+     *
+     * @throws ProblematicConfiguationFileException
+     *             If there is a problem retrieving the configuration.
+     */
+    private MySQLBatchWriter() throws ProblematicConfiguationFileException {
+        LOGGER.trace("> Creating instance");
+
+        this.batchSize = Configurator.getInstance().getShortValue(
+                MySQLDAOFactory.SECTION_PERSISTENCE_MYSQL,
+                Constants.BATCH_SIZE, DefaultProperties.BATCH_SIZE);
+        assert this.batchSize > 0;
+        final short interval = Configurator.getInstance().getShortValue(
+                MySQLDAOFactory.SECTION_PERSISTENCE_MYSQL,
+                Constants.BATCH_INTERVAL, DefaultProperties.BATCH_INTERVAL);
+        assert interval > 0;
+        this.maxRetries = Configurator.getInstance().getByteValue(
+                MySQLDAOFactory.SECTION_PERSISTENCE_MYSQL,
+                Constants.BATCH_RETRIES, DefaultProperties.BATCH_RETRIES);
+        assert this.maxRetries > 0;
+        LOGGER.info("Batches of {} modifications, every {} milliseconds",
+                this.batchSize, interval);
+
+        this.pending = new ArrayList<Modification>();
+        this.timer = Executors
+                .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        final Thread thread = new Thread(runnable,
+                                "MySQLBatchWriter");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        this.timer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    MySQLBatchWriter.this.flush();
+                } catch (final TReqSException e) {
+                    LOGGER.error("Error writing modifications: {}",
+                            e.getMessage());
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+
+        LOGGER.trace("< Creating instance");
+    }
+
+    /**
+     * Registers a modification. If the quantity of pending modifications
+     * arrives to the batch size, they are written by the calling thread.
+     *
+     * @param query
+     *            Statement to execute.
+     * @param parameters
+     *            Values of the parameters of the statement, in order.
+     * @throws TReqSException
+     *             If there is a problem writing the batch.
+     */
+    public void add(final String query, final Object[] parameters)
+            throws TReqSException {
+        LOGGER.trace("> add");
+
+        assert (query != null) && !query.equals("");
+        assert parameters != null;
+
+        boolean full;
+        synchronized (this) {
+            this.pending.add(new Modification(query, parameters));
+            full = this.pending.size() >= this.batchSize;
+        }
+        if (full) {
+            this.flush();
+        }
+
+        LOGGER.trace("< add");
+    }
+
+    /**
+     * Counts a rejection of the batch of the given modifications.
+     *
+     * @param batch
+     *            Modifications of the rejected batch.
+     * @return true if one of the modifications has been rejected too many
+     *         times.
+     */
+    private boolean countFailure(final List<Modification> batch) {
+        LOGGER.trace("> countFailure");
+
+        assert (batch != null) && !batch.isEmpty();
+
+        boolean exhausted = false;
+        for (int i = 0; i < batch.size(); i++) {
+            final Modification modification = batch.get(i);
+            modification.failures++;
+            exhausted = exhausted
+                    || (modification.failures >= this.maxRetries);
+        }
+
+        LOGGER.trace("< countFailure");
+
+        return exhausted;
+    }
+
+    /**
+     * Writes all the pending modifications. The consecutive modifications with
+     * the same statement are sent in the same batch. If a batch has been
+     * rejected too many times, its modifications are written one by one, and
+     * the rejected ones are dropped.
+     *
+     * @throws TReqSException
+     *             If there is a problem writing a batch. The modifications of
+     *             that batch and the following are put back at the head of
+     *             the pending modifications, and they are written again by the
+     *             next flush.
+     */
+    public void flush() throws TReqSException {
+        LOGGER.trace("> flush");
+
+        synchronized (this.flushLock) {
+            List<Modification> toWrite;
+            synchronized (this) {
+                toWrite = this.pending;
+                this.pending = new ArrayList<Modification>();
+            }
+            if (!toWrite.isEmpty()) {
+                LOGGER.debug("Writing {} modifications", toWrite.size());
+                int index = 0;
+                try {
+                    while (index < toWrite.size()) {
+                        final String query = toWrite.get(index).query;
+                        int end = index;
+                        final List<Object[]> parameters = new ArrayList<Object[]>();
+                        while ((end < toWrite.size())
+                                && toWrite.get(end).query.equals(query)) {
+                            parameters.add(toWrite.get(end).parameters);
+                            end++;
+                        }
+                        try {
+                            MySQLBroker.getInstance().executeBatch(query,
+                                    parameters);
+                        } catch (final TReqSException e) {
+                            if (!isRejected(e)
+                                    || !this.countFailure(toWrite.subList(
+                                            index, end))) {
+                                throw e;
+                            }
+                            // The modification that is rejected is searched
+                            // by writing them one by one.
+                            while (index < end) {
+                                this.writeAlone(toWrite.get(index));
+                                index++;
+                            }
+                        }
+                        index = end;
+                    }
+                } catch (final TReqSException e) {
+                    // The modifications received meanwhile go after them,
+                    // keeping the order.
+                    final List<Modification> unwritten = new ArrayList<Modification>(
+                            toWrite.subList(index, toWrite.size()));
+                    synchronized (this) {
+                        unwritten.addAll(this.pending);
+                        this.pending = unwritten;
+                    }
+                    LOGGER.error("{} modifications kept to be written again",
+                            toWrite.size() - index);
+                    throw e;
+                }
+            }
+        }
+
+        LOGGER.trace("< flush");
+    }
+
+    /**
+     * Writes a modification alone. If the database rejects it, it is logged and
+     * dropped.
+     *
+     * @param modification
+     *            Modification to write.
+     * @throws TReqSException
+     *             If there is a problem with the connection.
+     */
+    private void writeAlone(final Modification modification)
+            throws TReqSException {
+        LOGGER.trace("> writeAlone");
+
+        assert modification != null;
+
+        try {
+            MySQLBroker.getInstance().executeBatch(modification.query,
+                    Collections.singletonList(modification.parameters));
+        } catch (final TReqSException e) {
+            if (!isRejected(e)) {
+                throw e;
+            }
+            LOGGER.error("Modification dropped after {} tries: '{}' {}",
+                    new Object[] { modification.failures + 1,
+                            modification.query,
+                            Arrays.toString(modification.parameters) });
+        }
+
+        LOGGER.trace("< writeAlone");
+    }
+
+    /**
+     * Retrieves the quantity of modifications not yet written. ONLY for
+     * testing purposes.
+     *
+     * @return Quantity of pending modifications.
+     */
+    synchronized int getPendingSize() {
+        LOGGER.trace(">< getPendingSize");
+
+        return this.pending.size();
+    }
+}
@@ -40,6 +40,11 @@ import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,6 +53,7 @@ import com.mysql.jdbc.Connection;
 import com.mysql.jdbc.Statement;
 
 import fr.in2p3.cc.storage.treqs.Constants;
+import fr.in2p3.cc.storage.treqs.DefaultProperties;
 import fr.in2p3.cc.storage.treqs.TReqSException;
 import fr.in2p3.cc.storage.treqs.persistence.mysql.exception.MySQLCloseException;
 import fr.in2p3.cc.storage.treqs.persistence.mysql.exception.MySQLExecuteException;
@@ -55,7 +61,18 @@ import fr.in2p3.cc.storage.treqs.persistence.mysql.exception.MySQLOpenException;
 import fr.in2p3.cc.storage.treqs.tools.Configurator;
 
 /**
- * Manages the connection to the database and its state.
+ * Manages the connections to the database and their state.
+ * <p>
+ * The broker has a pool of connections, in order to permit the Dispatcher, the
+ * Activator and the Stagers to use the database at the same time. A thread
+ * leases a connection for each operation, and the same connection is used if
+ * the thread already has one (for example when a statement is prepared while a
+ * result set is being read.) Each connection keeps its prepared statements, so
+ * the fixed statements are prepared only once per connection.
+ * <p>
+ * The statements retrieved via getPreparedStatement have to be given back via
+ * releaseStatement, and the selects have to be finished via
+ * terminateExecution; this gives back the connection to the pool.
  * <p>
  * The URL connection should have an encoding when using gcj, because it could
  * appear an error message: <code>
@@ -110,7 +127,7 @@ public final class MySQLBroker {
      * 
      * @return Retrieves the unique instance of this object.
      */
-    public static MySQLBroker getInstance() {
+    public static synchronized MySQLBroker getInstance() {
         LOGGER.trace("> getInstance");
 
         if (instance == null) {
@@ -125,14 +142,29 @@ public final class MySQLBroker {
     }
 
     /**
-     * If there is as active connection to the database.
+     * If the pool has been established.
      */
     private boolean connected;
 
     /**
-     * Connection to the database.
+     * All the connections opened by the pool, leased or not.
+     */
+    private final List<MySQLPooledConnection> connections;
+
+    /**
+     * Connection leased by each thread.
+     */
+    private final ThreadLocal<MySQLPooledConnection> current;
+
+    /**
+     * Connections that are not leased by any thread.
+     */
+    private final BlockingQueue<MySQLPooledConnection> idle;
+
+    /**
+     * Maximal quantity of connections to the database.
      */
-    private Connection connection;
+    private byte poolSize;
 
     /**
      * Constructor of the broker where the object are initialized.
@@ -141,11 +173,105 @@ public final class MySQLBroker {
         LOGGER.trace("> MySQLBroker");
 
         this.connected = false;
-        this.connection = null;
+        this.connections = new ArrayList<MySQLPooledConnection>();
+        this.current = new ThreadLocal<MySQLPooledConnection>();
+        this.idle = new LinkedBlockingQueue<MySQLPooledConnection>();
+        this.poolSize = DefaultProperties.POOL_SIZE;
 
         LOGGER.trace("< MySQLBroker");
     }
 
+    /**
+     * Leases a connection for the current thread. If the thread has already a
+     * connection, the same is returned; if not, an idle connection is taken
+     * from the pool, or a new one is opened if the pool is not full, or the
+     * thread waits until another thread releases its connection.
+     * 
+     * @return The connection leased by the current thread.
+     * @throws TReqSException
+     *             If there is a problem establishing the connection or while
+     *             waiting for a connection.
+     */
+    private MySQLPooledConnection acquireConnection() throws TReqSException {
+        LOGGER.trace("> acquireConnection");
+
+        MySQLPooledConnection pooled = this.current.get();
+        if (pooled == null) {
+            this.validConnection();
+            pooled = this.idle.poll();
+            if (pooled == null) {
+                synchronized (instance) {
+                    if (this.connections.size() < this.poolSize) {
+                        pooled = this.openConnection();
+                        this.connections.add(pooled);
+                        LOGGER.debug("New connection in the pool ({})",
+                                this.connections.size());
+                    }
+                }
+            }
+            if (pooled == null) {
+                LOGGER.debug("Waiting for a connection of the pool");
+                try {
+                    pooled = this.idle.take();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new MySQLOpenException(e);
+                }
+            }
+            pooled = this.checkConnection(pooled);
+            this.current.set(pooled);
+        }
+        pooled.lease();
+
+        assert pooled != null;
+
+        LOGGER.trace("< acquireConnection");
+
+        return pooled;
+    }
+
+    /**
+     * Checks if a connection taken from the pool is still open. If not, it is
+     * replaced by a new one.
+     * 
+     * @param pooled
+     *            Connection to check.
+     * @return A valid connection.
+     * @throws TReqSException
+     *             If there is a problem checking the connection or opening a
+     *             new one.
+     */
+    private MySQLPooledConnection checkConnection(
+            final MySQLPooledConnection pooled) throws TReqSException {
+        LOGGER.trace("> checkConnection");
+
+        assert pooled != null;
+
+        MySQLPooledConnection ret = pooled;
+        boolean closed;
+        try {
+            closed = pooled.isClosed();
+        } catch (final SQLException e) {
+            MySQLBroker.handleSQLException(e);
+            closed = true;
+        }
+        if (closed) {
+            LOGGER.warn("A connection of the pool was closed. "
+                    + "Reestablishing the connection.");
+            synchronized (instance) {
+                this.connections.remove(pooled);
+                ret = this.openConnection();
+                this.connections.add(ret);
+            }
+        }
+
+        assert ret != null;
+
+        LOGGER.trace("< checkConnection");
+
+        return ret;
+    }
+
     /**
      * Closes the result set of a query. This could be due to an exception, or
      * when the query has been already processed.
@@ -194,7 +320,8 @@ public final class MySQLBroker {
     }
 
     /**
-     * Establishes a connection to the database.
+     * Establishes the pool of connections to the database. Only one connection
+     * is opened at this moment; the others are opened when needed.
      * <p>
      * TODO v1.5.6 The parameters should be dynamic, this permits to reload the
      * configuration file in hot. Check if the value has changed.
@@ -207,37 +334,25 @@ public final class MySQLBroker {
     public void connect() throws TReqSException {
         LOGGER.trace("> connect");
 
-        final String url = getURL();
         final String driver = "com.mysql.jdbc.Driver";
-        final String user = getUser();
-        final String password = Configurator.getInstance().getStringValue(
-                MySQLDAOFactory.SECTION_PERSISTENCE_MYSQL,
-                Constants.DB_PASSWORD);
 
-        // There can be only a connection per instance.
+        // There can be only a pool per instance.
         synchronized (instance) {
-            if (this.connection == null) {
+            if (!this.connected) {
+                this.poolSize = Configurator.getInstance().getByteValue(
+                        MySQLDAOFactory.SECTION_PERSISTENCE_MYSQL,
+                        Constants.POOL_SIZE, DefaultProperties.POOL_SIZE);
+                assert this.poolSize > 0;
                 try {
                     Class.forName(driver).newInstance();
                 } catch (final Exception e) {
                     LOGGER.error("Exception while loading: {}", e.getMessage());
                     throw new MySQLOpenException(e);
                 }
-                try {
-                    this.connection = (Connection) DriverManager.getConnection(
-                            url, user, password);
-
-                    this.executeModification(SET_MODE_STRICT);
-                    this.connected = true;
-                } catch (final SQLException ex) {
-                    MySQLBroker.handleSQLException(ex);
-                    try {
-                        this.disconnect();
-                    } catch (final Exception e) {
-                        LOGGER.error("Problem connecting", e);
-                    }
-                    throw new MySQLOpenException(ex);
-                }
+                final MySQLPooledConnection pooled = this.openConnection();
+                this.connections.add(pooled);
+                this.idle.offer(pooled);
+                this.connected = true;
             }
         }
 
@@ -245,31 +360,96 @@ public final class MySQLBroker {
     }
 
     /**
-     * Disconnects from the database.
+     * Disconnects from the database, closing all the connections of the pool.
+     * The connections that are leased are closed too.
      * 
      * @throws MySQLCloseException
-     *             If there is a problem closing the connection.
+     *             If there is a problem closing a connection.
      */
     public void disconnect() throws MySQLCloseException {
         LOGGER.trace("> disconnect");
 
         synchronized (instance) {
-            if (this.connection != null) {
+            SQLException problem = null;
+            this.idle.clear();
+            final Iterator<MySQLPooledConnection> iterator = this.connections
+                    .iterator();
+            while (iterator.hasNext()) {
                 try {
-                    this.connection.close();
+                    iterator.next().close();
                 } catch (final SQLException ex) {
                     MySQLBroker.handleSQLException(ex);
-                    throw new MySQLCloseException(ex);
-                } finally {
-                    this.connection = null;
+                    problem = ex;
                 }
             }
+            this.connections.clear();
             this.connected = false;
+            if (problem != null) {
+                throw new MySQLCloseException(problem);
+            }
         }
 
         LOGGER.trace("< disconnect");
     }
 
+    /**
+     * Executes the same statement several times, with different parameters, in
+     * a JDBC batch.
+     * 
+     * @param query
+     *            Statement to execute.
+     * @param parameters
+     *            Values of the parameters for each execution, in order.
+     * @return Quantity of modified rows per execution.
+     * @throws TReqSException
+     *             If there is a problem while validating the connection or
+     *             while executing.
+     */
+    public int[] executeBatch(final String query,
+            final List<Object[]> parameters) throws TReqSException {
+        LOGGER.trace("> executeBatch");
+
+        assert (query != null) && !query.equals("");
+        assert (parameters != null) && !parameters.isEmpty();
+
+        int[] rows;
+        PreparedStatement statement = null;
+
+        final MySQLPooledConnection pooled = this.acquireConnection();
+        try {
+            statement = pooled.getStatement(query);
+            LOGGER.debug("Batch of {}: '{}'", parameters.size(), query);
+            final Iterator<Object[]> iterator = parameters.iterator();
+            while (iterator.hasNext()) {
+                final Object[] values = iterator.next();
+                for (int i = 0; i < values.length; i++) {
+                    statement.setObject(i + 1, values[i]);
+                }
+                statement.addBatch();
+            }
+            rows = statement.executeBatch();
+        } catch (final SQLException ex) {
+            MySQLBroker.handleSQLException(ex);
+            throw new MySQLExecuteException(ex);
+        } finally {
+            try {
+                if (statement != null) {
+                    statement.clearBatch();
+                }
+            } catch (final SQLException e) {
+                throw new MySQLExecuteException(e);
+            } finally {
+                this.releaseConnection();
+            }
+        }
+
+        assert rows != null;
+
+        LOGGER.trace("< executeBatch");
+
+        return rows;
+    }
+
     /**
      * Executes a statement in the database.
      * 
@@ -289,24 +469,23 @@ public final class MySQLBroker {
         int rows;
         Statement statement = null;
 
-        // The Broker can process just one query at a time.
-        synchronized (instance) {
-            this.validConnection();
+        final MySQLPooledConnection pooled = this.acquireConnection();
+        try {
+            statement = (Statement) pooled.getConnection().createStatement();
+            LOGGER.debug("Query: '{}'", query);
+            rows = statement.executeUpdate(query);
+        } catch (final SQLException ex) {
+            MySQLBroker.handleSQLException(ex);
+            throw new MySQLExecuteException(ex);
+        } finally {
             try {
-                statement = (Statement) this.connection.createStatement();
-                LOGGER.debug("Query: '{}'", query);
-                rows = statement.executeUpdate(query);
-            } catch (final SQLException ex) {
-                MySQLBroker.handleSQLException(ex);
-                throw new MySQLExecuteException(ex);
-            } finally {
-                try {
-                    if (statement != null) {
-                        statement.close();
-                    }
-                } catch (final SQLException e) {
-                    throw new MySQLExecuteException(e);
+                if (statement != null) {
+                    statement.close();
                 }
+            } catch (final SQLException e) {
+                throw new MySQLExecuteException(e);
+            } finally {
+                this.releaseConnection();
             }
         }
 
@@ -316,8 +495,9 @@ public final class MySQLBroker {
     }
 
     /**
-     * Executes a select in the database returning the resultSet. The Broker can
-     * process just one query at a time.
+     * Executes a select in the database returning the resultSet. The
+     * connection is kept by the current thread until the execution is
+     * terminated.
      * 
      * @param query
      *            Query statement to execute in the databases.
@@ -331,26 +511,26 @@ public final class MySQLBroker {
 
         assert (query != null) && !query.equals("");
 
-        ResultSet rs;
-        Statement stmt;
+        ResultSet rs = null;
+        Statement stmt = null;
         Object[] ret;
 
-        // The Broker can process just one query at a time.
-        synchronized (instance) {
-            rs = null;
-            stmt = null;
-            this.validConnection();
+        final MySQLPooledConnection pooled = this.acquireConnection();
+        try {
+            stmt = (Statement) pooled.getConnection().createStatement();
+            LOGGER.debug("Query: '{}'", query);
+            rs = stmt.executeQuery(query);
+        } catch (final SQLException ex) {
+            MySQLBroker.handleSQLException(ex);
+            this.closeResultSet(rs);
             try {
-                stmt = (Statement) this.connection.createStatement();
-                LOGGER.debug("Query: '{}'", query);
-                rs = stmt.executeQuery(query);
-            } catch (final SQLException ex) {
-                MySQLBroker.handleSQLException(ex);
-                this.closeResultSet(rs);
-                throw new MySQLExecuteException(ex);
+                this.closeStatement(stmt);
+            } finally {
+                this.releaseConnection();
             }
-            ret = new Object[] { stmt, rs };
+            throw new MySQLExecuteException(ex);
         }
+        ret = new Object[] { stmt, rs };
 
         assert ret != null;
 
@@ -360,8 +540,9 @@ public final class MySQLBroker {
     }
 
     /**
-     * Retrieves a prepared statement. The Broker can process just one query at
-     * a time.
+     * Retrieves a prepared statement. The statement is prepared only once per
+     * connection, and it has to be given back via releaseStatement once it has
+     * been executed; it must not be closed.
      * 
      * @param query
      *            Query to prepare.
@@ -377,19 +558,15 @@ public final class MySQLBroker {
         assert query != null;
         assert !query.equals("");
 
-        this.validConnection();
-        PreparedStatement ret;
+        PreparedStatement ret = null;
 
-        // The Broker can process just one query at a time.
-        synchronized (instance) {
-            ret = null;
-            try {
-                LOGGER.debug("Query: '{}'", query);
-                ret = this.connection.prepareStatement(query,
-                        java.sql.Statement.RETURN_GENERATED_KEYS);
-            } catch (final SQLException e) {
-                throw new MySQLExecuteException(e);
-            }
+        final MySQLPooledConnection pooled = this.acquireConnection();
+        try {
+            LOGGER.debug("Query: '{}'", query);
+            ret = pooled.getStatement(query);
+        } catch (final SQLException e) {
+            this.releaseConnection();
+            throw new MySQLExecuteException(e);
         }
 
         assert ret != null;
@@ -460,7 +637,100 @@ public final class MySQLBroker {
     }
 
     /**
-     * Close the result set and the statement of a previous select.
+     * Opens a new physical connection to the database, in strict mode.
+     * 
+     * @return The new connection.
+     * @throws TReqSException
+     *             If there is a problem retrieving the database values from the
+     *             configuration, or connecting to the database.
+     */
+    private MySQLPooledConnection openConnection() throws TReqSException {
+        LOGGER.trace("> openConnection");
+
+        final String url = getURL();
+        final String user = getUser();
+        final String password = Configurator.getInstance().getStringValue(
+                MySQLDAOFactory.SECTION_PERSISTENCE_MYSQL,
+                Constants.DB_PASSWORD);
+
+        Connection connection = null;
+        java.sql.Statement statement = null;
+        try {
+            connection = (Connection) DriverManager.getConnection(url, user,
+                    password);
+            statement = connection.createStatement();
+            statement.executeUpdate(SET_MODE_STRICT);
+            statement.close();
+        } catch (final SQLException ex) {
+            MySQLBroker.handleSQLException(ex);
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (final Exception e) {
+                    LOGGER.error("Problem connecting", e);
+                }
+            }
+            throw new MySQLOpenException(ex);
+        }
+        final MySQLPooledConnection ret = new MySQLPooledConnection(connection);
+
+        LOGGER.trace("< openConnection");
+
+        return ret;
+    }
+
+    /**
+     * Releases a lease of the connection of the current thread. When the
+     * thread has no more leases, the connection is given back to the pool; or
+     * closed if the broker has been disconnected in the meantime.
+     */
+    private void releaseConnection() {
+        LOGGER.trace("> releaseConnection");
+
+        final MySQLPooledConnection pooled = this.current.get();
+
+        assert pooled != null;
+
+        if (pooled.release()) {
+            this.current.remove();
+            boolean active;
+            synchronized (instance) {
+                active = this.connections.contains(pooled);
+            }
+            if (active) {
+                this.idle.offer(pooled);
+            } else {
+                try {
+                    pooled.close();
+                } catch (final SQLException e) {
+                    MySQLBroker.handleSQLException(e);
+                }
+            }
+        }
+
+        LOGGER.trace("< releaseConnection");
+    }
+
+    /**
+     * Gives back a statement retrieved via getPreparedStatement, once it has
+     * been executed. The statement is kept prepared in its connection.
+     * 
+     * @param statement
+     *            Statement to give back.
+     */
+    public void releaseStatement(final PreparedStatement statement) {
+        LOGGER.trace("> releaseStatement");
+
+        assert statement != null;
+
+        this.releaseConnection();
+
+        LOGGER.trace("< releaseStatement");
+    }
+
+    /**
+     * Close the result set and the statement of a previous select, and gives
+     * back the connection.
      * 
      * @param objects
      *            Set of object to close [statement, resultSet].
@@ -474,31 +744,30 @@ public final class MySQLBroker {
         assert objects != null;
         assert objects.length == 2;
 
-        this.closeResultSet((ResultSet) objects[1]);
-        objects[1] = null;
-        this.closeStatement((Statement) objects[0]);
-        objects[0] = null;
+        try {
+            this.closeResultSet((ResultSet) objects[1]);
+            objects[1] = null;
+            this.closeStatement((Statement) objects[0]);
+            objects[0] = null;
+        } finally {
+            this.releaseConnection();
+        }
 
         LOGGER.trace("< terminateExecution");
     }
 
     /**
-     * Validates if the connection is valid.
+     * Validates if the pool has been established.
      * 
      * @throws TReqSException
-     *             While verifying the connection status or when reestablishing
-     *             the connection.
+     *             When reestablishing the connection.
      */
     private void validConnection() throws TReqSException {
         LOGGER.trace("> validConnection");
 
         boolean ret;
-        try {
-            ret = this.connected && (this.connection != null)
-                    && !this.connection.isClosed();
-        } catch (final SQLException e) {
-            MySQLBroker.handleSQLException(e);
-            throw new MySQLExecuteException(e);
+        synchronized (instance) {
+            ret = this.connected;
         }
         if (!ret) {
             LOGGER.warn("The connection has not been established. "
@@ -38,6 +38,8 @@ package fr.in2p3.cc.storage.treqs.persistence.mysql;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -71,6 +73,42 @@ public final class MySQLInit {
         // Nothing.
     }
 
+    /**
+     * Creates an index in a table, if it does not exist. This permits to add
+     * the indexes to the tables created by a previous version.
+     *
+     * @param tableName
+     *            Name of the table.
+     * @param indexName
+     *            Name of the index.
+     * @param structure
+     *            Columns of the index.
+     * @param indexes
+     *            Names of the existing indexes of the table.
+     * @throws TReqSException
+     *             If there is a problem executing the statement.
+     * @since 1.5.6
+     */
+    private void createIndex(final String tableName, final String indexName,
+            final String structure, final Set<String> indexes)
+            throws TReqSException {
+        LOGGER.trace("> createIndex");
+
+        assert (tableName != null) && !tableName.equals("");
+        assert (indexName != null) && !indexName.equals("");
+        assert (structure != null) && !structure.equals("");
+        assert indexes != null;
+
+        if (!indexes.contains(indexName)) {
+            final String statement = InitDBStatements.CREATE_INDEX + indexName
+                    + " ON " + tableName + " " + structure;
+            MySQLBroker.getInstance().executeModification(statement);
+            LOGGER.info("Index {} created in table {}", indexName, tableName);
+        }
+
+        LOGGER.trace("< createIndex");
+    }
+
     /**
      * Creates a table given the table name and its structure. Actually, it
      * builds the statement to execute.
@@ -121,6 +159,21 @@ public final class MySQLInit {
         structure += "\n" + InitDBStatements.CREATE_TABLE
                 + InitDBStatements.REQUESTS + " "
                 + InitDBStatements.STRUCTURE_TABLE_REQUESTS + ";\n";
+        structure += "\n" + InitDBStatements.CREATE_INDEX
+                + InitDBStatements.INDEX_REQUESTS_STATUS_ID + " ON "
+                + InitDBStatements.REQUESTS + " "
+                + InitDBStatements.STRUCTURE_INDEX_REQUESTS_STATUS_ID + ";\n";
+        structure += "\n" + InitDBStatements.CREATE_INDEX
+                + InitDBStatements.INDEX_REQUESTS_FILE_STATUS + " ON "
+                + InitDBStatements.REQUESTS + " "
+                + InitDBStatements.STRUCTURE_INDEX_REQUESTS_FILE_STATUS
+                + ";\n";
+        structure += "\n" + InitDBStatements.CREATE_TABLE
+                + InitDBStatements.QUEUES_HISTORY + " "
+                + InitDBStatements.STRUCTURE_TABLE_QUEUES_HISTORY + ";\n";
+        structure += "\n" + InitDBStatements.CREATE_TABLE
+                + InitDBStatements.REQUESTS_HISTORY + " "
+                + InitDBStatements.STRUCTURE_TABLE_REQUESTS_HISTORY + ";\n";
         structure += "\n" + InitDBStatements.CREATE_TABLE
                 + InitDBStatements.HEART_BEAT + " "
                 + InitDBStatements.STRUCTURE_TABLE_HEART_BEAT + ";\n";
@@ -133,6 +186,41 @@ public final class MySQLInit {
         return structure;
     }
 
+    /**
+     * Retrieves the names of the indexes of a table.
+     *
+     * @param tableName
+     *            Name of the table.
+     * @return Names of the indexes.
+     * @throws TReqSException
+     *             If there is a problem executing the statement.
+     * @since 1.5.6
+     */
+    private Set<String> getIndexes(final String tableName)
+            throws TReqSException {
+        LOGGER.trace("> getIndexes");
+
+        assert (tableName != null) && !tableName.equals("");
+
+        final Set<String> indexes = new HashSet<String>();
+        final Object[] objects = MySQLBroker.getInstance().executeSelect(
+                InitDBStatements.SHOW_INDEXES + tableName);
+        final ResultSet result = (ResultSet) objects[1];
+        try {
+            while (result.next()) {
+                indexes.add(result.getString("Key_name"));
+            }
+        } catch (final SQLException e) {
+            throw new MySQLExecuteException(e);
+        } finally {
+            MySQLBroker.getInstance().terminateExecution(objects);
+        }
+
+        LOGGER.trace("< getIndexes");
+
+        return indexes;
+    }
+
     /**
      * Verifies the existence of the tables. If they do not exist, then it will
      * create them.
@@ -149,7 +237,9 @@ public final class MySQLInit {
         boolean tableInformationsFound = false;
         boolean tableMediatypeFound = false;
         boolean tableQueuesFound = false;
+        boolean tableQueuesHistoryFound = false;
         boolean tableRequestFound = false;
+        boolean tableRequestHistoryFound = false;
 
         // Search for the "current" table in the database.
         MySQLBroker.getInstance().connect();
@@ -176,9 +266,15 @@ public final class MySQLInit {
                 if (tablename.equals(InitDBStatements.QUEUES)) {
                     tableQueuesFound = true;
                 }
+                if (tablename.equals(InitDBStatements.QUEUES_HISTORY)) {
+                    tableQueuesHistoryFound = true;
+                }
                 if (tablename.equals(InitDBStatements.REQUESTS)) {
                     tableRequestFound = true;
                 }
+                if (tablename.equals(InitDBStatements.REQUESTS_HISTORY)) {
+                    tableRequestHistoryFound = true;
+                }
                 LOGGER.debug("Table found: {}", tablename);
             }
         } catch (final SQLException e) {
@@ -205,6 +301,24 @@ public final class MySQLInit {
             this.createTable(InitDBStatements.REQUESTS,
                     InitDBStatements.STRUCTURE_TABLE_REQUESTS);
         }
+        // The indexes for the access paths of the Dispatcher. They are also
+        // added to the tables of previous versions.
+        final Set<String> indexes = this.getIndexes(InitDBStatements.REQUESTS);
+        this.createIndex(InitDBStatements.REQUESTS,
+                InitDBStatements.INDEX_REQUESTS_STATUS_ID,
+                InitDBStatements.STRUCTURE_INDEX_REQUESTS_STATUS_ID, indexes);
+        this.createIndex(InitDBStatements.REQUESTS,
+                InitDBStatements.INDEX_REQUESTS_FILE_STATUS,
+                InitDBStatements.STRUCTURE_INDEX_REQUESTS_FILE_STATUS, indexes);
+        // The history tables are copies of the tables, used by the archiver.
+        if (!tableQueuesHistoryFound) {
+            this.createTable(InitDBStatements.QUEUES_HISTORY,
+                    InitDBStatements.STRUCTURE_TABLE_QUEUES_HISTORY);
+        }
+        if (!tableRequestHistoryFound) {
+            this.createTable(InitDBStatements.REQUESTS_HISTORY,
+                    InitDBStatements.STRUCTURE_TABLE_REQUESTS_HISTORY);
+        }
         if (!tableHeartBeatFound) {
             this.createTable(InitDBStatements.HEART_BEAT,
                     InitDBStatements.STRUCTURE_TABLE_HEART_BEAT);
@@ -0,0 +1,253 @@
+/*
+ * Copyright      Jonathan Schaeffer 2009-2010,
+ *                  CC-IN2P3, CNRS <jonathan.schaeffer@cc.in2p3.fr>
+ * Contributors   Andres Gomez,
+ *                  CC-IN2P3, CNRS <andres.gomez@cc.in2p3.fr>
+ *
+ * This software is a computer program whose purpose is to schedule, sort
+ * and submit file requests to the hierarchical storage system HPSS.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights, and the successive licensors have only limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+package fr.in2p3.cc.storage.treqs.persistence.mysql;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mysql.jdbc.Connection;
+
+/**
+ * Connection of the pool of the broker. It keeps the prepared statements
+ * already created in this connection, in order to not prepare them again.
+ * <p>
+ * A pooled connection is used by only one thread at a time, the thread that
+ * leased it from the broker. The same thread can lease it several times, and
+ * the connection is given back to the pool when all the leases have been
+ * released.
+ *
+ * @since 1.5.6
+ */
+final class MySQLPooledConnection {
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(MySQLPooledConnection.class);
+    /**
+     * Maximal quantity of prepared statements kept per connection. The fixed
+     * statements are less than this quantity.
+     */
+    private static final int MAX_STATEMENTS = 64;
+
+    /**
+     * Physical connection to the database.
+     */
+    private final Connection connection;
+    /**
+     * Quantity of times this connection has been leased by the current thread.
+     */
+    private int leases;
+    /**
+     * Prepared statements of this connection, per query, in access order.
+     */
+    private final Map<String, PreparedStatement> statements;
+
+    /**
+     * Creates a pooled connection around a physical connection.
+     *
+     * @param physicalConnection
+     *            Established connection to the database.
+     */
+    MySQLPooledConnection(final Connection physicalConnection) {
+        LOGGER.trace("> Creating instance");
+
+        assert physicalConnection != null;
+
+        this.connection = physicalConnection;
+        this.leases = 0;
+        this.statements = new LinkedHashMap<String, PreparedStatement>(16,
+                0.75f, true) {
+            /**
+             * Generated ID.
+             */
+            private static final long serialVersionUID = 1L;
+
+            /*
+             * (non-Javadoc)
+             *
+             * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+             */
+            @Override
+            protected boolean removeEldestEntry(
+                    final Entry<String, PreparedStatement> eldest) {
+                final boolean remove = this.size() > MAX_STATEMENTS;
+                if (remove) {
+                    closeStatement(eldest.getValue());
+                }
+                return remove;
+            }
+        };
+
+        LOGGER.trace("< Creating instance");
+    }
+
+    /**
+     * Closes a cached statement, logging the problems.
+     *
+     * @param statement
+     *            Statement to close.
+     */
+    private static void closeStatement(final PreparedStatement statement) {
+        LOGGER.trace("> closeStatement");
+
+        assert statement != null;
+
+        try {
+            statement.close();
+        } catch (final SQLException e) {
+            LOGGER.error("Problem closing a statement: {}", e.getMessage());
+        }
+
+        LOGGER.trace("< closeStatement");
+    }
+
+    /**
+     * Closes the prepared statements and the physical connection.
+     *
+     * @throws SQLException
+     *             If there is a problem closing the connection.
+     */
+    void close() throws SQLException {
+        LOGGER.trace("> close");
+
+        final Iterator<PreparedStatement> iterator = this.statements.values()
+                .iterator();
+        while (iterator.hasNext()) {
+            closeStatement(iterator.next());
+        }
+        this.statements.clear();
+        this.connection.close();
+
+        LOGGER.trace("< close");
+    }
+
+    /**
+     * Getter for the physical connection.
+     *
+     * @return The connection to the database.
+     */
+    Connection getConnection() {
+        LOGGER.trace(">< getConnection");
+
+        return this.connection;
+    }
+
+    /**
+     * Retrieves the prepared statement for a query, preparing it only the
+     * first time.
+     *
+     * @param query
+     *            Query to prepare.
+     * @return Prepared statement without parameters.
+     * @throws SQLException
+     *             If there is a problem preparing the statement.
+     */
+    PreparedStatement getStatement(final String query) throws SQLException {
+        LOGGER.trace("> getStatement");
+
+        assert (query != null) && !query.equals("");
+
+        PreparedStatement ret = this.statements.get(query);
+        if ((ret == null) || ret.isClosed()) {
+            LOGGER.debug("Preparing: '{}'", query);
+            ret = this.connection.prepareStatement(query,
+                    java.sql.Statement.RETURN_GENERATED_KEYS);
+            this.statements.put(query, ret);
+        } else {
+            ret.clearParameters();
+        }
+
+        assert ret != null;
+
+        LOGGER.trace("< getStatement");
+
+        return ret;
+    }
+
+    /**
+     * Checks if the physical connection has been closed.
+     *
+     * @return true if the connection is closed.
+     * @throws SQLException
+     *             If there is a problem checking the connection.
+     */
+    boolean isClosed() throws SQLException {
+        LOGGER.trace(">< isClosed");
+
+        return this.connection.isClosed();
+    }
+
+    /**
+     * Registers a new lease of the current thread.
+     */
+    void lease() {
+        LOGGER.trace("> lease");
+
+        assert this.leases >= 0;
+
+        this.leases++;
+
+        LOGGER.trace("< lease");
+    }
+
+    /**
+     * Releases a lease of the current thread.
+     *
+     * @return true if there are not more leases, and the connection can be
+     *         given back to the pool.
+     */
+    boolean release() {
+        LOGGER.trace("> release");
+
+        assert this.leases > 0;
+
+        this.leases--;
+        final boolean ret = this.leases == 0;
+
+        LOGGER.trace("< release");
+
+        return ret;
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright      Jonathan Schaeffer 2009-2010,
+ *                  CC-IN2P3, CNRS <jonathan.schaeffer@cc.in2p3.fr>
+ * Contributors   Andres Gomez,
+ *                  CC-IN2P3, CNRS <andres.gomez@cc.in2p3.fr>
+ *
+ * This software is a computer program whose purpose is to schedule, sort
+ * and submit file requests to the hierarchical storage system HPSS.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights, and the successive licensors have only limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+package fr.in2p3.cc.storage.treqs.persistence.mysql;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fr.in2p3.cc.storage.treqs.Constants;
+import fr.in2p3.cc.storage.treqs.DefaultProperties;
+import fr.in2p3.cc.storage.treqs.TReqSException;
+import fr.in2p3.cc.storage.treqs.tools.Configurator;
+import fr.in2p3.cc.storage.treqs.tools.ProblematicConfiguationFileException;
+
+/**
+ * Writes the counters of the queues periodically. Only the last values of
+ * each queue are kept in memory, thus the successive modifications of a queue
+ * between two writes are written in a single update.
+ * <p>
+ * The changes of state of a queue are not delayed. Before writing a change of
+ * state, the pending counters of the queue have to be discarded, because the
+ * change of state also writes the counters.
+ * <p>
+ * If the interval is 0, the counters are written at once.
+ *
+ * @since 1.5.6
+ */
+public final class MySQLQueueStatisticsWriter {
+    /**
+     * If the shutdown hook has been registered.
+     */
+    private static boolean hookRegistered = false;
+    /**
+     * The singleton instance.
+     */
+    private static MySQLQueueStatisticsWriter instance = null;
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(MySQLQueueStatisticsWriter.class);
+
+    /**
+     * Destroys the only instance, writing the pending counters. ONLY for
+     * testing purposes.
+     */
+    public static synchronized void destroyInstance() {
+        LOGGER.trace("> destroyInstance");
+
+        if (instance != null) {
+            if (instance.timer != null) {
+                instance.timer.shutdownNow();
+            }
+            try {
+                instance.flush();
+            } catch (final TReqSException e) {
+                LOGGER.error("Pending counters not written: {}",
+                        e.getMessage());
+            }
+            LOGGER.info("Instance destroyed");
+        }
+        instance = null;
+
+        LOGGER.trace("< destroyInstance");
+    }
+
+    /**
+     * Retrieves the singleton instance.
+     *
+     * @return The singleton instance.
+     * @throws ProblematicConfiguationFileException
+     *             If there is a problem retrieving the configuration.
+     */
+    public static synchronized MySQLQueueStatisticsWriter getInstance()
+            throws ProblematicConfiguationFileException {
+        LOGGER.trace("> getInstance");
+
+        if (instance == null) {
+            LOGGER.debug("Creating instance.");
+
+            instance = new MySQLQueueStatisticsWriter();
+            registerShutdownHook();
+        }
+
+        assert instance != null;
+
+        LOGGER.trace("< getInstance");
+
+        return instance;
+    }
+
+    /**
+     * Registers, only once for all the instances, the hook that writes the
+     * pending counters of the current instance when the application stops.
+     */
+    private static void registerShutdownHook() {
+        LOGGER.trace("> registerShutdownHook");
+
+        if (!hookRegistered) {
+            Runtime.getRuntime().addShutdownHook(
+                    new Thread("MySQLQueueStatisticsWriter-shutdown") {
+                        @Override
+                        public void run() {
+                            MySQLQueueStatisticsWriter current;
+                            synchronized (MySQLQueueStatisticsWriter.class) {
+                                current = instance;
+                            }
+                            if (current != null) {
+                                try {
+                                    current.flush();
+                                } catch (final TReqSException e) {
+                                    LOGGER.error("Pending counters not "
+                                            + "written: {}", e.getMessage());
+                                }
+                            }
+                        }
+                    });
+            hookRegistered = true;
+        }
+
+        LOGGER.trace("< registerShutdownHook");
+    }
+
+    /**
+     * Lock to write the counters one after the other, and to discard the
+     * counters of a queue while they are not being written.
+     */
+    private final Object flushLock = new Object();
+    /**
+     * Last counters of each queue not yet written, by queue id.
+     */
+    private Map<Integer, Object[]> pending;
+    /**
+     * Thread that writes the pending counters periodically. Null if the
+     * counters are written at once.
+     */
+    private final ScheduledExecutorService timer;
+
+    /**
+     * Creates the writer, and starts the periodic write.
+     *
+     * @throws ProblematicConfiguationFileException
+     *             If there is a problem retrieving the configuration.
+     */
+    private MySQLQueueStatisticsWriter()
+            throws ProblematicConfiguationFileException {
+        LOGGER.trace("> Creating instance");
+
+        final short interval = Configurator.getInstance().getShortValue(
+                MySQLDAOFactory.SECTION_PERSISTENCE_MYSQL,
+                Constants.STATISTICS_INTERVAL,
+                DefaultProperties.STATISTICS_INTERVAL);
+        assert interval >= 0;
+        LOGGER.info("Statistics of the queues every {} milliseconds",
+                interval);
+
+        this.pending = new LinkedHashMap<Integer, Object[]>();
+        if (interval > 0) {
+            this.timer = Executors
+                    .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                        @Override
+                        public Thread newThread(final Runnable runnable) {
+                            final Thread thread = new Thread(runnable,
+                                    "MySQLQueueStatisticsWriter");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            this.timer.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        MySQLQueueStatisticsWriter.this.flush();
+                    } catch (final TReqSException e) {
+                        LOGGER.error("Error writing statistics: {}",
+                                e.getMessage());
+                    }
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            this.timer = null;
+        }
+
+        LOGGER.trace("< Creating instance");
+    }
+
+    /**
+     * Registers the last counters of a queue. They replace the pending
+     * counters of the same queue.
+     *
+     * @param id
+     *            Id of the queue.
+     * @param parameters
+     *            Values of the parameters of the update statement, in order.
+     * @throws TReqSException
+     *             If the counters are written at once, and there is a problem
+     *             writing them.
+     */
+    public void add(final int id, final Object[] parameters)
+            throws TReqSException {
+        LOGGER.trace("> add");
+
+        assert parameters != null;
+
+        synchronized (this) {
+            this.pending.put(id, parameters);
+        }
+        if (this.timer == null) {
+            this.flush();
+        }
+
+        LOGGER.trace("< add");
+    }
+
+    /**
+     * Discards the pending counters of a queue. If the counters are being
+     * written, this method waits until the write has finished. Thus, a change
+     * of state written after this call cannot be overwritten by older
+     * counters.
+     *
+     * @param id
+     *            Id of the queue.
+     */
+    public void discard(final int id) {
+        LOGGER.trace("> discard");
+
+        synchronized (this.flushLock) {
+            synchronized (this) {
+                this.pending.remove(id);
+            }
+        }
+
+        LOGGER.trace("< discard");
+    }
+
+    /**
+     * Writes the pending counters of all queues in a batch.
+     *
+     * @throws TReqSException
+     *             If there is a problem writing the batch. The counters are
+     *             discarded, the next modification of each queue will write
+     *             them again.
+     */
+    public void flush() throws TReqSException {
+        LOGGER.trace("> flush");
+
+        synchronized (this.flushLock) {
+            Map<Integer, Object[]> toWrite;
+            synchronized (this) {
+                toWrite = this.pending;
+                this.pending = new LinkedHashMap<Integer, Object[]>();
+            }
+            if (!toWrite.isEmpty()) {
+                LOGGER.debug("Writing statistics of {} queues",
+                        toWrite.size());
+                final List<Object[]> parameters = new ArrayList<Object[]>(
+                        toWrite.values());
+                MySQLBroker.getInstance().executeBatch(
+                        MySQLStatements.SQL_QUEUES_UPDATE_STATISTICS,
+                        parameters);
+            }
+        }
+
+        LOGGER.trace("< flush");
+    }
+}
@@ -135,6 +135,10 @@ public final class MySQLStatements {
      * Queues table: When the queue has been completely processed.
      */
     static final String QUEUES_END_TIME = "end_time";
+    /**
+     * History of the queues table name. The archived queues are moved to it.
+     */
+    public static final String QUEUES_HISTORY = "jqueues_history";
     /**
      * Queues table: Id of the queue.
      */
@@ -203,6 +207,11 @@ public final class MySQLStatements {
      * Requests table: Name of the file to stage.
      */
     static final String REQUESTS_FILE = "file";
+    /**
+     * History of the requests table name. The archived requests are moved to
+     * it.
+     */
+    public static final String REQUESTS_HISTORY = "jrequests_history";
     /**
      * Requests table: Id of the request.
      */
@@ -266,6 +275,35 @@ public final class MySQLStatements {
             + ALLOCATIONS_ID + ", " + ALLOCATIONS_USER + ", "
             + ALLOCATIONS_SHARE + " FROM " + ALLOCATIONS;
 
+    /**
+     * End of the query that retrieves the id of the last element of an archive
+     * batch.
+     */
+    public static final String SQL_ARCHIVE_BATCH_END = ") AS batch";
+    /**
+     * SQL statement to compute the limit time of an archive batch. The
+     * quantity of days has to be appended, and then SQL_ARCHIVE_DAYS. The
+     * limit is computed once per batch, and then it is used as a literal in
+     * all the statements of the batch, thus they process the same elements.
+     */
+    public static final String SQL_ARCHIVE_CUTOFF = "SELECT NOW() - "
+            + "INTERVAL ";
+    /**
+     * End of the limit time of the archive, that has been appended to the
+     * condition of the archivable elements.
+     */
+    public static final String SQL_ARCHIVE_CUTOFF_END = "'";
+    /**
+     * Unit of the retention time of the archive. This follows the quantity of
+     * days.
+     */
+    public static final String SQL_ARCHIVE_DAYS = " DAY";
+    /**
+     * Condition to archive the elements up to the last one of the batch. The
+     * id of the last element has to be appended.
+     */
+    public static final String SQL_ARCHIVE_UNTIL_ID = " AND id <= ";
+
     /**
      * Deletes old (all) registers in the heart beat table.
      */
@@ -319,6 +357,45 @@ public final class MySQLStatements {
             + MEDIATYPES_ID + ", " + MEDIATYPES_NAME + ", " + MEDIATYPES_DRIVES
             + ", " + MEDIATYPES_REG_EXP + " FROM " + MEDIATYPES;
 
+    /**
+     * Condition of the queues that can be archived: ended or aborted, without
+     * any request, and ended before the limit time. The limit time computed
+     * with SQL_ARCHIVE_CUTOFF has to be appended, and then
+     * SQL_ARCHIVE_CUTOFF_END.
+     * <p>
+     * Queues 7.
+     */
+    public static final String SQL_QUEUES_ARCHIVABLE = " FROM " + QUEUES
+            + " WHERE " + QUEUES_STATUS + " IN (" + QueueStatus.ENDED.getId()
+            + ", " + QueueStatus.ABORTED.getId() + ") AND NOT EXISTS (SELECT "
+            + REQUESTS_ID + " FROM " + REQUESTS + " WHERE " + REQUESTS + '.'
+            + REQUESTS_QUEUE_ID + " = " + QUEUES + '.' + QUEUES_ID + ") AND "
+            + QUEUES_END_TIME + " < '";
+    /**
+     * SQL statement to delete the archived queues. This is followed by
+     * SQL_QUEUES_ARCHIVABLE.
+     */
+    public static final String SQL_QUEUES_ARCHIVE_DELETE = "DELETE";
+    /**
+     * SQL statement to copy the queues to the history. The queues already
+     * copied by a previous interrupted batch are ignored. This is followed by
+     * SQL_QUEUES_ARCHIVABLE.
+     */
+    public static final String SQL_QUEUES_ARCHIVE_INSERT = "INSERT IGNORE "
+            + "INTO " + QUEUES_HISTORY + " SELECT *";
+    /**
+     * SQL statement to retrieve the id of the last queue of an archive batch.
+     * This is followed by SQL_QUEUES_ARCHIVABLE, the order, the limit and
+     * SQL_ARCHIVE_BATCH_END.
+     */
+    public static final String SQL_QUEUES_ARCHIVE_LAST_ID = "SELECT MAX("
+            + QUEUES_ID + ") FROM (SELECT " + QUEUES_ID;
+    /**
+     * Order of the queues to archive.
+     */
+    public static final String SQL_QUEUES_ARCHIVE_ORDER = " ORDER BY "
+            + QUEUES_ID;
+
     /**
      * SQL statement to insert a new queue in the database.
      * <p>
@@ -394,7 +471,74 @@ public final class MySQLStatements {
             + QUEUES_ID + " = ? ";
 
     /**
-     * SQL statement to retrieve the new requests registered in the database.
+     * SQL statement to update a queue, removing the suspension time. This is
+     * used when the suspension of a queue has ended, and the queue is created
+     * again.
+     * <p>
+     * Queues 7.
+     */
+    public static final String SQL_QUEUES_UPDATE_QUEUE_UNSUSPENDED = "UPDATE "
+            + QUEUES + " SET " + QUEUES_SUSPENSION_TIME + " = NULL, "
+            + QUEUES_STATUS + " = ?, " + QUEUES_NB_REQS + " = ?, "
+            + QUEUES_NB_REQS_DONE + " = ?, " + QUEUES_NB_REQS_FAILED + " = ?, "
+            + QUEUES_OWNER + " = ?, " + QUEUES_BYTE_SIZE + " = ? " + " WHERE "
+            + QUEUES_ID + " = ? ";
+
+    /**
+     * SQL statement to update the counters of a queue, without changing its
+     * state. This is used to write the statistics of the queues periodically.
+     * <p>
+     * Queues 6.
+     */
+    public static final String SQL_QUEUES_UPDATE_STATISTICS = "UPDATE "
+            + QUEUES + " SET " + QUEUES_NB_REQS + " = ?, "
+            + QUEUES_NB_REQS_DONE + " = ?, " + QUEUES_NB_REQS_FAILED + " = ?, "
+            + QUEUES_OWNER + " = ?, " + QUEUES_BYTE_SIZE + " = ? " + " WHERE "
+            + QUEUES_ID + " = ? ";
+
+    /**
+     * Condition of the requests that can be archived: in a final state, and
+     * ended before the limit time. The limit time computed with
+     * SQL_ARCHIVE_CUTOFF has to be appended, and then SQL_ARCHIVE_CUTOFF_END.
+     * <p>
+     * Requests 8.
+     */
+    public static final String SQL_REQUESTS_ARCHIVABLE = " FROM " + REQUESTS
+            + " WHERE " + REQUESTS_STATUS + " IN ("
+            + RequestStatus.STAGED.getId() + ", "
+            + RequestStatus.ON_DISK.getId() + ", "
+            + RequestStatus.FAILED.getId() + ") AND " + REQUESTS_END_TIME
+            + " < '";
+    /**
+     * SQL statement to delete the archived requests. This is followed by
+     * SQL_REQUESTS_ARCHIVABLE.
+     */
+    public static final String SQL_REQUESTS_ARCHIVE_DELETE = "DELETE";
+    /**
+     * SQL statement to copy the requests to the history. The requests already
+     * copied by a previous interrupted batch are ignored. This is followed by
+     * SQL_REQUESTS_ARCHIVABLE.
+     */
+    public static final String SQL_REQUESTS_ARCHIVE_INSERT = "INSERT IGNORE "
+            + "INTO " + REQUESTS_HISTORY + " SELECT *";
+    /**
+     * SQL statement to retrieve the id of the last request of an archive
+     * batch. This is followed by SQL_REQUESTS_ARCHIVABLE, the order, the limit
+     * and SQL_ARCHIVE_BATCH_END.
+     */
+    public static final String SQL_REQUESTS_ARCHIVE_LAST_ID = "SELECT MAX("
+            + REQUESTS_ID + ") FROM (SELECT " + REQUESTS_ID;
+    /**
+     * Order of the requests to archive.
+     */
+    public static final String SQL_REQUESTS_ARCHIVE_ORDER = " ORDER BY "
+            + REQUESTS_ID;
+
+    /**
+     * SQL statement to retrieve the new requests registered in the database,
+     * after a given id. The id has to be appended, and then
+     * SQL_REQUESTS_GET_NEW_ORDER. This permits to read the requests page by
+     * page, without reading again the requests of the previous pages.
      * TODO v2.0 This query should add this condition, but currently it is dealt
      * in the code. "AND retries < MAX_RETRIES" or "AND retries != -1"
      * <p>
@@ -404,7 +548,35 @@ public final class MySQLStatements {
             + ", " + REQUESTS_USER + ", " + REQUESTS_FILE + ", "
             + REQUESTS_TRIES + " FROM " + REQUESTS + " WHERE "
             + REQUESTS_STATUS + " = " + RequestStatus.CREATED.getId()
-            + " ORDER BY " + REQUESTS_ID;
+            + " AND " + REQUESTS_ID + " > ";
+    /**
+     * Order of the new requests. This is the end of SQL_REQUESTS_GET_NEW.
+     */
+    public static final String SQL_REQUESTS_GET_NEW_ORDER = " ORDER BY "
+            + REQUESTS_ID;
+
+    /**
+     * SQL statement to retrieve the submitted and queued requests of a
+     * previous execution, with the metadata of their files and the status of
+     * their queues. They are sorted by tape and position.
+     * <p>
+     * Requests 9.
+     */
+    public static final String SQL_REQUESTS_GET_UNFINISHED = "SELECT "
+            + REQUESTS + '.' + REQUESTS_ID + ", " + REQUESTS + '.'
+            + REQUESTS_USER + ", " + REQUESTS + '.' + REQUESTS_FILE + ", "
+            + REQUESTS + '.' + REQUESTS_TRIES + ", " + REQUESTS + '.'
+            + REQUESTS_TAPE + ", " + REQUESTS + '.' + REQUESTS_POSITION + ", "
+            + REQUESTS + '.' + REQUESTS_SIZE + ", " + QUEUES + '.'
+            + QUEUES_STATUS + " FROM " + REQUESTS + " LEFT JOIN " + QUEUES
+            + " ON " + REQUESTS + '.' + REQUESTS_QUEUE_ID + " = " + QUEUES
+            + '.' + QUEUES_ID + " WHERE " + REQUESTS + '.' + REQUESTS_STATUS
+            + " BETWEEN " + RequestStatus.SUBMITTED.getId() + " AND "
+            + RequestStatus.QUEUED.getId() + " AND " + REQUESTS + '.'
+            + REQUESTS_TAPE + " IS NOT NULL AND " + REQUESTS + '.'
+            + REQUESTS_POSITION + " IS NOT NULL AND " + REQUESTS + '.'
+            + REQUESTS_SIZE + " IS NOT NULL ORDER BY " + REQUESTS + '.'
+            + REQUESTS_TAPE + ", " + REQUESTS + '.' + REQUESTS_POSITION;
 
     /**
      * SQL statement to update as processed a request. This changes the end
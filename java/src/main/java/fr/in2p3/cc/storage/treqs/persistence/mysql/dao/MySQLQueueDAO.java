@@ -40,6 +40,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
 import java.util.Calendar;
 
 import org.slf4j.Logger;
@@ -51,6 +52,7 @@ import fr.in2p3.cc.storage.treqs.model.Queue;
 import fr.in2p3.cc.storage.treqs.model.QueueStatus;
 import fr.in2p3.cc.storage.treqs.model.dao.QueueDAO;
 import fr.in2p3.cc.storage.treqs.persistence.mysql.MySQLBroker;
+import fr.in2p3.cc.storage.treqs.persistence.mysql.MySQLQueueStatisticsWriter;
 import fr.in2p3.cc.storage.treqs.persistence.mysql.MySQLStatements;
 import fr.in2p3.cc.storage.treqs.persistence.mysql.exception.MySQLExecuteException;
 import fr.in2p3.cc.storage.treqs.persistence.mysql.exception.MySQLNoGeneratedIdException;
@@ -63,6 +65,10 @@ import fr.in2p3.cc.storage.treqs.persistence.mysql.exception.MySQLNoGeneratedIdE
  */
 public final class MySQLQueueDAO implements QueueDAO {
 
+    /**
+     * Format of the limit time of the archive.
+     */
+    private static final String ARCHIVE_CUTOFF_FORMAT = "yyyy-MM-dd HH:mm:ss";
     /**
      * Logger.
      */
@@ -90,6 +96,99 @@ public final class MySQLQueueDAO implements QueueDAO {
         return ret;
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see fr.in2p3.cc.storage.treqs.model.dao.QueueDAO#archive(short, int)
+     */
+    @Override
+    public int archive(final short days, final int limit)
+            throws TReqSException {
+        LOGGER.trace("> archive");
+
+        assert days > 0;
+        assert limit > 0;
+
+        // The same limit time is used by all the statements of the batch.
+        final String condition = MySQLStatements.SQL_QUEUES_ARCHIVABLE
+                + this.getArchiveCutoff(days)
+                + MySQLStatements.SQL_ARCHIVE_CUTOFF_END;
+
+        // The batch is delimited by the id of its last queue, thus the copy
+        // and the delete process the same queues.
+        int lastId = 0;
+        final Object[] objects = MySQLBroker.getInstance().executeSelect(
+                MySQLStatements.SQL_QUEUES_ARCHIVE_LAST_ID + condition
+                        + MySQLStatements.SQL_QUEUES_ARCHIVE_ORDER
+                        + MySQLStatements.SQL_LIMIT + limit
+                        + MySQLStatements.SQL_ARCHIVE_BATCH_END);
+        final ResultSet result = (ResultSet) objects[1];
+        try {
+            if (result.next()) {
+                lastId = result.getInt(1);
+            }
+        } catch (final SQLException e) {
+            throw new MySQLExecuteException(e);
+        } finally {
+            MySQLBroker.getInstance().terminateExecution(objects);
+        }
+
+        int ret = 0;
+        if (lastId > 0) {
+            MySQLBroker.getInstance().executeModification(
+                    MySQLStatements.SQL_QUEUES_ARCHIVE_INSERT + condition
+                            + MySQLStatements.SQL_ARCHIVE_UNTIL_ID + lastId);
+            ret = MySQLBroker.getInstance().executeModification(
+                    MySQLStatements.SQL_QUEUES_ARCHIVE_DELETE + condition
+                            + MySQLStatements.SQL_ARCHIVE_UNTIL_ID + lastId);
+            LOGGER.info("{} queues archived", ret);
+        }
+
+        assert ret >= 0;
+
+        LOGGER.trace("< archive");
+
+        return ret;
+    }
+
+    /**
+     * Computes, with the clock of the database, the limit time of an archive
+     * batch.
+     *
+     * @param days
+     *            Retention time in days.
+     * @return Limit time, formatted to be used as a literal.
+     * @throws TReqSException
+     *             If there is a problem executing the query.
+     */
+    private String getArchiveCutoff(final short days) throws TReqSException {
+        LOGGER.trace("> getArchiveCutoff");
+
+        assert days > 0;
+
+        String ret = null;
+        final Object[] objects = MySQLBroker.getInstance().executeSelect(
+                MySQLStatements.SQL_ARCHIVE_CUTOFF + days
+                        + MySQLStatements.SQL_ARCHIVE_DAYS);
+        final ResultSet result = (ResultSet) objects[1];
+        try {
+            if (result.next()) {
+                ret = new SimpleDateFormat(ARCHIVE_CUTOFF_FORMAT)
+                        .format(result.getTimestamp(1));
+            }
+        } catch (final SQLException e) {
+            throw new MySQLExecuteException(e);
+        } finally {
+            MySQLBroker.getInstance().terminateExecution(objects);
+        }
+
+        assert ret != null;
+
+        LOGGER.trace("< getArchiveCutoff");
+
+        return ret;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -143,6 +242,8 @@ public final class MySQLQueueDAO implements QueueDAO {
             }
         } catch (final SQLException e) {
             throw new MySQLExecuteException(e);
+        } finally {
+            MySQLBroker.getInstance().releaseStatement(statement);
         }
         LOGGER.info("New queue inserted with id {} ({})", id, tapeName);
 
@@ -169,8 +270,8 @@ public final class MySQLQueueDAO implements QueueDAO {
      * @throws MySQLExecuteException
      *             If there is a problem executing the query.
      */
-    private void processUpdate(final Queue queue, final short nbDone,
-            final short nbFailed, final PreparedStatement statement, final int i)
+    private void processUpdate(final Queue queue, final int nbDone,
+            final int nbFailed, final PreparedStatement statement, final int i)
             throws MySQLExecuteException {
         LOGGER.trace("> processUpdate");
 
@@ -210,12 +311,6 @@ public final class MySQLQueueDAO implements QueueDAO {
         } catch (final SQLException e) {
             LOGGER.error("Error updating queue " + id);
             throw new MySQLExecuteException(e);
-        } finally {
-            try {
-                statement.close();
-            } catch (final SQLException e) {
-                throw new MySQLExecuteException(e);
-            }
         }
 
         LOGGER.trace("< processUpdate");
@@ -262,11 +357,7 @@ public final class MySQLQueueDAO implements QueueDAO {
             LOGGER.error("Error updating queue " + id);
             throw new MySQLExecuteException(e);
         } finally {
-            try {
-                statement.close();
-            } catch (final SQLException e) {
-                throw new MySQLExecuteException(e);
-            }
+            MySQLBroker.getInstance().releaseStatement(statement);
         }
 
         LOGGER.trace("< updateAddRequest");
@@ -277,19 +368,23 @@ public final class MySQLQueueDAO implements QueueDAO {
      *
      * @see
      * fr.in2p3.cc.storage.treqs.model.dao.QueueDAO#updateState(fr.in2p3.cc.
-     * storage.treqs.model.Queue, java.util.Calendar, short, short)
+     * storage.treqs.model.Queue, java.util.Calendar, int, int)
      */
     @Override
     public void updateState(final Queue queue, final Calendar time,
-            final short nbDone, final short nbFailed) throws TReqSException {
+            final int nbDone, final int nbFailed) throws TReqSException {
         LOGGER.trace("> updateState");
 
         assert queue != null;
-        assert time != null;
         assert nbDone >= 0;
         assert nbFailed >= 0;
 
         final QueueStatus status = queue.getStatus();
+        // An unsuspended queue does not have any time to register.
+        assert (time != null) || (status == QueueStatus.CREATED);
+
+        // The change of state also writes the counters.
+        MySQLQueueStatisticsWriter.getInstance().discard(queue.getId());
 
         PreparedStatement statement = null;
         int index = 1;
@@ -305,10 +400,10 @@ public final class MySQLQueueDAO implements QueueDAO {
                         new Timestamp(time.getTimeInMillis()));
                 break;
             case CREATED:
-                assert (nbDone == 0) && (nbFailed == 0);
-                // This call could be done when the queue is unsuspended.
-                LOGGER.error("This is an invalid state call.");
-                assert false;
+                // The queue has been unsuspended.
+                assert queue.getSuspensionTime() == null;
+                statement = MySQLBroker.getInstance().getPreparedStatement(
+                        MySQLStatements.SQL_QUEUES_UPDATE_QUEUE_UNSUSPENDED);
                 break;
             case ENDED:
                 statement = MySQLBroker.getInstance().getPreparedStatement(
@@ -333,15 +428,42 @@ public final class MySQLQueueDAO implements QueueDAO {
         } catch (final SQLException e) {
             throw new MySQLExecuteException(e);
         } finally {
-            try {
-                if (statement != null) {
-                    statement.close();
-                }
-            } catch (final SQLException e) {
-                throw new MySQLExecuteException(e);
+            if (statement != null) {
+                MySQLBroker.getInstance().releaseStatement(statement);
             }
         }
 
         LOGGER.trace("< updateState");
     }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * fr.in2p3.cc.storage.treqs.model.dao.QueueDAO#updateStatistics(fr.in2p3
+     * .cc.storage.treqs.model.Queue, int, int)
+     */
+    @Override
+    public void updateStatistics(final Queue queue, final int nbDone,
+            final int nbFailed) throws TReqSException {
+        LOGGER.trace("> updateStatistics");
+
+        assert queue != null;
+        assert nbDone >= 0;
+        assert nbFailed >= 0;
+
+        String ownerName = Constants.NO_OWNER_NAME;
+        if (queue.getOwner() != null) {
+            ownerName = queue.getOwner().getName();
+        }
+        final int id = queue.getId();
+
+        // The values are taken now, and written later.
+        MySQLQueueStatisticsWriter.getInstance().add(
+                id,
+                new Object[] { queue.getRequestsSize(), nbDone, nbFailed,
+                        ownerName, queue.getByteSize(), id });
+
+        LOGGER.trace("< updateStatistics");
+    }
 }
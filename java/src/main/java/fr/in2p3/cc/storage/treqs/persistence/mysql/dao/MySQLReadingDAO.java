@@ -36,10 +36,10 @@
  */
 package fr.in2p3.cc.storage.treqs.persistence.mysql.dao;
 
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -47,10 +47,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import fr.in2p3.cc.storage.treqs.TReqSException;
+import fr.in2p3.cc.storage.treqs.model.QueueStatus;
 import fr.in2p3.cc.storage.treqs.model.Reading;
 import fr.in2p3.cc.storage.treqs.model.RequestStatus;
 import fr.in2p3.cc.storage.treqs.model.dao.ReadingDAO;
 import fr.in2p3.cc.storage.treqs.persistence.helper.PersistenceHelperFileRequest;
+import fr.in2p3.cc.storage.treqs.persistence.helper.PersistenceHelperUnfinishedRequest;
+import fr.in2p3.cc.storage.treqs.persistence.mysql.MySQLBatchWriter;
 import fr.in2p3.cc.storage.treqs.persistence.mysql.MySQLBroker;
 import fr.in2p3.cc.storage.treqs.persistence.mysql.MySQLStatements;
 import fr.in2p3.cc.storage.treqs.persistence.mysql.exception.MySQLExecuteException;
@@ -63,12 +66,109 @@ import fr.in2p3.cc.storage.treqs.persistence.mysql.exception.MySQLExecuteExcepti
  */
 public final class MySQLReadingDAO implements ReadingDAO {
 
+    /**
+     * Format of the limit time of the archive.
+     */
+    private static final String ARCHIVE_CUTOFF_FORMAT = "yyyy-MM-dd HH:mm:ss";
     /**
      * Logger.
      */
     private static final Logger LOGGER = LoggerFactory
             .getLogger(MySQLReadingDAO.class);
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see fr.in2p3.cc.storage.treqs.model.dao.ReadingDAO#archive(short, int)
+     */
+    @Override
+    public int archive(final short days, final int limit)
+            throws TReqSException {
+        LOGGER.trace("> archive");
+
+        assert days > 0;
+        assert limit > 0;
+
+        // The same limit time is used by all the statements of the batch.
+        final String condition = MySQLStatements.SQL_REQUESTS_ARCHIVABLE
+                + this.getArchiveCutoff(days)
+                + MySQLStatements.SQL_ARCHIVE_CUTOFF_END;
+
+        // The batch is delimited by the id of its last request, thus the copy
+        // and the delete process the same requests.
+        int lastId = 0;
+        final Object[] objects = MySQLBroker.getInstance().executeSelect(
+                MySQLStatements.SQL_REQUESTS_ARCHIVE_LAST_ID + condition
+                        + MySQLStatements.SQL_REQUESTS_ARCHIVE_ORDER
+                        + MySQLStatements.SQL_LIMIT + limit
+                        + MySQLStatements.SQL_ARCHIVE_BATCH_END);
+        final ResultSet result = (ResultSet) objects[1];
+        try {
+            if (result.next()) {
+                lastId = result.getInt(1);
+            }
+        } catch (final SQLException e) {
+            throw new MySQLExecuteException(e);
+        } finally {
+            MySQLBroker.getInstance().terminateExecution(objects);
+        }
+
+        int ret = 0;
+        if (lastId > 0) {
+            MySQLBroker.getInstance().executeModification(
+                    MySQLStatements.SQL_REQUESTS_ARCHIVE_INSERT + condition
+                            + MySQLStatements.SQL_ARCHIVE_UNTIL_ID + lastId);
+            ret = MySQLBroker.getInstance().executeModification(
+                    MySQLStatements.SQL_REQUESTS_ARCHIVE_DELETE + condition
+                            + MySQLStatements.SQL_ARCHIVE_UNTIL_ID + lastId);
+            LOGGER.info("{} requests archived", ret);
+        }
+
+        assert ret >= 0;
+
+        LOGGER.trace("< archive");
+
+        return ret;
+    }
+
+    /**
+     * Computes, with the clock of the database, the limit time of an archive
+     * batch.
+     *
+     * @param days
+     *            Retention time in days.
+     * @return Limit time, formatted to be used as a literal.
+     * @throws TReqSException
+     *             If there is a problem executing the query.
+     */
+    private String getArchiveCutoff(final short days) throws TReqSException {
+        LOGGER.trace("> getArchiveCutoff");
+
+        assert days > 0;
+
+        String ret = null;
+        final Object[] objects = MySQLBroker.getInstance().executeSelect(
+                MySQLStatements.SQL_ARCHIVE_CUTOFF + days
+                        + MySQLStatements.SQL_ARCHIVE_DAYS);
+        final ResultSet result = (ResultSet) objects[1];
+        try {
+            if (result.next()) {
+                ret = new SimpleDateFormat(ARCHIVE_CUTOFF_FORMAT)
+                        .format(result.getTimestamp(1));
+            }
+        } catch (final SQLException e) {
+            throw new MySQLExecuteException(e);
+        } finally {
+            MySQLBroker.getInstance().terminateExecution(objects);
+        }
+
+        assert ret != null;
+
+        LOGGER.trace("< getArchiveCutoff");
+
+        return ret;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -92,40 +192,28 @@ public final class MySQLReadingDAO implements ReadingDAO {
         final Timestamp timestamp = new Timestamp(System.currentTimeMillis());
         final String filename = reading.getMetaData().getFile().getName();
 
-        final PreparedStatement statement = MySQLBroker.getInstance()
-                .getPreparedStatement(
-                        MySQLStatements.SQL_REQUESTS_UPDATE_SUBMITTED);
-        int index = 1;
-        try {
-            // Insert file Status
-            statement.setShort(index++, statusId);
-            // Insert the message
-            statement.setString(index++, message);
-            // insert id
-            statement.setInt(index++, queueId);
-            // Insert tape name
-            statement.setString(index++, tapename);
-            // Insert position
-            statement.setInt(index++, position);
-            // Insert level
-            statement.setByte(index++, (byte) 0);
-            // Insert size
-            statement.setLong(index++, size);
-            // Insert submission time
-            statement.setTimestamp(index++, timestamp);
-            // Insert file name
-            statement.setString(index++, filename);
-
-            statement.execute();
-
-            final int count = statement.getUpdateCount();
-            if (count <= 0) {
-                LOGGER.warn("Nothing updated");
-            }
-        } catch (final SQLException e) {
-            LOGGER.error("Error updating request " + queueId);
-            throw new MySQLExecuteException(e);
-        }
+        // The update is written in a batch.
+        MySQLBatchWriter.getInstance().add(
+                MySQLStatements.SQL_REQUESTS_UPDATE_SUBMITTED,
+                new Object[] {
+                        // Insert file Status
+                        statusId,
+                        // Insert the message
+                        message,
+                        // insert id
+                        queueId,
+                        // Insert tape name
+                        tapename,
+                        // Insert position
+                        position,
+                        // Insert level
+                        (byte) 0,
+                        // Insert size
+                        size,
+                        // Insert submission time
+                        timestamp,
+                        // Insert file name
+                        filename });
 
         LOGGER.trace("< firstUpdate");
     }
@@ -133,18 +221,26 @@ public final class MySQLReadingDAO implements ReadingDAO {
     /*
      * (non-Javadoc)
      *
-     * @see fr.in2p3.cc.storage.treqs.model.dao.ReadingDAO#getNewRequests(int)
+     * @see fr.in2p3.cc.storage.treqs.model.dao.ReadingDAO#getNewRequests(int,
+     * int)
      */
     @Override
-    public List<PersistenceHelperFileRequest> getNewRequests(final int limit)
-            throws TReqSException {
+    public List<PersistenceHelperFileRequest> getNewRequests(final int lastId,
+            final int limit) throws TReqSException {
         LOGGER.trace("> getNewRequests");
 
+        assert lastId >= 0;
         assert limit >= 0;
 
         final List<PersistenceHelperFileRequest> newRequests = new ArrayList<PersistenceHelperFileRequest>();
 
-        String query = MySQLStatements.SQL_REQUESTS_GET_NEW;
+        // The pending modifications have to be written before reading.
+        MySQLBatchWriter.getInstance().flush();
+
+        // Keyset pagination: the requests of the previous pages are not
+        // scanned again, even if they are still in created state.
+        String query = MySQLStatements.SQL_REQUESTS_GET_NEW + lastId
+                + MySQLStatements.SQL_REQUESTS_GET_NEW_ORDER;
         if (limit > 0) {
             query += MySQLStatements.SQL_LIMIT + limit;
         }
@@ -176,68 +272,104 @@ public final class MySQLReadingDAO implements ReadingDAO {
     }
 
     /**
-     * Fills the statement and execute it.
+     * Fills the statement and registers it to be written in a batch.
      *
      * @param reading
      *            Request to update.
      * @param status
      *            Status of the reading.
-     * @param statement
+     * @param query
      *            Statement to fill and execute.
-     * @param i
-     *            Index of the statement.
-     * @throws MySQLExecuteException
-     *             If there is a problem executing the query.
+     * @throws TReqSException
+     *             If there is a problem writing the batch.
      */
     private void processUpdate(final Reading reading,
-            final RequestStatus status, final PreparedStatement statement,
-            final int i) throws MySQLExecuteException {
+            final RequestStatus status, final String query)
+            throws TReqSException {
         LOGGER.trace("> processUpdate");
 
         assert reading != null;
         assert status != null;
-        assert statement != null;
-        assert i > 0;
+        assert query != null;
+
+        final short statusId = status.getId();
+        final int queueId = reading.getQueue().getId();
+        final String tapename = reading.getMetaData().getTape().getName();
+        final int position = reading.getMetaData().getPosition();
+        final String filename = reading.getMetaData().getFile().getName();
+        final byte nbTries = reading.getNumberOfTries();
+        final String errorMessage = reading.getErrorMessage();
+        final int errorCode = reading.getErrorCode();
+
+        LOGGER.debug("ID {} TAPE {} POS {} CODE {} TRIES {} STATUS {} "
+                + "MESS {} FILE {}", new Object[] { queueId, tapename,
+                position, errorCode, nbTries, statusId, errorMessage,
+                filename });
+        MySQLBatchWriter.getInstance().add(query, new Object[] {
+                // Insert queue id
+                queueId,
+                // Insert cartridge
+                tapename,
+                // Insert position.
+                position,
+                // Insert Error code
+                errorCode,
+                // Insert number of tries
+                nbTries,
+                // Insert File request Status
+                statusId,
+                // Insert message
+                errorMessage,
+                // Insert file name
+                filename });
+
+        LOGGER.trace("< processUpdate");
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * fr.in2p3.cc.storage.treqs.model.dao.ReadingDAO#getUnfinishedRequests()
+     */
+    @Override
+    public List<PersistenceHelperUnfinishedRequest> getUnfinishedRequests()
+            throws TReqSException {
+        LOGGER.trace("> getUnfinishedRequests");
+
+        final List<PersistenceHelperUnfinishedRequest> requests = new ArrayList<PersistenceHelperUnfinishedRequest>();
 
+        final Object[] objects = MySQLBroker.getInstance().executeSelect(
+                MySQLStatements.SQL_REQUESTS_GET_UNFINISHED);
+        final ResultSet result = (ResultSet) objects[1];
         try {
-            final short statusId = status.getId();
-            final int queueId = reading.getQueue().getId();
-            final String tapename = reading.getMetaData().getTape().getName();
-            final int position = reading.getMetaData().getPosition();
-            final String filename = reading.getMetaData().getFile().getName();
-            final byte nbTries = reading.getNumberOfTries();
-            final String errorMessage = reading.getErrorMessage();
-            final int errorCode = reading.getErrorCode();
-
-            int index = i;
-
-            LOGGER.debug("ID {} TAPE {} POS {} CODE {} TRIES {} STATUS {} "
-                    + "MESS {} FILE {}", new Object[] { queueId, tapename,
-                    position, errorCode, nbTries, statusId, errorMessage,
-                    filename });
-            // Insert queue id
-            statement.setInt(index++, queueId);
-            // Insert cartridge
-            statement.setString(index++, tapename);
-            // Insert position.
-            statement.setInt(index++, position);
-            // Insert Error code
-            statement.setInt(index++, errorCode);
-            // Insert number of tries
-            statement.setByte(index++, nbTries);
-            // Insert File request Status
-            statement.setShort(index++, statusId);
-            // Insert message
-            statement.setString(index++, errorMessage);
-            // Insert file name
-            statement.setString(index++, filename);
-
-            statement.execute();
-        } catch (final SQLException e1) {
-            throw new MySQLExecuteException(e1);
+            while (result.next()) {
+                int index = 1;
+                final int id = result.getInt(index++);
+                final String user = result.getString(index++);
+                final String fileName = result.getString(index++);
+                final byte tries = result.getByte(index++);
+                final String tape = result.getString(index++);
+                final int position = result.getInt(index++);
+                final long size = result.getLong(index++);
+                // The queue could not exist any more.
+                final boolean activated = result.getShort(index++) == QueueStatus.ACTIVATED
+                        .getId();
+                requests.add(new PersistenceHelperUnfinishedRequest(id,
+                        fileName, tries, user, tape, position, size,
+                        activated));
+            }
+        } catch (final SQLException e) {
+            throw new MySQLExecuteException(e);
+        } finally {
+            MySQLBroker.getInstance().terminateExecution(objects);
         }
 
-        LOGGER.trace("< processUpdate");
+        LOGGER.info("{} unfinished requests", requests.size());
+
+        LOGGER.trace("< getUnfinishedRequests");
+
+        return requests;
     }
 
     /*
@@ -260,27 +392,19 @@ public final class MySQLReadingDAO implements ReadingDAO {
         final Timestamp currentTimestamp = new Timestamp(
                 System.currentTimeMillis());
 
-        final PreparedStatement statement = MySQLBroker.getInstance()
-                .getPreparedStatement(
-                        MySQLStatements.SQL_REQUESTS_UPDATE_FINAL_REQUEST_ID);
-        int index = 1;
-        try {
-            // set status
-            statement.setShort(index++, statusId);
-            // set errorcode
-            statement.setInt(index++, code);
-            // set message
-            statement.setString(index++, message);
-            // set end time
-            statement.setTimestamp(index++, currentTimestamp);
-            // set ID
-            statement.setInt(index++, id);
-
-            statement.execute();
-        } catch (final SQLException e) {
-            LOGGER.error("Error updating request " + id);
-            throw new MySQLExecuteException(e);
-        }
+        MySQLBatchWriter.getInstance().add(
+                MySQLStatements.SQL_REQUESTS_UPDATE_FINAL_REQUEST_ID,
+                new Object[] {
+                        // set status
+                        statusId,
+                        // set errorcode
+                        code,
+                        // set message
+                        message,
+                        // set end time
+                        currentTimestamp,
+                        // set ID
+                        id });
 
         LOGGER.trace("< setRequestStatusById");
     }
@@ -300,19 +424,16 @@ public final class MySQLReadingDAO implements ReadingDAO {
         assert reading != null;
         assert status != null;
 
-        PreparedStatement statement = null;
-        int index = 1;
+        String query = null;
         switch (status) {
         // The request has been sent to the HSM.
         case QUEUED:
             LOGGER.debug("Logging an activation for staging");
-            statement = MySQLBroker.getInstance().getPreparedStatement(
-                    MySQLStatements.SQL_REQUESTS_UPDATE_REQUEST_QUEUED);
+            query = MySQLStatements.SQL_REQUESTS_UPDATE_REQUEST_QUEUED;
             break;
         // The request has been successfully staged.
         case STAGED:
-            statement = MySQLBroker.getInstance().getPreparedStatement(
-                    MySQLStatements.SQL_REQUESTS_UPDATE_REQUEST_ENDED);
+            query = MySQLStatements.SQL_REQUESTS_UPDATE_REQUEST_ENDED;
             LOGGER.debug("Logging a file final state with timestamp {}",
                     System.currentTimeMillis());
             break;
@@ -320,19 +441,16 @@ public final class MySQLReadingDAO implements ReadingDAO {
         case SUBMITTED:
             LOGGER.warn("Logging requeue of a file {}", reading.getMetaData()
                     .getFile().getName());
-            statement = MySQLBroker.getInstance().getPreparedStatement(
-                    MySQLStatements.SQL_REQUESTS_UPDATE_RESUBMITTED);
+            query = MySQLStatements.SQL_REQUESTS_UPDATE_RESUBMITTED;
             break;
         // The request had a problem. Retrying.
         case CREATED: // CREATED corresponds to a retry
-            statement = MySQLBroker.getInstance().getPreparedStatement(
-                    MySQLStatements.SQL_REQUESTS_UPDATE_REQUEST_RETRY);
+            query = MySQLStatements.SQL_REQUESTS_UPDATE_REQUEST_RETRY;
             break;
         // The request has been failed due a problem calling the
         // staging.
         case FAILED:
-            statement = MySQLBroker.getInstance().getPreparedStatement(
-                    MySQLStatements.SQL_REQUESTS_UPDATE_REQUEST_ENDED);
+            query = MySQLStatements.SQL_REQUESTS_UPDATE_REQUEST_ENDED;
             LOGGER.debug("Logging a file final state with timestamp {}",
                     System.currentTimeMillis());
             break;
@@ -341,7 +459,7 @@ public final class MySQLReadingDAO implements ReadingDAO {
             assert false;
             break;
         }
-        this.processUpdate(reading, status, statement, index);
+        this.processUpdate(reading, status, query);
 
         LOGGER.trace("< update");
     }
@@ -358,6 +476,9 @@ public final class MySQLReadingDAO implements ReadingDAO {
 
         LOGGER.info("Cleaning unfinished requests");
 
+        // The pending modifications have to be written before.
+        MySQLBatchWriter.getInstance().flush();
+
         final int ret = MySQLBroker.getInstance().executeModification(
                 MySQLStatements.SQL_REQUESTS_UPDATE_UNPROCESSED);
 
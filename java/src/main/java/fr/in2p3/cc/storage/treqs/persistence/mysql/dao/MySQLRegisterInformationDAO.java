@@ -105,6 +105,8 @@ public class MySQLRegisterInformationDAO implements RegisterInformationDAO {
                     LOGGER.error("Error updating the registration of " + name
                             + ' ' + value);
                     throw new MySQLExecuteException(e);
+                } finally {
+                    MySQLBroker.getInstance().releaseStatement(statement);
                 }
             } else {
                 final PreparedStatement statement = MySQLBroker.getInstance()
@@ -127,6 +129,8 @@ public class MySQLRegisterInformationDAO implements RegisterInformationDAO {
                     LOGGER.error("Error inserting the registration of " + name
                             + ' ' + value);
                     throw new MySQLExecuteException(e);
+                } finally {
+                    MySQLBroker.getInstance().releaseStatement(statement);
                 }
             }
         } catch (final SQLException e) {
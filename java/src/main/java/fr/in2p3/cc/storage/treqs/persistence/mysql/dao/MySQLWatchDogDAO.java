@@ -101,6 +101,8 @@ public final class MySQLWatchDogDAO implements WatchDogDAO {
             statement.execute();
         } catch (final SQLException e) {
             throw new MySQLExecuteException(e);
+        } finally {
+            MySQLBroker.getInstance().releaseStatement(statement);
         }
 
         LOGGER.trace("< start");
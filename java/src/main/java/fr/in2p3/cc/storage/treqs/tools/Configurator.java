@@ -105,6 +105,11 @@ public final class Configurator {
         return instance;
     }
 
+    /**
+     * Quantity of modifications done in the properties after the load. This
+     * permits to the users of a value to know when it has to be read again.
+     */
+    private volatile int modifications;
     /**
      * The container of the configuration.
      */
@@ -121,6 +126,7 @@ public final class Configurator {
         LOGGER.trace("> Create instance");
 
         this.properties = new CompositeConfiguration();
+        this.modifications = 0;
         String name = null;
         this.properties.addConfiguration(new SystemConfiguration());
         try {
@@ -156,6 +162,7 @@ public final class Configurator {
 
         if (this.properties != null) {
             this.properties.clearProperty(sec + "." + key);
+            this.modifications++;
         }
 
         LOGGER.trace("< deleteValue");
@@ -187,6 +194,44 @@ public final class Configurator {
         return value;
     }
 
+    /**
+     * Find the int value for a defined parameter. If not present, it returns
+     * the given default one.
+     *
+     * @param sec
+     *            Section of the property.
+     * @param key
+     *            Name of the property.
+     * @param defaultValue
+     *            Default value if nothing is found.
+     * @return The value.
+     */
+    public int getIntValue(final String sec, final String key,
+            final int defaultValue) {
+        LOGGER.trace("> getIntValue");
+
+        assert (sec != null) && !sec.equals("");
+        assert (key != null) && !key.equals("");
+
+        final int value = this.properties.getInt(sec + "." + key, defaultValue);
+
+        LOGGER.trace("< getIntValue - {}", value);
+
+        return value;
+    }
+
+    /**
+     * Retrieves the quantity of modifications done in the properties since
+     * they were loaded.
+     *
+     * @return Quantity of modifications.
+     */
+    public int getModifications() {
+        LOGGER.trace(">< getModifications");
+
+        return this.modifications;
+    }
+
     /**
      * Find the short value for a defined parameter. If not present, it returns
      * the given default one.
@@ -265,6 +310,7 @@ public final class Configurator {
         assert (value != null) && !value.equals("");
 
         this.properties.setProperty(section + "." + key, value);
+        this.modifications++;
 
         LOGGER.trace("< setValue");
     }
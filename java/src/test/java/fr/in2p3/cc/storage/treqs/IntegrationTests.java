@@ -41,8 +41,12 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 import fr.in2p3.cc.storage.treqs.control.activator.ActivatorTest;
+import fr.in2p3.cc.storage.treqs.control.archiver.ArchiverTest;
 import fr.in2p3.cc.storage.treqs.control.dispatcher.DispatcherTest;
+import fr.in2p3.cc.storage.treqs.control.selector.AndresSelectorTest;
+import fr.in2p3.cc.storage.treqs.control.selector.FifoSelectorTest;
 import fr.in2p3.cc.storage.treqs.control.selector.JonathanSelectorTest;
+import fr.in2p3.cc.storage.treqs.control.selector.SelectorTest;
 import fr.in2p3.cc.storage.treqs.hsm.command.HSMCommandBridgeTest;
 import fr.in2p3.cc.storage.treqs.tools.WatchdogTest;
 
@@ -53,8 +57,9 @@ import fr.in2p3.cc.storage.treqs.tools.WatchdogTest;
  */
 @RunWith(Suite.class)
 @SuiteClasses({ ControllerTests.class, JonathanSelectorTest.class,
+        SelectorTest.class, FifoSelectorTest.class, AndresSelectorTest.class,
         ActivatorTest.class, DispatcherTest.class, HSMCommandBridgeTest.class,
-        WatchdogTest.class })
+        WatchdogTest.class, ArchiverTest.class })
 public final class IntegrationTests {
     // Nothing.
 }
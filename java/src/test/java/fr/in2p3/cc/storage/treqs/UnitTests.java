@@ -41,6 +41,10 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 import fr.in2p3.cc.storage.treqs.control.dispatcher.FileRequestTest;
+import fr.in2p3.cc.storage.treqs.hsm.AbstractHSMBridgeTest;
+import fr.in2p3.cc.storage.treqs.hsm.HSMFactoryTest;
+import fr.in2p3.cc.storage.treqs.hsm.HSMMetadataCacheTest;
+import fr.in2p3.cc.storage.treqs.hsm.hpssJNI.HPSSErrorCodeTest;
 import fr.in2p3.cc.storage.treqs.media.MediaFinderFactoryTest;
 import fr.in2p3.cc.storage.treqs.model.FilePositionOnTapeTest;
 import fr.in2p3.cc.storage.treqs.model.FileTest;
@@ -63,7 +67,9 @@ import fr.in2p3.cc.storage.treqs.tools.ConfiguratorTest;
         TapeTest.class, ResourceTest.class, UserTest.class,
         FilePositionOnTapeTest.class, ReadingTest.class, QueueTest.class,
         StagerTest.class, ConfiguratorTest.class,
-        MediaFinderFactoryTest.class })
+        MediaFinderFactoryTest.class, HSMMetadataCacheTest.class,
+        HSMFactoryTest.class, HPSSErrorCodeTest.class,
+        AbstractHSMBridgeTest.class })
 public final class UnitTests {
     // Nothing.
 }
@@ -49,13 +49,16 @@ import fr.in2p3.cc.storage.treqs.MainTests;
 import fr.in2p3.cc.storage.treqs.RandomBlockJUnit4ClassRunner;
 import fr.in2p3.cc.storage.treqs.TReqSException;
 import fr.in2p3.cc.storage.treqs.control.controller.QueuesController;
+import fr.in2p3.cc.storage.treqs.control.controller.StagersController;
 import fr.in2p3.cc.storage.treqs.control.process.ProcessStatus;
 import fr.in2p3.cc.storage.treqs.hsm.mock.HSMMockBridge;
 import fr.in2p3.cc.storage.treqs.model.File;
 import fr.in2p3.cc.storage.treqs.model.FilePositionOnTape;
+import fr.in2p3.cc.storage.treqs.model.Helper;
 import fr.in2p3.cc.storage.treqs.model.MediaType;
 import fr.in2p3.cc.storage.treqs.model.Queue;
 import fr.in2p3.cc.storage.treqs.model.QueueStatus;
+import fr.in2p3.cc.storage.treqs.model.Stager;
 import fr.in2p3.cc.storage.treqs.model.Tape;
 import fr.in2p3.cc.storage.treqs.model.User;
 import fr.in2p3.cc.storage.treqs.persistence.AbstractDAOFactory;
@@ -120,6 +123,10 @@ public final class ActivatorTest {
      */
     @After
     public void tearDown() throws TReqSException {
+        // The stagers of the test could wake up the next Activator.
+        StagersController.getInstance().conclude();
+        StagersController.getInstance().waitToFinish();
+        StagersController.destroyInstance();
         try {
             if (Activator.getInstance().getProcessStatus() == ProcessStatus.STOPPING) {
                 Activator.getInstance().waitToFinish();
@@ -269,6 +276,129 @@ public final class ActivatorTest {
         Activator.getInstance().activate(queue);
     }
 
+    /**
+     * Tries to activate a queue that has already been activated as a
+     * successor. The queue is skipped.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testActivate06() throws TReqSException {
+        final File file = new File("filename", ActivatorTest.THREE_HUNDRED);
+        final Tape tape = new Tape("tapename", MEDIA_TYPE);
+        final FilePositionOnTape fpot = new FilePositionOnTape(file, 2, tape,
+                new User("username"));
+        final Queue queue = QueuesController.getInstance()
+                .addFilePositionOnTape(fpot, (byte) 1);
+        Helper.activate(queue);
+        Activator.getInstance().setActiveStagers((short) 0);
+
+        Activator.getInstance().activate(queue);
+
+        Assert.assertEquals(QueueStatus.ACTIVATED, queue.getStatus());
+        Assert.assertEquals(0, StagersController.getInstance()
+                .getActiveStagers());
+    }
+
+    /**
+     * Activates the queue that follows an activated queue on the same tape.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testActivateSuccessor01() throws TReqSException {
+        Activator.getInstance();
+
+        final Tape tape = new Tape("tapename", MEDIA_TYPE);
+        final User user = new User("username");
+
+        final File file1 = new File("filename1", ActivatorTest.THREE_HUNDRED);
+        final Queue queue1 = QueuesController.getInstance()
+                .addFilePositionOnTape(
+                        new FilePositionOnTape(file1, 20, tape, user), (byte) 1);
+        Helper.activate(queue1);
+        Helper.getNextReading(queue1);
+
+        final File file2 = new File("filename2", ActivatorTest.THREE_HUNDRED);
+        final Queue queue2 = QueuesController.getInstance()
+                .addFilePositionOnTape(
+                        new FilePositionOnTape(file2, 10, tape, user), (byte) 1);
+        Assert.assertTrue(queue2.isSuccessor());
+
+        Activator.activateSuccessor("tapename");
+
+        Assert.assertTrue(queue2.getStatus() != QueueStatus.CREATED);
+    }
+
+    /**
+     * A created queue that does not follow another one is not activated
+     * directly.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testActivateSuccessor02() throws TReqSException {
+        Activator.getInstance();
+
+        final File file = new File("filename", ActivatorTest.THREE_HUNDRED);
+        final Tape tape = new Tape("tapename", MEDIA_TYPE);
+        final Queue queue = QueuesController.getInstance()
+                .addFilePositionOnTape(
+                        new FilePositionOnTape(file, 2, tape,
+                                new User("username")), (byte) 1);
+
+        Activator.activateSuccessor("tapename");
+
+        Assert.assertTrue(queue.getStatus() == QueueStatus.CREATED);
+    }
+
+    /**
+     * The queue that follows an ended queue is not activated when the stagers
+     * of the other queues have reached the max.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testActivateSuccessor03() throws TReqSException {
+        Activator.getInstance().setMaxStagersPerQueue((byte) 1);
+        Activator.getInstance().setMaxStagers((short) 1);
+
+        final User user = new User("username");
+        final Queue other = QueuesController.getInstance()
+                .addFilePositionOnTape(
+                        new FilePositionOnTape(new File("filename0",
+                                ActivatorTest.THREE_HUNDRED), 10, new Tape(
+                                "tapenam0", MEDIA_TYPE), user), (byte) 1);
+        Helper.activate(other);
+        // This stager is not executed, but it is active.
+        StagersController.getInstance().create(other);
+
+        final Tape tape = new Tape("tapename", MEDIA_TYPE);
+        final File file1 = new File("filename1", ActivatorTest.THREE_HUNDRED);
+        final Queue queue1 = QueuesController.getInstance()
+                .addFilePositionOnTape(
+                        new FilePositionOnTape(file1, 20, tape, user), (byte) 1);
+        Helper.activate(queue1);
+        Helper.getNextReading(queue1);
+
+        final File file2 = new File("filename2", ActivatorTest.THREE_HUNDRED);
+        final Queue queue2 = QueuesController.getInstance()
+                .addFilePositionOnTape(
+                        new FilePositionOnTape(file2, 10, tape, user), (byte) 1);
+        Assert.assertTrue(queue2.isSuccessor());
+
+        Activator.activateSuccessor("tapename");
+
+        Assert.assertEquals(QueueStatus.CREATED, queue2.getStatus());
+
+        // The stager that was never executed cannot be waited.
+        StagersController.destroyInstance();
+    }
+
     /**
      * Tries to set a negative active stagers.
      */
@@ -410,6 +540,35 @@ public final class ActivatorTest {
         }
     }
 
+    /**
+     * Changes the max stagers, and the pool of the stagers is resized.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testMaxStagers04() throws TReqSException {
+        final Queue queue = new Queue(new FilePositionOnTape(new File(
+                "filename", 10), 50, new Tape("tapename", new MediaType(
+                (byte) 1, "media", "/TAPE")), new User("username")), (byte) 0);
+        Helper.activate(queue);
+        HSMMockBridge.getInstance().setStageTime(100);
+
+        // The pool is created with the first execution.
+        final Stager stager = StagersController.getInstance().create(queue);
+        StagersController.getInstance().execute(stager, 0);
+        StagersController.getInstance().waitToFinish();
+
+        final short value = ActivatorTest.THREE_HUNDRED;
+        Activator.getInstance().setMaxStagers(value);
+
+        final int actual = StagersController.getInstance().getPoolSize();
+
+        final int expected = value;
+
+        Assert.assertEquals(expected, actual);
+    }
+
     /**
      * Executes the refresh allocation without problems.
      *
@@ -421,6 +580,49 @@ public final class ActivatorTest {
         Activator.getInstance().refreshAllocations();
     }
 
+    /**
+     * Resumes a rebuilt queue, that is activated directly.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testResume01() throws TReqSException {
+        final File file = new File("filename", ActivatorTest.THREE_HUNDRED);
+        final Tape tape = new Tape("tapename", MEDIA_TYPE);
+        final FilePositionOnTape fpot = new FilePositionOnTape(file, 2, tape,
+                new User("username"));
+        final Queue queue = QueuesController.getInstance()
+                .addFilePositionOnTape(fpot, (byte) 1);
+
+        Activator.getInstance().resume(queue);
+
+        Assert.assertTrue(queue.getStatus() != QueueStatus.CREATED);
+    }
+
+    /**
+     * Tries to resume a queue without available stagers. It stays created.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testResume02() throws TReqSException {
+        Activator.getInstance().setMaxStagers((short) 5);
+        Activator.getInstance().setActiveStagers((short) 10);
+
+        final File file = new File("filename", ActivatorTest.THREE_HUNDRED);
+        final Tape tape = new Tape("tapename", MEDIA_TYPE);
+        final FilePositionOnTape fpot = new FilePositionOnTape(file, 2, tape,
+                new User("username"));
+        final Queue queue = QueuesController.getInstance()
+                .addFilePositionOnTape(fpot, (byte) 1);
+
+        Activator.getInstance().resume(queue);
+
+        Assert.assertTrue(queue.getStatus() == QueueStatus.CREATED);
+    }
+
     /**
      * Tests to stop the activator from other thread.
      * <p>
@@ -627,4 +829,94 @@ public final class ActivatorTest {
         }
         Activator.getInstance().conclude();
     }
+
+    /**
+     * Wakes up the Activator before waiting; it does not wait.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testWakeUp01() throws TReqSException {
+        Activator.getInstance().setSecondsBetweenLoops((short) 5);
+
+        Activator.wakeUp();
+        final long start = System.currentTimeMillis();
+        Activator.getInstance().waitNextLoop();
+
+        Assert.assertTrue(System.currentTimeMillis() - start < THREE_HUNDRED);
+    }
+
+    /**
+     * Wakes up the Activator while it is waiting.
+     *
+     * @throws TReqSException
+     *             Never.
+     * @throws InterruptedException
+     *             Never.
+     */
+    @Test
+    public void testWakeUp02() throws TReqSException, InterruptedException {
+        Activator.getInstance().setSecondsBetweenLoops((short) 5);
+
+        final Thread waker = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(ActivatorTest.HUNDRED);
+                } catch (final InterruptedException e) {
+                    e.printStackTrace();
+                }
+                Activator.wakeUp();
+            }
+        };
+        waker.start();
+        final long start = System.currentTimeMillis();
+        Activator.getInstance().waitNextLoop();
+        // The other thread cannot wake up the Activator of the next test.
+        waker.join();
+
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    /**
+     * Waits the time between loops when nobody wakes up the Activator.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testWakeUp03() throws TReqSException {
+        Activator.getInstance().setSecondsBetweenLoops((short) 1);
+
+        final long start = System.currentTimeMillis();
+        Activator.getInstance().waitNextLoop();
+
+        Assert.assertTrue(System.currentTimeMillis() - start >= 900);
+    }
+
+    /**
+     * A queue whose suspension has already ended does not shorten the wait.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testWakeUp04() throws TReqSException {
+        final File file = new File("filename", ActivatorTest.THREE_HUNDRED);
+        final Tape tape = new Tape("tapename", MEDIA_TYPE);
+        final Queue queue = QueuesController.getInstance()
+                .addFilePositionOnTape(
+                        new FilePositionOnTape(file, 2, tape,
+                                new User("username")), (byte) 1);
+        Helper.activate(queue);
+        Helper.suspend(queue);
+        Helper.endSuspension(queue);
+        Activator.getInstance().setSecondsBetweenLoops((short) 1);
+
+        final long start = System.currentTimeMillis();
+        Activator.getInstance().waitNextLoop();
+
+        Assert.assertTrue(System.currentTimeMillis() - start >= 900);
+    }
 }
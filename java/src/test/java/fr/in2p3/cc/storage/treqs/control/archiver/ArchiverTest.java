@@ -0,0 +1,255 @@
+/*
+ * Copyright      Jonathan Schaeffer 2009-2010,
+ *                  CC-IN2P3, CNRS <jonathan.schaeffer@cc.in2p3.fr>
+ * Contributors   Andres Gomez,
+ *                  CC-IN2P3, CNRS <andres.gomez@cc.in2p3.fr>
+ *
+ * This software is a computer program whose purpose is to schedule, sort
+ * and submit file requests to the hierarchical storage system HPSS.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights, and the successive licensors have only limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+package fr.in2p3.cc.storage.treqs.control.archiver;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import fr.in2p3.cc.storage.treqs.Constants;
+import fr.in2p3.cc.storage.treqs.MainTests;
+import fr.in2p3.cc.storage.treqs.RandomBlockJUnit4ClassRunner;
+import fr.in2p3.cc.storage.treqs.TReqSException;
+import fr.in2p3.cc.storage.treqs.control.activator.Activator;
+import fr.in2p3.cc.storage.treqs.control.controller.StagersController;
+import fr.in2p3.cc.storage.treqs.control.dispatcher.Dispatcher;
+import fr.in2p3.cc.storage.treqs.control.process.ProcessStatus;
+import fr.in2p3.cc.storage.treqs.control.starter.Starter;
+import fr.in2p3.cc.storage.treqs.persistence.AbstractDAOFactory;
+import fr.in2p3.cc.storage.treqs.persistence.mock.dao.MockQueueDAO;
+import fr.in2p3.cc.storage.treqs.persistence.mock.dao.MockReadingDAO;
+import fr.in2p3.cc.storage.treqs.persistence.mock.dao.MockPersistanceException;
+import fr.in2p3.cc.storage.treqs.tools.Configurator;
+
+/**
+ * Test for Archiver.
+ */
+@RunWith(RandomBlockJUnit4ClassRunner.class)
+public final class ArchiverTest {
+
+    /**
+     * Quantity of archivable queues.
+     */
+    private static final int QUEUES = 3;
+    /**
+     * Quantity of archivable requests.
+     */
+    private static final int REQUESTS = 5;
+
+    /**
+     * Sets the general environment.
+     *
+     * @throws TReqSException
+     *             If there is any problem.
+     */
+    @BeforeClass
+    public static void oneTimeSetUp() throws TReqSException {
+        System.setProperty(Constants.CONFIGURATION_FILE,
+                MainTests.PROPERTIES_FILE);
+        Configurator.getInstance().setValue(Constants.SECTION_PERSISTENCE,
+                Constants.PESISTENCE_FACTORY, MainTests.MOCK_PERSISTANCE);
+    }
+
+    /**
+     * Destroys all after all tests.
+     */
+    @AfterClass
+    public static void oneTimeTearDown() {
+        Configurator.destroyInstance();
+        AbstractDAOFactory.destroyInstance();
+        System.clearProperty(Constants.CONFIGURATION_FILE);
+    }
+
+    /**
+     * Stops the processes left by other tests, because they could stop the
+     * Archiver through the Starter.
+     */
+    @Before
+    public void setUp() {
+        Activator.destroyInstance();
+        Dispatcher.destroyInstance();
+        StagersController.destroyInstance();
+        Starter.destroyInstance();
+        Archiver.destroyInstance();
+    }
+
+    /**
+     * Cleans after each test.
+     */
+    @After
+    public void tearDown() {
+        Archiver.destroyInstance();
+        MockReadingDAO.setArchivableRequests(0);
+        MockReadingDAO.setArchiveException(null);
+        MockQueueDAO.setArchivableQueues(0);
+    }
+
+    /**
+     * Archives the requests and the queues by batches.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testAction01() throws TReqSException {
+        MockReadingDAO.setArchivableRequests(REQUESTS);
+        MockQueueDAO.setArchivableQueues(QUEUES);
+
+        final Archiver archiver = Archiver.getInstance();
+        archiver.setRetentionDays((short) 1);
+        archiver.setBatchSize(2);
+        archiver.oneLoop();
+
+        // Everything was archived in one loop.
+        Assert.assertEquals(0, new MockReadingDAO().archive((short) 1,
+                REQUESTS));
+        Assert.assertEquals(0, new MockQueueDAO().archive((short) 1, QUEUES));
+        Assert.assertEquals(ProcessStatus.STOPPED, archiver.getProcessStatus());
+    }
+
+    /**
+     * Nothing is archived when the retention is zero.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testAction02Deactivated() throws TReqSException {
+        MockReadingDAO.setArchivableRequests(REQUESTS);
+
+        final Archiver archiver = Archiver.getInstance();
+        archiver.setRetentionDays((short) 0);
+        archiver.oneLoop();
+
+        Assert.assertEquals(REQUESTS, new MockReadingDAO().archive((short) 1,
+                REQUESTS));
+    }
+
+    /**
+     * A problem while archiving does not stop the archiver with an error.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testAction03Exception() throws TReqSException {
+        MockReadingDAO.setArchivableRequests(REQUESTS);
+        MockReadingDAO.setArchiveException(new MockPersistanceException(
+                new Exception()));
+
+        final Archiver archiver = Archiver.getInstance();
+        archiver.setRetentionDays((short) 1);
+        archiver.oneLoop();
+
+        Assert.assertEquals(ProcessStatus.STOPPED, archiver.getProcessStatus());
+        Assert.assertEquals(REQUESTS, new MockReadingDAO().archive((short) 1,
+                REQUESTS));
+    }
+
+    /**
+     * Tests a batch size of zero.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testSetBatchSize01() throws TReqSException {
+        boolean failed = false;
+        try {
+            Archiver.getInstance().setBatchSize(0);
+            failed = true;
+        } catch (final Throwable e) {
+            if (!(e instanceof AssertionError)) {
+                failed = true;
+            }
+        }
+        if (failed) {
+            Assert.fail();
+        }
+    }
+
+    /**
+     * Tests a negative retention.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testSetRetentionDays01() throws TReqSException {
+        boolean failed = false;
+        try {
+            Archiver.getInstance().setRetentionDays((short) -1);
+            failed = true;
+        } catch (final Throwable e) {
+            if (!(e instanceof AssertionError)) {
+                failed = true;
+            }
+        }
+        if (failed) {
+            Assert.fail();
+        }
+    }
+
+    /**
+     * The archiver stops without waiting the whole time between loops.
+     *
+     * @throws TReqSException
+     *             Never.
+     * @throws InterruptedException
+     *             Never.
+     */
+    @Test
+    public void testToStart01() throws TReqSException, InterruptedException {
+        final Archiver archiver = Archiver.getInstance();
+        archiver.setSecondsBetweenLoops((short) 3600);
+        archiver.start();
+
+        Thread.sleep(Constants.MILLISECONDS / 2);
+        final long start = System.currentTimeMillis();
+        archiver.conclude();
+        archiver.waitToFinish();
+        final long elapsed = System.currentTimeMillis() - start;
+
+        Assert.assertEquals(ProcessStatus.STOPPED, archiver.getProcessStatus());
+        Assert.assertTrue(elapsed < 3 * Constants.MILLISECONDS);
+    }
+}
@@ -97,6 +97,7 @@ public final class FilePositionOnTapesControllerTest {
         FilePositionOnTapesController.destroyInstance();
         FilesController.destroyInstance();
         TapesController.destroyInstance();
+        QueuesController.destroyInstance();
         Configurator.destroyInstance();
     }
 
@@ -221,6 +222,27 @@ public final class FilePositionOnTapesControllerTest {
 
     }
 
+    /**
+     * Tests to clean an fpot whose tape does not have any queue.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testCleanup01() throws TReqSException {
+        final File file = new File("filename",
+                FilePositionOnTapesControllerTest.HUNDRED);
+        final Tape tape = new Tape("tapename", MEDIA_TYPE);
+        final User user = new User("userName");
+
+        FilePositionOnTapesController.getInstance().add(file, tape, 0, user);
+
+        Assert.assertEquals(1, FilePositionOnTapesController.getInstance()
+                .cleanup());
+        Assert.assertNull(FilePositionOnTapesController.getInstance().exists(
+                "filename"));
+    }
+
     /**
      * Tests to create a fpot with file null.
      */
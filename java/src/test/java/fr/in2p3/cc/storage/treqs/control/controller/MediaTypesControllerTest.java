@@ -47,6 +47,7 @@ import fr.in2p3.cc.storage.treqs.MainTests;
 import fr.in2p3.cc.storage.treqs.RandomBlockJUnit4ClassRunner;
 import fr.in2p3.cc.storage.treqs.TReqSException;
 import fr.in2p3.cc.storage.treqs.control.exception.NotMediaTypeDefinedException;
+import fr.in2p3.cc.storage.treqs.model.MediaType;
 import fr.in2p3.cc.storage.treqs.persistence.AbstractDAOFactory;
 
 /**
@@ -143,4 +144,52 @@ public final class MediaTypesControllerTest {
         // FIXME hacer tests de la nueva estructura para ver si sí instancia
         // bien
     }
+
+    /**
+     * Retrieves media types with and without literal prefix.
+     * 
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testGetMedia05() throws TReqSException {
+        final MediaType it = MediaTypesController.getInstance().add("it",
+                (byte) 1, "IT.{4}");
+        final MediaType itx = MediaTypesController.getInstance().add("itx",
+                (byte) 2, "ITX.{3}");
+        final MediaType other = MediaTypesController.getInstance().add(
+                "other", (byte) 3, "[A-Z]{2}[0-9]{4}");
+
+        Assert.assertEquals(it, MediaTypesController.getInstance()
+                .getMediaType("IT1234"));
+        Assert.assertEquals(itx, MediaTypesController.getInstance()
+                .getMediaType("ITX123"));
+        Assert.assertEquals(other, MediaTypesController.getInstance()
+                .getMediaType("JT1234"));
+        // Twice, the second time the result is already known.
+        Assert.assertEquals(itx, MediaTypesController.getInstance()
+                .getMediaType("ITX123"));
+    }
+
+    /**
+     * Adds a media type after a tape name was analyzed.
+     * 
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testGetMedia06() throws TReqSException {
+        MediaTypesController.getInstance().add("it", (byte) 1, "IT.*");
+        try {
+            MediaTypesController.getInstance().getMediaType("JT1234");
+            Assert.fail();
+        } catch (final NotMediaTypeDefinedException e) {
+            // Expected.
+        }
+        final MediaType jt = MediaTypesController.getInstance().add("jt",
+                (byte) 2, "JT.*");
+
+        Assert.assertEquals(jt, MediaTypesController.getInstance()
+                .getMediaType("JT1234"));
+    }
 }
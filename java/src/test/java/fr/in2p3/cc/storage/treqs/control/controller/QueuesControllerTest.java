@@ -52,6 +52,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import fr.in2p3.cc.storage.treqs.Constants;
+import fr.in2p3.cc.storage.treqs.DefaultProperties;
 import fr.in2p3.cc.storage.treqs.MainTests;
 import fr.in2p3.cc.storage.treqs.RandomBlockJUnit4ClassRunner;
 import fr.in2p3.cc.storage.treqs.TReqSException;
@@ -62,6 +63,8 @@ import fr.in2p3.cc.storage.treqs.model.Helper;
 import fr.in2p3.cc.storage.treqs.model.MediaType;
 import fr.in2p3.cc.storage.treqs.model.Queue;
 import fr.in2p3.cc.storage.treqs.model.QueueStatus;
+import fr.in2p3.cc.storage.treqs.model.Reading;
+import fr.in2p3.cc.storage.treqs.model.RequestStatus;
 import fr.in2p3.cc.storage.treqs.model.Resource;
 import fr.in2p3.cc.storage.treqs.model.Stager;
 import fr.in2p3.cc.storage.treqs.model.Tape;
@@ -373,6 +376,36 @@ public final class QueuesControllerTest {
                 .exists(NAMETAPE_1, QueueStatus.TEMPORARILY_SUSPENDED) == null);
     }
 
+    /**
+     * Tests that the queue created behind the head of an activated queue
+     * follows it.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testAddFile04aSuccessor() throws TReqSException {
+        LOGGER.info("testAddFile04aSuccessor");
+
+        final FilePositionOnTape fpot = new FilePositionOnTape(new File(
+                "filename1", QueuesControllerTest.FIFTY), HUNDRED, TAPE_1,
+                USER_1);
+        final Queue queue1 = QueuesController.getInstance()
+                .addFilePositionOnTape(fpot, (byte) 1);
+        Assert.assertFalse(queue1.isSuccessor());
+
+        Helper.activate(queue1);
+        Helper.getNextReading(queue1);
+
+        final FilePositionOnTape fpotNew = new FilePositionOnTape(new File(
+                "filename2", QueuesControllerTest.FIFTY), 25, TAPE_1, USER_1);
+        final Queue queue2 = QueuesController.getInstance()
+                .addFilePositionOnTape(fpotNew, (byte) 1);
+
+        Assert.assertTrue(queue2.isSuccessor());
+        Assert.assertFalse(queue1.isSuccessor());
+    }
+
     /**
      * Tests to add a file in an already created queue.
      *
@@ -538,7 +571,8 @@ public final class QueuesControllerTest {
     }
 
     /**
-     * Tries to add a file in the same position with a different name.
+     * Adds a file in the same position with a different name. This happens
+     * when the files are aggregated.
      *
      * @throws TReqSException
      *             Never.
@@ -548,27 +582,20 @@ public final class QueuesControllerTest {
         final String filename1 = "filename1";
         final String filename2 = "filename2";
 
-        QueuesController.getInstance().addFilePositionOnTape(
-                new FilePositionOnTape(new File(filename1, HUNDRED),
-                        QueuesControllerTest.TEN, TAPE_1, USER_1),
-                (byte) QueuesControllerTest.THREE);
+        final Queue queue1 = QueuesController.getInstance()
+                .addFilePositionOnTape(
+                        new FilePositionOnTape(new File(filename1, HUNDRED),
+                                QueuesControllerTest.TEN, TAPE_1, USER_1),
+                        (byte) QueuesControllerTest.THREE);
 
         final FilePositionOnTape fpot = new FilePositionOnTape(new File(filename2,
                 QueuesControllerTest.FIFTY), QueuesControllerTest.TEN, TAPE_1,
                 USER_1);
-        boolean failed = false;
-        try {
-            QueuesController.getInstance()
-                    .addFilePositionOnTape(fpot, (byte) 1);
-            failed = true;
-        } catch (final Throwable e) {
-            if (!(e instanceof AssertionError)) {
-                failed = true;
-            }
-        }
-        if (failed) {
-            Assert.fail();
-        }
+        final Queue queue2 = QueuesController.getInstance()
+                .addFilePositionOnTape(fpot, (byte) 1);
+
+        Assert.assertTrue("Same queue", queue1 == queue2);
+        Assert.assertEquals("Both files", 2, queue1.getRequestsSize());
     }
 
     /**
@@ -1358,6 +1385,35 @@ public final class QueuesControllerTest {
         QueuesController.getInstance().exists(NAMETAPE_1, null);
     }
 
+    /**
+     * Tests the existence of a queue per owner and status after a change of
+     * status.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testExist08() throws TReqSException {
+        final Queue queue = QueuesController.getInstance().addFilePositionOnTape(
+                new FilePositionOnTape(new File("filename", HUNDRED),
+                        QueuesControllerTest.TEN, TAPE_1, USER_1),
+                (byte) QueuesControllerTest.THREE);
+
+        Assert.assertTrue(QueuesController.getInstance().exists(USER_1,
+                QueueStatus.CREATED));
+        Assert.assertFalse(QueuesController.getInstance().exists(USER_1,
+                QueueStatus.ACTIVATED));
+
+        Helper.activate(queue);
+
+        Assert.assertFalse(QueuesController.getInstance().exists(USER_1,
+                QueueStatus.CREATED));
+        Assert.assertTrue(QueuesController.getInstance().exists(USER_1,
+                QueueStatus.ACTIVATED));
+        Assert.assertTrue(QueuesController.getInstance().exists(
+                TAPE_1.getName(), QueueStatus.ACTIVATED) == queue);
+    }
+
     /**
      * Tests to retrieve the queues.
      *
@@ -1659,6 +1715,89 @@ public final class QueuesControllerTest {
                         .getSuspendDuration() == HUNDRED);
     }
 
+    /**
+     * Unsuspends a queue whose suspension has ended.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testUnsuspend01() throws TReqSException {
+        final Queue queue = QueuesController.getInstance()
+                .addFilePositionOnTape(
+                        new FilePositionOnTape(new File("filename1", HUNDRED),
+                                QueuesControllerTest.TEN, TAPE_1, USER_1),
+                        (byte) 1);
+        Helper.activate(queue);
+        Helper.suspend(queue);
+        Helper.endSuspension(queue);
+
+        Assert.assertEquals(0, QueuesController.getInstance()
+                .getNextSuspensionEnd());
+        Assert.assertEquals(1, QueuesController.getInstance()
+                .unsuspendQueues());
+        Assert.assertEquals(QueueStatus.CREATED, queue.getStatus());
+    }
+
+    /**
+     * Does not unsuspend a queue whose suspension is still running.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testUnsuspend02() throws TReqSException {
+        final Queue queue = QueuesController.getInstance()
+                .addFilePositionOnTape(
+                        new FilePositionOnTape(new File("filename1", HUNDRED),
+                                QueuesControllerTest.TEN, TAPE_1, USER_1),
+                        (byte) 1);
+        Helper.activate(queue);
+        Helper.suspend(queue);
+
+        Assert.assertEquals(queue.getSuspensionTime().getTimeInMillis(),
+                QueuesController.getInstance().getNextSuspensionEnd());
+        Assert.assertEquals(0, QueuesController.getInstance()
+                .unsuspendQueues());
+        Assert.assertEquals(QueueStatus.TEMPORARILY_SUSPENDED,
+                queue.getStatus());
+    }
+
+    /**
+     * Cancels a queue whose suspension has ended, but that has been suspended
+     * too many times. Its pending readings fail.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testUnsuspend03() throws TReqSException {
+        final Queue queue = QueuesController.getInstance()
+                .addFilePositionOnTape(
+                        new FilePositionOnTape(new File("filename1", HUNDRED),
+                                QueuesControllerTest.TEN, TAPE_1, USER_1),
+                        (byte) 1);
+        final short max = Configurator.getInstance().getShortValue(
+                Constants.SECTION_QUEUE, Constants.MAX_SUSPEND_RETRIES,
+                DefaultProperties.MAX_SUSPEND_RETRIES);
+        Helper.activate(queue);
+        final Reading reading = Helper.getNextReading(queue);
+        for (int i = 0; i < max; i++) {
+            if (i > 0) {
+                Helper.activate(queue);
+            }
+            Helper.suspend(queue);
+            Helper.endSuspension(queue);
+            Assert.assertEquals(1, QueuesController.getInstance()
+                    .unsuspendQueues());
+        }
+
+        Assert.assertEquals(QueueStatus.ENDED, queue.getStatus());
+        Assert.assertEquals(RequestStatus.FAILED, reading.getRequestStatus());
+        Assert.assertNull(QueuesController.getInstance().exists(
+                TAPE_1.getName(), QueueStatus.ENDED));
+    }
+
     /**
      * Tries to set a negative time.
      */
@@ -50,6 +50,7 @@ import fr.in2p3.cc.storage.treqs.Constants;
 import fr.in2p3.cc.storage.treqs.MainTests;
 import fr.in2p3.cc.storage.treqs.RandomBlockJUnit4ClassRunner;
 import fr.in2p3.cc.storage.treqs.TReqSException;
+import fr.in2p3.cc.storage.treqs.control.activator.Activator;
 import fr.in2p3.cc.storage.treqs.hsm.mock.HSMMockBridge;
 import fr.in2p3.cc.storage.treqs.model.File;
 import fr.in2p3.cc.storage.treqs.model.FilePositionOnTape;
@@ -109,6 +110,19 @@ public final class StagersControllerTest {
     @After
     public void tearDown() {
         StagersController.destroyInstance();
+        Activator.destroyInstance();
+    }
+
+    /**
+     * Retrieves the id of a stager from its name.
+     *
+     * @param stager
+     *            Stager to analyze.
+     * @return Id given by the controller.
+     */
+    private static int getId(final Stager stager) {
+        // tape-<time>-<id>-<tape>-<queue>
+        return Integer.parseInt(stager.getName().split("-")[2]);
     }
 
     /**
@@ -161,4 +175,90 @@ public final class StagersControllerTest {
         count = StagersController.getInstance().cleanup();
         Assert.assertEquals("Nothing cleaned", 0, count);
     }
+
+    /**
+     * Executes a stager in the pool, and it is unreferenced when it finishes.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void test02execute() throws TReqSException {
+        final String tapename = "tapename";
+        final Queue queue = new Queue(new FilePositionOnTape(new File(
+                "filename", 10), 50, new Tape(tapename, new MediaType((byte) 1,
+                "media", "/TAPE")), new User("username")), (byte) 0);
+        Helper.activate(queue);
+
+        HSMMockBridge.getInstance().setStageTime(100);
+
+        final Stager stager = StagersController.getInstance().create(queue);
+        Assert.assertEquals("One active", 1, StagersController.getInstance()
+                .getActiveStagers());
+
+        StagersController.getInstance().execute(stager, 0);
+        StagersController.getInstance().waitToFinish();
+
+        Assert.assertEquals("None active", 0, StagersController.getInstance()
+                .getActiveStagers());
+        Assert.assertEquals("Already unreferenced", 0, StagersController
+                .getInstance().cleanup());
+    }
+
+    /**
+     * The ids of the stagers are not reused when a stager finishes.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void test03ids() throws TReqSException {
+        final String tapename = "tapename";
+        final Queue queue = new Queue(new FilePositionOnTape(new File(
+                "filename", 10), 50, new Tape(tapename, new MediaType((byte) 1,
+                "media", "/TAPE")), new User("username")), (byte) 0);
+        Helper.activate(queue);
+
+        HSMMockBridge.getInstance().setStageTime(100);
+
+        final Stager stager1 = StagersController.getInstance().create(queue);
+        final Stager stager2 = StagersController.getInstance().create(queue);
+
+        StagersController.getInstance().execute(stager1, 0);
+        stager2.conclude();
+        StagersController.getInstance().execute(stager2, 0);
+        StagersController.getInstance().waitToFinish();
+
+        final Stager stager3 = StagersController.getInstance().create(queue);
+
+        Assert.assertEquals("First id", 0, getId(stager1));
+        Assert.assertEquals("Second id", 1, getId(stager2));
+        Assert.assertEquals("Not reused id", 2, getId(stager3));
+    }
+
+    /**
+     * The pool has the size of the maximal quantity of stagers of the
+     * Activator.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void test04poolSize() throws TReqSException {
+        final String tapename = "tapename";
+        final Queue queue = new Queue(new FilePositionOnTape(new File(
+                "filename", 10), 50, new Tape(tapename, new MediaType((byte) 1,
+                "media", "/TAPE")), new User("username")), (byte) 0);
+        Helper.activate(queue);
+
+        HSMMockBridge.getInstance().setStageTime(100);
+
+        final Stager stager = StagersController.getInstance().create(queue);
+        StagersController.getInstance().execute(stager, 0);
+        StagersController.getInstance().waitToFinish();
+
+        Assert.assertEquals("Same as the Activator", Activator.getInstance()
+                .getMaxStagers(), StagersController.getInstance()
+                .getPoolSize());
+    }
 }
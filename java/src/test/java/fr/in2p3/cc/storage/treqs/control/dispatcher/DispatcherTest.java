@@ -65,14 +65,18 @@ import fr.in2p3.cc.storage.treqs.hsm.AbstractHSMException;
 import fr.in2p3.cc.storage.treqs.hsm.AbstractHSMPropertiesException;
 import fr.in2p3.cc.storage.treqs.hsm.HSMGeneralPropertiesProblemException;
 import fr.in2p3.cc.storage.treqs.hsm.HSMHelperFileProperties;
+import fr.in2p3.cc.storage.treqs.hsm.HSMMetadataCache;
 import fr.in2p3.cc.storage.treqs.hsm.mock.HSMMockBridge;
 import fr.in2p3.cc.storage.treqs.model.File;
+import fr.in2p3.cc.storage.treqs.model.FilePositionOnTape;
 import fr.in2p3.cc.storage.treqs.model.MediaType;
+import fr.in2p3.cc.storage.treqs.model.Queue;
 import fr.in2p3.cc.storage.treqs.model.Tape;
 import fr.in2p3.cc.storage.treqs.model.User;
 import fr.in2p3.cc.storage.treqs.persistence.AbstractDAOFactory;
 import fr.in2p3.cc.storage.treqs.persistence.AbstractPersistanceException;
 import fr.in2p3.cc.storage.treqs.persistence.helper.PersistenceHelperFileRequest;
+import fr.in2p3.cc.storage.treqs.persistence.helper.PersistenceHelperUnfinishedRequest;
 import fr.in2p3.cc.storage.treqs.persistence.mock.dao.MockPersistanceException;
 import fr.in2p3.cc.storage.treqs.persistence.mock.dao.MockReadingDAO;
 import fr.in2p3.cc.storage.treqs.tools.Configurator;
@@ -150,6 +154,7 @@ public final class DispatcherTest {
         FilePositionOnTapesController.destroyInstance();
         FilesController.destroyInstance();
         TapesController.destroyInstance();
+        HSMMetadataCache.destroyInstance();
         HSMMockBridge.destroyInstance();
     }
 
@@ -205,6 +210,20 @@ public final class DispatcherTest {
         Dispatcher.getInstance().setMaxRequests((short) 5);
     }
 
+    /**
+     * Tests an invalid quantity of metadata threads.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test(expected = AssertionError.class)
+    public void testMetadataThreads01() throws TReqSException {
+        Configurator.getInstance().setValue(Constants.SECTION_DISPATCHER,
+                Constants.METADATA_THREADS, "-1");
+
+        Dispatcher.getInstance();
+    }
+
     /**
      * Gets the new requests.
      *
@@ -368,6 +387,73 @@ public final class DispatcherTest {
         Dispatcher.getInstance().retrieveNewRequests();
     }
 
+    /**
+     * Recovers the requests of a tape in just one queue, with their stored
+     * positions.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testRecover01() throws TReqSException {
+        final List<PersistenceHelperUnfinishedRequest> requests = new ArrayList<PersistenceHelperUnfinishedRequest>();
+        requests.add(new PersistenceHelperUnfinishedRequest(1, "filename1",
+                (byte) 0, "owner", "TAPB", 10, DispatcherTest.TWENTY, true));
+        requests.add(new PersistenceHelperUnfinishedRequest(2, "filename2",
+                (byte) 1, "owner", "TAPB", DispatcherTest.TWENTY,
+                DispatcherTest.TWENTY, true));
+
+        final List<Queue> queues = Dispatcher.getInstance().recover(requests);
+
+        Assert.assertEquals(1, queues.size());
+        Assert.assertEquals(2, queues.get(0).getRequestsSize());
+        Assert.assertEquals("TAPB", queues.get(0).getTape().getName());
+        Assert.assertEquals(DispatcherTest.TWENTY,
+                ((FilePositionOnTape) FilePositionOnTapesController
+                        .getInstance().exists("filename2")).getPosition());
+    }
+
+    /**
+     * Recovers two requests for the same file. The first one serves both.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testRecover02() throws TReqSException {
+        final List<PersistenceHelperUnfinishedRequest> requests = new ArrayList<PersistenceHelperUnfinishedRequest>();
+        requests.add(new PersistenceHelperUnfinishedRequest(1, "filename1",
+                (byte) 0, "owner1", "TAPB", 10, DispatcherTest.TWENTY,
+                false));
+        requests.add(new PersistenceHelperUnfinishedRequest(2, "filename1",
+                (byte) 0, "owner2", "TAPB", 10, DispatcherTest.TWENTY,
+                false));
+
+        final List<Queue> queues = Dispatcher.getInstance().recover(requests);
+
+        Assert.assertEquals(1, queues.size());
+        Assert.assertEquals(1, queues.get(0).getRequestsSize());
+    }
+
+    /**
+     * Recovers a request whose tape does not have a media type. It is not
+     * registered in a queue.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testRecover03() throws TReqSException {
+        final List<PersistenceHelperUnfinishedRequest> requests = new ArrayList<PersistenceHelperUnfinishedRequest>();
+        requests.add(new PersistenceHelperUnfinishedRequest(1, "filename1",
+                (byte) 0, "owner", "XX0123", 10, DispatcherTest.TWENTY, true));
+
+        final List<Queue> queues = Dispatcher.getInstance().recover(requests);
+
+        Assert.assertEquals(0, queues.size());
+        Assert.assertNull(FilesController.getInstance().exists("filename1"));
+    }
+
     /**
      * Tests a file in tape.
      * <p>
@@ -658,6 +744,64 @@ public final class DispatcherTest {
         Dispatcher.getInstance().retrieveNewRequests();
     }
 
+    /**
+     * Tests several requests for the same file with a pool of metadata
+     * threads. Just one file is registered.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testRetrieveNewRequest19() throws TReqSException {
+        Configurator.getInstance().setValue(Constants.SECTION_DISPATCHER,
+                Constants.METADATA_THREADS, "2");
+        HSMMockBridge.getInstance().setFileProperties(
+                new HSMHelperFileProperties("TAPB", 1, DispatcherTest.TWENTY));
+        final String filename = "filename1";
+        final List<PersistenceHelperFileRequest> requests = new ArrayList<PersistenceHelperFileRequest>();
+        for (int i = 1; i <= DispatcherTest.TWENTY; i++) {
+            requests.add(new PersistenceHelperFileRequest(i, filename,
+                    (byte) 0, "owner" + i));
+        }
+        MockReadingDAO.setNewRequests(requests);
+
+        Dispatcher.getInstance().retrieveNewRequests();
+
+        Assert.assertNotNull(FilesController.getInstance().exists(filename));
+        Assert.assertNotNull(FilePositionOnTapesController.getInstance()
+                .exists(filename));
+    }
+
+    /**
+     * Tests that the time between loops shrinks when there are new requests,
+     * and grows when there are not. The size of the query returns to the
+     * configured value once the backlog has been processed.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testRetrieveNewRequest20() throws TReqSException {
+        Dispatcher.getInstance().setMaxRequests((short) 1);
+        Dispatcher.getInstance().setSecondsBetweenLoops((short) 4);
+        final List<PersistenceHelperFileRequest> requests = new ArrayList<PersistenceHelperFileRequest>();
+        requests.add(new PersistenceHelperFileRequest(1, "filename1",
+                (byte) 0, "owner"));
+        MockReadingDAO.setNewRequests(requests);
+
+        Dispatcher.getInstance().retrieveNewRequests();
+
+        Assert.assertEquals(1, Dispatcher.getInstance().getFetchSize());
+        Assert.assertEquals(2 * Constants.MILLISECONDS, Dispatcher
+                .getInstance().getMillisToNextLoop());
+
+        MockReadingDAO.setQuantityRequests(0);
+        Dispatcher.getInstance().retrieveNewRequests();
+
+        Assert.assertEquals(4 * Constants.MILLISECONDS, Dispatcher
+                .getInstance().getMillisToNextLoop());
+    }
+
     /**
      * Tests to stop the dispatcher from other thread.
      * <p>
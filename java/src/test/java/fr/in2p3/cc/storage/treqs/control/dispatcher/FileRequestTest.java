@@ -57,6 +57,49 @@ public final class FileRequestTest {
      */
     private static final int TEN = 10;
 
+    /**
+     * Tests to coalesce a request for another file.
+     */
+    @Test(expected = AssertionError.class)
+    public void testCoalesce01() {
+        final FileRequest request = new FileRequest(1, "file1", new User(
+                "username"), (byte) 0);
+
+        request.coalesce(new FileRequest(2, "file2", new User("username"),
+                (byte) 0));
+    }
+
+    /**
+     * Tests to coalesce a request with itself.
+     */
+    @Test(expected = AssertionError.class)
+    public void testCoalesce02() {
+        final FileRequest request = new FileRequest(1, "file1", new User(
+                "username"), (byte) 0);
+
+        request.coalesce(request);
+    }
+
+    /**
+     * Tests to coalesce several requests for the same file.
+     */
+    @Test
+    public void testCoalesce03() {
+        final FileRequest request = new FileRequest(1, "file1", new User(
+                "username1"), (byte) 0);
+        final FileRequest request2 = new FileRequest(2, "file1", new User(
+                "username2"), (byte) 0);
+        final FileRequest request3 = new FileRequest(3, "file1", new User(
+                "username3"), (byte) 0);
+
+        request.coalesce(request2);
+        request.coalesce(request3);
+
+        Assert.assertEquals(2, request.getCoalescedRequests().size());
+        Assert.assertEquals(request2, request.getCoalescedRequests().get(0));
+        Assert.assertTrue(request2.getCoalescedRequests().isEmpty());
+    }
+
     /**
      * Tests a constructor with a negative id.
      */
@@ -0,0 +1,239 @@
+/*
+ * Copyright      Jonathan Schaeffer 2009-2010,
+ *                  CC-IN2P3, CNRS <jonathan.schaeffer@cc.in2p3.fr>
+ * Contributors   Andres Gomez,
+ *                  CC-IN2P3, CNRS <andres.gomez@cc.in2p3.fr>
+ *
+ * This software is a computer program whose purpose is to schedule, sort
+ * and submit file requests to the hierarchical storage system HPSS.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights, and the successive licensors have only limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+package fr.in2p3.cc.storage.treqs.control.selector;
+
+import java.util.ArrayList;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import fr.in2p3.cc.storage.treqs.Constants;
+import fr.in2p3.cc.storage.treqs.MainTests;
+import fr.in2p3.cc.storage.treqs.RandomBlockJUnit4ClassRunner;
+import fr.in2p3.cc.storage.treqs.TReqSException;
+import fr.in2p3.cc.storage.treqs.control.controller.HelperControl;
+import fr.in2p3.cc.storage.treqs.control.controller.QueuesController;
+import fr.in2p3.cc.storage.treqs.model.File;
+import fr.in2p3.cc.storage.treqs.model.FilePositionOnTape;
+import fr.in2p3.cc.storage.treqs.model.Helper;
+import fr.in2p3.cc.storage.treqs.model.MediaType;
+import fr.in2p3.cc.storage.treqs.model.Queue;
+import fr.in2p3.cc.storage.treqs.model.Resource;
+import fr.in2p3.cc.storage.treqs.model.Tape;
+import fr.in2p3.cc.storage.treqs.model.User;
+import fr.in2p3.cc.storage.treqs.persistence.AbstractDAOFactory;
+import fr.in2p3.cc.storage.treqs.tools.Configurator;
+import fr.in2p3.cc.storage.treqs.tools.ProblematicConfiguationFileException;
+
+/**
+ * Tests for the AndresSelector, without fair share.
+ */
+@RunWith(RandomBlockJUnit4ClassRunner.class)
+public final class AndresSelectorTest {
+    /**
+     * Media type 1 for tests.
+     */
+    private static final MediaType MEDIA_TYPE = new MediaType((byte) 1,
+            "T10K-a", "/TAPE");
+    /**
+     * Number 5.
+     */
+    private static final int NUMBER_5 = 5;
+    /**
+     * Number one hundred.
+     */
+    private static final int ONE_HUNDRED = 100;
+    /**
+     * Number six hundred.
+     */
+    private static final int SIX_HUNDRED = 600;
+    /**
+     * Number three hundred.
+     */
+    private static final int THREE_HUNDRED = 300;
+    /**
+     * Number twenty.
+     */
+    private static final int TWENTY = 20;
+
+    /**
+     * Setups the environment.
+     */
+    @BeforeClass
+    public static void oneTimeSetUp() {
+        System.setProperty(Constants.CONFIGURATION_FILE,
+                MainTests.PROPERTIES_FILE);
+    }
+
+    /**
+     * Destroys all after all tests.
+     */
+    @AfterClass
+    public static void oneTimeTearDown() {
+        System.clearProperty(Constants.CONFIGURATION_FILE);
+    }
+
+    /**
+     * Creates a queue with one file in the given tape.
+     *
+     * @param tapename
+     *            Name of the tape.
+     * @param size
+     *            Size of the file.
+     * @return The created queue.
+     * @throws TReqSException
+     *             Never.
+     */
+    private static Queue createQueue(final String tapename, final long size)
+            throws TReqSException {
+        final File file = new File("file" + tapename, size);
+        final Tape tape = new Tape(tapename, MEDIA_TYPE);
+        final FilePositionOnTape fpot = new FilePositionOnTape(file, TWENTY,
+                tape, new User("username"));
+        return HelperControl.addFPOT(fpot, (byte) 1);
+    }
+
+    /**
+     * Creates a list with the given queues, in the given order.
+     *
+     * @param queues
+     *            Queues of the list.
+     * @return The list of queues.
+     */
+    private static List<Queue> list(final Queue... queues) {
+        final List<Queue> ret = new ArrayList<Queue>();
+        for (final Queue queue : queues) {
+            ret.add(queue);
+        }
+        return ret;
+    }
+
+    /**
+     * Setups the environment.
+     *
+     * @throws ProblematicConfiguationFileException
+     *             If there is any problem.
+     */
+    @Before
+    public void setUp() throws ProblematicConfiguationFileException {
+        Configurator.getInstance().setValue(Constants.SECTION_PERSISTENCE,
+                Constants.PESISTENCE_FACTORY, MainTests.MOCK_PERSISTANCE);
+        Configurator.getInstance().setValue(Constants.SECTION_HSM_BRIDGE,
+                Constants.HSM_BRIDGE, MainTests.MOCK_BRIDGE);
+        Configurator.getInstance().setValue(Constants.SECTION_SELECTOR,
+                Constants.FAIR_SHARE, Constants.NO);
+    }
+
+    /**
+     * Destroys all after each test.
+     */
+    @After
+    public void tearDown() {
+        QueuesController.destroyInstance();
+        Configurator.destroyInstance();
+        AbstractDAOFactory.destroyInstance();
+    }
+
+    /**
+     * Tests that between queues of the same age, the one that reads the
+     * biggest files is the best one, whatever its position.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testBestQueue01() throws TReqSException {
+        final Resource resource = new Resource(MEDIA_TYPE, (byte) NUMBER_5);
+        final Queue queue1 = createQueue("tapenam1", THREE_HUNDRED);
+        final Queue queue2 = createQueue("tapenam2", SIX_HUNDRED);
+        final Queue queue3 = createQueue("tapenam3", ONE_HUNDRED);
+
+        Assert.assertSame(queue2, new AndresSelector().selectBestQueue(
+                list(queue1, queue2, queue3), resource));
+        Assert.assertSame(queue2, new AndresSelector().selectBestQueue(
+                list(queue3, queue1, queue2), resource));
+        Assert.assertSame(queue2, new AndresSelector().selectBestQueue(
+                list(queue2, queue3, queue1), resource));
+    }
+
+    /**
+     * Tests that a queue older than the limited time is the best one, even if
+     * it reads smaller files.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testBestQueue02() throws TReqSException {
+        final Resource resource = new Resource(MEDIA_TYPE, (byte) NUMBER_5);
+        final Queue queue1 = createQueue("tapenam1", SIX_HUNDRED);
+        final Queue queue2 = createQueue("tapenam2", ONE_HUNDRED);
+        final GregorianCalendar old = new GregorianCalendar();
+        old.add(GregorianCalendar.HOUR, -4);
+        Helper.setCreationTime(queue2, old);
+
+        Assert.assertSame(queue2, new AndresSelector().selectBestQueue(
+                list(queue1, queue2), resource));
+        Assert.assertSame(queue2, new AndresSelector().selectBestQueue(
+                list(queue2, queue1), resource));
+    }
+
+    /**
+     * Tests that with the same score, the first queue is kept.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testBestQueue03() throws TReqSException {
+        final Resource resource = new Resource(MEDIA_TYPE, (byte) NUMBER_5);
+        final Queue queue1 = createQueue("tapenam1", THREE_HUNDRED);
+        final Queue queue2 = createQueue("tapenam2", THREE_HUNDRED);
+
+        Assert.assertSame(queue1, new AndresSelector().selectBestQueue(
+                list(queue1, queue2), resource));
+        Assert.assertSame(queue2, new AndresSelector().selectBestQueue(
+                list(queue2, queue1), resource));
+    }
+}
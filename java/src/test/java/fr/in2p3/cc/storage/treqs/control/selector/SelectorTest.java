@@ -0,0 +1,294 @@
+/*
+ * Copyright      Jonathan Schaeffer 2009-2010,
+ *                  CC-IN2P3, CNRS <jonathan.schaeffer@cc.in2p3.fr>
+ * Contributors   Andres Gomez,
+ *                  CC-IN2P3, CNRS <andres.gomez@cc.in2p3.fr>
+ *
+ * This software is a computer program whose purpose is to schedule, sort
+ * and submit file requests to the hierarchical storage system HPSS.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights, and the successive licensors have only limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+package fr.in2p3.cc.storage.treqs.control.selector;
+
+import java.util.ArrayList;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import fr.in2p3.cc.storage.treqs.Constants;
+import fr.in2p3.cc.storage.treqs.MainTests;
+import fr.in2p3.cc.storage.treqs.RandomBlockJUnit4ClassRunner;
+import fr.in2p3.cc.storage.treqs.TReqSException;
+import fr.in2p3.cc.storage.treqs.control.controller.HelperControl;
+import fr.in2p3.cc.storage.treqs.control.controller.QueuesController;
+import fr.in2p3.cc.storage.treqs.model.File;
+import fr.in2p3.cc.storage.treqs.model.FilePositionOnTape;
+import fr.in2p3.cc.storage.treqs.model.Helper;
+import fr.in2p3.cc.storage.treqs.model.MediaType;
+import fr.in2p3.cc.storage.treqs.model.Queue;
+import fr.in2p3.cc.storage.treqs.model.Resource;
+import fr.in2p3.cc.storage.treqs.model.Tape;
+import fr.in2p3.cc.storage.treqs.model.User;
+import fr.in2p3.cc.storage.treqs.persistence.AbstractDAOFactory;
+import fr.in2p3.cc.storage.treqs.tools.Configurator;
+import fr.in2p3.cc.storage.treqs.tools.ProblematicConfiguationFileException;
+
+/**
+ * Tests for the scores of the queues kept by the Selector during a pass.
+ */
+@RunWith(RandomBlockJUnit4ClassRunner.class)
+public final class SelectorTest {
+    /**
+     * Selector that returns given scores, and counts the calculations.
+     */
+    private static final class CountingSelector extends Selector {
+        /**
+         * Quantity of calculated scores.
+         */
+        private int calculations = 0;
+        /**
+         * Scores to return.
+         */
+        private final Map<Queue, Double> values = new HashMap<Queue, Double>();
+
+        @Override
+        protected double calculateQueueScore(final Queue queue) {
+            this.calculations++;
+            return this.values.get(queue);
+        }
+
+        @Override
+        public Queue selectBestQueue(final List<Queue> queues,
+                final Resource resource) throws TReqSException {
+            return this.selectBestQueueWithoutUser(queues, resource);
+        }
+    }
+
+    /**
+     * Media type 1 for tests.
+     */
+    private static final MediaType MEDIA_TYPE = new MediaType((byte) 1,
+            "T10K-a", "/TAPE");
+    /**
+     * Number 5.
+     */
+    private static final int NUMBER_5 = 5;
+    /**
+     * Number three hundred.
+     */
+    private static final int THREE_HUNDRED = 300;
+    /**
+     * Number twenty.
+     */
+    private static final int TWENTY = 20;
+
+    /**
+     * Setups the environment.
+     */
+    @BeforeClass
+    public static void oneTimeSetUp() {
+        System.setProperty(Constants.CONFIGURATION_FILE,
+                MainTests.PROPERTIES_FILE);
+    }
+
+    /**
+     * Destroys all after all tests.
+     */
+    @AfterClass
+    public static void oneTimeTearDown() {
+        System.clearProperty(Constants.CONFIGURATION_FILE);
+    }
+
+    /**
+     * Creates a queue with one file in the given tape.
+     *
+     * @param tapename
+     *            Name of the tape.
+     * @return The created queue.
+     * @throws TReqSException
+     *             Never.
+     */
+    private static Queue createQueue(final String tapename)
+            throws TReqSException {
+        final File file = new File("file" + tapename, THREE_HUNDRED);
+        final Tape tape = new Tape(tapename, MEDIA_TYPE);
+        final FilePositionOnTape fpot = new FilePositionOnTape(file, TWENTY,
+                tape, new User("username"));
+        return HelperControl.addFPOT(fpot, (byte) 1);
+    }
+
+    /**
+     * Setups the environment.
+     *
+     * @throws ProblematicConfiguationFileException
+     *             If there is any problem.
+     */
+    @Before
+    public void setUp() throws ProblematicConfiguationFileException {
+        Configurator.getInstance().setValue(Constants.SECTION_PERSISTENCE,
+                Constants.PESISTENCE_FACTORY, MainTests.MOCK_PERSISTANCE);
+        Configurator.getInstance().setValue(Constants.SECTION_HSM_BRIDGE,
+                Constants.HSM_BRIDGE, MainTests.MOCK_BRIDGE);
+    }
+
+    /**
+     * Destroys all after each test.
+     */
+    @After
+    public void tearDown() {
+        QueuesController.destroyInstance();
+        Configurator.destroyInstance();
+        AbstractDAOFactory.destroyInstance();
+    }
+
+    /**
+     * Tests that each queue is scored once per pass, even if several
+     * selections are done.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testScores01() throws TReqSException {
+        final Resource resource = new Resource(MEDIA_TYPE, (byte) NUMBER_5);
+        final CountingSelector selector = new CountingSelector();
+        final List<Queue> queues = new ArrayList<Queue>();
+        for (int i = 1; i <= 3; i++) {
+            final Queue queue = createQueue("tapenam" + i);
+            selector.values.put(queue, (double) i);
+            queues.add(queue);
+        }
+
+        Assert.assertSame(queues.get(2),
+                selector.selectBestQueue(queues, resource));
+        Assert.assertSame(queues.get(2),
+                selector.selectBestQueue(queues, resource));
+
+        Assert.assertEquals(3, selector.calculations);
+    }
+
+    /**
+     * Tests that the scores are calculated again after clearing them.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testScores02() throws TReqSException {
+        final Resource resource = new Resource(MEDIA_TYPE, (byte) NUMBER_5);
+        final CountingSelector selector = new CountingSelector();
+        final Queue queue1 = createQueue("tapenam1");
+        final Queue queue2 = createQueue("tapenam2");
+        final List<Queue> queues = new ArrayList<Queue>();
+        queues.add(queue1);
+        queues.add(queue2);
+        selector.values.put(queue1, 2.0);
+        selector.values.put(queue2, 1.0);
+
+        Assert.assertSame(queue1, selector.selectBestQueue(queues, resource));
+
+        // The scores of the current pass are kept.
+        selector.values.put(queue2, 3.0);
+        Assert.assertSame(queue1, selector.selectBestQueue(queues, resource));
+
+        selector.clearScores();
+        Assert.assertSame(queue2, selector.selectBestQueue(queues, resource));
+
+        Assert.assertEquals(4, selector.calculations);
+    }
+
+    /**
+     * Tests that with the same score, the first queue is kept.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testScores03() throws TReqSException {
+        final Resource resource = new Resource(MEDIA_TYPE, (byte) NUMBER_5);
+        final CountingSelector selector = new CountingSelector();
+        final Queue queue1 = createQueue("tapenam1");
+        final Queue queue2 = createQueue("tapenam2");
+        selector.values.put(queue1, 1.0);
+        selector.values.put(queue2, 1.0);
+
+        final List<Queue> queues = new ArrayList<Queue>();
+        queues.add(queue1);
+        queues.add(queue2);
+        Assert.assertSame(queue1, selector.selectBestQueue(queues, resource));
+
+        queues.clear();
+        queues.add(queue2);
+        queues.add(queue1);
+        Assert.assertSame(queue2, selector.selectBestQueue(queues, resource));
+    }
+
+    /**
+     * Tests that a new selection pass of the controller clears the scores of
+     * its selector.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testNewSelectionPass01() throws TReqSException {
+        Configurator.getInstance().setValue(Constants.SECTION_SELECTOR,
+                Constants.SELECTOR_NAME, FifoSelector.class.getName());
+        final Resource resource = new Resource(MEDIA_TYPE, (byte) NUMBER_5);
+        final Queue queue1 = createQueue("tapenam1");
+        final Queue queue2 = createQueue("tapenam2");
+        Helper.setCreationTime(queue1, new GregorianCalendar(2010, 1, 1));
+        Helper.setCreationTime(queue2, new GregorianCalendar(2010, 1, 2));
+        final List<Queue> queues = new ArrayList<Queue>();
+        queues.add(queue1);
+        queues.add(queue2);
+
+        QueuesController.getInstance().newSelectionPass();
+        Assert.assertSame(queue1,
+                QueuesController.getInstance().getBestQueue(resource, queues));
+
+        // The second queue is now the oldest one.
+        Helper.setCreationTime(queue2, new GregorianCalendar(2009, 1, 1));
+        Assert.assertSame(queue1,
+                QueuesController.getInstance().getBestQueue(resource, queues));
+
+        QueuesController.getInstance().newSelectionPass();
+        Assert.assertSame(queue2,
+                QueuesController.getInstance().getBestQueue(resource, queues));
+    }
+}
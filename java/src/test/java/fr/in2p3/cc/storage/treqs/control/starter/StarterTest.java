@@ -55,6 +55,7 @@ import fr.in2p3.cc.storage.treqs.MySQLTests;
 import fr.in2p3.cc.storage.treqs.RandomBlockJUnit4ClassRunner;
 import fr.in2p3.cc.storage.treqs.TReqSException;
 import fr.in2p3.cc.storage.treqs.control.activator.Activator;
+import fr.in2p3.cc.storage.treqs.control.archiver.Archiver;
 import fr.in2p3.cc.storage.treqs.control.controller.QueuesController;
 import fr.in2p3.cc.storage.treqs.control.controller.StagersController;
 import fr.in2p3.cc.storage.treqs.control.dispatcher.Dispatcher;
@@ -206,6 +207,7 @@ public final class StarterTest {
         QueuesController.destroyInstance();
         Activator.destroyInstance();
         Dispatcher.destroyInstance();
+        Archiver.destroyInstance();
         AbstractDAOFactory.destroyInstance();
         HSMMockBridge.destroyInstance();
         Starter.destroyInstance();
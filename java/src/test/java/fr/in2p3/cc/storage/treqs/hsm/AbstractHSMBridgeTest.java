@@ -0,0 +1,219 @@
+/*
+ * Copyright      Jonathan Schaeffer 2009-2010,
+ *                  CC-IN2P3, CNRS <jonathan.schaeffer@cc.in2p3.fr>
+ * Contributors   Andres Gomez,
+ *                  CC-IN2P3, CNRS <andres.gomez@cc.in2p3.fr>
+ *
+ * This software is a computer program whose purpose is to schedule, sort
+ * and submit file requests to the hierarchical storage system HPSS.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights, and the successive licensors have only limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+package fr.in2p3.cc.storage.treqs.hsm;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import fr.in2p3.cc.storage.treqs.Constants;
+import fr.in2p3.cc.storage.treqs.MainTests;
+import fr.in2p3.cc.storage.treqs.RandomBlockJUnit4ClassRunner;
+import fr.in2p3.cc.storage.treqs.TReqSException;
+import fr.in2p3.cc.storage.treqs.hsm.mock.HSMMockBridge;
+import fr.in2p3.cc.storage.treqs.model.File;
+import fr.in2p3.cc.storage.treqs.tools.Configurator;
+
+/**
+ * Tests for the supervision of the calls in AbstractHSMBridge.
+ */
+@RunWith(RandomBlockJUnit4ClassRunner.class)
+public final class AbstractHSMBridgeTest {
+
+    /**
+     * Setups the environment for all.
+     */
+    @BeforeClass
+    public static void oneTimeSetUp() {
+        System.setProperty(Constants.CONFIGURATION_FILE,
+                MainTests.PROPERTIES_FILE);
+    }
+
+    /**
+     * Destroys all after the tests.
+     */
+    @AfterClass
+    public static void oneTimeTearDown() {
+        System.clearProperty(Constants.CONFIGURATION_FILE);
+    }
+
+    /**
+     * Configures the env before each test.
+     *
+     * @throws TReqSException
+     *             If there is any problem.
+     */
+    @Before
+    public void setUp() throws TReqSException {
+        Configurator.getInstance().setValue(Constants.SECTION_HSM_BRIDGE,
+                Constants.HSM_STAGE_TIMEOUT, "1");
+    }
+
+    /**
+     * Cleans the env after each test.
+     */
+    @After
+    public void tearDown() {
+        HSMMockBridge.destroyInstance();
+        Configurator.destroyInstance();
+    }
+
+    /**
+     * Tests that the caller does not wait for a stage longer than its timeout,
+     * and that the call is counted as stuck until it returns.
+     *
+     * @throws TReqSException
+     *             Never.
+     * @throws InterruptedException
+     *             Never.
+     */
+    @Test
+    public void testStage01Timeout() throws TReqSException,
+            InterruptedException {
+        final int stuck = AbstractHSMBridge.getStuckCalls();
+        HSMMockBridge.getInstance().setStageTime(3000);
+
+        long time = System.currentTimeMillis();
+        boolean failed = false;
+        try {
+            HSMMockBridge.getInstance().stage(new File("filename", 100));
+            failed = true;
+        } catch (final HSMTimeoutException e) {
+            time = System.currentTimeMillis() - time;
+        }
+        if (failed) {
+            Assert.fail();
+        }
+        Assert.assertTrue(time < 3000);
+        Assert.assertEquals(stuck + 1, AbstractHSMBridge.getStuckCalls());
+
+        Thread.sleep(3000);
+
+        Assert.assertEquals(stuck, AbstractHSMBridge.getStuckCalls());
+    }
+
+    /**
+     * Tests that a stage that returns in time is not affected by the
+     * supervision.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testStage02InTime() throws TReqSException {
+        final int stuck = AbstractHSMBridge.getStuckCalls();
+        HSMMockBridge.getInstance().setStageTime(100);
+
+        HSMMockBridge.getInstance().stage(new File("filename", 100));
+
+        Assert.assertEquals(stuck, AbstractHSMBridge.getStuckCalls());
+    }
+
+    /**
+     * Tests that a file is not staged again while its abandoned stage is still
+     * running, but other files can be staged.
+     *
+     * @throws TReqSException
+     *             Never.
+     * @throws InterruptedException
+     *             Never.
+     */
+    @Test
+    public void testStage03StillRunning() throws TReqSException,
+            InterruptedException {
+        HSMMockBridge.getInstance().setStageTime(2000);
+
+        boolean failed = false;
+        try {
+            HSMMockBridge.getInstance().stage(new File("filename", 100));
+            failed = true;
+        } catch (final HSMTimeoutException e) {
+            // Nothing.
+        }
+        if (failed) {
+            Assert.fail();
+        }
+
+        HSMMockBridge.getInstance().setStageTime(100);
+        long time = System.currentTimeMillis();
+        try {
+            HSMMockBridge.getInstance().stage(new File("filename", 100));
+            failed = true;
+        } catch (final HSMTimeoutException e) {
+            time = System.currentTimeMillis() - time;
+        }
+        if (failed) {
+            Assert.fail();
+        }
+        // Rejected without calling the HSM.
+        Assert.assertTrue(time < 500);
+
+        HSMMockBridge.getInstance().stage(new File("otherfile", 100));
+
+        Thread.sleep(2500);
+
+        HSMMockBridge.getInstance().stage(new File("filename", 100));
+    }
+
+    /**
+     * Tests that the exception of the HSM is received by the caller.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testGetFileProperties01Exception() throws TReqSException {
+        HSMMockBridge.getInstance().setFilePropertiesException(
+                new HSMNotExistingFileException());
+
+        boolean failed = false;
+        try {
+            HSMMockBridge.getInstance().getFileProperties("filename");
+            failed = true;
+        } catch (final HSMNotExistingFileException e) {
+            // Nothing.
+        }
+        if (failed) {
+            Assert.fail();
+        }
+    }
+}
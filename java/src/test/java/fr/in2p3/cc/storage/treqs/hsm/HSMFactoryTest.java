@@ -0,0 +1,172 @@
+/*
+ * Copyright      Jonathan Schaeffer 2009-2010,
+ *                  CC-IN2P3, CNRS <jonathan.schaeffer@cc.in2p3.fr>
+ * Contributors   Andres Gomez,
+ *                  CC-IN2P3, CNRS <andres.gomez@cc.in2p3.fr>
+ *
+ * This software is a computer program whose purpose is to schedule, sort
+ * and submit file requests to the hierarchical storage system HPSS.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights, and the successive licensors have only limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+package fr.in2p3.cc.storage.treqs.hsm;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import fr.in2p3.cc.storage.treqs.Constants;
+import fr.in2p3.cc.storage.treqs.MainTests;
+import fr.in2p3.cc.storage.treqs.RandomBlockJUnit4ClassRunner;
+import fr.in2p3.cc.storage.treqs.TReqSException;
+import fr.in2p3.cc.storage.treqs.hsm.command.HSMCommandBridge;
+import fr.in2p3.cc.storage.treqs.hsm.mock.HSMMockBridge;
+import fr.in2p3.cc.storage.treqs.tools.Configurator;
+
+/**
+ * Tests for HSMFactory.
+ */
+@RunWith(RandomBlockJUnit4ClassRunner.class)
+public final class HSMFactoryTest {
+
+    /**
+     * Setups the environment for all.
+     */
+    @BeforeClass
+    public static void oneTimeSetUp() {
+        System.setProperty(Constants.CONFIGURATION_FILE,
+                MainTests.PROPERTIES_FILE);
+    }
+
+    /**
+     * Destroys all after the tests.
+     */
+    @AfterClass
+    public static void oneTimeTearDown() {
+        System.clearProperty(Constants.CONFIGURATION_FILE);
+    }
+
+    /**
+     * Configures the env before each test.
+     *
+     * @throws TReqSException
+     *             If there is any problem.
+     */
+    @Before
+    public void setUp() throws TReqSException {
+        Configurator.getInstance().setValue(Constants.SECTION_HSM_BRIDGE,
+                Constants.HSM_BRIDGE, MainTests.MOCK_BRIDGE);
+    }
+
+    /**
+     * Cleans the env after each test.
+     */
+    @After
+    public void tearDown() {
+        HSMMetadataCache.destroyInstance();
+        HSMMockBridge.destroyInstance();
+        Configurator.destroyInstance();
+    }
+
+    /**
+     * Tests that the same bridge is returned while the configuration does not
+     * change.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testGetHSMBridge01() throws TReqSException {
+        final AbstractHSMBridge expected = HSMFactory.getHSMBridge();
+        final AbstractHSMBridge actual = HSMFactory.getHSMBridge();
+
+        Assert.assertSame(expected, actual);
+        Assert.assertSame(HSMMockBridge.getInstance(), actual);
+    }
+
+    /**
+     * Tests that the bridge is resolved again when the configuration changes.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testGetHSMBridge02() throws TReqSException {
+        final AbstractHSMBridge first = HSMFactory.getHSMBridge();
+
+        // The configuration is loaded again.
+        Configurator.destroyInstance();
+        HSMMockBridge.destroyInstance();
+        Configurator.getInstance().setValue(Constants.SECTION_HSM_BRIDGE,
+                Constants.HSM_BRIDGE, MainTests.MOCK_BRIDGE);
+
+        final AbstractHSMBridge second = HSMFactory.getHSMBridge();
+
+        Assert.assertNotSame(first, second);
+        Assert.assertSame(HSMMockBridge.getInstance(), second);
+    }
+
+    /**
+     * Tests that a destroyed bridge is not returned.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testGetHSMBridge03() throws TReqSException {
+        final AbstractHSMBridge first = HSMFactory.getHSMBridge();
+
+        HSMMockBridge.destroyInstance();
+
+        Assert.assertNotSame(first, HSMFactory.getHSMBridge());
+    }
+
+    /**
+     * Tests that the metadata cache is cleared when the bridge changes.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testGetHSMBridge04() throws TReqSException {
+        HSMMetadataCache.getInstance().getFileProperties("file1");
+        Assert.assertEquals(1, HSMMetadataCache.getInstance().size());
+
+        Configurator.getInstance().setValue(Constants.SECTION_HSM_BRIDGE,
+                Constants.HSM_BRIDGE, HSMCommandBridge.class.getName());
+
+        Assert.assertSame(HSMCommandBridge.getInstance(),
+                HSMFactory.getHSMBridge());
+        Assert.assertEquals(0, HSMMetadataCache.getInstance().size());
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright      Jonathan Schaeffer 2009-2010,
+ *                  CC-IN2P3, CNRS <jonathan.schaeffer@cc.in2p3.fr>
+ * Contributors   Andres Gomez,
+ *                  CC-IN2P3, CNRS <andres.gomez@cc.in2p3.fr>
+ *
+ * This software is a computer program whose purpose is to schedule, sort
+ * and submit file requests to the hierarchical storage system HPSS.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights, and the successive licensors have only limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+package fr.in2p3.cc.storage.treqs.hsm;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import fr.in2p3.cc.storage.treqs.Constants;
+import fr.in2p3.cc.storage.treqs.MainTests;
+import fr.in2p3.cc.storage.treqs.RandomBlockJUnit4ClassRunner;
+import fr.in2p3.cc.storage.treqs.TReqSException;
+import fr.in2p3.cc.storage.treqs.hsm.mock.HSMMockBridge;
+import fr.in2p3.cc.storage.treqs.tools.Configurator;
+
+/**
+ * Tests for HSMMetadataCache.
+ */
+@RunWith(RandomBlockJUnit4ClassRunner.class)
+public final class HSMMetadataCacheTest {
+
+    /**
+     * Setups the environment for all.
+     */
+    @BeforeClass
+    public static void oneTimeSetUp() {
+        System.setProperty(Constants.CONFIGURATION_FILE,
+                MainTests.PROPERTIES_FILE);
+    }
+
+    /**
+     * Destroys all after the tests.
+     */
+    @AfterClass
+    public static void oneTimeTearDown() {
+        System.clearProperty(Constants.CONFIGURATION_FILE);
+    }
+
+    /**
+     * Configures the env before each test.
+     *
+     * @throws TReqSException
+     *             If there is any problem.
+     */
+    @Before
+    public void setUp() throws TReqSException {
+        Configurator.getInstance().setValue(Constants.SECTION_HSM_BRIDGE,
+                Constants.HSM_BRIDGE, MainTests.MOCK_BRIDGE);
+    }
+
+    /**
+     * Cleans the env after each test.
+     */
+    @After
+    public void tearDown() {
+        HSMMetadataCache.destroyInstance();
+        HSMMockBridge.destroyInstance();
+        Configurator.destroyInstance();
+    }
+
+    /**
+     * Tests that the metadata is taken from the cache.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testGetFileProperties01() throws TReqSException {
+        final HSMHelperFileProperties expected = new HSMHelperFileProperties(
+                "TAPA", 1, 2);
+        HSMMockBridge.getInstance().setFileProperties(expected);
+
+        HSMMetadataCache.getInstance().getFileProperties("file1");
+        HSMMockBridge.getInstance().setFileProperties(
+                new HSMHelperFileProperties("TAPB", 3, 4));
+        final HSMHelperFileProperties actual = HSMMetadataCache.getInstance()
+                .getFileProperties("file1");
+
+        Assert.assertEquals(expected, actual);
+    }
+
+    /**
+     * Tests that a not existing file is kept in the cache.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testGetFileProperties02() throws TReqSException {
+        HSMMockBridge.getInstance().setFilePropertiesException(
+                new HSMNotExistingFileException());
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                HSMMetadataCache.getInstance().getFileProperties("file1");
+                Assert.fail();
+            } catch (final HSMNotExistingFileException e) {
+                // Nothing.
+            }
+        }
+    }
+
+    /**
+     * Tests that a general problem is not kept in the cache.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testGetFileProperties03() throws TReqSException {
+        HSMMockBridge.getInstance().setFilePropertiesException(
+                new HSMGeneralPropertiesProblemException(new Exception()));
+
+        try {
+            HSMMetadataCache.getInstance().getFileProperties("file1");
+            Assert.fail();
+        } catch (final HSMGeneralPropertiesProblemException e) {
+            // Nothing.
+        }
+        Assert.assertEquals(0, HSMMetadataCache.getInstance().size());
+
+        HSMMetadataCache.getInstance().getFileProperties("file1");
+    }
+
+    /**
+     * Tests an outdated metadata.
+     *
+     * @throws TReqSException
+     *             Never.
+     * @throws InterruptedException
+     *             Never.
+     */
+    @Test
+    public void testGetFileProperties04() throws TReqSException,
+            InterruptedException {
+        Configurator.getInstance().setValue(
+                Constants.SECTION_FILE_POSITION_ON_TAPE,
+                Constants.MAX_METADATA_AGE, "1");
+        final HSMHelperFileProperties first = new HSMHelperFileProperties(
+                "TAPA", 1, 2);
+        HSMMockBridge.getInstance().setFileProperties(first);
+
+        HSMMetadataCache.getInstance().getFileProperties("file1");
+        Thread.sleep(1100);
+        final HSMHelperFileProperties actual = HSMMetadataCache.getInstance()
+                .getFileProperties("file1");
+
+        Assert.assertNotSame(first, actual);
+    }
+
+    /**
+     * Tests the eviction of the least recently used entry.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testGetFileProperties05() throws TReqSException {
+        Configurator.getInstance().setValue(Constants.SECTION_HSM_BRIDGE,
+                Constants.METADATA_CACHE_SIZE, "2");
+        final HSMHelperFileProperties first = new HSMHelperFileProperties(
+                "TAPA", 1, 2);
+        HSMMockBridge.getInstance().setFileProperties(first);
+
+        HSMMetadataCache.getInstance().getFileProperties("file1");
+        HSMMetadataCache.getInstance().getFileProperties("file2");
+        // Uses file1, then file2 is the eldest.
+        HSMMetadataCache.getInstance().getFileProperties("file1");
+        HSMMetadataCache.getInstance().getFileProperties("file3");
+
+        Assert.assertEquals(2, HSMMetadataCache.getInstance().size());
+        Assert.assertEquals(first, HSMMetadataCache.getInstance()
+                .getFileProperties("file1"));
+    }
+
+    /**
+     * Tests a cache bigger than a short.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testGetFileProperties06() throws TReqSException {
+        Configurator.getInstance().setValue(Constants.SECTION_HSM_BRIDGE,
+                Constants.METADATA_CACHE_SIZE, "100000");
+
+        HSMMetadataCache.getInstance().getFileProperties("file1");
+
+        Assert.assertEquals(1, HSMMetadataCache.getInstance().size());
+    }
+
+    /**
+     * Tests to remove all the entries.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testClear01() throws TReqSException {
+        HSMMetadataCache.getInstance().getFileProperties("file1");
+        HSMMetadataCache.getInstance().getFileProperties("file2");
+
+        HSMMetadataCache.clear();
+
+        Assert.assertEquals(0, HSMMetadataCache.getInstance().size());
+    }
+
+    /**
+     * Tests to invalidate an entry.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testInvalidate01() throws TReqSException {
+        HSMMetadataCache.getInstance().getFileProperties("file1");
+
+        HSMMetadataCache.invalidate("file1");
+
+        Assert.assertEquals(0, HSMMetadataCache.getInstance().size());
+    }
+}
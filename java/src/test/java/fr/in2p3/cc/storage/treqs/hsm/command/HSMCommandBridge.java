@@ -53,6 +53,7 @@ import fr.in2p3.cc.storage.treqs.hsm.AbstractHSMException;
 import fr.in2p3.cc.storage.treqs.hsm.AbstractHSMPropertiesException;
 import fr.in2p3.cc.storage.treqs.hsm.HSMDirectoryException;
 import fr.in2p3.cc.storage.treqs.hsm.HSMEmptyFileException;
+import fr.in2p3.cc.storage.treqs.hsm.HSMFactory;
 import fr.in2p3.cc.storage.treqs.hsm.HSMGeneralStageProblemException;
 import fr.in2p3.cc.storage.treqs.hsm.HSMHelperFileProperties;
 import fr.in2p3.cc.storage.treqs.hsm.HSMNotExistingFileException;
@@ -175,6 +176,8 @@ public final class HSMCommandBridge extends AbstractHSMBridge {
             LOGGER.info("Instance destroyed");
         }
         instance = null;
+        // The factory has not to return the destroyed instance.
+        HSMFactory.destroyInstance();
 
         LOGGER.trace("< destroyInstance");
     }
@@ -299,13 +302,13 @@ public final class HSMCommandBridge extends AbstractHSMBridge {
      * (non-Javadoc)
      *
      * @see
-     * fr.in2p3.cc.storage.treqs.hsm.AbstractHSMBridge#getFileProperties(java
+     * fr.in2p3.cc.storage.treqs.hsm.AbstractHSMBridge#queryFileProperties(java
      * .lang.String)
      */
     @Override
-    public HSMHelperFileProperties getFileProperties(final String name)
+    protected HSMHelperFileProperties queryFileProperties(final String name)
             throws AbstractHSMException {
-        LOGGER.trace("> getFileProperties");
+        LOGGER.trace("> queryFileProperties");
 
         assert (name != null) && !name.equals("");
 
@@ -344,7 +347,7 @@ public final class HSMCommandBridge extends AbstractHSMBridge {
 
         assert ret != null;
 
-        LOGGER.trace("< getFileProperties");
+        LOGGER.trace("< queryFileProperties");
 
         return ret;
     }
@@ -482,12 +485,12 @@ public final class HSMCommandBridge extends AbstractHSMBridge {
      * (non-Javadoc)
      *
      * @see
-     * fr.in2p3.cc.storage.treqs.hsm.AbstractHSMBridge#stage(fr.in2p3.cc.storage
-     * .treqs.model.File)
+     * fr.in2p3.cc.storage.treqs.hsm.AbstractHSMBridge#stageFile(fr.in2p3.cc
+     * .storage.treqs.model.File)
      */
     @Override
-    public void stage(final File file) throws AbstractHSMException {
-        LOGGER.trace("> stage");
+    protected void stageFile(final File file) throws AbstractHSMException {
+        LOGGER.trace("> stageFile");
 
         assert file != null;
 
@@ -526,6 +529,6 @@ public final class HSMCommandBridge extends AbstractHSMBridge {
             }
         }
 
-        LOGGER.trace("< stage");
+        LOGGER.trace("< stageFile");
     }
 }
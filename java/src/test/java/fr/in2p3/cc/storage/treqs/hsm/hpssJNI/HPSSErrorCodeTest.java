@@ -36,54 +36,53 @@
  */
 package fr.in2p3.cc.storage.treqs.hsm.hpssJNI;
 
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import fr.in2p3.cc.storage.treqs.RandomBlockJUnit4ClassRunner;
+
 /**
- * This exception is thrown from the Native bridge. This exception does not
- * extends TReqSException in order to be tested this module without many
- * dependencies.
+ * Tests for HPSSErrorCode.
  *
  * @author Andres Gomez
- * @since 1.5
  */
-public final class JNIException extends Exception {
+@RunWith(RandomBlockJUnit4ClassRunner.class)
+public final class HPSSErrorCodeTest {
 
     /**
-     * Generated Id.
-     */
-    private static final long serialVersionUID = -7672189435704549513L;
-    /**
-     * Identification code.
+     * Tests that each error is retrieved from its code.
      */
-    private final String id;
+    @Test
+    public void testGetHPSSErrorCode01() {
+        for (final HPSSErrorCode error : HPSSErrorCode.values()) {
+            Assert.assertEquals(error,
+                    HPSSErrorCode.getHPSSErrorCode(error.getCode()));
+        }
+    }
 
     /**
-     * Default exception. Writes in the standard output.
-     *
-     * @param code
-     *            Id of the error.
+     * Tests that a code of the JNI layer is not an HPSS error.
      */
-    public JNIException(final String code) {
-        assert (code != null) && !code.equals("") : "Invalid";
-
-        this.id = code;
-        System.out.println("JNIException created");
+    @Test
+    public void testGetHPSSErrorCode02JNICode() {
+        Assert.assertNull(HPSSErrorCode.getHPSSErrorCode(-30001));
     }
 
     /**
-     * Returns the associated code of the exception.
-     *
-     * @return Error code.
+     * Tests that a positive code is not an HPSS error.
      */
-    public String getCode() {
-        return this.id;
+    @Test
+    public void testGetHPSSErrorCode03Positive() {
+        Assert.assertNull(HPSSErrorCode.getHPSSErrorCode(1));
     }
 
-    /*
-     * (non-Javadoc)
-     *
-     * @see java.lang.Throwable#getMessage()
+    /**
+     * Tests that an unused code is not an HPSS error.
      */
-    @Override
-    public String getMessage() {
-        return "Error code '" + this.id + '\'';
+    @Test
+    public void testGetHPSSErrorCode04Unused() {
+        Assert.assertNull(HPSSErrorCode.getHPSSErrorCode(-3));
     }
 }
@@ -36,6 +36,9 @@
  */
 package fr.in2p3.cc.storage.treqs.hsm.hpssJNI;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import junit.framework.Assert;
 
 import org.junit.AfterClass;
@@ -150,19 +153,18 @@ public final class HPSSJNIBridgeTestNative {
     /**
      * Tests to get the properties of a file that is in disk (not purged).
      *
-     * @throws JNIException
-     *             Never.
      * @throws TReqSException
      *             If there is any problem.
      */
     @Test
-    public void testGetProperties05FileInDisk() throws JNIException,
-            TReqSException {
+    public void testGetProperties05FileInDisk() throws TReqSException {
         LOGGER.error("testGetProperties05FileInDisk");
 
         LOGGER.error("I'm going to stage a file");
-        NativeBridge.getInstance().stage(HSMNativeBridgeTestNative.VALID_FILE,
+        final int code = NativeBridge.getInstance().stage(
+                HSMNativeBridgeTestNative.VALID_FILE,
                 HSMNativeBridgeTestNative.VALID_FILE_SIZE);
+        Assert.assertEquals(HPSSErrorCode.HPSS_E_NOERROR.getCode(), code);
 
         HPSSJNIBridge.getInstance().getFileProperties(
                 HSMNativeBridgeTestNative.VALID_FILE);
@@ -294,4 +296,28 @@ public final class HPSSJNIBridgeTestNative {
 
         // TODO Tests: NativeBridgeHelper.unlockTapeForFile(VALID_FILE);
     }
+
+    /**
+     * Tests to stage several files in one call, where one of them does not
+     * exist.
+     *
+     * @throws TReqSException
+     *             If there is any problem.
+     */
+    @Test
+    public void testStage04Several() throws TReqSException {
+        LOGGER.error("testStage04Several");
+
+        final List<File> files = new ArrayList<File>();
+        files.add(new File(HSMNativeBridgeTestNative.VALID_FILE,
+                HSMNativeBridgeTestNative.VALID_FILE_SIZE));
+        files.add(new File("/NoExistingFile",
+                HSMNativeBridgeTestNative.VALID_FILE_SIZE));
+        LOGGER.error("I'm going to stage several files");
+        final int[] codes = HPSSJNIBridge.getInstance().stage(files);
+
+        Assert.assertEquals(2, codes.length);
+        Assert.assertEquals(HPSSErrorCode.HPSS_E_NOERROR.getCode(), codes[0]);
+        Assert.assertEquals(HPSSErrorCode.HPSS_ENOENT.getCode(), codes[1]);
+    }
 }
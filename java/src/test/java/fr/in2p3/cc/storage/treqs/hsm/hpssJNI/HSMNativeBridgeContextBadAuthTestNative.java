@@ -36,6 +36,8 @@
  */
 package fr.in2p3.cc.storage.treqs.hsm.hpssJNI;
 
+import junit.framework.Assert;
+
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -77,16 +79,14 @@ public final class HSMNativeBridgeContextBadAuthTestNative {
     /**
      * Tests to init the API client with an invalid authentication mechanism,
      * and it passes because the default is unix.
-     *
-     * @throws JNIException
-     *             Never.
      */
     @Test
-    public void testInit05BadAuthType() throws JNIException {
+    public void testInit05BadAuthType() {
         LOGGER.info("----- testInit05BadAuthType");
-        NativeBridge.getInstance().initContext("foo",
+        final int code = NativeBridge.getInstance().initContext("foo",
                 HSMNativeBridgeTestNative.getValidKeytabPath(),
                 HSMNativeBridgeTestNative.getValidUsername());
+        Assert.assertEquals(HPSSErrorCode.HPSS_E_NOERROR.getCode(), code);
 
         HSMNativeBridgeTestNative.deauthenticate();
     }
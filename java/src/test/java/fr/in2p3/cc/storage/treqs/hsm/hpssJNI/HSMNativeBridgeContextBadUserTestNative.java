@@ -83,22 +83,9 @@ public final class HSMNativeBridgeContextBadUserTestNative {
     @Test
     public void testInit03BadUser() {
         LOGGER.info("----- testInit03BadUser");
-        boolean failed = false;
-        try {
-            NativeBridge.getInstance().initContext(
-                    HSMNativeBridgeTestNative.VALID_AUTH_TYPE,
-                    HSMNativeBridgeTestNative.getValidKeytabPath(), "foo");
-            failed = true;
-        } catch (final JNIException e) {
-            final int code = HPSSJNIBridge.processException(e);
-            LOGGER.info("testInit02BadUser " + code + " - "
-                    + HPSSErrorCode.HPSS_EPERM.getCode());
-            if (code != HPSSErrorCode.HPSS_EPERM.getCode()) {
-                failed = true;
-            }
-        }
-        if (failed) {
-            Assert.fail();
-        }
+        final int code = NativeBridge.getInstance().initContext(
+                HSMNativeBridgeTestNative.VALID_AUTH_TYPE,
+                HSMNativeBridgeTestNative.getValidKeytabPath(), "foo");
+        Assert.assertEquals(HPSSErrorCode.HPSS_EPERM.getCode(), code);
     }
 }
@@ -90,24 +90,14 @@ public final class HSMNativeBridgeContextTestNative {
     @Test
     public void testGetProperties01NoInit() {
         LOGGER.info("----- testGetProperties01NoInit");
-        boolean failed = false;
-        try {
-            NativeBridge.getInstance().getFileProperties(
-                    HSMNativeBridgeTestNative.VALID_FILE);
-            failed = true;
-        } catch (final JNIException e) {
-            final int code = HPSSJNIBridge.processException(e);
-            LOGGER.info("testGetProperties01NoInit " + code + " - "
-                    + HPSSErrorCode.HPSS_EPERM.getCode() + ","
-                    + HPSSErrorCode.HPSS_EIO.getCode() + ", "
-                    + HPSSErrorCode.HPSS_EACCES.getCode());
-            if ((code != HPSSErrorCode.HPSS_EPERM.getCode())
-                    && (code != HPSSErrorCode.HPSS_EIO.getCode())
-                    && (code != HPSSErrorCode.HPSS_EACCES.getCode())) {
-                failed = true;
-            }
-        }
-        if (failed) {
+        final int[] holder = new int[1];
+        NativeBridge.getInstance().getFileProperties(
+                HSMNativeBridgeTestNative.VALID_FILE, holder);
+        final HPSSErrorCode code = HPSSErrorCode.getHPSSErrorCode(holder[0]);
+        LOGGER.info("testGetProperties01NoInit {}", code);
+        if ((code != HPSSErrorCode.HPSS_EPERM)
+                && (code != HPSSErrorCode.HPSS_EIO)
+                && (code != HPSSErrorCode.HPSS_EACCES)) {
             Assert.fail();
         }
     }
@@ -119,23 +109,10 @@ public final class HSMNativeBridgeContextTestNative {
     @Test
     public void testInit01KerberosAuthType() {
         LOGGER.info("----- testInit01KerberosAuthType");
-        boolean failed = false;
-        try {
-            NativeBridge.getInstance().initContext("kerberos",
-                    HSMNativeBridgeTestNative.getValidKeytabPath(),
-                    HSMNativeBridgeTestNative.getValidUsername());
-            failed = true;
-        } catch (final JNIException e) {
-            final int code = HPSSJNIBridge.processException(e);
-            LOGGER.info("testInit04KerberosAuthType " + code + " - "
-                    + HPSSErrorCode.HPSS_EPERM.getCode());
-            if (code != HPSSErrorCode.HPSS_EPERM.getCode()) {
-                failed = true;
-            }
-        }
-        if (failed) {
-            Assert.fail();
-        }
+        final int code = NativeBridge.getInstance().initContext("kerberos",
+                HSMNativeBridgeTestNative.getValidKeytabPath(),
+                HSMNativeBridgeTestNative.getValidUsername());
+        Assert.assertEquals(HPSSErrorCode.HPSS_EPERM.getCode(), code);
     }
 
     /**
@@ -144,34 +121,18 @@ public final class HSMNativeBridgeContextTestNative {
     @Test
     public void testInit02BadKeytab() {
         LOGGER.info("----- testInit02BadKeytab");
-        boolean failed = false;
-        try {
-            NativeBridge.getInstance().initContext(
-                    HSMNativeBridgeTestNative.VALID_AUTH_TYPE, "foo",
-                    HSMNativeBridgeTestNative.getValidUsername());
-            failed = true;
-        } catch (final JNIException e) {
-            final int code = HPSSJNIBridge.processException(e);
-            LOGGER.info("testInit03BadKeytab " + code + " - "
-                    + HPSSErrorCode.HPSS_EPERM.getCode());
-            if (code != HPSSErrorCode.HPSS_EPERM.getCode()) {
-                failed = true;
-            }
-        }
-        if (failed) {
-            Assert.fail();
-        }
+        final int code = NativeBridge.getInstance().initContext(
+                HSMNativeBridgeTestNative.VALID_AUTH_TYPE, "foo",
+                HSMNativeBridgeTestNative.getValidUsername());
+        Assert.assertEquals(HPSSErrorCode.HPSS_EPERM.getCode(), code);
     }
 
     /**
      * Tests to init the API client with an invalid user (not the one for the
      * keytab).
-     *
-     * @throws JNIException
-     *             Never.
      */
     @Test
-    public void testInit04AllValid() throws JNIException {
+    public void testInit04AllValid() {
         LOGGER.info("----- testInit04AllValid");
         HSMNativeBridgeTestNative.authenticate();
 
@@ -180,33 +141,17 @@ public final class HSMNativeBridgeContextTestNative {
 
     /**
      * Tests that it is not possible to be authenticated twice.
-     *
-     * @throws JNIException
-     *             Never.
      */
     @Test
-    public void testInit06AlreadyAuthenticated() throws JNIException {
+    public void testInit06AlreadyAuthenticated() {
         LOGGER.info("----- testInit06AlreadyAuthenticated");
         HSMNativeBridgeTestNative.authenticate();
-        boolean failed = false;
-        try {
-            NativeBridge.getInstance().initContext(
-                    HSMNativeBridgeTestNative.VALID_AUTH_TYPE,
-                    HSMNativeBridgeTestNative.getValidKeytabPath(),
-                    HSMNativeBridgeTestNative.getValidUsername());
-            failed = true;
-        } catch (final JNIException e) {
-            final int code = HPSSJNIBridge.processException(e);
-            LOGGER.info("testInit06AlreadyAuthenticated " + code + " - "
-                    + HPSSErrorCode.HPSS_EIO.getCode());
-            if (code != HPSSErrorCode.HPSS_EIO.getCode()) {
-                failed = true;
-            }
-        }
+        final int code = NativeBridge.getInstance().initContext(
+                HSMNativeBridgeTestNative.VALID_AUTH_TYPE,
+                HSMNativeBridgeTestNative.getValidKeytabPath(),
+                HSMNativeBridgeTestNative.getValidUsername());
         HSMNativeBridgeTestNative.deauthenticate();
-        if (failed) {
-            Assert.fail();
-        }
+        Assert.assertEquals(HPSSErrorCode.HPSS_EIO.getCode(), code);
     }
 
     /**
@@ -215,22 +160,9 @@ public final class HSMNativeBridgeContextTestNative {
     @Test
     public void testStage01NoInit() {
         LOGGER.info("----- testStage01NoInit");
-        boolean failed = false;
-        try {
-            NativeBridge.getInstance().stage(
-                    HSMNativeBridgeTestNative.VALID_FILE,
-                    HSMNativeBridgeTestNative.VALID_FILE_SIZE);
-            failed = true;
-        } catch (final JNIException e) {
-            final int code = HPSSJNIBridge.processException(e);
-            LOGGER.info("testStage01NoInit " + code + " - "
-                    + HPSSErrorCode.HPSS_EPERM.getCode());
-            if (code != HPSSErrorCode.HPSS_EPERM.getCode()) {
-                failed = true;
-            }
-        }
-        if (failed) {
-            Assert.fail();
-        }
+        final int code = NativeBridge.getInstance().stage(
+                HSMNativeBridgeTestNative.VALID_FILE,
+                HSMNativeBridgeTestNative.VALID_FILE_SIZE);
+        Assert.assertEquals(HPSSErrorCode.HPSS_EPERM.getCode(), code);
     }
 }
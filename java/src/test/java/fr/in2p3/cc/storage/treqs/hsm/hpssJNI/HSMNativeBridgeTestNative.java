@@ -46,6 +46,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import fr.in2p3.cc.storage.treqs.RandomBlockJUnit4ClassRunner;
+import fr.in2p3.cc.storage.treqs.hsm.HSMHelperFileProperties;
 
 /**
  * Tests for the JNI implementation.
@@ -125,14 +126,12 @@ public final class HSMNativeBridgeTestNative {
     }
     /**
      * Authenticates the user.
-     *
-     * @throws JNIException
-     *             If there is a problem while authenticating.
      */
-    static void authenticate() throws JNIException {
+    static void authenticate() {
         if (!authenticated) {
-            NativeBridge.getInstance().initContext(VALID_AUTH_TYPE,
-                    validKeytabPath, validUsername);
+            final int code = NativeBridge.getInstance().initContext(
+                    VALID_AUTH_TYPE, validKeytabPath, validUsername);
+            Assert.assertEquals(HPSSErrorCode.HPSS_E_NOERROR.getCode(), code);
             authenticated = true;
         }
     }
@@ -188,206 +187,160 @@ public final class HSMNativeBridgeTestNative {
 
     /**
      * Tests to get the properties of a directory.
-     *
-     * @throws JNIException
-     *             Never.
      */
     @Test
-    public void testGetProperties02Directory() throws JNIException {
+    public void testGetProperties02Directory() {
         HSMNativeBridgeTestNative.authenticate();
 
-        boolean failed = false;
-        try {
-            NativeBridge.getInstance().getFileProperties(DIRECTORY);
-            failed = true;
-        } catch (final JNIException e) {
-            final int code = HPSSJNIBridge.processException(e);
-            LOGGER.info("testGetProperties01Directory " + code + " - "
-                    + HPSSErrorCode.HPSS_EISDIR.getCode());
-            if (code != HPSSErrorCode.HPSS_EISDIR.getCode()) {
-                failed = true;
-            }
-        }
-        if (failed) {
-            Assert.fail();
-        }
+        final int[] code = new int[1];
+        final HSMHelperFileProperties properties = NativeBridge.getInstance()
+                .getFileProperties(DIRECTORY, code);
+        Assert.assertNull(properties);
+        Assert.assertEquals(HPSSErrorCode.HPSS_EISDIR.getCode(), code[0]);
     }
 
     /**
      * Tests to get the properties of a non-existing file.
-     *
-     * @throws JNIException
-     *             Never.
      */
     @Test
-    public void testGetProperties03NotExistingFile() throws JNIException {
+    public void testGetProperties03NotExistingFile() {
         HSMNativeBridgeTestNative.authenticate();
 
-        boolean failed = false;
-        try {
-            NativeBridge.getInstance().getFileProperties("/NoExistingFile");
-            failed = true;
-        } catch (final JNIException e) {
-            final int code = HPSSJNIBridge.processException(e);
-            LOGGER.info("testGetProperties02NotExistingFile " + code + " - "
-                    + HPSSErrorCode.HPSS_ENOENT.getCode());
-            if (code != HPSSErrorCode.HPSS_ENOENT.getCode()) {
-                failed = true;
-            }
-        }
-        if (failed) {
-            Assert.fail();
-        }
+        final int[] code = new int[1];
+        final HSMHelperFileProperties properties = NativeBridge.getInstance()
+                .getFileProperties("/NoExistingFile", code);
+        Assert.assertNull(properties);
+        Assert.assertEquals(HPSSErrorCode.HPSS_ENOENT.getCode(), code[0]);
     }
 
     /**
      * Tests to get the properties of a file that is in a tape (purged).
-     *
-     * @throws JNIException
-     *             Never.
      */
     @Test
-    public void testGetProperties04FileInTape() throws JNIException {
+    public void testGetProperties04FileInTape() {
         HSMNativeBridgeTestNative.authenticate();
 
         // TODO Tests: NativeBridgeHelper.purge(VALID_FILE);
 
-        NativeBridge.getInstance().getFileProperties(VALID_FILE);
+        final int[] code = new int[1];
+        NativeBridge.getInstance().getFileProperties(VALID_FILE, code);
+        Assert.assertEquals(HPSSErrorCode.HPSS_E_NOERROR.getCode(), code[0]);
     }
 
     /**
      * Tests to get the properties of a file that is in disk (not purged).
-     *
-     * @throws JNIException
-     *             Never.
      */
     @Test
-    public void testGetProperties05FileInDisk() throws JNIException {
+    public void testGetProperties05FileInDisk() {
         HSMNativeBridgeTestNative.authenticate();
 
-        NativeBridge.getInstance().stage(VALID_FILE, VALID_FILE_SIZE);
+        Assert.assertEquals(HPSSErrorCode.HPSS_E_NOERROR.getCode(),
+                NativeBridge.getInstance().stage(VALID_FILE, VALID_FILE_SIZE));
 
-        NativeBridge.getInstance().getFileProperties(VALID_FILE);
+        final int[] code = new int[1];
+        NativeBridge.getInstance().getFileProperties(VALID_FILE, code);
+        Assert.assertEquals(HPSSErrorCode.HPSS_E_NOERROR.getCode(), code[0]);
     }
 
     /**
      * Tests to get the properties of a file that is locked in the higher
      * storage level.
-     *
-     * @throws JNIException
-     *             Never.
      */
     @Test
-    public void testGetProperties06FileLocked() throws JNIException {
+    public void testGetProperties06FileLocked() {
         HSMNativeBridgeTestNative.authenticate();
 
         // TODO Tests: NativeBridgeHelper.lockFile(VALID_FILE);
 
-        NativeBridge.getInstance().getFileProperties(VALID_FILE);
+        final int[] code = new int[1];
+        NativeBridge.getInstance().getFileProperties(VALID_FILE, code);
+        Assert.assertEquals(HPSSErrorCode.HPSS_E_NOERROR.getCode(), code[0]);
 
         // TODO Tests: NativeBridgeHelper.unlockFile(VALID_FILE);
     }
 
     /**
      * Tests to get the properties of an already open file.
-     *
-     * @throws JNIException
-     *             Never.
      */
     @Test
-    public void testGetProperties07FileAlreadyOpen() throws JNIException {
+    public void testGetProperties07FileAlreadyOpen() {
         HSMNativeBridgeTestNative.authenticate();
 
         // TODO Tests: NativeBridgeHelper.open(VALID_FILE);
 
-        NativeBridge.getInstance().getFileProperties(VALID_FILE);
+        final int[] code = new int[1];
+        NativeBridge.getInstance().getFileProperties(VALID_FILE, code);
+        Assert.assertEquals(HPSSErrorCode.HPSS_E_NOERROR.getCode(), code[0]);
 
         // TODO Tests: NativeBridgeHelper.close(VALID_FILE);
     }
 
     /**
      * Tests to get the properties of a file that is in an aggregation.
-     *
-     * @throws JNIException
-     *             Never.
      */
     @Test
-    public void testGetProperties08FileInAggregation() throws JNIException {
+    public void testGetProperties08FileInAggregation() {
         HSMNativeBridgeTestNative.authenticate();
 
-        NativeBridge.getInstance().getFileProperties(VALID_FILE_IN_AGGREGA);
+        final int[] code = new int[1];
+        NativeBridge.getInstance().getFileProperties(VALID_FILE_IN_AGGREGA, code);
+        Assert.assertEquals(HPSSErrorCode.HPSS_E_NOERROR.getCode(), code[0]);
     }
 
     /**
      * Tests to get the properties of an empty file.
-     *
-     * @throws JNIException
-     *             Never.
      */
     @Test
-    public void testGetProperties09EmptyFile() throws JNIException {
+    public void testGetProperties09EmptyFile() {
         HSMNativeBridgeTestNative.authenticate();
 
-        boolean failed = false;
-        try {
-            NativeBridge.getInstance().getFileProperties(VALID_FILE_EMPTY);
-            failed = true;
-        } catch (final JNIException e) {
-            final int code = HPSSJNIBridge.processException(e);
-            LOGGER.info("testGetProperties08EmptyFile " + code + " - -30001");
-            if (code != -30001) {
-                Assert.fail();
-                failed = true;
-            }
-        }
-        if (failed) {
-            Assert.fail();
-        }
+        final int[] code = new int[1];
+        final HSMHelperFileProperties properties = NativeBridge.getInstance()
+                .getFileProperties(VALID_FILE_EMPTY, code);
+        Assert.assertNull(properties);
+        Assert.assertEquals(-30001, code[0]);
     }
 
     /**
      * Tests to get the properties of a file that is stored in a single storage
      * class with just one level.
-     *
-     * @throws JNIException
-     *             Never.
      */
     @Test
-    public void testGetProperties10FileInSingleHierarchy() throws JNIException {
+    public void testGetProperties10FileInSingleHierarchy() {
         HSMNativeBridgeTestNative.authenticate();
 
+        final int[] code = new int[1];
         NativeBridge.getInstance().getFileProperties(
-                VALID_FILE_SINGLE_HIERARCHY);
+                VALID_FILE_SINGLE_HIERARCHY, code);
+        Assert.assertEquals(HPSSErrorCode.HPSS_E_NOERROR.getCode(), code[0]);
     }
 
     /**
      * Tests to stage a file that is in an unlocked tape.
-     *
-     * @throws JNIException
-     *             Never.
      */
     @Test
-    public void testStage02Unlocked() throws JNIException {
+    public void testStage02Unlocked() {
         HSMNativeBridgeTestNative.authenticate();
 
         // TODO Tests: NativeBridgeHelper.unlockTapeForFile(VALID_FILE);
 
-        NativeBridge.getInstance().stage(VALID_FILE, VALID_FILE_SIZE);
+        final int code = NativeBridge.getInstance().stage(VALID_FILE,
+                VALID_FILE_SIZE);
+        Assert.assertEquals(HPSSErrorCode.HPSS_E_NOERROR.getCode(), code);
     }
 
     /**
      * Tests to stage a file that is in an locked tape.
-     *
-     * @throws JNIException
-     *             Never.
      */
     @Test
-    public void testStage03Locked() throws JNIException {
+    public void testStage03Locked() {
         HSMNativeBridgeTestNative.authenticate();
 
         // TODO Tests: NativeBridgeHelper.lockTapeForFile(VALID_FILE);
 
-        NativeBridge.getInstance().stage(VALID_FILE_LOCKED, VALID_FILE_SIZE);
+        final int code = NativeBridge.getInstance().stage(VALID_FILE_LOCKED,
+                VALID_FILE_SIZE);
+        Assert.assertEquals(HPSSErrorCode.HPSS_E_NOERROR.getCode(), code);
 
         // TODO Tests: NativeBridgeHelper.unlockTapeForFile(VALID_FILE);
     }
@@ -76,27 +76,34 @@ public final class NativeBridgeTester {
             filename = args[1];
         }
 
-        try {
-            System.out.println("Initializing context - " + user + " - "
-                    + keyTab);
-            NativeBridge.getInstance().initContext(authType, keyTab, user);
+        System.out.println("Initializing context - " + user + " - " + keyTab);
+        int code = NativeBridge.getInstance().initContext(authType, keyTab,
+                user);
 
+        if (code == 0) {
             System.out.println("Getting properties - " + filename);
-            helper = NativeBridge.getInstance().getFileProperties(filename);
+            final int[] holder = new int[1];
+            helper = NativeBridge.getInstance().getFileProperties(filename,
+                    holder);
+            code = holder[0];
+        }
 
+        if (code == 0) {
             System.out.println("tape: " + helper.getTapeName());
             System.out.println("size: " + helper.getSize());
             System.out.println("pos: " + helper.getPosition());
 
             System.out.println("Staging file");
-            NativeBridge.getInstance().stage(filename, helper.getSize());
+            code = NativeBridge.getInstance().stage(filename,
+                    helper.getSize());
+        }
 
+        if (code == 0) {
             System.out.println(";)");
             NativeBridge.getInstance().endContext();
-        } catch (final JNIException e) {
-            System.out.println(e.getMessage());
+        } else {
+            System.out.println("Code: " + code);
         }
-
     }
 
     /**
@@ -43,6 +43,7 @@ import fr.in2p3.cc.storage.treqs.Constants;
 import fr.in2p3.cc.storage.treqs.TReqSException;
 import fr.in2p3.cc.storage.treqs.hsm.AbstractHSMBridge;
 import fr.in2p3.cc.storage.treqs.hsm.AbstractHSMException;
+import fr.in2p3.cc.storage.treqs.hsm.HSMFactory;
 import fr.in2p3.cc.storage.treqs.hsm.HSMHelperFileProperties;
 import fr.in2p3.cc.storage.treqs.model.File;
 
@@ -111,6 +112,8 @@ public final class HSMMockBridge extends AbstractHSMBridge {
             LOGGER.info("Instance destroyed");
         }
         instance = null;
+        // The factory has not to return the destroyed instance.
+        HSMFactory.destroyInstance();
 
         LOGGER.trace("< destroyInstance");
     }
@@ -198,13 +201,13 @@ public final class HSMMockBridge extends AbstractHSMBridge {
      * (non-Javadoc)
      *
      * @see
-     * fr.in2p3.cc.storage.treqs.hsm.AbstractHSMBridge#getFileProperties(java
+     * fr.in2p3.cc.storage.treqs.hsm.AbstractHSMBridge#queryFileProperties(java
      * .lang.String)
      */
     @Override
-    public HSMHelperFileProperties getFileProperties(final String name)
-            throws AbstractHSMException {
-        LOGGER.trace("> getFileProperties");
+    protected synchronized HSMHelperFileProperties queryFileProperties(
+            final String name) throws AbstractHSMException {
+        LOGGER.trace("> queryFileProperties");
 
         assert (name != null) && !name.equals("");
 
@@ -231,7 +234,7 @@ public final class HSMMockBridge extends AbstractHSMBridge {
 
         assert ret != null;
 
-        LOGGER.trace("< getFileProperties");
+        LOGGER.trace("< queryFileProperties");
 
         return ret;
     }
@@ -282,12 +285,12 @@ public final class HSMMockBridge extends AbstractHSMBridge {
      * (non-Javadoc)
      *
      * @see
-     * fr.in2p3.cc.storage.treqs.hsm.AbstractHSMBridge#stage(fr.in2p3.cc.storage
-     * .treqs.model.File)
+     * fr.in2p3.cc.storage.treqs.hsm.AbstractHSMBridge#stageFile(fr.in2p3.cc
+     * .storage.treqs.model.File)
      */
     @Override
-    public void stage(final File name) throws AbstractHSMException {
-        LOGGER.trace("> stage");
+    protected void stageFile(final File name) throws AbstractHSMException {
+        LOGGER.trace("> stageFile");
 
         if (stageException != null) {
             final AbstractHSMException toThrow = stageException;
@@ -321,7 +324,7 @@ public final class HSMMockBridge extends AbstractHSMBridge {
         }
         LOGGER.info("Fake staging done ;)");
 
-        LOGGER.trace("< stage");
+        LOGGER.trace("< stageFile");
     }
 
     /**
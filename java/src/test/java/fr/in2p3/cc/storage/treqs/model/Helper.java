@@ -36,6 +36,9 @@
  */
 package fr.in2p3.cc.storage.treqs.model;
 
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
 import fr.in2p3.cc.storage.treqs.TReqSException;
 
 /**
@@ -113,6 +116,18 @@ public final class Helper {
         return queue.getNextReading();
     }
 
+    /**
+     * Changes the creation time of a created queue.
+     *
+     * @param queue
+     *            Queue to modify.
+     * @param time
+     *            New creation time.
+     */
+    public static void setCreationTime(final Queue queue, final Calendar time) {
+        queue.setCreationTime(time);
+    }
+
     /**
      * Suspends the queue temporarily.
      *
@@ -125,6 +140,17 @@ public final class Helper {
         queue.suspend();
     }
 
+    /**
+     * Ends the suspension of a queue now, as if the suspension time had
+     * passed.
+     *
+     * @param queue
+     *            Suspended queue.
+     */
+    public static void endSuspension(final Queue queue) {
+        queue.setSuspensionTime(new GregorianCalendar());
+    }
+
     /**
      * Private constructor.
      */
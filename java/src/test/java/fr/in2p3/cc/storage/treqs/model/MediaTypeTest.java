@@ -232,6 +232,25 @@ public final class MediaTypeTest {
         Assert.assertTrue(media.belongs(tapename));
     }
 
+    /**
+     * Tests the literal prefix of different regular expressions.
+     */
+    @Test
+    public void testLiteralPrefix01() {
+        Assert.assertEquals("IT",
+                new MediaType((byte) 1, "type", "IT.{4}").getLiteralPrefix());
+        Assert.assertEquals("JT",
+                new MediaType((byte) 1, "type", "^JT.{4}").getLiteralPrefix());
+        Assert.assertEquals("/TAPE",
+                new MediaType((byte) 1, "type", "/TAPE").getLiteralPrefix());
+        Assert.assertEquals("I",
+                new MediaType((byte) 1, "type", "IT?.*").getLiteralPrefix());
+        Assert.assertEquals("",
+                new MediaType((byte) 1, "type", "[IJ]T.*").getLiteralPrefix());
+        Assert.assertEquals("",
+                new MediaType((byte) 1, "type", "IT.*|JT.*").getLiteralPrefix());
+    }
+
     /**
      * Creates a media.
      */
@@ -762,6 +762,144 @@ public final class QueueTest {
                 QueueStatus.ENDED == queue.getStatus());
     }
 
+    /**
+     * Tests that a file registered behind the last returned reading is the next
+     * one to read.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testReading06LateFile() throws TReqSException {
+        final String filename1 = "testReading1";
+        final String filename2 = "testReading2";
+        final String filename3 = "testReading3";
+        final String tapename = "tapename";
+        final MediaType mediaType = MEDIA_TYPE;
+        final String username = "user";
+
+        final Tape tape = new Tape(tapename, mediaType);
+        final User owner = new User(username);
+
+        final FilePositionOnTape fpot1 = new FilePositionOnTape(new File(
+                filename1, QueueTest.TEN), QueueTest.FIFTY, tape, owner);
+        final FilePositionOnTape fpot2 = new FilePositionOnTape(new File(
+                filename2, QueueTest.TEN), QueueTest.TWO_HUNDRED_FIFTY, tape,
+                owner);
+        final FilePositionOnTape fpot3 = new FilePositionOnTape(new File(
+                filename3, QueueTest.TEN), QueueTest.HUNDRED_FIFTY, tape,
+                owner);
+
+        final Queue queue = new Queue(fpot1, (byte) 1);
+        queue.registerFPOT(fpot2, (byte) 1);
+
+        Reading reading = queue.getNextReading();
+        reading.setFileRequestStatus(RequestStatus.QUEUED);
+        reading = queue.getNextReading();
+
+        Assert.assertEquals("Second file", filename2, reading.getMetaData()
+                .getFile().getName());
+
+        // A file arrives between the first and the second one.
+        queue.registerFPOT(fpot3, (byte) 1);
+        reading = queue.getNextReading();
+
+        Assert.assertEquals("Late file", filename3, reading.getMetaData()
+                .getFile().getName());
+    }
+
+    /**
+     * Tests that the files of an aggregate, in the same position, are returned
+     * one after the other.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testReading06aAggregate() throws TReqSException {
+        final String filename1 = "testReading1";
+        final String filename2 = "testReading2";
+        final String filename3 = "testReading3";
+        final String tapename = "tapename";
+        final MediaType mediaType = MEDIA_TYPE;
+        final String username = "user";
+
+        final Tape tape = new Tape(tapename, mediaType);
+        final User owner = new User(username);
+
+        final FilePositionOnTape fpot1 = new FilePositionOnTape(new File(
+                filename1, QueueTest.TEN), QueueTest.FIFTY, tape, owner);
+        final FilePositionOnTape fpot2 = new FilePositionOnTape(new File(
+                filename2, QueueTest.TEN), QueueTest.HUNDRED_FIFTY, tape,
+                owner);
+        final FilePositionOnTape fpot3 = new FilePositionOnTape(new File(
+                filename3, QueueTest.TEN), QueueTest.FIFTY, tape, owner);
+
+        final Queue queue = new Queue(fpot1, (byte) 1);
+        queue.registerFPOT(fpot2, (byte) 1);
+        Assert.assertFalse("Aggregated file", queue.registerFPOT(fpot3,
+                (byte) 1));
+        Assert.assertEquals("Quantity of files", 3, queue.getRequestsSize());
+
+        Reading reading = queue.getNextReading();
+        Assert.assertEquals("First file", filename1, reading.getMetaData()
+                .getFile().getName());
+        reading.setFileRequestStatus(RequestStatus.QUEUED);
+
+        reading = queue.getNextReading();
+        Assert.assertEquals("Same aggregate", filename3, reading.getMetaData()
+                .getFile().getName());
+        reading.setFileRequestStatus(RequestStatus.QUEUED);
+
+        reading = queue.getNextReading();
+        Assert.assertEquals("Next position", filename2, reading.getMetaData()
+                .getFile().getName());
+    }
+
+    /**
+     * Tests that a reading submitted again is returned again.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testReading07Resubmitted() throws TReqSException {
+        final String filename1 = "testReading1";
+        final String filename2 = "testReading2";
+        final String tapename = "tapename";
+        final MediaType mediaType = MEDIA_TYPE;
+        final String username = "user";
+
+        final Tape tape = new Tape(tapename, mediaType);
+        final User owner = new User(username);
+
+        final FilePositionOnTape fpot1 = new FilePositionOnTape(new File(
+                filename1, QueueTest.TEN), QueueTest.FIFTY, tape, owner);
+        final FilePositionOnTape fpot2 = new FilePositionOnTape(new File(
+                filename2, QueueTest.TEN), QueueTest.HUNDRED_FIFTY, tape, owner);
+
+        final Queue queue = new Queue(fpot1, (byte) 1);
+        queue.registerFPOT(fpot2, (byte) 1);
+        queue.changeToActivated();
+
+        Reading reading = queue.getNextReading();
+        reading.setFileRequestStatus(RequestStatus.QUEUED);
+        reading.setFileRequestStatus(RequestStatus.STAGED);
+        reading = queue.getNextReading();
+        reading.setFileRequestStatus(RequestStatus.QUEUED);
+
+        Assert.assertTrue("All files queued", null == queue.getNextReading());
+
+        // The file is submitted again.
+        reading.setFileRequestStatus(RequestStatus.SUBMITTED);
+        reading = queue.getNextReading();
+
+        Assert.assertEquals("Resubmitted file", filename2, reading
+                .getMetaData().getFile().getName());
+        Assert.assertEquals("Resubmitted file, position",
+                QueueTest.HUNDRED_FIFTY, queue.getHeadPosition());
+    }
+
     /**
      * Tests that it cannot be possible to register a null FilePositionOnTape.
      *
@@ -2280,4 +2418,37 @@ public final class QueueTest {
                 actual.contains(notExpectedContains2));
         Assert.assertTrue("contains end", actual.contains(expectedContains3));
     }
+
+    /**
+     * Tests the counters of a queue with more files than a byte can count.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testToString05() throws TReqSException {
+        final int files = QueueTest.THREE_HUNDRED_FIFTY;
+        final Tape tape = new Tape("tapename", MEDIA_TYPE);
+        final User owner = new User("username");
+
+        final Queue queue = new Queue(new FilePositionOnTape(new File(
+                "filename0", QueueTest.TEN), 0, tape, owner), (byte) 1);
+        for (int i = 1; i < files; i++) {
+            queue.registerFPOT(new FilePositionOnTape(new File("filename" + i,
+                    QueueTest.TEN), i, tape, owner), (byte) 1);
+        }
+        queue.changeToActivated();
+        for (int i = 0; i < files; i++) {
+            final Reading reading = queue.getNextReading();
+            reading.setFileRequestStatus(RequestStatus.QUEUED);
+            reading.setFileRequestStatus(RequestStatus.STAGED);
+        }
+
+        final String actual = queue.toString();
+        final String expectedContains = "number of done: " + files
+                + ", number of failed: 0,";
+        LOGGER.info(actual);
+
+        Assert.assertTrue(actual.contains(expectedContains));
+    }
 }
@@ -53,7 +53,9 @@ import fr.in2p3.cc.storage.treqs.TReqSException;
 import fr.in2p3.cc.storage.treqs.hsm.AbstractHSMException;
 import fr.in2p3.cc.storage.treqs.hsm.HSMGeneralPropertiesProblemException;
 import fr.in2p3.cc.storage.treqs.hsm.HSMGeneralStageProblemException;
+import fr.in2p3.cc.storage.treqs.hsm.HSMMetadataCache;
 import fr.in2p3.cc.storage.treqs.hsm.HSMResourceException;
+import fr.in2p3.cc.storage.treqs.hsm.HSMTimeoutException;
 import fr.in2p3.cc.storage.treqs.hsm.mock.HSMMockBridge;
 import fr.in2p3.cc.storage.treqs.model.exception.InvalidStatusTransitionException;
 import fr.in2p3.cc.storage.treqs.persistence.AbstractDAOFactory;
@@ -119,6 +121,7 @@ public final class ReadingTest {
      */
     @After
     public void tearDown() {
+        HSMMetadataCache.destroyInstance();
         HSMMockBridge.destroyInstance();
         Configurator.destroyInstance();
     }
@@ -423,6 +426,65 @@ public final class ReadingTest {
         }
     }
 
+    /**
+     * Tests to stage a file, but the HSM does not answer. The try is not
+     * counted and the file can be staged again.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testStage05() throws TReqSException {
+        final Tape tape = new Tape("tapename", MEDIA_TYPE);
+        final File file = new File("filename", ReadingTest.HUNDRED);
+        final FilePositionOnTape fpot = new FilePositionOnTape(file, 1, tape,
+                new User("username"));
+        final Queue queue = new Queue(fpot, (byte) ReadingTest.TEN);
+        final Reading reading = new Reading(fpot, (byte) 1, queue);
+
+        final AbstractHSMException exception = new HSMTimeoutException(
+                "No answer");
+        HSMMockBridge.getInstance().setStageException(exception);
+
+        boolean failed = false;
+        try {
+            reading.stage();
+            failed = true;
+        } catch (final HSMTimeoutException e) {
+            // Nothing.
+        }
+        if (failed) {
+            Assert.fail();
+        }
+        Assert.assertEquals(1, reading.getNumberOfTries());
+        Assert.assertEquals(RequestStatus.SUBMITTED,
+                reading.getRequestStatus());
+    }
+
+    /**
+     * Tests that the metadata of a staged file is removed from the cache.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testStage06() throws TReqSException {
+        final Tape tape = new Tape("tapename", MEDIA_TYPE);
+        final File file = new File("filename", ReadingTest.HUNDRED);
+        final FilePositionOnTape fpot = new FilePositionOnTape(file, 1, tape,
+                new User("username"));
+        final Queue queue = new Queue(fpot, (byte) ReadingTest.TEN);
+        final Reading reading = new Reading(fpot, (byte) 1, queue);
+        HSMMetadataCache.getInstance().getFileProperties("filename");
+
+        HSMMockBridge.getInstance().setStageTime(ReadingTest.HUNDRED);
+
+        reading.stage();
+
+        Assert.assertEquals(RequestStatus.STAGED, reading.getRequestStatus());
+        Assert.assertEquals(0, HSMMetadataCache.getInstance().size());
+    }
+
     /**
      * Tests to stage a file marked as unreadable.
      *
@@ -52,6 +52,7 @@ import fr.in2p3.cc.storage.treqs.RandomBlockJUnit4ClassRunner;
 import fr.in2p3.cc.storage.treqs.TReqSException;
 import fr.in2p3.cc.storage.treqs.control.process.ProcessStatus;
 import fr.in2p3.cc.storage.treqs.hsm.HSMResourceException;
+import fr.in2p3.cc.storage.treqs.hsm.HSMTimeoutException;
 import fr.in2p3.cc.storage.treqs.hsm.mock.HSMMockBridge;
 import fr.in2p3.cc.storage.treqs.persistence.AbstractDAOFactory;
 import fr.in2p3.cc.storage.treqs.tools.Configurator;
@@ -236,6 +237,83 @@ public final class StagerTest {
         stager.run();
     }
 
+    /**
+     * The HSM does not answer the staging, thus the queue is suspended.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testSuspending02() throws TReqSException {
+        final String tapename = "tapename";
+        final User owner = new User("username");
+        final File file = new File("filename", StagerTest.TWO_HUNDRED);
+        final Tape tape = new Tape(tapename, MEDIA_TYPE);
+        final FilePositionOnTape fpot = new FilePositionOnTape(file,
+                StagerTest.FIVE, tape, owner);
+        final Queue queue = new Queue(fpot, (byte) 1);
+        final Stager stager = new Stager(1, queue);
+
+        final HSMTimeoutException exception = new HSMTimeoutException(
+                "No answer");
+        HSMMockBridge.getInstance().setStageException(exception);
+
+        queue.activate();
+
+        stager.run();
+
+        Assert.assertEquals(QueueStatus.TEMPORARILY_SUSPENDED,
+                queue.getStatus());
+    }
+
+    /**
+     * A stage that is not answered in time suspends the queue. Once the
+     * abandoned stage has returned and the suspension has ended, the queue is
+     * created again and the file is staged with the next activation.
+     *
+     * @throws TReqSException
+     *             Never.
+     * @throws InterruptedException
+     *             Never.
+     */
+    @Test
+    public void testSuspending03() throws TReqSException,
+            InterruptedException {
+        Configurator.getInstance().setValue(Constants.SECTION_HSM_BRIDGE,
+                Constants.HSM_STAGE_TIMEOUT, "1");
+        try {
+            final File file = new File("filename", StagerTest.TWO_HUNDRED);
+            final Tape tape = new Tape("tapename", MEDIA_TYPE);
+            final FilePositionOnTape fpot = new FilePositionOnTape(file,
+                    StagerTest.FIVE, tape, new User("username"));
+            final Queue queue = new Queue(fpot, (byte) 1);
+
+            // The stage does not answer before the timeout.
+            HSMMockBridge.getInstance().setStageTime(2000);
+            queue.activate();
+            new Stager(1, queue).run();
+
+            Assert.assertEquals(QueueStatus.TEMPORARILY_SUSPENDED,
+                    queue.getStatus());
+
+            // The abandoned stage returns, and the suspension ends.
+            Thread.sleep(1500);
+            Helper.endSuspension(queue);
+            queue.unsuspend();
+
+            Assert.assertEquals(QueueStatus.CREATED, queue.getStatus());
+
+            HSMMockBridge.getInstance().setStageTime(100);
+            queue.activate();
+            new Stager(2, queue).run();
+
+            Assert.assertEquals(QueueStatus.ENDED, queue.getStatus());
+        } finally {
+            Configurator.getInstance().deleteValue(
+                    Constants.SECTION_HSM_BRIDGE, Constants.HSM_STAGE_TIMEOUT);
+        }
+    }
+
     /**
      * Creates a thread, to stop the staging from the other thread.
      *
@@ -57,6 +57,18 @@ public final class MockQueueDAO implements QueueDAO {
      */
     private static final Logger LOGGER = LoggerFactory
             .getLogger(MockQueueDAO.class);
+    /**
+     * Quantity of queues that can be archived.
+     */
+    private static int archivableQueues = 0;
+
+    /**
+     * @param qty
+     *            Quantity of queues that can be archived.
+     */
+    public static void setArchivableQueues(final int qty) {
+        archivableQueues = qty;
+    }
 
     /*
      * (non-Javadoc)
@@ -70,6 +82,23 @@ public final class MockQueueDAO implements QueueDAO {
         return 0;
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see fr.in2p3.cc.storage.treqs.model.dao.QueueDAO#archive(short, int)
+     */
+    @Override
+    public int archive(final short days, final int limit) {
+        LOGGER.trace("> archive");
+
+        final int ret = Math.min(archivableQueues, limit);
+        archivableQueues -= ret;
+
+        LOGGER.trace("< archive");
+
+        return ret;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -101,12 +130,25 @@ public final class MockQueueDAO implements QueueDAO {
      *
      * @see
      * fr.in2p3.cc.storage.treqs.model.dao.QueueDAO#updateState(fr.in2p3.cc.
-     * storage.treqs.model.Queue, java.util.Calendar, short, short)
+     * storage.treqs.model.Queue, java.util.Calendar, int, int)
      */
     @Override
     public void updateState(final Queue queue, final Calendar time,
-            final short nbDone, final short nbFailed) {
+            final int nbDone, final int nbFailed) {
         LOGGER.trace(">< updateState");
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * fr.in2p3.cc.storage.treqs.model.dao.QueueDAO#updateStatistics(fr.in2p3
+     * .cc.storage.treqs.model.Queue, int, int)
+     */
+    @Override
+    public void updateStatistics(final Queue queue, final int nbDone,
+            final int nbFailed) {
+        LOGGER.trace(">< updateStatistics");
+    }
+
 }
@@ -48,6 +48,7 @@ import fr.in2p3.cc.storage.treqs.model.RequestStatus;
 import fr.in2p3.cc.storage.treqs.model.dao.ReadingDAO;
 import fr.in2p3.cc.storage.treqs.persistence.AbstractPersistanceException;
 import fr.in2p3.cc.storage.treqs.persistence.helper.PersistenceHelperFileRequest;
+import fr.in2p3.cc.storage.treqs.persistence.helper.PersistenceHelperUnfinishedRequest;
 
 /**
  * Managing Reading object updates to database.
@@ -62,6 +63,14 @@ public final class MockReadingDAO implements ReadingDAO {
     private static final Logger LOGGER = LoggerFactory
             .getLogger(MockReadingDAO.class);
 
+    /**
+     * Quantity of requests that can be archived.
+     */
+    private static int archivableRequests = 0;
+    /**
+     * Exception to throw when archiving.
+     */
+    private static AbstractPersistanceException archiveException = null;
     /**
      * Exception to throw as new request.
      */
@@ -80,6 +89,10 @@ public final class MockReadingDAO implements ReadingDAO {
      * Exception to throw.
      */
     private static AbstractPersistanceException requestStatusByIdException = null;
+    /**
+     * List of unfinished requests.
+     */
+    private static List<PersistenceHelperUnfinishedRequest> unfinishedRequests = new ArrayList<PersistenceHelperUnfinishedRequest>();
 
     /**
      * @param requests
@@ -119,6 +132,23 @@ public final class MockReadingDAO implements ReadingDAO {
         return requests;
     }
 
+    /**
+     * @param qty
+     *            Quantity of requests that can be archived.
+     */
+    public static void setArchivableRequests(final int qty) {
+        archivableRequests = qty;
+    }
+
+    /**
+     * @param exception
+     *            Exception to throw when archiving.
+     */
+    public static void setArchiveException(
+            final AbstractPersistanceException exception) {
+        archiveException = exception;
+    }
+
     /**
      * @param requests
      *            List of requests.
@@ -158,6 +188,30 @@ public final class MockReadingDAO implements ReadingDAO {
         requestStatusByIdException = exception;
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see fr.in2p3.cc.storage.treqs.model.dao.ReadingDAO#archive(short, int)
+     */
+    @Override
+    public int archive(final short days, final int limit)
+            throws AbstractPersistanceException {
+        LOGGER.trace("> archive");
+
+        if (archiveException != null) {
+            final AbstractPersistanceException toThrow = archiveException;
+            archiveException = null;
+            throw toThrow;
+        }
+
+        final int ret = Math.min(archivableRequests, limit);
+        archivableRequests -= ret;
+
+        LOGGER.trace("< archive");
+
+        return ret;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -173,11 +227,12 @@ public final class MockReadingDAO implements ReadingDAO {
     /*
      * (non-Javadoc)
      *
-     * @see fr.in2p3.cc.storage.treqs.model.dao.ReadingDAO#getNewRequests(int)
+     * @see fr.in2p3.cc.storage.treqs.model.dao.ReadingDAO#getNewRequests(int,
+     * int)
      */
     @Override
-    public List<PersistenceHelperFileRequest> getNewRequests(final int limit)
-            throws AbstractPersistanceException {
+    public List<PersistenceHelperFileRequest> getNewRequests(final int lastId,
+            final int limit) throws AbstractPersistanceException {
         LOGGER.trace("> getNewRequests");
 
         if (newRequestException != null) {
@@ -194,6 +249,28 @@ public final class MockReadingDAO implements ReadingDAO {
         return ret;
     }
 
+    /**
+     * @param requests
+     *            List of unfinished requests.
+     */
+    public static void setUnfinishedRequests(
+            final List<PersistenceHelperUnfinishedRequest> requests) {
+        unfinishedRequests = requests;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * fr.in2p3.cc.storage.treqs.model.dao.ReadingDAO#getUnfinishedRequests()
+     */
+    @Override
+    public List<PersistenceHelperUnfinishedRequest> getUnfinishedRequests() {
+        LOGGER.trace(">< getUnfinishedRequests");
+
+        return unfinishedRequests;
+    }
+
     /*
      * (non-Javadoc)
      *
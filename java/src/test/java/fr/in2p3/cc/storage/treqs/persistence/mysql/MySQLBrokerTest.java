@@ -36,6 +36,7 @@
  */
 package fr.in2p3.cc.storage.treqs.persistence.mysql;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
@@ -483,6 +484,29 @@ public final class MySQLBrokerTest {
         Assert.assertTrue(actual == 1);
     }
 
+    /**
+     * Retrieves the same prepared statement twice; it is prepared only once
+     * per connection.
+     * 
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testPrepared01() throws TReqSException {
+        final String query = "show tables";
+        MySQLBroker.getInstance().connect();
+
+        final PreparedStatement statement1 = MySQLBroker.getInstance()
+                .getPreparedStatement(query);
+        MySQLBroker.getInstance().releaseStatement(statement1);
+        final PreparedStatement statement2 = MySQLBroker.getInstance()
+                .getPreparedStatement(query);
+        MySQLBroker.getInstance().releaseStatement(statement2);
+
+        MySQLBroker.getInstance().disconnect();
+        Assert.assertTrue(statement1 == statement2);
+    }
+
     /**
      * Executes a null query.
      * 
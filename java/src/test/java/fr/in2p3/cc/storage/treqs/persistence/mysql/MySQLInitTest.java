@@ -36,7 +36,11 @@
  */
 package fr.in2p3.cc.storage.treqs.persistence.mysql;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
 import org.junit.AfterClass;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -85,6 +89,8 @@ public final class MySQLInitTest {
         Configurator.getInstance().setValue(Constants.SECTION_PERSISTENCE,
                 Constants.PESISTENCE_FACTORY, MySQLTests.MYSQL_PERSISTANCE);
 
+        MySQLInitTest.dropTable(MySQLStatements.REQUESTS_HISTORY);
+        MySQLInitTest.dropTable(MySQLStatements.QUEUES_HISTORY);
         MySQLInitTest.dropTable(MySQLStatements.REQUESTS);
         MySQLInitTest.dropTable(MySQLStatements.QUEUES);
         MySQLInitTest.dropTable(MySQLStatements.ALLOCATIONS);
@@ -127,4 +133,32 @@ public final class MySQLInitTest {
         new MySQLInit().initializeDatabase();
     }
 
+    /**
+     * Adds the missing index to a table of a previous version.
+     *
+     * @throws TReqSException
+     *             Never.
+     * @throws SQLException
+     *             Never.
+     */
+    @Test
+    public void test03index() throws TReqSException, SQLException {
+        MySQLBroker.getInstance().executeModification(
+                "DROP INDEX " + InitDBStatements.INDEX_REQUESTS_STATUS_ID
+                        + " ON " + MySQLStatements.REQUESTS);
+        MySQLBroker.getInstance().disconnect();
+
+        new MySQLInit().initializeDatabase();
+
+        final Object[] objects = MySQLBroker.getInstance().executeSelect(
+                InitDBStatements.SHOW_INDEXES + MySQLStatements.REQUESTS
+                        + " WHERE Key_name = '"
+                        + InitDBStatements.INDEX_REQUESTS_STATUS_ID + "'");
+        final ResultSet result = (ResultSet) objects[1];
+        final boolean found = result.next();
+        MySQLBroker.getInstance().terminateExecution(objects);
+        MySQLBroker.getInstance().disconnect();
+
+        Assert.assertTrue(found);
+    }
 }
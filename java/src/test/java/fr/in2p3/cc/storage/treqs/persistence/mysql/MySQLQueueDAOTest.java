@@ -38,6 +38,7 @@ package fr.in2p3.cc.storage.treqs.persistence.mysql;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 
@@ -111,6 +112,7 @@ public final class MySQLQueueDAOTest {
     public static void oneTimeTearDown() throws TReqSException {
         MySQLTests.cleanDatabase();
 
+        MySQLQueueStatisticsWriter.destroyInstance();
         MySQLBroker.destroyInstance();
         AbstractDAOFactory.destroyInstance();
         Configurator.destroyInstance();
@@ -267,6 +269,46 @@ public final class MySQLQueueDAOTest {
         }
     }
 
+    /**
+     * Archives an old aborted queue.
+     *
+     * @throws TReqSException
+     *             Never.
+     * @throws SQLException
+     *             Never.
+     */
+    @Test
+    public void testArchive01() throws TReqSException, SQLException {
+        final Tape tape = new Tape("tapenam3", MEDIA_TYPE);
+        final int size = 987;
+
+        final FilePositionOnTape fpot = new FilePositionOnTape(new File("filename",
+                size), 0, tape, new User("owner"));
+
+        final Queue queue = new Queue(fpot, (byte) MySQLQueueDAOTest.THREE);
+
+        final int id = queue.getId();
+
+        new MySQLQueueDAO().abortPendingQueues();
+        MySQLBroker.getInstance().executeModification(
+                "UPDATE " + MySQLStatements.QUEUES + " SET "
+                        + MySQLStatements.QUEUES_END_TIME
+                        + " = now() - INTERVAL 2 DAY WHERE id = " + id);
+
+        final int archived = new MySQLQueueDAO().archive((short) 1, 1000);
+
+        final String query = "SELECT " + MySQLStatements.QUEUES_STATUS + " FROM "
+                + MySQLStatements.QUEUES + " WHERE id = " + id;
+        final Object[] objects = MySQLBroker.getInstance().executeSelect(query);
+        final ResultSet result = (ResultSet) objects[1];
+        final boolean found = result.next();
+        MySQLBroker.getInstance().terminateExecution(objects);
+        MySQLBroker.getInstance().disconnect();
+
+        Assert.assertTrue(archived > 0);
+        Assert.assertFalse(found);
+    }
+
     /**
      * Tests an update without and established connection.
      *
@@ -405,34 +447,47 @@ public final class MySQLQueueDAOTest {
     }
 
     /**
-     * Tries to update a created queue. Impossible.
+     * Updates an unsuspended queue. It is created again, without suspension
+     * time.
      *
      * @throws TReqSException
      *             Never.
+     * @throws SQLException
+     *             Never.
      */
     @Test
-    public void testUpdateState01() throws TReqSException {
-        final Calendar time = new GregorianCalendar();
-        final short nbDone = 0;
-        final short nbFailed = 0;
+    public void testUpdateState01() throws TReqSException, SQLException {
         final String ownerName = "owner";
         final long byteSize = MySQLQueueDAOTest.HUNDRED;
 
         final FilePositionOnTape fpot = new FilePositionOnTape(new File("filename",
-                byteSize), 0, new Tape("tapename", MEDIA_TYPE), new User(
+                byteSize), 0, new Tape("tapenam5", MEDIA_TYPE), new User(
                 ownerName));
         final Queue queue = new Queue(fpot, (byte) MySQLQueueDAOTest.THREE);
+        final int id = queue.getId();
+        Helper.activate(queue);
+        Helper.suspend(queue);
+        Helper.endSuspension(queue);
+        // Registers the state through the DAO.
+        queue.unsuspend();
 
-        boolean failed = false;
-        try {
-            new MySQLQueueDAO().updateState(queue, time, nbDone, nbFailed);
-            failed = true;
-        } catch (final Throwable e) {
-            if (!(e instanceof AssertionError)) {
-                failed = true;
-            }
-        }
-        if (failed) {
+        final String query = "SELECT " + MySQLStatements.QUEUES_STATUS + ", "
+                + MySQLStatements.QUEUES_SUSPENSION_TIME + " FROM "
+                + MySQLStatements.QUEUES + " WHERE id = " + id;
+        final Object[] objects = MySQLBroker.getInstance().executeSelect(query);
+        final ResultSet result = (ResultSet) objects[1];
+        if (result.next()) {
+            final int actualStatus = result.getInt(1);
+            final Timestamp actualSuspension = result.getTimestamp(2);
+
+            MySQLBroker.getInstance().terminateExecution(objects);
+            MySQLBroker.getInstance().disconnect();
+
+            Assert.assertEquals(QueueStatus.CREATED.getId(), actualStatus);
+            Assert.assertNull(actualSuspension);
+        } else {
+            MySQLBroker.getInstance().terminateExecution(objects);
+            MySQLBroker.getInstance().disconnect();
             Assert.fail();
         }
     }
@@ -446,8 +501,8 @@ public final class MySQLQueueDAOTest {
     @Test
     public void testUpdateState02() throws TReqSException {
         final Calendar time = new GregorianCalendar();
-        final short nbDone = 0;
-        final short nbFailed = 0;
+        final int nbDone = 0;
+        final int nbFailed = 0;
         final String ownerName = "owner";
         final long byteSize = MySQLQueueDAOTest.HUNDRED;
 
@@ -461,7 +516,7 @@ public final class MySQLQueueDAOTest {
     }
 
     /**
-     * Tries to insert a null date.
+     * Tries to insert a null date for an activated queue.
      *
      * @throws TReqSException
      *             Never.
@@ -469,8 +524,8 @@ public final class MySQLQueueDAOTest {
     @Test
     public void testUpdateState03() throws TReqSException {
         final Calendar time = null;
-        final short nbDone = 0;
-        final short nbFailed = 0;
+        final int nbDone = 0;
+        final int nbFailed = 0;
         final String ownerName = "owner";
         final long byteSize = MySQLQueueDAOTest.HUNDRED;
 
@@ -478,6 +533,7 @@ public final class MySQLQueueDAOTest {
                 byteSize), 0, new Tape("tapename", MEDIA_TYPE), new User(
                 ownerName));
         final Queue queue = new Queue(fpot, (byte) MySQLQueueDAOTest.THREE);
+        Helper.activate(queue);
 
         boolean failed = false;
         try {
@@ -502,8 +558,8 @@ public final class MySQLQueueDAOTest {
     @Test
     public void testUpdateState04() throws TReqSException {
         final Calendar time = new GregorianCalendar();
-        final short nbDone = -50;
-        final short nbFailed = 0;
+        final int nbDone = -50;
+        final int nbFailed = 0;
         final String ownerName = "owner";
         final long byteSize = MySQLQueueDAOTest.HUNDRED;
 
@@ -535,8 +591,8 @@ public final class MySQLQueueDAOTest {
     @Test
     public void testUpdateState05() throws TReqSException {
         final Calendar time = new GregorianCalendar();
-        final short nbDone = 0;
-        final short nbFailed = -90;
+        final int nbDone = 0;
+        final int nbFailed = -90;
         final String ownerName = "owner";
         final long byteSize = MySQLQueueDAOTest.HUNDRED;
 
@@ -565,8 +621,8 @@ public final class MySQLQueueDAOTest {
     @Test
     public void testUpdateState06() {
         final Calendar time = new GregorianCalendar();
-        final short nbDone = 0;
-        final short nbFailed = -90;
+        final int nbDone = 0;
+        final int nbFailed = -90;
 
         final Queue queue = null;
 
@@ -583,4 +639,44 @@ public final class MySQLQueueDAOTest {
             Assert.fail();
         }
     }
+
+    /**
+     * Updates the counters of a queue. They are written with the next flush.
+     *
+     * @throws TReqSException
+     *             Never.
+     * @throws SQLException
+     *             Never.
+     */
+    @Test
+    public void testUpdateStatistics01() throws TReqSException, SQLException {
+        final FilePositionOnTape fpot = new FilePositionOnTape(new File(
+                "filename", 50), 0, new Tape("tapenam4", MEDIA_TYPE),
+                new User("username"));
+        final Queue queue = new Queue(fpot, (byte) MySQLQueueDAOTest.THREE);
+        final int id = queue.getId();
+
+        new MySQLQueueDAO().updateStatistics(queue, 2, 1);
+        MySQLQueueStatisticsWriter.getInstance().flush();
+
+        final String query = "SELECT " + MySQLStatements.QUEUES_NB_REQS_DONE
+                + ", " + MySQLStatements.QUEUES_NB_REQS_FAILED + " FROM "
+                + MySQLStatements.QUEUES + " WHERE id = " + id;
+        final Object[] objects = MySQLBroker.getInstance().executeSelect(query);
+        final ResultSet result = (ResultSet) objects[1];
+        if (result.next()) {
+            final int actualDone = result.getInt(1);
+            final int actualFailed = result.getInt(2);
+
+            MySQLBroker.getInstance().terminateExecution(objects);
+            MySQLBroker.getInstance().disconnect();
+
+            Assert.assertEquals(2, actualDone);
+            Assert.assertEquals(1, actualFailed);
+        } else {
+            MySQLBroker.getInstance().terminateExecution(objects);
+            MySQLBroker.getInstance().disconnect();
+            Assert.fail();
+        }
+    }
 }
@@ -49,6 +49,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import fr.in2p3.cc.storage.treqs.Constants;
+import fr.in2p3.cc.storage.treqs.DefaultProperties;
 import fr.in2p3.cc.storage.treqs.MainTests;
 import fr.in2p3.cc.storage.treqs.MySQLTests;
 import fr.in2p3.cc.storage.treqs.RandomBlockJUnit4ClassRunner;
@@ -64,6 +65,7 @@ import fr.in2p3.cc.storage.treqs.model.Tape;
 import fr.in2p3.cc.storage.treqs.model.User;
 import fr.in2p3.cc.storage.treqs.persistence.AbstractDAOFactory;
 import fr.in2p3.cc.storage.treqs.persistence.helper.PersistenceHelperFileRequest;
+import fr.in2p3.cc.storage.treqs.persistence.helper.PersistenceHelperUnfinishedRequest;
 import fr.in2p3.cc.storage.treqs.persistence.mysql.dao.MySQLReadingDAO;
 import fr.in2p3.cc.storage.treqs.tools.Configurator;
 
@@ -130,11 +132,71 @@ public final class MySQLReadingDAOTest {
      */
     @After
     public void tearDown() throws TReqSException {
+        MySQLBatchWriter.destroyInstance();
         MySQLRequestsDAO.deleteAll();
         MySQLBroker.getInstance().disconnect();
         MySQLBroker.destroyInstance();
     }
 
+    /**
+     * Tests to archive when there is nothing to archive.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testArchive01() throws TReqSException {
+        final int actual = new MySQLReadingDAO().archive((short) 1, 10);
+
+        Assert.assertEquals(0, actual);
+    }
+
+    /**
+     * Tests to archive the old processed requests by batches, keeping the
+     * recent ones.
+     *
+     * @throws TReqSException
+     *             Never.
+     * @throws SQLException
+     *             Never.
+     */
+    @Test
+    public void testArchive02() throws TReqSException, SQLException {
+        MySQLBroker.getInstance().connect();
+        MySQLBroker.getInstance().executeModification(
+                "DELETE FROM " + MySQLStatements.REQUESTS_HISTORY);
+        final String[] ends = new String[] { "now() - INTERVAL 3 DAY",
+                "now() - INTERVAL 2 DAY", "now()" };
+        for (int i = 0; i < ends.length; i++) {
+            final String query = "INSERT INTO " + MySQLStatements.REQUESTS
+                    + " (" + MySQLStatements.REQUESTS_FILE + ", "
+                    + MySQLStatements.REQUESTS_STATUS + ", "
+                    + MySQLStatements.REQUESTS_CREATION_TIME + ", "
+                    + MySQLStatements.REQUESTS_END_TIME + ", "
+                    + MySQLStatements.REQUESTS_USER + ", "
+                    + MySQLStatements.REQUESTS_CLIENT + ", "
+                    + MySQLStatements.REQUESTS_VERSION + ") VALUES ('archive"
+                    + i + "', " + RequestStatus.STAGED.getId()
+                    + ", now(), " + ends[i] + ", 'pato', 'cli', 'last')";
+            MySQLBroker.getInstance().executeModification(query);
+        }
+
+        final MySQLReadingDAO dao = new MySQLReadingDAO();
+        Assert.assertEquals(1, dao.archive((short) 1, 1));
+        Assert.assertEquals(1, dao.archive((short) 1, 1));
+        Assert.assertEquals(0, dao.archive((short) 1, 1));
+
+        final Object[] objects = MySQLBroker.getInstance().executeSelect(
+                "SELECT COUNT(*) FROM " + MySQLStatements.REQUESTS_HISTORY);
+        final ResultSet result = (ResultSet) objects[1];
+        result.next();
+        final int actual = result.getInt(1);
+        MySQLBroker.getInstance().terminateExecution(objects);
+        MySQLBroker.getInstance().disconnect();
+
+        Assert.assertEquals(2, actual);
+    }
+
     /**
      * Inserts correctly a reading.
      *
@@ -248,6 +310,64 @@ public final class MySQLReadingDAOTest {
         }
     }
 
+    /**
+     * Tests that the modifications of a batch that could not be written are
+     * kept, and written again by the next flush.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testFlush01() throws TReqSException {
+        MySQLBatchWriter.getInstance().add(
+                "UPDATE NotExistingTable SET c = ?", new Object[] { 1 });
+
+        for (int i = 0; i < 2; i++) {
+            boolean failed = false;
+            try {
+                MySQLBatchWriter.getInstance().flush();
+                failed = true;
+            } catch (final TReqSException e) {
+                // Expected.
+            }
+            if (failed) {
+                Assert.fail();
+            }
+            Assert.assertEquals(1, MySQLBatchWriter.getInstance()
+                    .getPendingSize());
+        }
+    }
+
+    /**
+     * Tests that a modification rejected too many times is dropped, and it does
+     * not block the following ones.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testFlush02() throws TReqSException {
+        MySQLBatchWriter.getInstance().add(
+                "UPDATE NotExistingTable SET c = ?", new Object[] { 1 });
+
+        for (int i = 1; i < DefaultProperties.BATCH_RETRIES; i++) {
+            boolean failed = false;
+            try {
+                MySQLBatchWriter.getInstance().flush();
+                failed = true;
+            } catch (final TReqSException e) {
+                // Expected.
+            }
+            if (failed) {
+                Assert.fail();
+            }
+        }
+        MySQLBatchWriter.getInstance().flush();
+
+        Assert.assertEquals(0, MySQLBatchWriter.getInstance()
+                .getPendingSize());
+    }
+
     /**
      * Tests limit 0.
      *
@@ -257,7 +377,7 @@ public final class MySQLReadingDAOTest {
     @Test
     public void testGetNewRequests01() throws TReqSException {
         final int limit = 0;
-        new MySQLReadingDAO().getNewRequests(limit);
+        new MySQLReadingDAO().getNewRequests(0, limit);
     }
 
     /**
@@ -269,7 +389,7 @@ public final class MySQLReadingDAOTest {
         final int limit = -5;
         boolean failed = false;
         try {
-            new MySQLReadingDAO().getNewRequests(limit);
+            new MySQLReadingDAO().getNewRequests(0, limit);
             failed = true;
         } catch (final Throwable e) {
             if (!(e instanceof AssertionError)) {
@@ -294,7 +414,7 @@ public final class MySQLReadingDAOTest {
 
         MySQLBroker.getInstance().executeModification(query);
         final List<PersistenceHelperFileRequest> requests = new MySQLReadingDAO()
-                .getNewRequests(limit);
+                .getNewRequests(0, limit);
 
         Assert.assertTrue(requests.size() == 0);
     }
@@ -333,7 +453,7 @@ public final class MySQLReadingDAOTest {
         MySQLBroker.getInstance().executeModification(query1);
         MySQLBroker.getInstance().executeModification(query2);
         final List<PersistenceHelperFileRequest> requests = new MySQLReadingDAO()
-                .getNewRequests(limit);
+                .getNewRequests(0, limit);
         MySQLBroker.getInstance().disconnect();
         final int actual = requests.size();
         final int expected = 2;
@@ -341,6 +461,82 @@ public final class MySQLReadingDAOTest {
         Assert.assertEquals(expected, actual);
     }
 
+    /**
+     * Reads the new requests page by page, after the id of the last request of
+     * the previous page.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testGetNewRequests05() throws TReqSException {
+        final String query = "INSERT INTO " + MySQLStatements.REQUESTS + " ("
+                + MySQLStatements.REQUESTS_FILE + ", "
+                + MySQLStatements.REQUESTS_STATUS + ", "
+                + MySQLStatements.REQUESTS_CREATION_TIME + ", "
+                + MySQLStatements.REQUESTS_USER + ", "
+                + MySQLStatements.REQUESTS_CLIENT + ", "
+                + MySQLStatements.REQUESTS_VERSION + ") VALUES ('NewRequest05"
+                + "', " + RequestStatus.CREATED.getId()
+                + ", now(), 'pato', 'cli', 'last')";
+
+        MySQLBroker.getInstance().connect();
+        MySQLBroker.getInstance().executeModification(
+                "DELETE FROM " + MySQLStatements.REQUESTS);
+        MySQLBroker.getInstance().executeModification(query);
+        MySQLBroker.getInstance().executeModification(query);
+        MySQLBroker.getInstance().executeModification(query);
+        final List<PersistenceHelperFileRequest> first = new MySQLReadingDAO()
+                .getNewRequests(0, 2);
+        final List<PersistenceHelperFileRequest> second = new MySQLReadingDAO()
+                .getNewRequests(first.get(1).getId(), 2);
+        MySQLBroker.getInstance().disconnect();
+
+        Assert.assertEquals(2, first.size());
+        Assert.assertEquals(1, second.size());
+        Assert.assertTrue(second.get(0).getId() > first.get(1).getId());
+    }
+
+    /**
+     * Reads the unfinished requests with their stored tape and position. The
+     * created requests are not read.
+     *
+     * @throws TReqSException
+     *             Never.
+     */
+    @Test
+    public void testGetUnfinishedRequests01() throws TReqSException {
+        final String columns = "INSERT INTO " + MySQLStatements.REQUESTS
+                + " (" + MySQLStatements.REQUESTS_FILE + ", "
+                + MySQLStatements.REQUESTS_STATUS + ", "
+                + MySQLStatements.REQUESTS_CREATION_TIME + ", "
+                + MySQLStatements.REQUESTS_USER + ", "
+                + MySQLStatements.REQUESTS_CLIENT + ", "
+                + MySQLStatements.REQUESTS_VERSION + ", "
+                + MySQLStatements.REQUESTS_TAPE + ", "
+                + MySQLStatements.REQUESTS_POSITION + ", "
+                + MySQLStatements.REQUESTS_SIZE + ") VALUES (";
+
+        MySQLBroker.getInstance().connect();
+        MySQLBroker.getInstance().executeModification(
+                "DELETE FROM " + MySQLStatements.REQUESTS);
+        MySQLBroker.getInstance().executeModification(
+                columns + "'Unfinished1', " + RequestStatus.SUBMITTED.getId()
+                        + ", now(), 'pato', 'cli', 'last', 'IT0001', 5, 300)");
+        MySQLBroker.getInstance().executeModification(
+                columns + "'Unfinished2', " + RequestStatus.CREATED.getId()
+                        + ", now(), 'pato', 'cli', 'last', NULL, NULL, NULL)");
+        final List<PersistenceHelperUnfinishedRequest> requests = new MySQLReadingDAO()
+                .getUnfinishedRequests();
+        MySQLBroker.getInstance().disconnect();
+
+        Assert.assertEquals(1, requests.size());
+        Assert.assertEquals("Unfinished1", requests.get(0).getFileName());
+        Assert.assertEquals("IT0001", requests.get(0).getTapeName());
+        Assert.assertEquals(5, requests.get(0).getPosition());
+        Assert.assertFalse(requests.get(0).isActivated());
+    }
+
     /**
      * Tests id negative.
      */
@@ -490,12 +686,13 @@ public final class MySQLReadingDAOTest {
             id = result.getInt(1);
         }
         result.close();
-        statement.close();
+        MySQLBroker.getInstance().releaseStatement(statement);
 
         final RequestStatus status = RequestStatus.SUBMITTED;
         final int code = 105;
         final String message = "The request changed the state.";
         new MySQLReadingDAO().setRequestStatusById(id, status, code, message);
+        MySQLBatchWriter.getInstance().flush();
 
         query = "SELECT " + MySQLStatements.REQUESTS_STATUS + ", "
                 + MySQLStatements.REQUESTS_MESSAGE + ", "
@@ -259,3 +259,28 @@ int stage(const char * name, unsigned long long * size) {
 
 	return rc;
 }
+
+int stageFiles(int count, const char ** names, unsigned long long * sizes,
+		int * codes) {
+	int failed = 0;
+	int i;
+	if (trace) {
+		printf("> stageFiles\n");
+	}
+
+	for (i = 0; i < count; i++) {
+		codes[i] = stage(names[i], &sizes[i]);
+		if (codes[i] < 0) {
+			failed++;
+		} else {
+			// hpss_Close returns 0 when the file has been staged.
+			codes[i] = HPSS_E_NOERROR;
+		}
+	}
+
+	if (trace) {
+		printf("< stageFiles - %d\n", failed);
+	}
+
+	return failed;
+}
@@ -105,4 +105,18 @@ int getFileProperties(const char * name, int * position,
  */
 int stage(const char * name, unsigned long long * size);
 
+//! Stages several files stored in the same tape.
+/**
+ * The files are staged one after the other in the given order, within the
+ * same call. A problem with a file does not stop the staging of the next ones.
+ *
+ * @param count (in) Quantity of files.
+ * @param names (in) Names of the files, ordered by position in the tape.
+ * @param sizes (in) Sizes of the files.
+ * @param codes (out) Return code of each file.
+ * @return Quantity of files that could not be staged.
+ */
+int stageFiles(int count, const char ** names, unsigned long long * sizes,
+    int * codes);
+
 #endif /* HPSSBROKER_H_ */
@@ -37,7 +37,6 @@
 #include <stdlib.h>
 #include "fr_in2p3_cc_storage_treqs_hsm_hpssJNI_NativeBridge.h"
 #include "HPSSBroker.h"
-#include "ProcessException.h"
 
 #define cont (rc == HPSS_E_NOERROR)
 #define FILE_ON_DISK "DISK"
@@ -64,7 +63,7 @@ JNIEXPORT void JNICALL Java_fr_in2p3_cc_storage_treqs_hsm_hpssJNI_NativeBridge_e
 }
 
 JNIEXPORT jobject JNICALL Java_fr_in2p3_cc_storage_treqs_hsm_hpssJNI_NativeBridge_getFileProperties(
-    JNIEnv* env, jobject js, jstring jFileName) {
+    JNIEnv* env, jobject js, jstring jFileName, jintArray jCode) {
 
   const char * filename;
 
@@ -75,8 +74,6 @@ JNIEXPORT jobject JNICALL Java_fr_in2p3_cc_storage_treqs_hsm_hpssJNI_NativeBridg
 
   int rc = -1;
 
-  char message[1024];
-
   // JNI
   jstring jTapeName;
   jclass helperClass;
@@ -98,11 +95,6 @@ JNIEXPORT jobject JNICALL Java_fr_in2p3_cc_storage_treqs_hsm_hpssJNI_NativeBridg
   // Release JNI component.
   (*env)->ReleaseStringUTFChars(env, jFileName, filename);
 
-  // Throws an exception if there is a problem.
-  if (rc != HPSS_E_NOERROR) {
-    sprintf(message, "%d:getProperties", rc);
-    throwJNIException(env, message);
-  }
   if (cont) {
     if (debug) {
       printf("Preparing results\n");
@@ -118,9 +110,8 @@ JNIEXPORT jobject JNICALL Java_fr_in2p3_cc_storage_treqs_hsm_hpssJNI_NativeBridg
     // Prepares the StorageLevel - StorageName
     jTapeName = (*env)->NewStringUTF(env, tape);
     if (jTapeName == NULL) {
+      // Problem creating the string - tapename.
       rc = -30002;
-      sprintf(message, "%d:Problem creating the string - tapename", rc);
-      throwJNIException(env, message);
     }
   }
   if (cont) {
@@ -130,8 +121,6 @@ JNIEXPORT jobject JNICALL Java_fr_in2p3_cc_storage_treqs_hsm_hpssJNI_NativeBridg
     // If this class does not exist then return null.
     if (helperClass == NULL) {
       rc = -30003;
-      sprintf(message, "%d:Class not found", rc);
-      throwJNIException(env, message);
     }
   }
   if (cont) {
@@ -139,9 +128,8 @@ JNIEXPORT jobject JNICALL Java_fr_in2p3_cc_storage_treqs_hsm_hpssJNI_NativeBridg
     cid = (*env)->GetMethodID(env, helperClass, "<init>",
         "(Ljava/lang/String;IJ)V");
     if (cid == NULL) {
+      // Constructor not found.
       rc = -30004;
-      sprintf(message, "%d:Constructor not found", rc);
-      throwJNIException(env, message);
     }
   }
   if (cont) {
@@ -153,6 +141,9 @@ JNIEXPORT jobject JNICALL Java_fr_in2p3_cc_storage_treqs_hsm_hpssJNI_NativeBridg
     (*env)->DeleteLocalRef(env, helperClass);
   }
 
+  // Returns the code in the holder, the result is NULL if there is a problem.
+  (*env)->SetIntArrayRegion(env, jCode, 0, 1, (jint *) &rc);
+
   if (trace) {
     printf("< JNI getFileProperties - %d\n", rc);
   }
@@ -160,7 +151,7 @@ JNIEXPORT jobject JNICALL Java_fr_in2p3_cc_storage_treqs_hsm_hpssJNI_NativeBridg
   return result;
 }
 
-JNIEXPORT void JNICALL Java_fr_in2p3_cc_storage_treqs_hsm_hpssJNI_NativeBridge_initContext(
+JNIEXPORT jint JNICALL Java_fr_in2p3_cc_storage_treqs_hsm_hpssJNI_NativeBridge_initContext(
     JNIEnv* env, jobject js, jstring jAuthType, jstring jKeytab, jstring jUser) {
   const char * authType;
   const char * keytab;
@@ -168,8 +159,6 @@ JNIEXPORT void JNICALL Java_fr_in2p3_cc_storage_treqs_hsm_hpssJNI_NativeBridge_i
 
   int rc = -1;
 
-  char message[1024];
-
   LOGGER = getenv("TREQS_LOG");
   if (trace) {
     printf("> JNI initContext\n");
@@ -188,23 +177,18 @@ JNIEXPORT void JNICALL Java_fr_in2p3_cc_storage_treqs_hsm_hpssJNI_NativeBridge_i
   (*env)->ReleaseStringUTFChars(env, jKeytab, keytab);
   (*env)->ReleaseStringUTFChars(env, jUser, user);
 
-  // Throws an exception if there is a problem.
-  if (rc != HPSS_E_NOERROR) {
-    sprintf(message, "%d:initContext", rc);
-    throwJNIException(env, message);
-  }
-
   if (trace) {
     printf("< JNI initContext - %d\n", rc);
   }
+
+  return (jint) rc;
 }
 
-JNIEXPORT void JNICALL Java_fr_in2p3_cc_storage_treqs_hsm_hpssJNI_NativeBridge_stage(
+JNIEXPORT jint JNICALL Java_fr_in2p3_cc_storage_treqs_hsm_hpssJNI_NativeBridge_stage(
     JNIEnv* env, jobject js, jstring jFileName, jlong size) {
   const char * filename;
 
   int rc = -1;
-  char message[1024];
 
   if (trace) {
     printf("> JNI stage\n");
@@ -219,56 +203,73 @@ JNIEXPORT void JNICALL Java_fr_in2p3_cc_storage_treqs_hsm_hpssJNI_NativeBridge_s
   // Release JNI components.
   (*env)->ReleaseStringUTFChars(env, jFileName, filename);
 
-  // Throws an exception if there is a problem.
-  if (rc != HPSS_E_NOERROR) {
-    sprintf(message, "%d:stage", rc);
-    throwJNIException(env, message);
-  }
-
   if (trace) {
     printf("< JNI stage - %d\n", rc);
   }
+
+  return (jint) rc;
 }
 
-jint throwNoClassDefError(JNIEnv *env, const char *message) {
-  jclass exClass;
-  const char *className = "java/lang/NoClassDefFoundError";
+JNIEXPORT jintArray JNICALL Java_fr_in2p3_cc_storage_treqs_hsm_hpssJNI_NativeBridge_stageFiles(
+    JNIEnv* env, jobject js, jobjectArray jFileNames, jlongArray jSizes) {
+  jsize count;
+  jsize i;
+  const char ** filenames;
+  jstring * jNames;
+  unsigned long long * sizes;
+  jlong * jSizeElements;
+  int * codes;
 
-  if (trace) {
-    printf("> Creation generic exception\n");
-  }
+  int failed = 0;
 
-  exClass = (*env)->FindClass(env, className);
-  if (exClass == NULL) {
-    exit(-1);
-  }
+  // JNI
+  jintArray result = NULL;
 
   if (trace) {
-    printf("< Creation generic exception\n");
+    printf("> JNI stageFiles\n");
   }
 
-  return (*env)->ThrowNew(env, exClass, message);
-}
+  count = (*env)->GetArrayLength(env, jFileNames);
+  filenames = malloc(count * sizeof(char *));
+  jNames = malloc(count * sizeof(jstring));
+  sizes = malloc(count * sizeof(unsigned long long));
+  codes = malloc(count * sizeof(int));
+
+  // Converts the Java arrays in C arrays.
+  jSizeElements = (*env)->GetLongArrayElements(env, jSizes, NULL);
+  for (i = 0; i < count; i++) {
+    jNames[i] = (jstring) (*env)->GetObjectArrayElement(env, jFileNames, i);
+    filenames[i] = (*env)->GetStringUTFChars(env, jNames[i], JNI_FALSE);
+    sizes[i] = (unsigned long long) jSizeElements[i];
+  }
+  (*env)->ReleaseLongArrayElements(env, jSizes, jSizeElements, JNI_ABORT);
 
-jint throwJNIException(JNIEnv *env, char *message) {
-  jclass exClass;
-  const char *className = "fr/in2p3/cc/storage/treqs/hsm/hpssJNI/JNIException";
+  // Calls the Broker once for all the files.
+  failed = stageFiles(count, filenames, sizes, codes);
+  if (debug) {
+    printf("%d of %d files not staged\n", failed, count);
+  }
 
-  if (trace) {
-    printf("> Creation JNI exception\n");
+  // Release JNI components.
+  for (i = 0; i < count; i++) {
+    (*env)->ReleaseStringUTFChars(env, jNames[i], filenames[i]);
+    (*env)->DeleteLocalRef(env, jNames[i]);
   }
 
-  exClass = (*env)->FindClass(env, className);
-  if (exClass == NULL) {
-    if (warn) {
-      printf("Unable to found exception\n");
-    }
-    return throwNoClassDefError(env, className);
+  // Returns the code of each file.
+  result = (*env)->NewIntArray(env, count);
+  if (result != NULL) {
+    (*env)->SetIntArrayRegion(env, result, 0, count, (jint *) codes);
   }
 
+  free(filenames);
+  free(jNames);
+  free(sizes);
+  free(codes);
+
   if (trace) {
-    printf("< Creation JNI exception\n");
+    printf("< JNI stageFiles - %d\n", failed);
   }
 
-  return (*env)->ThrowNew(env, exClass, message);
+  return result;
 }
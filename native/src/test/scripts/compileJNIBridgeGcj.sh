@@ -9,15 +9,14 @@ sh ./compileBroker.sh
 
 echo Generating JNI Bridge - Java
 gcj -C -d ./ ../java/src/main/java/fr/in2p3/cc/storage/treqs/hsm/HSMHelperFileProperties.java
-# The next line generates an error when using Annotations.
-gcj -C -d ./ ../java/src/main/java/fr/in2p3/cc/storage/treqs/hsm/hpssJNI/JNIException.java
+gcj -C -d ./
 gcj -C -d ./ ../java/src/main/java/fr/in2p3/cc/storage/treqs/hsm/hpssJNI/NativeBridge.java
 rm -f fr_*.h
 gcjh -classpath ./ -d ./ -jni fr.in2p3.cc.storage.treqs.hsm.hpssJNI.NativeBridge
 
 # Compiling Java as native
 rm -f NativeBridge.o
-gcj -fjni -c -Wall -o ./NativeBridge.o --disable-assertions -classpath ./ ../java/src/main/java/fr/in2p3/cc/storage/treqs/hsm/hpssJNI/NativeBridge.java ../java/src/main/java/fr/in2p3/cc/storage/treqs/hsm/HSMHelperFileProperties.java ../java/src/main/java/fr/in2p3/cc/storage/treqs/hsm/hpssJNI/JNIException.java
+gcj -fjni -c -Wall -o ./NativeBridge.o --disable-assertions -classpath ./ ../java/src/main/java/fr/in2p3/cc/storage/treqs/hsm/hpssJNI/NativeBridge.java ../java/src/main/java/fr/in2p3/cc/storage/treqs/hsm/HSMHelperFileProperties.java
 
 echo Compiling JNI Bridge - c
 rm -f NativeBridge.o